@@ -0,0 +1,103 @@
+#!/usr/bin/env bash
+#
+# 启动性能对比：普通jar、AOT+AppCDS、GraalVM原生镜像
+# 对每种方式多次冷启动，记录从启动进程到第一个成功接口请求（/api/process-demand 返回200）的时间，
+# 以及此时进程的常驻内存（RSS），结果写入 target/startup-benchmark.csv 并打印中位数。
+#
+# 用法：
+#   mvn package                 # 普通jar
+#   mvn -Pcds package           # target/cds 下的AOT+AppCDS包
+#   mvn -Pnative package        # target/ai-travel-planner 原生镜像（需要GraalVM）
+#   scripts/startup-benchmark.sh [次数，默认5]
+# 未构建的方式会被跳过。
+
+set -u
+
+cd "$(dirname "$0")/.."
+
+RUNS="${1:-5}"
+PORT="${BENCH_PORT:-18080}"
+JAR_NAME="AITravelPlanner-0.0.1-SNAPSHOT.jar"
+OUT="target/startup-benchmark.csv"
+URL="http://localhost:${PORT}/api/process-demand"
+BODY='{"message":"我想去杭州玩三天，预算3000元，喜欢美食"}'
+JAVA="${JAVA_HOME:+$JAVA_HOME/bin/}java"
+
+# 当前时间（毫秒）
+now_ms() {
+    date +%s%3N
+}
+
+# 进程常驻内存（KB）
+rss_kb() {
+    ps -o rss= -p "$1" | tr -d ' '
+}
+
+# 启动一次，输出 "首个成功请求耗时ms,RSS KB"，超时输出空
+measure() {
+    local dir="$1"; shift
+    local start pid elapsed rss
+    start=$(now_ms)
+    (cd "$dir" && exec "$@" --server.port="$PORT" > /dev/null 2>&1) &
+    pid=$!
+    for _ in $(seq 1 600); do
+        if curl -s -o /dev/null -w '%{http_code}' -H 'Content-Type: application/json' -d "$BODY" "$URL" 2>/dev/null | grep -q '^200$'; then
+            elapsed=$(( $(now_ms) - start ))
+            rss=$(rss_kb "$pid")
+            kill "$pid" 2>/dev/null; wait "$pid" 2>/dev/null
+            echo "${elapsed},${rss}"
+            return
+        fi
+        if ! kill -0 "$pid" 2>/dev/null; then
+            break
+        fi
+        sleep 0.05
+    done
+    kill "$pid" 2>/dev/null; wait "$pid" 2>/dev/null
+    echo ""
+}
+
+median() {
+    sort -n | awk '{ v[NR] = $1 } END { if (NR == 0) print "-"; else if (NR % 2) print v[(NR + 1) / 2]; else print int((v[NR / 2] + v[NR / 2 + 1]) / 2) }'
+}
+
+bench() {
+    local variant="$1" dir="$2"; shift 2
+    local times=() rsses=() result
+    for run in $(seq 1 "$RUNS"); do
+        result=$(measure "$dir" "$@")
+        if [ -z "$result" ]; then
+            echo "${variant} 第${run}次启动失败" >&2
+            continue
+        fi
+        echo "${variant},${run},${result}" >> "$OUT"
+        times+=("${result%,*}")
+        rsses+=("${result#*,}")
+    done
+    printf '%-8s 首个成功请求 %6s ms   RSS %8s KB   （%d次中位数）\n' "$variant" \
+        "$(printf '%s\n' "${times[@]:-}" | grep . | median)" \
+        "$(printf '%s\n' "${rsses[@]:-}" | grep . | median)" "${#times[@]}"
+}
+
+mkdir -p target
+echo "variant,run,first_request_ms,rss_kb" > "$OUT"
+
+if [ -f "target/${JAR_NAME}" ]; then
+    bench jar target "$JAVA" -jar "$JAR_NAME"
+else
+    echo "未找到target/${JAR_NAME}，跳过jar（mvn package）"
+fi
+
+if [ -f "target/cds/application.jsa" ]; then
+    bench cds target/cds "$JAVA" -XX:SharedArchiveFile=application.jsa -Dspring.aot.enabled=true -jar "$JAR_NAME"
+else
+    echo "未找到target/cds/application.jsa，跳过cds（mvn -Pcds package）"
+fi
+
+if [ -x "target/ai-travel-planner" ]; then
+    bench native target ./ai-travel-planner
+else
+    echo "未找到target/ai-travel-planner，跳过native（mvn -Pnative package）"
+fi
+
+echo "明细：${OUT}"
@@ -0,0 +1,30 @@
+package com.aitravelplanner.Config;
+
+import com.aitravelplanner.Util.EmbeddedRespServer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+
+/**
+ * 共享缓存配置
+ * 启用travel.cache.redis.embedded时在进程内启动Redis协议服务，TieredCache会连接它而不是travel.cache.redis.url，
+ * 用于测试和单机开发，不需要安装Redis也能走通共享缓存和失效广播的完整流程
+ */
+@Configuration
+public class CacheConfig {
+
+    /**
+     * 内嵌Redis协议服务
+     * @param port 监听端口，0表示随机端口
+     * @return 已启动的服务
+     * @throws IOException 端口无法监听
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "travel.cache.redis.embedded", havingValue = "true")
+    public EmbeddedRespServer embeddedRespServer(@Value("${travel.cache.redis.embedded-port:0}") int port) throws IOException {
+        return new EmbeddedRespServer(port);
+    }
+}
@@ -0,0 +1,26 @@
+package com.aitravelplanner.Config;
+
+import com.aitravelplanner.Service.CacheWarmupService;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * 缓存预热健康检查（cacheWarmup），加入就绪探针分组（management.endpoint.health.group.readiness.include）
+ * 预热未达到就绪条件时返回OUT_OF_SERVICE，负载均衡在缓存填充前不把流量转到新实例
+ */
+@Component
+public class CacheWarmupHealthIndicator implements HealthIndicator {
+
+    private final CacheWarmupService cacheWarmupService;
+
+    public CacheWarmupHealthIndicator(CacheWarmupService cacheWarmupService) {
+        this.cacheWarmupService = cacheWarmupService;
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder builder = cacheWarmupService.isReady() ? Health.up() : Health.outOfService();
+        return builder.withDetails(cacheWarmupService.getProgress()).build();
+    }
+}
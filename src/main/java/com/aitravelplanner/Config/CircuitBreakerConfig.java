@@ -0,0 +1,40 @@
+package com.aitravelplanner.Config;
+
+import com.aitravelplanner.Util.CircuitBreaker;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 熔断器配置
+ * 高德地图和DashScope各有一个熔断器，由服务实现记录调用结果，缓存层据此决定是否提供过期数据
+ */
+@Configuration
+public class CircuitBreakerConfig {
+
+    /**
+     * 高德地图API熔断器
+     */
+    @Bean(name = "amapCircuitBreaker")
+    public CircuitBreaker amapCircuitBreaker(@Value("${travel.circuit.amap.window-size:20}") int windowSize,
+                                             @Value("${travel.circuit.amap.min-calls:10}") int minCalls,
+                                             @Value("${travel.circuit.amap.failure-rate:0.5}") double failureRate,
+                                             @Value("${travel.circuit.amap.slow-call-ms:2000}") long slowCallMs,
+                                             @Value("${travel.circuit.amap.slow-call-rate:0.8}") double slowCallRate,
+                                             @Value("${travel.circuit.amap.open-ms:10000}") long openMs) {
+        return new CircuitBreaker("amap", windowSize, minCalls, failureRate, slowCallMs, slowCallRate, openMs);
+    }
+
+    /**
+     * DashScope大模型API熔断器，生成耗时随输出长度变化，慢调用阈值较宽
+     */
+    @Bean(name = "dashscopeCircuitBreaker")
+    public CircuitBreaker dashscopeCircuitBreaker(@Value("${travel.circuit.dashscope.window-size:20}") int windowSize,
+                                                  @Value("${travel.circuit.dashscope.min-calls:5}") int minCalls,
+                                                  @Value("${travel.circuit.dashscope.failure-rate:0.5}") double failureRate,
+                                                  @Value("${travel.circuit.dashscope.slow-call-ms:60000}") long slowCallMs,
+                                                  @Value("${travel.circuit.dashscope.slow-call-rate:0.8}") double slowCallRate,
+                                                  @Value("${travel.circuit.dashscope.open-ms:30000}") long openMs) {
+        return new CircuitBreaker("dashscope", windowSize, minCalls, failureRate, slowCallMs, slowCallRate, openMs);
+    }
+}
@@ -0,0 +1,109 @@
+package com.aitravelplanner.Config;
+
+import com.aitravelplanner.Util.ClientBoundedExecutor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 线程池配置
+ * 为需要并发调用上游服务的功能提供有界线程池
+ */
+@Configuration
+public class ExecutorConfig {
+
+    /**
+     * 接口处理线程池，耗时接口在此异步执行，便于在客户端断开或超时时取消；
+     * 队列满时拒绝新的请求（返回503），过载时不会无限堆积
+     * @param maxThreads 最大线程数
+     * @param queueCapacity 等待处理的最大请求数
+     * @return 线程池
+     */
+    @Bean(name = "requestExecutor", destroyMethod = "shutdownNow")
+    public ExecutorService requestExecutor(@Value("${travel.request.max-threads:64}") int maxThreads,
+                                           @Value("${travel.request.queue-capacity:256}") int queueCapacity) {
+        int size = Math.max(1, maxThreads);
+        return new ThreadPoolExecutor(size, size, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), namedThreadFactory("request-worker-"));
+    }
+
+    /**
+     * 连接探测调度线程，定期向处理中的异步请求写入心跳以发现已断开的客户端
+     * @return 调度线程池
+     */
+    @Bean(name = "heartbeatScheduler", destroyMethod = "shutdownNow")
+    public ScheduledExecutorService heartbeatScheduler() {
+        return Executors.newSingleThreadScheduledExecutor(namedThreadFactory("request-heartbeat-"));
+    }
+
+    /**
+     * 旅行计划生成线程池，按天生成的任务在此等待大模型调用名额（并发上限由FairQueueScheduler控制）；
+     * 每个客户端同时占用的线程数有上限，多出的任务在该客户端自己的队列中等待，不会挡住其他客户端
+     * @param parallelism 线程数
+     * @param maxPerClient 单个客户端同时占用的最大线程数
+     * @return 线程池
+     */
+    @Bean(name = "planExecutor", destroyMethod = "shutdownNow")
+    public ClientBoundedExecutor planExecutor(@Value("${travel.plan.parallelism:16}") int parallelism,
+                                              @Value("${travel.plan.max-threads-per-client:4}") int maxPerClient) {
+        return new ClientBoundedExecutor(
+                Executors.newFixedThreadPool(Math.max(1, parallelism), namedThreadFactory("plan-worker-")), maxPerClient);
+    }
+
+    /**
+     * 预生成线程池，在用户确认需求前预先生成旅行计划，与正式请求的线程池隔离
+     * @param parallelism 最大并发任务数
+     * @return 线程池
+     */
+    @Bean(name = "speculationExecutor", destroyMethod = "shutdownNow")
+    public ExecutorService speculationExecutor(@Value("${travel.plan.speculation.parallelism:2}") int parallelism) {
+        return Executors.newFixedThreadPool(Math.max(1, parallelism), namedThreadFactory("plan-speculation-"));
+    }
+
+    /**
+     * 路线对比线程池，起终点地理编码和各出行方式的路线规划在此并发执行
+     * @param parallelism 线程数
+     * @return 线程池
+     */
+    @Bean(name = "routeExecutor", destroyMethod = "shutdownNow")
+    public ExecutorService routeExecutor(@Value("${travel.route.parallelism:16}") int parallelism) {
+        return Executors.newFixedThreadPool(Math.max(1, parallelism), namedThreadFactory("route-worker-"));
+    }
+
+    /**
+     * 缓存后台刷新线程池，过期缓存值在此重新查询上游；队列满时放弃刷新，下次命中过期值时再安排
+     * @param threads 线程数
+     * @param queueCapacity 等待刷新的最大任务数
+     * @return 线程池
+     */
+    @Bean(name = "cacheRefreshExecutor", destroyMethod = "shutdownNow")
+    public ExecutorService cacheRefreshExecutor(@Value("${travel.cache.refresh.threads:2}") int threads,
+                                                @Value("${travel.cache.refresh.queue-capacity:100}") int queueCapacity) {
+        int size = Math.max(1, threads);
+        return new ThreadPoolExecutor(size, size, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), namedThreadFactory("cache-refresh-"));
+    }
+
+    /**
+     * 创建带名称前缀的守护线程工厂，便于在线程转储中定位
+     * @param prefix 线程名前缀
+     * @return 线程工厂
+     */
+    static ThreadFactory namedThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,73 @@
+package com.aitravelplanner.Config;
+
+import com.aitravelplanner.Model.Itinerary;
+import com.aitravelplanner.Model.ItineraryDay;
+import com.aitravelplanner.Model.ItineraryStop;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.type.classreading.CachingMetadataReaderFactory;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * 原生镜像提示配置
+ * AOT处理（-Pcds、-Pnative）时登记反射和资源提示，JVM模式下不产生任何作用。
+ * Spring会自动处理自身组件和控制器签名中的类型，这里补充它推断不到的部分：
+ * DashScope SDK通过Gson反射读写请求和响应对象，结构化行程作为Map的值由Jackson序列化。
+ */
+@Configuration
+@ImportRuntimeHints(NativeHintsConfig.SdkRuntimeHints.class)
+public class NativeHintsConfig {
+
+    static class SdkRuntimeHints implements RuntimeHintsRegistrar {
+
+        /** 文本生成调用会用到的DashScope包（参数、结果、消息、工具调用、协议和异常） */
+        private static final String[] DASHSCOPE_PACKAGES = {
+                "com/alibaba/dashscope/aigc/generation",
+                "com/alibaba/dashscope/common",
+                "com/alibaba/dashscope/base",
+                "com/alibaba/dashscope/protocol",
+                "com/alibaba/dashscope/tools",
+                "com/alibaba/dashscope/utils",
+                "com/alibaba/dashscope/exception",
+                "com/alibaba/dashscope/api"
+        };
+
+        @Override
+        public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+            PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver(classLoader);
+            MetadataReaderFactory readers = new CachingMetadataReaderFactory(resolver);
+            for (String pkg : DASHSCOPE_PACKAGES) {
+                try {
+                    for (Resource resource : resolver.getResources("classpath*:" + pkg + "/**/*.class")) {
+                        String className = readers.getMetadataReader(resource).getClassMetadata().getClassName();
+                        hints.reflection().registerType(TypeReference.of(className),
+                                MemberCategory.INVOKE_DECLARED_CONSTRUCTORS,
+                                MemberCategory.DECLARED_FIELDS,
+                                MemberCategory.INVOKE_DECLARED_METHODS);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException("扫描DashScope类失败：" + pkg, e);
+                }
+            }
+
+            // 结构化行程（Lombok生成的getter/setter）
+            new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(),
+                    Itinerary.class, ItineraryDay.class, ItineraryStop.class);
+
+            // DashScope的版本信息和分词表，OkHttp的公共后缀表
+            hints.resources().registerPattern("META-INF/maven/com.alibaba/dashscope-sdk-java/pom.properties");
+            hints.resources().registerPattern("qwen.tiktoken");
+            hints.resources().registerPattern("okhttp3/internal/publicsuffix/*");
+        }
+    }
+}
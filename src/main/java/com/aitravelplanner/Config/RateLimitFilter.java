@@ -0,0 +1,132 @@
+package com.aitravelplanner.Config;
+
+import com.aitravelplanner.Util.CancellableRequestExecutor;
+import com.aitravelplanner.Util.SlidingWindowRateLimiter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 接口按客户端限流
+ * 所有 /api/* 接口都不需要登录，为了避免单个客户端（如爬虫）用完大家共用的高德和DashScope配额，
+ * 每个客户端（与公平排队相同，按travel.request.client-id-header或连接的远端地址区分）在一个窗口内只能消耗固定的单位数，
+ * 不同接口按上游开销计费：生成旅行计划需要多次大模型调用，远高于一次地理编码。
+ * 超过限额的请求在进入接口处理之前返回429，并通过Retry-After告知客户端多久后重试。
+ */
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(RateLimitFilter.class);
+
+    private static final String API_PREFIX = "/api/";
+
+    private static final byte[] REJECTED_BODY = "{\"error\":\"请求过于频繁，请稍后重试\"}".getBytes(StandardCharsets.UTF_8);
+
+    @Value("${travel.ratelimit.enabled:true}")
+    private boolean enabled;
+
+    /** 窗口长度（毫秒） */
+    @Value("${travel.ratelimit.window-ms:60000}")
+    private long windowMs;
+
+    /** 每个客户端在一个窗口内可以消耗的单位数 */
+    @Value("${travel.ratelimit.limit:600}")
+    private long limit;
+
+    /** 未单独配置的接口的开销 */
+    @Value("${travel.ratelimit.default-cost:1}")
+    private long defaultCost;
+
+    /** 各接口的开销，格式为 接口路径:单位数，路径是 /api/ 之后的部分，0表示不限流 */
+    @Value("${travel.ratelimit.costs:generate-travel-plan:50,voice-recognition:10,process-demand:5,compare-routes:4,plan-walking-route:2,voice-recognition/status:0}")
+    private List<String> costs;
+
+    /** 最多跟踪的客户端数，超过后新客户端替换用量最低的客户端 */
+    @Value("${travel.ratelimit.max-clients:100000}")
+    private int maxClients;
+
+    @Value("${travel.ratelimit.stripes:64}")
+    private int stripes;
+
+    @Value("${travel.request.client-id-header:}")
+    private String clientIdHeader;
+
+    private final Map<String, Long> endpointCosts = new HashMap<>();
+
+    private SlidingWindowRateLimiter limiter;
+
+    @PostConstruct
+    public void init() {
+        for (String entry : costs) {
+            int separator = entry.lastIndexOf(':');
+            if (separator <= 0) {
+                log.atWarn().addKeyValue("entry", entry).log("忽略格式错误的接口开销配置：{}", entry);
+                continue;
+            }
+            endpointCosts.put(entry.substring(0, separator).trim(), Long.parseLong(entry.substring(separator + 1).trim()));
+        }
+        limiter = new SlidingWindowRateLimiter("api", windowMs, limit, maxClients, stripes);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        limiter.close();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        // CORS预检请求不计费
+        return !enabled || "OPTIONS".equals(request.getMethod()) || !path(request).startsWith(API_PREFIX);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long cost = costOf(path(request).substring(API_PREFIX.length()));
+        if (cost > 0) {
+            long retryAfterMs = limiter.tryAcquire(CancellableRequestExecutor.clientId(request, clientIdHeader), cost);
+            if (retryAfterMs > 0) {
+                response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+                response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf((retryAfterMs + 999) / 1000));
+                response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                response.setContentLength(REJECTED_BODY.length);
+                response.getOutputStream().write(REJECTED_BODY);
+                return;
+            }
+        }
+        chain.doFilter(request, response);
+    }
+
+    /**
+     * 接口的开销：先按完整路径查找（如 voice-recognition/status），再按第一段路径查找（如 history/{id} 按 history）
+     */
+    private long costOf(String endpoint) {
+        Long cost = endpointCosts.get(endpoint);
+        if (cost == null) {
+            int slash = endpoint.indexOf('/');
+            cost = slash < 0 ? null : endpointCosts.get(endpoint.substring(0, slash));
+        }
+        return cost == null ? defaultCost : cost;
+    }
+
+    private static String path(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+}
@@ -0,0 +1,43 @@
+package com.aitravelplanner.Config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+
+/**
+ * 带Content-Length的JSON转换器
+ * 先把JSON序列化到内存再写出，使响应带上长度。Tomcat只有在知道长度时才会按server.compression.min-response-size
+ * 判断是否压缩，否则所有分块响应都会被压缩；接口返回的JSON都不大，缓冲的开销可以忽略。
+ */
+public class SizedJsonHttpMessageConverter extends MappingJackson2HttpMessageConverter {
+
+    public SizedJsonHttpMessageConverter(ObjectMapper objectMapper) {
+        super(objectMapper);
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+        super.writeInternal(object, type, new HttpOutputMessage() {
+            @Override
+            public OutputStream getBody() {
+                return buffer;
+            }
+
+            @Override
+            public HttpHeaders getHeaders() {
+                return outputMessage.getHeaders();
+            }
+        });
+        outputMessage.getHeaders().setContentLength(buffer.size());
+        buffer.writeTo(outputMessage.getBody());
+    }
+}
@@ -0,0 +1,35 @@
+package com.aitravelplanner.Config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.resource.ResourceHttpRequestHandler;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * 静态资源缓存策略
+ * 文件名带内容哈希的JS/CSS内容永远不变，返回一年的immutable缓存，浏览器不再重新验证；
+ * HTML等入口文件的地址不变，要求每次重新验证（未修改时返回304），从而拿到最新的哈希地址。
+ */
+public class StaticResourceCacheInterceptor implements HandlerInterceptor {
+
+    /** 资源链内容版本策略生成的文件名：名称-32位MD5.扩展名 */
+    private static final Pattern VERSIONED_PATH = Pattern.compile(".*-[0-9a-f]{32}\\.(?:js|css)$");
+
+    private static final String IMMUTABLE = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable().getHeaderValue();
+
+    private static final String REVALIDATE = CacheControl.noCache().getHeaderValue();
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (handler instanceof ResourceHttpRequestHandler) {
+            boolean versioned = VERSIONED_PATH.matcher(request.getRequestURI()).matches();
+            response.setHeader(HttpHeaders.CACHE_CONTROL, versioned ? IMMUTABLE : REVALIDATE);
+        }
+        return true;
+    }
+}
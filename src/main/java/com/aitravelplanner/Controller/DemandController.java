@@ -0,0 +1,161 @@
+package com.aitravelplanner.Controller;
+
+import com.aitravelplanner.Service.DemandService;
+import com.aitravelplanner.Util.CancellableRequestExecutor;
+import com.aitravelplanner.Util.TraceExporter;
+import com.aitravelplanner.Util.Tracer;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.util.HtmlUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 旅行需求控制器
+ * 处理前端对话中的需求消息，本地解析为结构化需求，需求完整时开始预生成旅行计划
+ */
+@RestController
+@RequestMapping("/api")
+public class DemandController {
+
+    private final DemandService demandService;
+    private final TraceExporter traceExporter;
+
+    /** 标识客户端的请求头，与公平排队和限流使用同一配置 */
+    @Value("${travel.request.client-id-header:}")
+    private String clientIdHeader;
+
+    public DemandController(DemandService demandService, TraceExporter traceExporter) {
+        this.demandService = demandService;
+        this.traceExporter = traceExporter;
+    }
+
+    /**
+     * 需求处理API
+     * @param request 包含message（当前消息）和chatHistory（对话记录）的请求体
+     * @param session 当前会话，用于关联预生成的旅行计划
+     * @param servletRequest 原始请求，用于识别客户端
+     * @param traceparent 上游传入的链路上下文，可以为空
+     * @return 回复内容、结构化需求以及需求是否完整
+     */
+    @PostMapping("/process-demand")
+    public ResponseEntity<Map<String, Object>> processDemand(@RequestBody Map<String, Object> request, HttpSession session,
+            HttpServletRequest servletRequest,
+            @RequestHeader(value = CancellableRequestExecutor.TRACEPARENT_HEADER, required = false) String traceparent) {
+        // 需求解析在请求线程中同步完成，不经过CancellableRequestExecutor，在这里创建根span
+        Tracer.Span root = traceExporter.startRequest("process-demand", traceparent);
+        try (Tracer.Scope ignored = Tracer.attach(root)) {
+            ResponseEntity<Map<String, Object>> response = handleDemand(request, session, CancellableRequestExecutor.clientId(servletRequest, clientIdHeader));
+            root.setAttribute("http.status_code", response.getStatusCode().value());
+            return response;
+        } finally {
+            traceExporter.finish(root);
+        }
+    }
+
+    private ResponseEntity<Map<String, Object>> handleDemand(Map<String, Object> request, HttpSession session, String clientId) {
+        Map<String, Object> response = new HashMap<>();
+
+        try {
+            Object message = request.get("message");
+            if (!(message instanceof String) || ((String) message).trim().isEmpty()) {
+                response.put("success", false);
+                response.put("error", "消息内容不能为空");
+                return ResponseEntity.badRequest().body(response);
+            }
+
+            // 汇总对话中所有用户消息，后面的消息可以补充或修改前面的需求
+            List<String> messages = collectUserMessages(request.get("chatHistory"));
+            if (messages.isEmpty() || !messages.get(messages.size() - 1).equals(message)) {
+                messages.add((String) message);
+            }
+
+            Map<String, String> demand;
+            try (Tracer.Span ignored = Tracer.start("demand.parse")) {
+                demand = demandService.parseDemand(messages);
+            }
+            boolean complete = demandService.isComplete(demand);
+
+            // 需求完整时在用户确认期间预生成，需求变化时会取消之前的预生成
+            if (complete) {
+                demandService.startSpeculation(session.getId(), clientId, demand);
+            } else {
+                demandService.cancelSpeculation(session.getId());
+            }
+
+            response.put("success", true);
+            response.put("response", buildReply(demand, complete));
+            response.put("demandData", demand);
+            response.put("isDemandComplete", complete);
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("error", "需求处理失败：" + e.getMessage());
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+
+    /**
+     * 从对话记录中取出用户发送的消息
+     */
+    private List<String> collectUserMessages(Object chatHistory) {
+        List<String> messages = new ArrayList<>();
+        if (!(chatHistory instanceof List)) {
+            return messages;
+        }
+        for (Object item : (List<?>) chatHistory) {
+            if (item instanceof Map) {
+                Map<?, ?> entry = (Map<?, ?>) item;
+                if ("user".equals(entry.get("type")) && entry.get("content") instanceof String) {
+                    messages.add((String) entry.get("content"));
+                }
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * 根据已识别的需求生成回复，回复会以HTML形式显示，用户输入的内容需要转义
+     */
+    private String buildReply(Map<String, String> demand, boolean complete) {
+        StringBuilder reply = new StringBuilder();
+        List<String> known = new ArrayList<>();
+        addKnown(known, "目的地", demand.get("destination"));
+        addKnown(known, "出发日期", demand.get("startDate"));
+        addKnown(known, "返回日期", demand.get("endDate"));
+        addKnown(known, "天数", demand.get("days") == null ? null : demand.get("days") + "天");
+        addKnown(known, "预算", demand.get("budget"));
+        addKnown(known, "人数", demand.get("people"));
+        addKnown(known, "偏好", demand.get("preferences"));
+
+        if (!known.isEmpty()) {
+            reply.append("我已了解您的需求：").append(String.join("，", known)).append("。");
+        }
+        if (complete) {
+            reply.append("请确认以下需求，确认后将为您生成旅行计划。");
+        } else {
+            List<String> missing = new ArrayList<>();
+            if (demand.get("destination") == null) {
+                missing.add("想去的目的地");
+            }
+            if (demand.get("startDate") == null && demand.get("days") == null) {
+                missing.add("出行日期或天数");
+            }
+            reply.append("请告诉我您").append(String.join("，以及", missing)).append("，也可以补充预算、人数和旅行偏好。");
+        }
+        return reply.toString();
+    }
+
+    private void addKnown(List<String> known, String label, String value) {
+        if (value != null) {
+            known.add(label + "：" + HtmlUtils.htmlEscape(value));
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.aitravelplanner.Controller;
+
+import com.aitravelplanner.Model.PlanHistoryEntry;
+import com.aitravelplanner.Model.PlanHistoryPage;
+import com.aitravelplanner.Service.AuthService;
+import com.aitravelplanner.Service.PlanHistoryService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * 旅行计划历史记录控制器
+ * 保存生成的旅行计划，按时间从新到旧分页列出历史记录摘要，查看单条记录的完整内容
+ * 所有接口都需要在Authorization请求头中携带Supabase访问令牌，用户ID取自校验通过的令牌
+ */
+@RestController
+@RequestMapping("/api/history")
+public class PlanHistoryController {
+
+    private static final int MAX_USER_ID_LENGTH = 64;
+    private static final int MAX_DESTINATION_LENGTH = 200;
+
+    private static final Map<String, Object> UNAUTHORIZED = Map.of("success", false, "error", "请先登录");
+
+    private final PlanHistoryService planHistoryService;
+    private final AuthService authService;
+
+    @Value("${travel.history.page.default-size:20}")
+    private int defaultPageSize;
+
+    public PlanHistoryController(PlanHistoryService planHistoryService, AuthService authService) {
+        this.planHistoryService = planHistoryService;
+        this.authService = authService;
+    }
+
+    /**
+     * 保存旅行计划API，计划稍后批量写入数据库
+     * @param authorization Supabase访问令牌，格式为 "Bearer 访问令牌"
+     * @param request 包含planData（计划内容），可选destination和days
+     * @return 已接收返回202；未登录返回401；写入缓冲区已满返回503，并通过Retry-After告知客户端多久后重试
+     */
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> savePlan(@RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization,
+                                                        @RequestBody Map<String, Object> request) {
+        String userId = authenticate(authorization);
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(UNAUTHORIZED);
+        }
+        Object planData = request.get("planData");
+        if (!(planData instanceof String) || ((String) planData).trim().isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "error", "计划内容不能为空"));
+        }
+
+        Object destination = request.get("destination");
+        String destinationText = destination == null ? null : destination.toString().trim();
+        if (destinationText != null && destinationText.length() > MAX_DESTINATION_LENGTH) {
+            destinationText = destinationText.substring(0, MAX_DESTINATION_LENGTH);
+        }
+        Object days = request.get("days");
+        Integer dayCount = days instanceof Number && ((Number) days).intValue() > 0 ? ((Number) days).intValue() : null;
+
+        if (!planHistoryService.save(userId, (String) planData, destinationText, dayCount)) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(Map.of("success", false, "error", "保存的请求较多，请稍后重试"));
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of("success", true));
+    }
+
+    /**
+     * 历史记录列表API
+     * @param authorization Supabase访问令牌
+     * @param cursor 上一页返回的nextCursor，第一页不传
+     * @param limit 每页条数
+     * @return 一页历史记录摘要和下一页游标，未登录返回401
+     */
+    @GetMapping
+    public ResponseEntity<?> listPlans(@RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization,
+                                       @RequestParam(required = false) String cursor,
+                                       @RequestParam(required = false) Integer limit) {
+        String userId = authenticate(authorization);
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(UNAUTHORIZED);
+        }
+        try {
+            PlanHistoryPage page = planHistoryService.list(userId, cursor, limit == null ? defaultPageSize : limit);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "error", e.getMessage()));
+        }
+    }
+
+    /**
+     * 查看历史记录API
+     * @param id 记录ID
+     * @param authorization Supabase访问令牌
+     * @return 完整的历史记录，未登录返回401，不存在或不属于当前用户时返回404
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<?> getPlan(@PathVariable long id,
+                                     @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        String userId = authenticate(authorization);
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(UNAUTHORIZED);
+        }
+        PlanHistoryEntry entry = planHistoryService.get(userId, id);
+        if (entry == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("success", false, "error", "历史记录不存在"));
+        }
+        return ResponseEntity.ok(entry);
+    }
+
+    /**
+     * 校验访问令牌，返回当前登录用户ID，未登录或用户ID超出数据库字段长度时返回null
+     */
+    private String authenticate(String authorization) {
+        String userId = authService.authenticate(authorization);
+        return userId != null && userId.length() <= MAX_USER_ID_LENGTH ? userId : null;
+    }
+}
@@ -1,55 +1,126 @@
 package com.aitravelplanner.Controller;
 
-import com.aitravelplanner.Service.AaLIBigModelService;
-import com.aitravelplanner.Service.Impl.AaLIBigModelServiceImpl;
+import com.aitravelplanner.Model.Coordinate;
+import com.aitravelplanner.Model.Itinerary;
+import com.aitravelplanner.Service.DemandService;
+import com.aitravelplanner.Service.ItineraryService;
 import com.aitravelplanner.Service.MapService;
-import com.aitravelplanner.Service.Impl.MapServiceImpl;
+import com.aitravelplanner.Service.RouteComparisonService;
 
+import com.aitravelplanner.Util.CancellableRequestExecutor;
+import com.aitravelplanner.Util.ModelUnavailableException;
+import com.aitravelplanner.Util.QueueRejectedException;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
 @RequestMapping("/api")
 public class TravelPlanController {
     
-    private final AaLIBigModelService aiAssistant;
     private final MapService mapService;
+    private final ItineraryService itineraryService;
+    private final DemandService demandService;
+    private final CancellableRequestExecutor requestExecutor;
+    private final RouteComparisonService routeComparisonService;
     
-    public TravelPlanController() {
-        this.aiAssistant = new AaLIBigModelServiceImpl();
-        this.mapService = new MapServiceImpl();
+    /** 默认生成模式：single为单次生成，parallel为按天并发生成 */
+    @Value("${travel.plan.mode:single}")
+    private String defaultPlanMode;
+    
+    public TravelPlanController(MapService mapService, ItineraryService itineraryService, DemandService demandService,
+                                CancellableRequestExecutor requestExecutor, RouteComparisonService routeComparisonService) {
+        this.mapService = mapService;
+        this.itineraryService = itineraryService;
+        this.demandService = demandService;
+        this.requestExecutor = requestExecutor;
+        this.routeComparisonService = routeComparisonService;
     }
     
     /**
      * 生成旅行计划API
-     * @param request 包含用户消息的请求体
-     * @return AI生成的旅行计划
+     * @param request 包含用户消息的请求体，或/api/process-demand返回的结构化需求；可选mode（single/parallel/json）和days（行程天数）
+     * @param session 当前会话，用于取出确认前预生成的旅行计划
+     * @return AI生成的旅行计划，json模式下返回结构化行程和地点列表；大模型调用排队已满时返回429，大模型不可用时返回503
      */
     @PostMapping("/generate-travel-plan")
-    public ResponseEntity<Map<String, String>> generateTravelPlan(@RequestBody Map<String, String> request) {
-        try {
-            // 获取用户消息
-            String userMessage = request.get("message");
-            if (userMessage == null || userMessage.trim().isEmpty()) {
-                return ResponseEntity.badRequest()
-                        .body(Map.of("error", "消息内容不能为空"));
-            }
+    public DeferredResult<ResponseEntity<Map<String, Object>>> generateTravelPlan(@RequestBody Map<String, String> request, HttpSession session) {
+        String sessionId = session.getId();
+        return requestExecutor.execute("generate-travel-plan", () -> {
+            try {
+                // 获取用户消息，前端确认需求后提交的是结构化需求
+                String userMessage = request.get("message");
+                boolean fromDemand = (userMessage == null || userMessage.trim().isEmpty())
+                        && (request.get("destination") != null || request.get("rawMessage") != null);
+                if (fromDemand) {
+                    userMessage = demandService.toPlanMessage(request);
+                }
+                if (userMessage == null || userMessage.trim().isEmpty()) {
+                    return ResponseEntity.badRequest()
+                            .body(Map.of("error", "消息内容不能为空"));
+                }
             
-            // 构建AI提示词
-            String prompt = "请根据以下用户需求生成一个详细的旅行计划：" + userMessage + "请提供详细的行程安排、住宿建议、交通方案、餐饮推荐和预算分配。" + "地点信息请用【具体的地点】包裹，时间信息请用$具体的时间$包裹,其他地方不要使用'【','】'和'$'这三个字符";
+                String mode = request.getOrDefault("mode", defaultPlanMode);
+                int days = parseDays(request.get("days"));
+                if (days <= 0) {
+                    days = itineraryService.estimateDays(userMessage);
+                }
             
-            // 调用AI助手生成旅行计划
-            String aiResponse = aiAssistant.generateResponse(prompt);
+                // 结构化模式直接返回JSON行程，地点列表取自各站点，无需再用正则提取
+                if ("json".equalsIgnoreCase(mode)) {
+                    Itinerary itinerary = itineraryService.generateStructuredPlan(userMessage, days);
+                    if (itinerary == null) {
+                        return ResponseEntity.internalServerError()
+                                .body(Map.of("error", "生成结构化旅行计划失败"));
+                    }
+                    return ResponseEntity.ok(Map.of("success", true, "itinerary", itinerary, "locations", itinerary.locations()));
+                }
             
-            // 返回结果
-            return ResponseEntity.ok(Map.of("travelPlan", aiResponse));
+                // 确认的需求与预生成时一致，直接使用（或等待）预生成的结果
+                if (fromDemand) {
+                    Map<String, String> speculation = demandService.takeSpeculation(sessionId, request);
+                    if (speculation != null) {
+                        Map<String, Object> response = new HashMap<>(speculation);
+                        response.put("success", true);
+                        response.put("speculative", true);
+                        return ResponseEntity.ok(response);
+                    }
+                }
             
-        } catch (Exception e) {
-            return ResponseEntity.internalServerError()
-                    .body(Map.of("error", "生成旅行计划失败: " + e.getMessage()));
-        }
+                // 多日行程在并发模式下按天拆分生成
+                boolean parallel = "parallel".equalsIgnoreCase(mode);
+                String travelPlan = itineraryService.generateTextPlan(userMessage, days, parallel);
+            
+                // 返回结果
+                return ResponseEntity.ok(Map.of("success", true, "travelPlan", travelPlan));
+            
+            } catch (Exception e) {
+                // 大模型调用排队已满或等待超时，提示客户端稍后重试
+                QueueRejectedException rejected = QueueRejectedException.find(e);
+                if (rejected != null) {
+                    return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                            .header(HttpHeaders.RETRY_AFTER, String.valueOf(rejected.getRetryAfterSeconds()))
+                            .body(Map.of("error", "当前生成旅行计划的请求较多，请稍后重试"));
+                }
+                // 大模型熔断或调用失败
+                if (e instanceof ModelUnavailableException) {
+                    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                            .body(Map.of("error", "AI服务暂时不可用，请稍后重试"));
+                }
+                return ResponseEntity.internalServerError()
+                        .body(Map.of("error", "生成旅行计划失败: " + e.getMessage()));
+            }
+        });
     }
     
     /**
@@ -58,96 +129,219 @@ public class TravelPlanController {
      * @return 地理编码结果（经纬度坐标）
      */
     @PostMapping("/geocode")
-    public ResponseEntity<Map<String, Object>> geocode(@RequestBody Map<String, String> request) {
-        try {
-            // 获取地址名称
-            String address = request.get("address");
+    public DeferredResult<ResponseEntity<Map<String, Object>>> geocode(@RequestBody Map<String, String> request) {
+        return requestExecutor.execute("geocode", () -> {
+            try {
+                // 获取地址名称
+                String address = request.get("address");
             
-            if (address == null || address.trim().isEmpty()) {
-                return ResponseEntity.badRequest()
-                        .body(Map.of("error", "地址名称不能为空"));
-            }
+                if (address == null || address.trim().isEmpty()) {
+                    return ResponseEntity.badRequest()
+                            .body(Map.of("error", "地址名称不能为空"));
+                }
             
-            // 调用地图服务进行地理编码
-            String coordinate = mapService.geoCode(address);
+                // 调用地图服务进行地理编码
+                Coordinate coordinate = mapService.geoCode(address);
             
-            if (coordinate == null) {
-                return ResponseEntity.badRequest()
-                        .body(Map.of("error", "地理编码失败，请检查地址名称是否正确"));
+                if (coordinate == null) {
+                    return ResponseEntity.badRequest()
+                            .body(Map.of("error", "地理编码失败，请检查地址名称是否正确"));
+                }
+            
+                // 返回结果
+                return ResponseEntity.ok(Map.of("success", true, "coordinate", coordinate.toString()));
+            
+            } catch (Exception e) {
+                return ResponseEntity.internalServerError()
+                        .body(Map.of("error", "地理编码失败: " + e.getMessage()));
             }
+        });
+    }
+
+    /**
+     * 逆地理编码API
+     * @param request 包含坐标的请求体
+     * @return 逆地理编码结果（地点名称）
+     */
+    @PostMapping("/reverse-geocode")
+    public DeferredResult<ResponseEntity<Map<String, Object>>> reverseGeocode(@RequestBody Map<String, String> request) {
+        return requestExecutor.execute("reverse-geocode", () -> {
+            try {
+                // 获取坐标
+                Coordinate coordinate = Coordinate.parse(request.get("coordinate"));
             
-            // 返回结果
-            return ResponseEntity.ok(Map.of("success", true, "coordinate", coordinate));
+                if (coordinate == null) {
+                    return ResponseEntity.badRequest()
+                            .body(Map.of("error", "坐标格式不正确，应为\"经度,纬度\""));
+                }
             
-        } catch (Exception e) {
-            return ResponseEntity.internalServerError()
-                    .body(Map.of("error", "地理编码失败: " + e.getMessage()));
-        }
+                // 调用地图服务进行逆地理编码
+                String address = mapService.reverseGeoCode(coordinate);
+            
+                if (address == null) {
+                    return ResponseEntity.badRequest()
+                            .body(Map.of("error", "逆地理编码失败，请检查坐标是否正确"));
+                }
+            
+                // 返回结果
+                return ResponseEntity.ok(Map.of("success", true, "address", address));
+            
+            } catch (Exception e) {
+                return ResponseEntity.internalServerError()
+                        .body(Map.of("error", "逆地理编码失败: " + e.getMessage()));
+            }
+        });
     }
 
     /**
      * 步行路线规划API（支持地点名称和坐标）
-     * @param request 包含起点和终点坐标或地点名称的请求体
+     * @param request 包含起点和终点坐标或地点名称的请求体；可选resolution（地图当前分辨率，米/像素），
+     *                提供时只返回该分辨率下够用的一级路线细节（routeData.lod），不再返回各步骤的折线
      * @return 步行路线规划结果
      */
     @PostMapping("/plan-walking-route")
-    public ResponseEntity<Map<String, Object>> planWalkingRoute(@RequestBody Map<String, String> request) {
-        try {
-            // 获取起点和终点坐标或地点名称
-            String origin = request.get("origin");
-            String destination = request.get("destination");
+    public DeferredResult<ResponseEntity<Map<String, Object>>> planWalkingRoute(@RequestBody Map<String, String> request) {
+        return requestExecutor.execute("plan-walking-route", () -> {
+            try {
+                // 获取起点和终点坐标或地点名称
+                String origin = request.get("origin");
+                String destination = request.get("destination");
             
-            if (origin == null || origin.trim().isEmpty() || destination == null || destination.trim().isEmpty()) {
-                return ResponseEntity.badRequest()
-                        .body(Map.of("error", "起点和终点不能为空"));
-            }
-            
-            // 如果输入的是地点名称而不是坐标，先进行地理编码
-            String originCoord = origin;
-            String destCoord = destination;
+                if (origin == null || origin.trim().isEmpty() || destination == null || destination.trim().isEmpty()) {
+                    return ResponseEntity.badRequest()
+                            .body(Map.of("error", "起点和终点不能为空"));
+                }
             
-            // 检查是否是坐标格式（经度,纬度），如果不是则进行地理编码
-            if (!isValidCoordinate(origin)) {
-                String originCoordResult = mapService.geoCode(origin);
-                if (originCoordResult == null) {
+                // 坐标格式（经度,纬度）直接使用，地点名称并发进行地理编码
+                List<Coordinate> endpoints;
+                try {
+                    endpoints = routeComparisonService.resolveEndpoints(origin, destination);
+                } catch (IllegalArgumentException e) {
                     return ResponseEntity.badRequest()
-                            .body(Map.of("error", "起点地址编码失败: " + origin));
+                            .body(Map.of("error", e.getMessage()));
                 }
-                originCoord = originCoordResult;
-            }
+                Coordinate originCoord = endpoints.get(0);
+                Coordinate destCoord = endpoints.get(1);
+            
+                // 调用地图服务进行步行路线规划
+                Map<String, Object> routeResult = mapService.planWalkingRoute(originCoord, destCoord);
             
-            if (!isValidCoordinate(destination)) {
-                String destCoordResult = mapService.geoCode(destination);
-                if (destCoordResult == null) {
+                if (routeResult == null) {
                     return ResponseEntity.badRequest()
-                            .body(Map.of("error", "终点地址编码失败: " + destination));
+                            .body(Map.of("error", "路线规划失败，请检查输入是否正确"));
                 }
-                destCoord = destCoordResult;
-            }
             
-            // 调用地图服务进行步行路线规划
-            Map<String, Object> routeResult = mapService.planWalkingRoute(originCoord, destCoord);
+                // 返回完整的路线数据，让前端直接使用
+                return ResponseEntity.ok(Map.of(
+                    "success", true, 
+                    "routeData", selectLevelOfDetail(routeResult, request.get("resolution")),
+                    "originCoordinate", originCoord.toString(),
+                    "destinationCoordinate", destCoord.toString(),
+                    "message", "路线规划成功"
+                ));
             
-            if (routeResult == null) {
+            } catch (Exception e) {
+                return ResponseEntity.internalServerError()
+                        .body(Map.of("error", "路线规划失败: " + e.getMessage()));
+            }
+        });
+    }
+    
+    /**
+     * 出行方式对比API
+     * 起终点只做一次地理编码，步行、公交、骑行、驾车并发规划，在共同的截止时间内返回已完成的方式
+     * @param request 包含起点和终点坐标或地点名称的请求体；可选city（公交规划城市）和modes（逗号分隔的出行方式）
+     * @return 按用时从短到长排列的各出行方式路线概要，以及超时（late）和失败（failed）的出行方式
+     */
+    @PostMapping("/compare-routes")
+    public DeferredResult<ResponseEntity<Map<String, Object>>> compareRoutes(@RequestBody Map<String, String> request) {
+        return requestExecutor.execute("compare-routes", () -> {
+            String origin = request.get("origin");
+            String destination = request.get("destination");
+            if (origin == null || origin.trim().isEmpty() || destination == null || destination.trim().isEmpty()) {
                 return ResponseEntity.badRequest()
-                        .body(Map.of("error", "路线规划失败，请检查输入是否正确"));
+                        .body(Map.of("error", "起点和终点不能为空"));
             }
-            
-            System.out.println("routeResult: " + routeResult);
+            String modes = request.get("modes");
+            try {
+                Map<String, Object> comparison = routeComparisonService.compareRoutes(origin, destination, request.get("city"),
+                        modes == null || modes.trim().isEmpty() ? null : Arrays.asList(modes.trim().split("\\s*,\\s*")));
+                Map<String, Object> response = new HashMap<>(comparison);
+                response.put("success", true);
+                return ResponseEntity.ok(response);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest()
+                        .body(Map.of("error", e.getMessage()));
+            } catch (Exception e) {
+                return ResponseEntity.internalServerError()
+                        .body(Map.of("error", "路线对比失败: " + e.getMessage()));
+            }
+        });
+    }
+    
+    /**
+     * 按地图分辨率选出一级路线细节
+     * 选容差不超过一个像素的最粗一级，简化带来的偏差在屏幕上看不出来；
+     * 未提供分辨率时不返回细节数据，保持原有的完整响应
+     * @param routeResult 地图服务返回的路线（可能来自缓存，不修改）
+     * @param resolution 地图分辨率（米/像素）
+     * @return 返回给前端的路线数据
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> selectLevelOfDetail(Map<String, Object> routeResult, String resolution) {
+        Map<String, Object> routeData = new HashMap<>(routeResult);
+        Object lod = routeData.remove("lod");
+        double metersPerPixel;
+        try {
+            metersPerPixel = resolution == null ? -1 : Double.parseDouble(resolution.trim());
+        } catch (NumberFormatException e) {
+            metersPerPixel = -1;
+        }
+        if (!(lod instanceof List) || ((List<?>) lod).isEmpty() || metersPerPixel < 0) {
+            return routeData;
+        }
 
-            // 返回完整的路线数据，让前端直接使用
-            return ResponseEntity.ok(Map.of(
-                "success", true, 
-                "routeData", routeResult,
-                "originCoordinate", originCoord,
-                "destinationCoordinate", destCoord,
-                "message", "路线规划成功"
-            ));
-            
-        } catch (Exception e) {
-            return ResponseEntity.internalServerError()
-                    .body(Map.of("error", "路线规划失败: " + e.getMessage()));
+        List<Map<String, Object>> levels = (List<Map<String, Object>>) lod;
+        int selected = 0;
+        List<Object> tolerances = new ArrayList<>(levels.size());
+        for (int i = 0; i < levels.size(); i++) {
+            Object tolerance = levels.get(i).get("toleranceMeters");
+            tolerances.add(tolerance);
+            if (tolerance instanceof Number && ((Number) tolerance).doubleValue() <= metersPerPixel) {
+                selected = i;
+            }
+        }
+        Map<String, Object> level = new HashMap<>(levels.get(selected));
+        level.put("level", selected);
+        level.put("levels", tolerances);
+        routeData.put("lod", level);
+
+        // 路线由lod.polyline绘制，步骤只保留指引文字和距离，省去占响应大部分的折线
+        Object paths = routeData.get("paths");
+        if (paths instanceof List) {
+            List<Object> trimmedPaths = new ArrayList<>();
+            for (Object path : (List<?>) paths) {
+                if (path instanceof Map && ((Map<?, ?>) path).get("steps") instanceof List) {
+                    Map<String, Object> trimmedPath = new HashMap<>((Map<String, Object>) path);
+                    List<Object> trimmedSteps = new ArrayList<>();
+                    for (Object step : (List<?>) trimmedPath.get("steps")) {
+                        if (step instanceof Map) {
+                            Map<String, Object> trimmedStep = new HashMap<>((Map<String, Object>) step);
+                            trimmedStep.remove("polyline");
+                            trimmedSteps.add(trimmedStep);
+                        } else {
+                            trimmedSteps.add(step);
+                        }
+                    }
+                    trimmedPath.put("steps", trimmedSteps);
+                    trimmedPaths.add(trimmedPath);
+                } else {
+                    trimmedPaths.add(path);
+                }
+            }
+            routeData.put("paths", trimmedPaths);
         }
+        return routeData;
     }
     
     /**
@@ -178,37 +372,18 @@ public class TravelPlanController {
     }
     
     /**
-     * 验证经纬度坐标格式
-     * @param coordinate 经纬度字符串（格式：经度,纬度）
-     * @return 格式正确返回true，否则返回false
+     * 解析请求中的天数参数
+     * @param days 天数字符串
+     * @return 天数，无效返回0
      */
-    private boolean isValidCoordinate(String coordinate) {
-        if (coordinate == null || coordinate.trim().isEmpty()) {
-            return false;
-        }
-        
-        String[] parts = coordinate.split(",");
-        if (parts.length != 2) {
-            return false;
+    private int parseDays(String days) {
+        if (days == null || days.trim().isEmpty()) {
+            return 0;
         }
-        
         try {
-            double longitude = Double.parseDouble(parts[0].trim());
-            double latitude = Double.parseDouble(parts[1].trim());
-            
-            // 验证经度范围（-180到180）
-            if (longitude < -180 || longitude > 180) {
-                return false;
-            }
-            
-            // 验证纬度范围（-90到90）
-            if (latitude < -90 || latitude > 90) {
-                return false;
-            }
-            
-            return true;
+            return Integer.parseInt(days.trim());
         } catch (NumberFormatException e) {
-            return false;
+            return 0;
         }
     }
 }
\ No newline at end of file
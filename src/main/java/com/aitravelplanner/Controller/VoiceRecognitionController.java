@@ -1,9 +1,11 @@
 package com.aitravelplanner.Controller;
 
 import com.aitravelplanner.Service.VoiceService;
+import com.aitravelplanner.Util.CancellableRequestExecutor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.ByteArrayInputStream;
@@ -23,12 +25,15 @@ public class VoiceRecognitionController {
     @Autowired
     private VoiceService voiceService;
     
+    @Autowired
+    private CancellableRequestExecutor requestExecutor;
+    
     /**
      * 语音识别API接口
      * 接收音频文件并返回识别结果
      */
     @PostMapping("/voice-recognition")
-    public ResponseEntity<Map<String, Object>> recognizeVoice(
+    public DeferredResult<ResponseEntity<Map<String, Object>>> recognizeVoice(
             @RequestParam("audio") MultipartFile audioFile) {
         
         Map<String, Object> response = new HashMap<>();
@@ -38,7 +43,7 @@ public class VoiceRecognitionController {
             if (audioFile.isEmpty()) {
                 response.put("success", false);
                 response.put("error", "音频文件为空");
-                return ResponseEntity.badRequest().body(response);
+                return completed(ResponseEntity.badRequest().body(response));
             }
             
             // 检查文件格式
@@ -49,45 +54,61 @@ public class VoiceRecognitionController {
                                         contentType.equals("audio/ogg"))) {
                 response.put("success", false);
                 response.put("error", "不支持的音频格式，支持格式：webm, mp3, wav, ogg");
-                return ResponseEntity.badRequest().body(response);
+                return completed(ResponseEntity.badRequest().body(response));
             }
             
             // 检查文件大小（限制为10MB）
             if (audioFile.getSize() > 10 * 1024 * 1024) {
                 response.put("success", false);
                 response.put("error", "音频文件过大，最大支持10MB");
-                return ResponseEntity.badRequest().body(response);
+                return completed(ResponseEntity.badRequest().body(response));
             }
             
-            // 将音频数据转换为输入流
-            ByteArrayInputStream audioStream = new ByteArrayInputStream(audioFile.getBytes());
-            
-            // 调用语音识别服务
-            String recognitionResult = voiceService.realTimeVoiceTranscription(audioStream);
-            
-            // 关闭输入流
-            audioStream.close();
-            
-            // 返回识别结果
-            response.put("success", true);
-            response.put("text", recognitionResult);
-            response.put("audioSize", audioFile.getSize());
-            response.put("audioType", contentType);
+            // 在请求线程中读取音频数据，识别在可取消的线程中进行
+            byte[] audioBytes = audioFile.getBytes();
+            long audioSize = audioFile.getSize();
             
-            return ResponseEntity.ok(response);
+            return requestExecutor.execute("voice-recognition", () -> {
+                try (ByteArrayInputStream audioStream = new ByteArrayInputStream(audioBytes)) {
+                    // 调用语音识别服务
+                    String recognitionResult = voiceService.realTimeVoiceTranscription(audioStream);
+                    
+                    // 返回识别结果
+                    response.put("success", true);
+                    response.put("text", recognitionResult);
+                    response.put("audioSize", audioSize);
+                    response.put("audioType", contentType);
+                    
+                    return ResponseEntity.ok(response);
+                    
+                } catch (Exception e) {
+                    response.put("success", false);
+                    response.put("error", "语音识别服务异常：" + e.getMessage());
+                    return ResponseEntity.internalServerError().body(response);
+                }
+            });
             
         } catch (IOException e) {
             response.put("success", false);
             response.put("error", "音频文件处理失败：" + e.getMessage());
-            return ResponseEntity.internalServerError().body(response);
+            return completed(ResponseEntity.internalServerError().body(response));
             
         } catch (Exception e) {
             response.put("success", false);
             response.put("error", "语音识别服务异常：" + e.getMessage());
-            return ResponseEntity.internalServerError().body(response);
+            return completed(ResponseEntity.internalServerError().body(response));
         }
     }
     
+    /**
+     * 包装已经确定的响应
+     */
+    private DeferredResult<ResponseEntity<Map<String, Object>>> completed(ResponseEntity<Map<String, Object>> response) {
+        DeferredResult<ResponseEntity<Map<String, Object>>> result = new DeferredResult<>();
+        result.setResult(response);
+        return result;
+    }
+    
     /**
      * 语音识别服务状态检查
      */
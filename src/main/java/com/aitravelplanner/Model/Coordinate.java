@@ -0,0 +1,265 @@
+package com.aitravelplanner.Model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+
+/**
+ * 经纬度坐标
+ * 经度和纬度各以定点整数保存（保留6位小数，与高德API精度一致），打包在一个long中：高32位为经度，低32位为纬度。
+ * 解析和格式化直接按字符处理，不拆分字符串、不经过double，热点路径可以只使用打包后的long而不创建对象。
+ * 文本形式固定为"经度,纬度"且保留6位小数，相同坐标的文本一致，可以直接作为缓存键；JSON中按文本形式读写。
+ */
+public final class Coordinate {
+
+    /** 定点缩放倍数 */
+    public static final int SCALE = 1_000_000;
+
+    /** 解析失败时返回的打包值（经度为int最小值，超出范围，不会与有效坐标冲突） */
+    public static final long INVALID = Long.MIN_VALUE;
+
+    private static final int MAX_LNG = 180 * SCALE;
+    private static final int MAX_LAT = 90 * SCALE;
+
+    private final long packed;
+
+    private Coordinate(long packed) {
+        this.packed = packed;
+    }
+
+    /**
+     * @param lngE6 经度乘以10^6
+     * @param latE6 纬度乘以10^6
+     * @return 坐标
+     * @throws IllegalArgumentException 经纬度超出范围
+     */
+    public static Coordinate ofE6(int lngE6, int latE6) {
+        if (Math.abs((long) lngE6) > MAX_LNG || Math.abs((long) latE6) > MAX_LAT) {
+            throw new IllegalArgumentException("经纬度超出范围");
+        }
+        return new Coordinate(pack(lngE6, latE6));
+    }
+
+    /**
+     * @param longitude 经度
+     * @param latitude 纬度
+     * @return 坐标（四舍五入到6位小数）
+     * @throws IllegalArgumentException 经纬度超出范围
+     */
+    public static Coordinate of(double longitude, double latitude) {
+        if (!(Math.abs(longitude) <= 180) || !(Math.abs(latitude) <= 90)) {
+            throw new IllegalArgumentException("经纬度超出范围");
+        }
+        return ofE6((int) Math.round(longitude * SCALE), (int) Math.round(latitude * SCALE));
+    }
+
+    /**
+     * 由打包值创建坐标
+     * @param packed parsePacked或getPacked得到的打包值
+     * @return 坐标，打包值为INVALID时返回null
+     */
+    public static Coordinate fromPacked(long packed) {
+        if (packed == INVALID) {
+            return null;
+        }
+        return ofE6(lngE6(packed), latE6(packed));
+    }
+
+    /**
+     * 解析"经度,纬度"格式的坐标
+     * @param text 坐标文本，两侧和逗号两侧可以有空白
+     * @return 坐标，格式不正确或超出范围时返回null
+     */
+    @JsonCreator
+    public static Coordinate parse(String text) {
+        return text == null ? null : fromPacked(parsePacked(text, 0, text.length()));
+    }
+
+    /**
+     * 判断文本是否为有效的"经度,纬度"坐标
+     */
+    public static boolean isValid(CharSequence text) {
+        return text != null && parsePacked(text, 0, text.length()) != INVALID;
+    }
+
+    /**
+     * 解析文本中[from, to)范围内的"经度,纬度"坐标，不创建任何对象
+     * 小数超过6位时按第7位四舍五入，不支持科学计数法
+     * @param text 文本
+     * @param from 起始位置（含）
+     * @param to 结束位置（不含）
+     * @return 打包值，格式不正确或超出范围时返回INVALID
+     */
+    public static long parsePacked(CharSequence text, int from, int to) {
+        int comma = -1;
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) == ',') {
+                if (comma >= 0) {
+                    return INVALID;
+                }
+                comma = i;
+            }
+        }
+        if (comma < 0) {
+            return INVALID;
+        }
+        long lng = parseFixed(text, from, comma, MAX_LNG);
+        long lat = parseFixed(text, comma + 1, to, MAX_LAT);
+        if (lng == INVALID || lat == INVALID) {
+            return INVALID;
+        }
+        return pack((int) lng, (int) lat);
+    }
+
+    /**
+     * 解析一个定点小数，返回乘以10^6后的值
+     * @return 定点值，格式不正确或绝对值超过max时返回INVALID
+     */
+    private static long parseFixed(CharSequence text, int from, int to, int max) {
+        while (from < to && Character.isWhitespace(text.charAt(from))) {
+            from++;
+        }
+        while (to > from && Character.isWhitespace(text.charAt(to - 1))) {
+            to--;
+        }
+        if (from == to) {
+            return INVALID;
+        }
+        boolean negative = false;
+        char first = text.charAt(from);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            from++;
+        }
+
+        long value = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        boolean roundUp = false;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c == '.') {
+                if (fractionDigits >= 0) {
+                    return INVALID;
+                }
+                fractionDigits = 0;
+                continue;
+            }
+            if (c < '0' || c > '9') {
+                return INVALID;
+            }
+            digits++;
+            if (fractionDigits < 0) {
+                value = value * 10 + (c - '0');
+                if (value > max / SCALE) {
+                    return INVALID;
+                }
+            } else if (fractionDigits < 6) {
+                value = value * 10 + (c - '0');
+                fractionDigits++;
+            } else if (fractionDigits == 6) {
+                roundUp = c >= '5';
+                fractionDigits++;
+            }
+        }
+        if (digits == 0) {
+            return INVALID;
+        }
+        for (int i = Math.max(0, fractionDigits); i < 6; i++) {
+            value *= 10;
+        }
+        if (roundUp) {
+            value++;
+        }
+        if (value > max) {
+            return INVALID;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * 把打包值按"经度,纬度"（各6位小数）追加到sb，不创建中间字符串
+     * @param sb 目标
+     * @param packed 有效的打包值
+     * @return sb
+     */
+    public static StringBuilder appendTo(StringBuilder sb, long packed) {
+        appendFixed(sb, lngE6(packed));
+        sb.append(',');
+        appendFixed(sb, latE6(packed));
+        return sb;
+    }
+
+    /**
+     * 追加一个定点小数（6位小数）
+     */
+    public static void appendFixed(StringBuilder sb, int value) {
+        if (value < 0) {
+            sb.append('-');
+            value = -value;
+        }
+        sb.append(value / SCALE).append('.');
+        int fraction = value % SCALE;
+        for (int divisor = SCALE / 10; divisor > 0; divisor /= 10) {
+            sb.append((char) ('0' + fraction / divisor % 10));
+        }
+    }
+
+    public static long pack(int lngE6, int latE6) {
+        return ((long) lngE6 << 32) | (latE6 & 0xFFFFFFFFL);
+    }
+
+    public static int lngE6(long packed) {
+        return (int) (packed >> 32);
+    }
+
+    public static int latE6(long packed) {
+        return (int) packed;
+    }
+
+    public long getPacked() {
+        return packed;
+    }
+
+    public int getLngE6() {
+        return lngE6(packed);
+    }
+
+    public int getLatE6() {
+        return latE6(packed);
+    }
+
+    public double getLongitude() {
+        return lngE6(packed) / (double) SCALE;
+    }
+
+    public double getLatitude() {
+        return latE6(packed) / (double) SCALE;
+    }
+
+    /**
+     * 追加到sb，用于拼接请求URL和缓存键
+     */
+    public StringBuilder appendTo(StringBuilder sb) {
+        return appendTo(sb, packed);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Coordinate && ((Coordinate) other).packed == packed;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(packed);
+    }
+
+    /**
+     * @return "经度,纬度"，各保留6位小数
+     */
+    @JsonValue
+    @Override
+    public String toString() {
+        return appendTo(new StringBuilder(24), packed).toString();
+    }
+}
@@ -0,0 +1,47 @@
+package com.aitravelplanner.Model;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 结构化旅行行程
+ * 对应结构化生成模式下大模型返回的JSON行程
+ */
+@Data
+public class Itinerary {
+
+    /** 行程标题 */
+    private String title;
+
+    /** 按天排列的行程 */
+    private List<ItineraryDay> days = new ArrayList<>();
+
+    /** 行程总费用（元） */
+    private Double totalCost;
+
+    /** 住宿、交通等整体建议 */
+    private List<String> tips = new ArrayList<>();
+
+    /** 输出是否因token上限被截断（截断时只保留完整解析的部分） */
+    private boolean truncated;
+
+    /**
+     * 按出现顺序收集所有站点的地点名称（去重）
+     * @return 地点名称列表
+     */
+    public List<String> locations() {
+        Set<String> places = new LinkedHashSet<>();
+        for (ItineraryDay day : days) {
+            for (ItineraryStop stop : day.getStops()) {
+                if (stop.getPlace() != null && !stop.getPlace().trim().isEmpty()) {
+                    places.add(stop.getPlace().trim());
+                }
+            }
+        }
+        return new ArrayList<>(places);
+    }
+}
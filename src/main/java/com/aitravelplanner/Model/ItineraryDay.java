@@ -0,0 +1,28 @@
+package com.aitravelplanner.Model;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 结构化行程中的一天
+ */
+@Data
+public class ItineraryDay {
+
+    /** 第几天，从1开始 */
+    private int day;
+
+    /** 当天所在城市 */
+    private String city;
+
+    /** 当天主题 */
+    private String theme;
+
+    /** 按时间排列的站点 */
+    private List<ItineraryStop> stops = new ArrayList<>();
+
+    /** 当天费用（元） */
+    private Double dayCost;
+}
@@ -0,0 +1,25 @@
+package com.aitravelplanner.Model;
+
+import lombok.Data;
+
+/**
+ * 结构化行程中的一个站点
+ */
+@Data
+public class ItineraryStop {
+
+    /** 时间，如 "09:00" */
+    private String time;
+
+    /** 地点名称 */
+    private String place;
+
+    /** 活动内容 */
+    private String activity;
+
+    /** 前往该站点的交通方式 */
+    private String transport;
+
+    /** 费用（元） */
+    private Double cost;
+}
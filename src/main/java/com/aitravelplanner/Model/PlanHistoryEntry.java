@@ -0,0 +1,36 @@
+package com.aitravelplanner.Model;
+
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * 一条旅行计划历史记录（含完整计划内容）
+ */
+@Data
+public class PlanHistoryEntry {
+
+    /** 记录ID，写入数据库后生成 */
+    private Long id;
+
+    /** 用户ID（登录会话中的用户标识） */
+    private String userId;
+
+    /** 生成时间 */
+    private Instant createdAt;
+
+    /** 目的地 */
+    private String destination;
+
+    /** 行程天数，未知时为null */
+    private Integer days;
+
+    /** 标题，取计划正文的第一行 */
+    private String title;
+
+    /** 摘要，计划正文去掉标记后的开头部分 */
+    private String preview;
+
+    /** 完整计划内容 */
+    private String planData;
+}
@@ -0,0 +1,18 @@
+package com.aitravelplanner.Model;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 历史记录的一页
+ */
+@Data
+public class PlanHistoryPage {
+
+    /** 本页记录，按生成时间从新到旧排列 */
+    private List<PlanHistorySummary> items;
+
+    /** 下一页的游标，没有更多记录时为null */
+    private String nextCursor;
+}
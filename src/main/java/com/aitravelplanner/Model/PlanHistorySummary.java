@@ -0,0 +1,24 @@
+package com.aitravelplanner.Model;
+
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * 历史记录列表中的一项，只包含列表展示需要的字段，不读取完整计划内容
+ */
+@Data
+public class PlanHistorySummary {
+
+    private Long id;
+
+    private Instant createdAt;
+
+    private String destination;
+
+    private Integer days;
+
+    private String title;
+
+    private String preview;
+}
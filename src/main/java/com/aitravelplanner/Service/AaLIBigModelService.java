@@ -10,6 +10,15 @@ public interface AaLIBigModelService {
      * 调用阿里云大模型生成回复
      * @param query 用户输入的查询内容
      * @return 大模型的回复结果
+     * @throws com.aitravelplanner.Util.ModelUnavailableException 熔断中、调用失败或没有返回有效内容
      */
     String generateResponse(String query);
+    
+    /**
+     * 以JSON输出模式调用阿里云大模型，并限制输出长度
+     * @param query 用户输入的查询内容（需包含JSON格式说明）
+     * @param maxTokens 最大输出token数
+     * @return 模型返回的原始JSON文本，调用失败返回null
+     */
+    String generateJsonResponse(String query, int maxTokens);
 }
\ No newline at end of file
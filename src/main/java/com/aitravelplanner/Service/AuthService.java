@@ -0,0 +1,15 @@
+package com.aitravelplanner.Service;
+
+/**
+ * 登录校验服务接口
+ * 校验前端通过Authorization请求头传入的Supabase访问令牌，用户ID只取自校验通过的令牌，不信任客户端传入的用户ID
+ */
+public interface AuthService {
+
+    /**
+     * 校验请求的访问令牌
+     * @param authorization Authorization请求头，格式为 "Bearer 访问令牌"
+     * @return 令牌所属的用户ID，缺少令牌、令牌无效或已过期时返回null
+     */
+    String authenticate(String authorization);
+}
@@ -0,0 +1,39 @@
+package com.aitravelplanner.Service;
+
+import com.aitravelplanner.Model.Coordinate;
+
+import java.util.Map;
+
+/**
+ * 缓存预热服务接口
+ * 记录线上流量中最常用的地理编码地址和路线，启动后在后台重放这些查询以填充缓存
+ */
+public interface CacheWarmupService {
+
+    /**
+     * 记录一次地理编码查询
+     * @param address 地址
+     */
+    void recordGeocode(String address);
+
+    /**
+     * 记录一次路线规划查询
+     * @param mode 出行方式，为null表示步行路线详情（planWalkingRoute）
+     * @param origin 起点坐标
+     * @param destination 终点坐标
+     * @param city 公交规划所在城市，可以为null
+     */
+    void recordRoute(String mode, Coordinate origin, Coordinate destination, String city);
+
+    /**
+     * 预热是否已达到就绪条件：预热成功的比例达到配置值、全部重放完成、超过最长预热时间或没有需要预热的记录
+     * @return 可以接收流量时返回true
+     */
+    boolean isReady();
+
+    /**
+     * 预热进度，用于健康检查详情
+     * @return total（需要预热的记录数）、warmed（成功数）、attempted（已重放数）、fraction（成功比例）、elapsedMs
+     */
+    Map<String, Object> getProgress();
+}
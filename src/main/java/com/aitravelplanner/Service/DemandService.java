@@ -0,0 +1,54 @@
+package com.aitravelplanner.Service;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 旅行需求服务接口
+ * 定义本地解析用户需求，以及在用户确认前预先生成旅行计划的方法
+ */
+public interface DemandService {
+
+    /**
+     * 从对话中的用户消息本地解析结构化需求（不调用大模型），后出现的信息覆盖先出现的
+     * @param messages 按时间顺序排列的用户消息
+     * @return 需求字段（destination、startDate、endDate、days、budget、people、preferences、rawMessage），未识别的字段不包含在内
+     */
+    Map<String, String> parseDemand(List<String> messages);
+
+    /**
+     * 判断需求是否足以生成旅行计划（目的地以及日期或天数）
+     * @param demand 需求字段
+     * @return 需求完整返回true
+     */
+    boolean isComplete(Map<String, String> demand);
+
+    /**
+     * 将结构化需求转换为生成旅行计划用的需求描述
+     * @param demand 需求字段
+     * @return 需求描述
+     */
+    String toPlanMessage(Map<String, String> demand);
+
+    /**
+     * 为会话开始预先地理编码目的地并生成旅行计划；会话已有不同需求的预生成任务时先取消
+     * @param sessionId 会话标识
+     * @param clientId 发起需求的客户端标识，用于限制每个客户端的预生成任务数
+     * @param demand 完整的需求字段
+     */
+    void startSpeculation(String sessionId, String clientId, Map<String, String> demand);
+
+    /**
+     * 取消会话的预生成任务（需求被修改或不完整时）
+     * @param sessionId 会话标识
+     */
+    void cancelSpeculation(String sessionId);
+
+    /**
+     * 取出与需求一致的预生成结果，必要时在当前请求的截止时间内等待其完成；需求不一致时取消预生成任务
+     * @param sessionId 会话标识
+     * @param demand 用户确认的需求字段
+     * @return 包含travelPlan和可选destinationCoordinate的结果，没有可用的预生成结果返回null
+     */
+    Map<String, String> takeSpeculation(String sessionId, Map<String, String> demand);
+}
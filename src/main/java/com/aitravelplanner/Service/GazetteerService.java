@@ -0,0 +1,37 @@
+package com.aitravelplanner.Service;
+
+import com.aitravelplanner.Model.Coordinate;
+
+/**
+ * 本地地名库服务接口
+ * 定义基于本地地名文件的正向/反向地理编码方法
+ */
+public interface GazetteerService {
+
+    /**
+     * 根据地点名称（或别名、拼音）查询坐标
+     * @param name 地点名称
+     * @return 坐标，未命中返回null
+     */
+    Coordinate lookup(String name);
+
+    /**
+     * 根据坐标查询最近的地点名称
+     * @param coordinate 坐标
+     * @param maxDistanceMeters 最大搜索距离（米）
+     * @return 最近的地点名称，范围内没有地点返回null
+     */
+    String reverseLookup(Coordinate coordinate, double maxDistanceMeters);
+
+    /**
+     * 地名库是否已加载
+     * @return 已加载返回true
+     */
+    boolean isLoaded();
+
+    /**
+     * 地名库中的地点数量
+     * @return 地点数量，未加载返回0
+     */
+    int size();
+}
@@ -1,43 +1,98 @@
 package com.aitravelplanner.Service.Impl;
 
 import com.aitravelplanner.Service.AaLIBigModelService;
+import com.aitravelplanner.Util.CircuitBreaker;
+import com.aitravelplanner.Util.LogPayload;
+import com.aitravelplanner.Util.ModelUnavailableException;
+import com.aitravelplanner.Util.RequestContext;
+import com.aitravelplanner.Util.Tracer;
 import com.alibaba.dashscope.aigc.generation.Generation;
 import com.alibaba.dashscope.aigc.generation.GenerationParam;
 import com.alibaba.dashscope.aigc.generation.GenerationResult;
 import com.alibaba.dashscope.common.Message;
+import com.alibaba.dashscope.common.ResponseFormat;
 import com.alibaba.dashscope.common.Role;
 import com.alibaba.dashscope.exception.ApiException;
 import com.alibaba.dashscope.exception.InputRequiredException;
 import com.alibaba.dashscope.exception.NoApiKeyException;
 import com.alibaba.dashscope.protocol.Protocol;
+import io.micrometer.core.instrument.Metrics;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
 
 import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.lang.System;
 
 /**
  * 阿里云大模型服务实现类
  * 基于阿里云DashScope API实现大模型服务功能
  */
+@Service
 public class AaLIBigModelServiceImpl implements AaLIBigModelService {
+
+    private static final Logger log = LoggerFactory.getLogger(AaLIBigModelServiceImpl.class);
+
+    /** 模型回复内容日志（DEBUG级别，按采样输出） */
+    private static final Logger PAYLOAD_LOG = LoggerFactory.getLogger("com.aitravelplanner.payload.dashscope");
+
+    private final CircuitBreaker circuitBreaker;
+
+    public AaLIBigModelServiceImpl(@Qualifier("dashscopeCircuitBreaker") CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
     
     /**
      * 调用AI模型生成回复
      * @param query 用户输入的查询内容
      * @return AI模型的回复结果
+     * @throws ModelUnavailableException 熔断中、调用失败或没有返回有效内容
      */
     @Override
     public String generateResponse(String query) {
+        GenerationResult result;
         try {
-            GenerationResult result = callWithMessage(query);
-            return extractResponseText(result);
+            result = callWithMessage(query);
+        } catch (CircuitOpenException e) {
+            throw new ModelUnavailableException(e.getMessage());
         } catch (ApiException | NoApiKeyException | InputRequiredException e) {
-            // 使用日志框架记录异常信息
-            System.err.println("An error occurred while calling the generation service: " + e.getMessage());
-            return "抱歉，AI服务暂时不可用，请稍后重试。";
+            log.atWarn().addKeyValue("errorType", e.getClass().getSimpleName())
+                    .log("调用大模型生成服务失败：{}", e.getMessage());
+            throw new ModelUnavailableException("调用大模型生成服务失败", e);
+        }
+        try (Tracer.Span ignored = Tracer.start("dashscope.extract")) {
+            return extractResponseText(result);
         }
     }
 
-
+    /**
+     * 以JSON输出模式调用AI模型，并限制输出token数
+     * @param query 用户输入的查询内容（需包含JSON格式说明）
+     * @param maxTokens 最大输出token数
+     * @return 模型返回的原始JSON文本，调用失败返回null
+     */
+    @Override
+    public String generateJsonResponse(String query, int maxTokens) {
+        try {
+            GenerationResult result = callWithMessage(query, maxTokens, true);
+            try (Tracer.Span ignored = Tracer.start("dashscope.extract")) {
+                return extractRawText(result);
+            }
+        } catch (CircuitOpenException e) {
+            return null;
+        } catch (ApiException | NoApiKeyException | InputRequiredException e) {
+            log.atWarn().addKeyValue("errorType", e.getClass().getSimpleName())
+                    .log("调用大模型生成服务（JSON模式）失败：{}", e.getMessage());
+            return null;
+        }
+    }
     
     /**
      * 调用阿里云DashScope API
@@ -45,6 +100,17 @@ public class AaLIBigModelServiceImpl implements AaLIBigModelService {
      * @return 生成结果
      */
     private GenerationResult callWithMessage(String args) throws ApiException, NoApiKeyException, InputRequiredException {
+        return callWithMessage(args, null, false);
+    }
+    
+    /**
+     * 调用阿里云DashScope API
+     * @param args 用户输入的查询内容
+     * @param maxTokens 最大输出token数，为null时不限制
+     * @param jsonOutput 是否要求模型输出JSON对象
+     * @return 生成结果
+     */
+    private GenerationResult callWithMessage(String args, Integer maxTokens, boolean jsonOutput) throws ApiException, NoApiKeyException, InputRequiredException {
         Generation gen = new Generation(Protocol.HTTP.getValue(), "https://dashscope.aliyuncs.com/api/v1");
         
         Message systemMsg = Message.builder()
@@ -57,40 +123,176 @@ public class AaLIBigModelServiceImpl implements AaLIBigModelService {
                 .content(args)
                 .build();
         
-        GenerationParam param = GenerationParam.builder()
+        GenerationParam.GenerationParamBuilder<?, ?> builder = GenerationParam.builder()
                 // 若没有配置环境变量，请用百炼API Key将下行替换为：.apiKey("sk-xxx")
                 .apiKey(System.getenv("DASHSCOPE_API_KEY"))
                 .model("qwen-plus")
                 .messages(Arrays.asList(systemMsg, userMsg))
                 .resultFormat(GenerationParam.ResultFormat.MESSAGE)
-                .build();
+                // 流式增量输出，请求被取消时可以随时断开
+                .incrementalOutput(true);
+        if (maxTokens != null) {
+            builder.maxTokens(maxTokens);
+        }
+        if (jsonOutput) {
+            builder.responseFormat(ResponseFormat.from(ResponseFormat.JSON_OBJECT));
+        }
+        
+        // 生成时间不超过请求的剩余时间
+        long timeoutMs = RequestContext.timeoutFor("dashscope", Long.MAX_VALUE);
+        // 熔断打开时不再调用DashScope，由缓存层提供过期数据
+        if (!circuitBreaker.tryAcquire()) {
+            throw new CircuitOpenException();
+        }
+        long start = System.nanoTime();
+        boolean reported = false;
+        Tracer.Span span = Tracer.start("dashscope.generate", Tracer.Kind.CLIENT)
+                .setAttribute("llm.model", "qwen-plus")
+                .setAttribute("llm.json_output", jsonOutput)
+                .setAttribute("llm.max_tokens", maxTokens)
+                .setAttribute("llm.prompt_chars", args.length());
+        try {
+            GenerationResult result = streamCall(gen, builder.build(), timeoutMs);
+            circuitBreaker.onSuccess(System.nanoTime() - start);
+            reported = true;
+            if (result != null && result.getUsage() != null) {
+                span.setAttribute("llm.input_tokens", result.getUsage().getInputTokens());
+                span.setAttribute("llm.output_tokens", result.getUsage().getOutputTokens());
+            }
+            return result;
+        } catch (ApiException e) {
+            circuitBreaker.onFailure(System.nanoTime() - start);
+            reported = true;
+            span.setError(e.getMessage());
+            throw e;
+        } catch (CancellationException e) {
+            // 请求被取消或到达截止时间与DashScope是否健康无关，不计入熔断统计
+            span.setError(e.getMessage());
+            throw e;
+        } catch (RuntimeException e) {
+            circuitBreaker.onFailure(System.nanoTime() - start);
+            reported = true;
+            span.setError(e.getMessage());
+            throw e;
+        } finally {
+            span.close();
+            if (!reported) {
+                circuitBreaker.onIgnored();
+            }
+        }
+    }
+
+    /**
+     * 熔断打开，本次未调用DashScope
+     */
+    private static final class CircuitOpenException extends RuntimeException {
+        CircuitOpenException() {
+            super("DashScope熔断中", null, false, false);
+        }
+    }
+    
+    /**
+     * 以流式方式调用并拼接增量输出，返回与非流式调用结构一致的结果
+     * 当前请求被取消（客户端断开、超时）或到达请求的截止时间时取消订阅，断开与DashScope的连接
+     * @param gen 生成服务
+     * @param param 调用参数（需开启增量输出）
+     * @param timeoutMs 最长等待时间（毫秒）
+     * @return 内容为完整回复的生成结果
+     */
+    private GenerationResult streamCall(Generation gen, GenerationParam param, long timeoutMs) throws ApiException, NoApiKeyException, InputRequiredException {
+        StringBuilder content = new StringBuilder();
+        AtomicReference<GenerationResult> last = new AtomicReference<>();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        
+        Disposable subscription = gen.streamCall(param)
+                .subscribeOn(Schedulers.io())
+                .subscribe(chunk -> {
+                    last.set(chunk);
+                    if (chunk.getOutput() != null && chunk.getOutput().getChoices() != null
+                        && !chunk.getOutput().getChoices().isEmpty()
+                        && chunk.getOutput().getChoices().get(0).getMessage() != null) {
+                        String delta = chunk.getOutput().getChoices().get(0).getMessage().getContent();
+                        if (delta != null) {
+                            content.append(delta);
+                        }
+                    }
+                }, error -> {
+                    failure.set(error);
+                    done.countDown();
+                }, done::countDown);
         
-        return gen.call(param);
+        RequestContext context = RequestContext.current();
+        try (RequestContext.Scope ignored = RequestContext.onCancel("dashscope", () -> {
+            subscription.dispose();
+            done.countDown();
+        })) {
+            if (!done.await(timeoutMs, TimeUnit.MILLISECONDS)) {
+                subscription.dispose();
+                Metrics.counter("upstream.calls.avoided", "upstream", "dashscope", "stage", "deadline").increment();
+                throw new CancellationException("请求剩余时间已用完，已停止大模型生成");
+            }
+        } catch (InterruptedException e) {
+            subscription.dispose();
+            Thread.currentThread().interrupt();
+            throw new CancellationException("大模型调用被中断");
+        }
+        
+        if (context != null && context.isCancelled()) {
+            throw new CancellationException("请求已取消（" + context.getCancelReason() + "），已停止大模型生成");
+        }
+        if (failure.get() instanceof RuntimeException) {
+            throw (RuntimeException) failure.get();
+        }
+        if (failure.get() != null) {
+            throw new ApiException(failure.get());
+        }
+        
+        // 将拼接后的完整内容写回最后一个分片
+        GenerationResult result = last.get();
+        if (result != null && result.getOutput() != null && result.getOutput().getChoices() != null
+            && !result.getOutput().getChoices().isEmpty()
+            && result.getOutput().getChoices().get(0).getMessage() != null) {
+            result.getOutput().getChoices().get(0).getMessage().setContent(content.toString());
+        }
+        return result;
+    }
+    
+    /**
+     * 从生成结果中提取未经格式化的回复文本
+     * @param result 生成结果
+     * @return 回复文本，没有内容返回null
+     */
+    private String extractRawText(GenerationResult result) {
+        if (result == null || result.getOutput() == null) {
+            return null;
+        }
+        String responseText = result.getOutput().getText();
+        if ((responseText == null || responseText.trim().isEmpty())
+            && result.getOutput().getChoices() != null
+            && !result.getOutput().getChoices().isEmpty()) {
+            responseText = result.getOutput().getChoices().get(0).getMessage().getContent();
+        }
+        return responseText == null || responseText.trim().isEmpty() ? null : responseText;
     }
     
     /**
      * 从生成结果中提取回复文本
      * @param result 生成结果
      * @return 回复文本
+     * @throws ModelUnavailableException 没有返回有效内容或解析失败
      */
     private String extractResponseText(GenerationResult result) {
         try {
-            // 调试信息：打印整个结果对象
-            System.out.println("GenerationResult: " + result);
-            
             if (result == null) {
-                System.out.println("Result is null");
-                return "抱歉，AI未返回有效内容。result == null";
+                log.warn("大模型未返回结果");
+                throw new ModelUnavailableException("AI未返回有效内容：result == null");
             }
             if (result.getOutput() == null) {
-                System.out.println("Output is null");
-                return "抱歉，AI未返回有效内容。result.getOutput() == null";
+                log.atWarn().addKeyValue("requestId", result.getRequestId()).log("大模型返回结果中没有output");
+                throw new ModelUnavailableException("AI未返回有效内容：result.getOutput() == null");
             }
             
-            // 调试输出结构
-            System.out.println("GenerationResult output structure: " + 
-                com.alibaba.dashscope.utils.JsonUtils.toJson(result.getOutput()));
-            
             // 优先从 output.text 提取
             String responseText = result.getOutput().getText();
             
@@ -99,22 +301,29 @@ public class AaLIBigModelServiceImpl implements AaLIBigModelService {
                 && result.getOutput().getChoices() != null 
                 && !result.getOutput().getChoices().isEmpty()) {
                 responseText = result.getOutput().getChoices().get(0).getMessage().getContent();
-                System.out.println("Extracted text from choices: " + responseText);
             }
             
             if (responseText == null || responseText.trim().isEmpty()) {
-                System.out.println("Response text is empty or null");
-                return "抱歉，AI未返回有效内容。responseText == null || responseText.trim().isEmpty()";
+                log.atWarn().addKeyValue("requestId", result.getRequestId()).log("大模型回复内容为空");
+                throw new ModelUnavailableException("AI未返回有效内容：responseText == null || responseText.trim().isEmpty()");
             }
             
-            // 调试原始文本和格式化后的文本
-            System.out.println("Raw response text: " + responseText);
-            System.out.println("Formatted text: " + formatResponseText(responseText));
+            if (PAYLOAD_LOG.isDebugEnabled()) {
+                PAYLOAD_LOG.atDebug()
+                        .addKeyValue("requestId", result.getRequestId())
+                        .addKeyValue("usage", result.getUsage())
+                        .addKeyValue("length", responseText.length())
+                        .log("大模型回复：{}", LogPayload.of(responseText));
+            }
             
-            return formatResponseText(responseText);
+            try (Tracer.Span ignored = Tracer.start("dashscope.format")) {
+                return formatResponseText(responseText);
+            }
+        } catch (ModelUnavailableException e) {
+            throw e;
         } catch (Exception e) {
-            System.err.println("Error extracting response text: " + e.getMessage());
-            return "抱歉，处理AI回复时出现错误。";
+            log.warn("解析大模型回复失败", e);
+            throw new ModelUnavailableException("处理AI回复时出现错误", e);
         }
     }
     
@@ -155,7 +364,8 @@ public class AaLIBigModelServiceImpl implements AaLIBigModelService {
      * @param args 命令行参数
      */
     public static void main(String[] args) {
-        AaLIBigModelServiceImpl assistant = new AaLIBigModelServiceImpl();
+        AaLIBigModelServiceImpl assistant = new AaLIBigModelServiceImpl(
+                new CircuitBreaker("dashscope", 20, 5, 0.5, 60000, 0.8, 30000));
         
         // 从控制台读取用户输入
         java.util.Scanner sc = new java.util.Scanner(System.in);
@@ -0,0 +1,345 @@
+package com.aitravelplanner.Service.Impl;
+
+import com.aitravelplanner.Model.Coordinate;
+import com.aitravelplanner.Service.CacheWarmupService;
+import com.aitravelplanner.Service.MapService;
+import com.aitravelplanner.Util.RequestContext;
+import com.aitravelplanner.Util.TokenBucket;
+import com.aitravelplanner.Util.TopKCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 缓存预热服务实现类
+ * 经缓存地图服务的地理编码地址和路线用高频键计数器统计，定期把前N个连同计数写入预热文件（每行一条，制表符分隔）。
+ * 启动时读取预热文件：计数减半后作为统计的初始值，使历史上的高频记录不会因重启后流量少而被挤出；
+ * 应用就绪后在后台按计数从高到低经MapService重放，按独立的QPS限流，给线上请求留出高德配额。
+ * 预热成功的比例达到travel.warmup.ready-fraction之前健康检查的就绪探针返回OUT_OF_SERVICE，
+ * 重放全部完成或超过最长预热时间后无论比例如何都就绪，避免高德故障时实例一直无法接收流量。
+ * 后台刷新和预热本身发出的查询不计入统计。
+ */
+@Service
+public class CacheWarmupServiceImpl implements CacheWarmupService {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheWarmupServiceImpl.class);
+
+    /** 预热重放使用的请求上下文客户端标识 */
+    private static final String WARMUP_CLIENT = "cache-warmup";
+
+    /** 不计入统计的内部客户端：预热重放和缓存后台刷新 */
+    private static final Set<String> INTERNAL_CLIENTS = Set.of(WARMUP_CLIENT, "cache-refresh");
+
+    /** 预热文件中的记录类型：地理编码、步行路线详情、各出行方式路线 */
+    private static final String GEOCODE = "G";
+    private static final String WALKING_ROUTE = "W";
+    private static final String ROUTE = "R";
+
+    /** 每个需要的高频记录在计数器中多跟踪的键数，减少计数误差 */
+    private static final int TRACKING_FACTOR = 4;
+
+    private final ObjectProvider<MapService> mapService;
+
+    @Value("${travel.warmup.enabled:true}")
+    private boolean enabled;
+
+    /** 预热文件路径 */
+    @Value("${travel.warmup.file:./data/cache-warmup.tsv}")
+    private String file;
+
+    /** 保存的地理编码地址数 */
+    @Value("${travel.warmup.top-geocodes:200}")
+    private int topGeocodes;
+
+    /** 保存的路线数 */
+    @Value("${travel.warmup.top-routes:200}")
+    private int topRoutes;
+
+    /** 写入预热文件的间隔（毫秒） */
+    @Value("${travel.warmup.save-interval-ms:60000}")
+    private long saveIntervalMs;
+
+    /** 重放的最大QPS，应明显低于amap.rate-limit.qps */
+    @Value("${travel.warmup.qps:3}")
+    private double qps;
+
+    /** 预热成功比例达到此值后就绪 */
+    @Value("${travel.warmup.ready-fraction:0.8}")
+    private double readyFraction;
+
+    /** 最长预热时间（毫秒），超过后无论比例如何都就绪 */
+    @Value("${travel.warmup.max-duration-ms:120000}")
+    private long maxDurationMs;
+
+    private TopKCounter<String> geocodes;
+    private TopKCounter<String> routes;
+    private ScheduledExecutorService executor;
+
+    /** 启动时从预热文件读取、等待重放的记录，按计数从高到低排列 */
+    private List<String[]> pending = List.of();
+    private final AtomicInteger warmed = new AtomicInteger();
+    private final AtomicInteger attempted = new AtomicInteger();
+    private volatile long replayStartedAt;
+    private volatile boolean replayFinished;
+
+    public CacheWarmupServiceImpl(ObjectProvider<MapService> mapService) {
+        this.mapService = mapService;
+    }
+
+    @PostConstruct
+    public void init() {
+        geocodes = new TopKCounter<>(Math.max(1, topGeocodes) * TRACKING_FACTOR);
+        routes = new TopKCounter<>(Math.max(1, topRoutes) * TRACKING_FACTOR);
+        if (!enabled) {
+            return;
+        }
+        pending = load();
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cache-warmup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1000, saveIntervalMs);
+        executor.scheduleWithFixedDelay(this::save, interval, interval, TimeUnit.MILLISECONDS);
+        Gauge.builder("cache.warmup.fraction", this, CacheWarmupServiceImpl::fraction).register(Metrics.globalRegistry);
+    }
+
+    /**
+     * 应用就绪后开始后台重放
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startReplay() {
+        if (!enabled) {
+            return;
+        }
+        replayStartedAt = System.currentTimeMillis();
+        executor.execute(this::replay);
+    }
+
+    /**
+     * 停止重放，并保存最新的统计
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        save();
+    }
+
+    @Override
+    public void recordGeocode(String address) {
+        if (enabled && isLiveTraffic() && address != null && isStorable(address)) {
+            geocodes.add(address);
+        }
+    }
+
+    @Override
+    public void recordRoute(String mode, Coordinate origin, Coordinate destination, String city) {
+        String cityName = city == null ? "" : city.trim();
+        if (!enabled || !isLiveTraffic() || origin == null || destination == null
+                || (mode != null && !isStorable(mode)) || (!cityName.isEmpty() && !isStorable(cityName))) {
+            return;
+        }
+        routes.add(mode == null
+                ? String.join("\t", WALKING_ROUTE, origin.toString(), destination.toString())
+                : String.join("\t", ROUTE, mode, origin.toString(), destination.toString(), cityName));
+    }
+
+    @Override
+    public boolean isReady() {
+        if (!enabled || pending.isEmpty() || replayFinished) {
+            return true;
+        }
+        if (replayStartedAt == 0) {
+            return false;
+        }
+        return fraction() >= readyFraction || System.currentTimeMillis() - replayStartedAt >= maxDurationMs;
+    }
+
+    @Override
+    public Map<String, Object> getProgress() {
+        Map<String, Object> progress = new HashMap<>();
+        progress.put("total", pending.size());
+        progress.put("warmed", warmed.get());
+        progress.put("attempted", attempted.get());
+        progress.put("fraction", fraction());
+        progress.put("elapsedMs", replayStartedAt == 0 ? 0 : System.currentTimeMillis() - replayStartedAt);
+        return progress;
+    }
+
+    private double fraction() {
+        return pending.isEmpty() ? 1.0 : (double) warmed.get() / pending.size();
+    }
+
+    private void replay() {
+        if (pending.isEmpty()) {
+            replayFinished = true;
+            return;
+        }
+        MapService service = mapService.getObject();
+        TokenBucket rateLimiter = new TokenBucket("warmup", qps, 1);
+        RequestContext context = new RequestContext(WARMUP_CLIENT, "bulk");
+        try (RequestContext.Scope ignored = context.attach()) {
+            for (String[] record : pending) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                rateLimiter.tryAcquire(Long.MAX_VALUE);
+                if (replayRecord(service, record)) {
+                    warmed.incrementAndGet();
+                }
+                attempted.incrementAndGet();
+            }
+        } catch (CancellationException e) {
+            // 关闭时中断了限流等待
+            return;
+        }
+        replayFinished = true;
+        log.atInfo().addKeyValue("total", pending.size()).addKeyValue("warmed", warmed.get())
+                .addKeyValue("elapsedMs", System.currentTimeMillis() - replayStartedAt)
+                .log("缓存预热完成");
+    }
+
+    /**
+     * 重放一条记录
+     * @return 查询成功返回true
+     */
+    private boolean replayRecord(MapService service, String[] record) {
+        try {
+            switch (record[0]) {
+                case GEOCODE:
+                    return service.geoCode(record[2]) != null;
+                case WALKING_ROUTE:
+                    return service.planWalkingRoute(Coordinate.parse(record[2]), Coordinate.parse(record[3])) != null;
+                case ROUTE:
+                    return service.planRoute(record[2], Coordinate.parse(record[3]), Coordinate.parse(record[4]),
+                            record.length > 5 && !record[5].isEmpty() ? record[5] : null) != null;
+                default:
+                    return false;
+            }
+        } catch (RuntimeException e) {
+            log.atDebug().addKeyValue("type", record[0]).log("预热记录重放失败：{}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 读取预热文件，计数减半作为统计的初始值，返回按计数排列的待重放记录（地理编码在前，路线会用到坐标）
+     */
+    private List<String[]> load() {
+        Path path = Paths.get(file);
+        if (!Files.isRegularFile(path)) {
+            return List.of();
+        }
+        List<String[]> geocodeRecords = new ArrayList<>();
+        List<String[]> routeRecords = new ArrayList<>();
+        try {
+            for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+                String[] record = line.split("\t", -1);
+                long count;
+                try {
+                    count = record.length >= 3 ? Long.parseLong(record[1]) : -1;
+                } catch (NumberFormatException e) {
+                    count = -1;
+                }
+                if (count < 0) {
+                    continue;
+                }
+                String key = String.join("\t", List.of(record).subList(2, record.length));
+                if (GEOCODE.equals(record[0])) {
+                    geocodes.add(key, Math.max(1, count / 2));
+                    geocodeRecords.add(record);
+                } else if ((WALKING_ROUTE.equals(record[0]) && record.length == 4 && isRoutable(record, 2))
+                        || (ROUTE.equals(record[0]) && record.length == 6 && isRoutable(record, 3))) {
+                    routes.add(record[0] + "\t" + key, Math.max(1, count / 2));
+                    routeRecords.add(record);
+                }
+            }
+        } catch (IOException e) {
+            log.atWarn().addKeyValue("file", file).log("读取缓存预热文件失败：{}", e.getMessage());
+            return List.of();
+        }
+        geocodeRecords.addAll(routeRecords);
+        log.atInfo().addKeyValue("file", file).addKeyValue("records", geocodeRecords.size()).log("已读取缓存预热文件");
+        return geocodeRecords;
+    }
+
+    /**
+     * 把统计的前N个记录写入预热文件，先写临时文件再替换，进程中途退出也不会留下不完整的文件
+     */
+    private void save() {
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : geocodes.top(topGeocodes)) {
+            lines.add(GEOCODE + "\t" + entry.getValue() + "\t" + entry.getKey());
+        }
+        for (Map.Entry<String, Long> entry : routes.top(topRoutes)) {
+            int separator = entry.getKey().indexOf('\t');
+            lines.add(entry.getKey().substring(0, separator) + "\t" + entry.getValue() + entry.getKey().substring(separator));
+        }
+        if (lines.isEmpty()) {
+            return;
+        }
+        Path path = Paths.get(file).toAbsolutePath();
+        try {
+            Files.createDirectories(path.getParent());
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            Files.write(temp, lines, StandardCharsets.UTF_8);
+            try {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            log.atWarn().addKeyValue("file", file).log("写入缓存预热文件失败：{}", e.getMessage());
+        }
+    }
+
+    private static boolean isLiveTraffic() {
+        RequestContext context = RequestContext.current();
+        return context == null || !INTERNAL_CLIENTS.contains(context.getClientId());
+    }
+
+    /**
+     * 含有换行或制表符的键无法按行保存
+     */
+    private static boolean isStorable(String key) {
+        return !key.isEmpty() && key.indexOf('\t') < 0 && key.indexOf('\n') < 0 && key.indexOf('\r') < 0;
+    }
+
+    private static boolean isRoutable(String[] record, int from) {
+        return Coordinate.parse(record[from]) != null && Coordinate.parse(record[from + 1]) != null;
+    }
+}
@@ -0,0 +1,49 @@
+package com.aitravelplanner.Service.Impl;
+
+import com.aitravelplanner.Service.AaLIBigModelService;
+import com.aitravelplanner.Util.CircuitBreaker;
+import com.aitravelplanner.Util.RevalidatingCache;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+/**
+ * 带缓存的大模型服务
+ * 相同提示词的生成结果经两级缓存（近端缓存 + 多实例共享缓存）复用，命中时不占用大模型调用名额；
+ * 未命中时交给排队调度的大模型服务。调用失败（抛出异常或返回null）和不完整的JSON不缓存。
+ * 超过缓存时间的结果在后台刷新，刷新完成前和DashScope熔断期间继续使用旧结果。
+ */
+@Service
+@Primary
+public class CachedBigModelServiceImpl implements AaLIBigModelService {
+
+    private final FairQueuedBigModelServiceImpl delegate;
+    private final RevalidatingCache cache;
+    private final CircuitBreaker circuitBreaker;
+    private final long planTtlSeconds;
+
+    public CachedBigModelServiceImpl(FairQueuedBigModelServiceImpl delegate, RevalidatingCache cache,
+                                     @Qualifier("dashscopeCircuitBreaker") CircuitBreaker circuitBreaker,
+                                     @Value("${travel.cache.ttl.plan-seconds:21600}") long planTtlSeconds) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.circuitBreaker = circuitBreaker;
+        this.planTtlSeconds = planTtlSeconds;
+    }
+
+    @Override
+    public String generateResponse(String query) {
+        return cache.get("plan", query, String.class, planTtlSeconds, circuitBreaker,
+                () -> delegate.generateResponse(query),
+                response -> true);
+    }
+
+    @Override
+    public String generateJsonResponse(String query, int maxTokens) {
+        // 输出被token上限截断的JSON不完整，不缓存，下次重新生成
+        return cache.get("plan-json", maxTokens + "\n" + query, String.class, planTtlSeconds, circuitBreaker,
+                () -> delegate.generateJsonResponse(query, maxTokens),
+                response -> response.trim().startsWith("{") && response.trim().endsWith("}"));
+    }
+}
@@ -0,0 +1,98 @@
+package com.aitravelplanner.Service.Impl;
+
+import com.aitravelplanner.Model.Coordinate;
+import com.aitravelplanner.Service.CacheWarmupService;
+import com.aitravelplanner.Service.MapService;
+import com.aitravelplanner.Util.CircuitBreaker;
+import com.aitravelplanner.Util.RevalidatingCache;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+
+/**
+ * 带缓存的地图服务
+ * 地理编码、逆地理编码、步行路线和各出行方式路线的结果经两级缓存（近端缓存 + 多实例共享缓存）复用，
+ * 未命中时交给高德地图服务实现查询。失败结果（null）不缓存。
+ * 地理编码结果按打包后的定点坐标（一个long）缓存，坐标作为键时使用统一的6位小数文本。
+ * 超过缓存时间的结果在后台刷新，刷新完成前和高德熔断期间继续使用旧结果（路线中带stale=true）。
+ * 地理编码地址和路线同时交给缓存预热服务统计，用于下次启动时预热。
+ */
+@Service
+@Primary
+public class CachedMapServiceImpl implements MapService {
+
+    private final MapServiceImpl delegate;
+    private final RevalidatingCache cache;
+    private final CircuitBreaker circuitBreaker;
+    private final CacheWarmupService warmup;
+    private final long geocodeTtlSeconds;
+    private final long routeTtlSeconds;
+
+    public CachedMapServiceImpl(MapServiceImpl delegate, RevalidatingCache cache,
+                                @Qualifier("amapCircuitBreaker") CircuitBreaker circuitBreaker,
+                                CacheWarmupService warmup,
+                                @Value("${travel.cache.ttl.geocode-seconds:604800}") long geocodeTtlSeconds,
+                                @Value("${travel.cache.ttl.route-seconds:86400}") long routeTtlSeconds) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.circuitBreaker = circuitBreaker;
+        this.warmup = warmup;
+        this.geocodeTtlSeconds = geocodeTtlSeconds;
+        this.routeTtlSeconds = routeTtlSeconds;
+    }
+
+    @Override
+    public Coordinate geoCode(String address) {
+        if (address == null || address.trim().isEmpty()) {
+            return delegate.geoCode(address);
+        }
+        warmup.recordGeocode(address.trim());
+        Number packed = cache.get("geocode", address.trim(), Number.class, geocodeTtlSeconds, circuitBreaker, () -> {
+            Coordinate coordinate = delegate.geoCode(address);
+            return coordinate == null ? null : coordinate.getPacked();
+        }, value -> true);
+        return packed == null ? null : Coordinate.fromPacked(packed.longValue());
+    }
+
+    @Override
+    public String reverseGeoCode(Coordinate coordinate) {
+        if (coordinate == null) {
+            return delegate.reverseGeoCode(coordinate);
+        }
+        return cache.get("regeo", coordinate.toString(), String.class, geocodeTtlSeconds, circuitBreaker,
+                () -> delegate.reverseGeoCode(coordinate), value -> true);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> planWalkingRoute(Coordinate origin, Coordinate destination) {
+        if (origin == null || destination == null) {
+            return delegate.planWalkingRoute(origin, destination);
+        }
+        warmup.recordRoute(null, origin, destination, null);
+        String key = destination.appendTo(origin.appendTo(new StringBuilder(48)).append('|')).toString();
+        return cache.get("route", key, Map.class, routeTtlSeconds, circuitBreaker,
+                () -> delegate.planWalkingRoute(origin, destination), value -> true);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> planRoute(String mode, Coordinate origin, Coordinate destination, String city) {
+        if (mode == null || origin == null || destination == null) {
+            return delegate.planRoute(mode, origin, destination, city);
+        }
+        warmup.recordRoute(mode, origin, destination, city);
+        String key = destination.appendTo(origin.appendTo(new StringBuilder(64)).append('|')).append('|')
+                .append(city == null ? "" : city.trim()).toString();
+        return cache.get("route-" + mode, key, Map.class, routeTtlSeconds, circuitBreaker,
+                () -> delegate.planRoute(mode, origin, destination, city), value -> true);
+    }
+
+    @Override
+    public String getMapApiKey() {
+        return delegate.getMapApiKey();
+    }
+}
@@ -0,0 +1,440 @@
+package com.aitravelplanner.Service.Impl;
+
+import com.aitravelplanner.Model.Coordinate;
+import com.aitravelplanner.Service.DemandService;
+import com.aitravelplanner.Service.ItineraryService;
+import com.aitravelplanner.Service.MapService;
+import com.aitravelplanner.Util.RequestContext;
+import com.aitravelplanner.Util.Tracer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 旅行需求服务实现类
+ * 用正则和关键词在本地解析需求，不调用大模型；需求完整后在用户查看确认界面期间
+ * 预先地理编码目的地并生成旅行计划，用户确认时直接复用结果。
+ */
+@Service
+public class DemandServiceImpl implements DemandService {
+
+    private static final Logger log = LoggerFactory.getLogger(DemandServiceImpl.class);
+
+    /** 目的地：去/到/前往/目的地 后面的地名 */
+    private static final Pattern DESTINATION = Pattern.compile(
+            "(?:去|到|前往|目的地(?:是|为)?[：:]?)\\s*([\\p{IsHan}A-Za-z]{2,12}?)"
+            + "(?=玩|旅游|旅行|游|度假|看看|逛|待|住|过|出发|[0-9一二两三四五六七八九十]|[，。,.!！?？、；;\\s]|$)");
+
+    /** 目的地："南京三日游"、"成都5天游" */
+    private static final Pattern DESTINATION_TOUR = Pattern.compile(
+            "([\\p{IsHan}]{2,8}?)(?:[0-9]+|[一二两三四五六七八九十]+)\\s*(?:天|日)游");
+
+    /** 日期：2025-05-01、2025年5月1日 或 5月1日/5月1号 */
+    static final Pattern DATE = Pattern.compile(
+            "(\\d{4})\\s*[-/.年]\\s*(\\d{1,2})\\s*[-/.月]\\s*(\\d{1,2})\\s*[日号]?|(\\d{1,2})\\s*月\\s*(\\d{1,2})\\s*[日号]?");
+
+    /** 预算："预算5000"、"预算大概1.5万" */
+    private static final Pattern BUDGET = Pattern.compile(
+            "预算[^0-9]{0,6}(\\d+(?:\\.\\d+)?)\\s*(万|千|[kKwW])?");
+
+    /** 金额："3000元"、"2万块" */
+    private static final Pattern AMOUNT = Pattern.compile(
+            "(\\d+(?:\\.\\d+)?)\\s*(万|千)?\\s*(?:元|块|人民币)");
+
+    /** 人数："3个人"、"两位"、"一家三口" */
+    private static final Pattern PEOPLE = Pattern.compile(
+            "([0-9]+|[一二两三四五六七八九十]+)\\s*(?:个大人|个人|人|位|口)");
+
+    /** 表示两人出行的说法 */
+    private static final Pattern COUPLE = Pattern.compile("情侣|夫妻|两口子|(?:和|跟|带着?)(?:女朋友|男朋友|老婆|老公|爱人|对象)");
+
+    /** 表示一人出行的说法 */
+    private static final Pattern SOLO = Pattern.compile("独自|独行|一个人|一人");
+
+    /** 可识别的旅行偏好关键词 */
+    private static final String[] PREFERENCE_KEYWORDS = {
+            "美食", "自然风光", "历史文化", "人文", "购物", "亲子", "休闲", "摄影", "徒步", "爬山",
+            "博物馆", "夜景", "海边", "温泉", "古镇", "主题乐园", "小众", "网红", "慢节奏", "特种兵"
+    };
+
+    /** 不可能是目的地的词 */
+    private static final Set<String> DESTINATION_STOP_WORDS = Set.of("时候", "哪里", "那里", "这里", "哪儿", "那儿", "外地", "国外");
+
+    /** 预生成任务调用大模型时的排队类别 */
+    private static final String SPECULATION_PRIORITY_CLASS = "bulk";
+
+    private final ItineraryService itineraryService;
+    private final MapService mapService;
+    private final ExecutorService speculationExecutor;
+
+    /** 每个会话当前的预生成任务 */
+    private final Map<String, Speculation> speculations = new ConcurrentHashMap<>();
+
+    @Value("${travel.plan.mode:single}")
+    private String defaultPlanMode;
+
+    /** 预生成结果的保留时间（秒） */
+    @Value("${travel.plan.speculation.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    /** 同时保留预生成任务的会话数上限 */
+    @Value("${travel.plan.speculation.max-sessions:200}")
+    private int maxSessions;
+
+    /** 每个客户端同时保留的预生成任务数上限，同一客户端开多个会话时不能绕过限流占满预生成线程 */
+    @Value("${travel.plan.speculation.max-per-client:1}")
+    private int maxPerClient;
+
+    /** 预生成任务的截止时间（毫秒），超过后放弃进行中的上游调用 */
+    @Value("${travel.plan.speculation.timeout-ms:60000}")
+    private long timeoutMs;
+
+    @Autowired
+    public DemandServiceImpl(ItineraryService itineraryService, MapService mapService,
+                             @Qualifier("speculationExecutor") ExecutorService speculationExecutor) {
+        this.itineraryService = itineraryService;
+        this.mapService = mapService;
+        this.speculationExecutor = speculationExecutor;
+    }
+
+    @Override
+    public Map<String, String> parseDemand(List<String> messages) {
+        Map<String, String> demand = new LinkedHashMap<>();
+        Set<String> preferences = new LinkedHashSet<>();
+        List<String> rawMessages = new ArrayList<>();
+
+        for (String message : messages) {
+            if (message == null || message.trim().isEmpty()) {
+                continue;
+            }
+            String text = message.trim();
+            rawMessages.add(text);
+
+            String destination;
+            try (Tracer.Span ignored = Tracer.start("location.extract")) {
+                destination = parseDestination(text);
+            }
+            if (destination != null) {
+                demand.put("destination", destination);
+            }
+
+            List<LocalDate> dates = parseDates(text);
+            if (!dates.isEmpty()) {
+                demand.put("startDate", dates.get(0).toString());
+                if (dates.size() > 1 && !dates.get(1).isBefore(dates.get(0))) {
+                    demand.put("endDate", dates.get(1).toString());
+                } else {
+                    demand.remove("endDate");
+                }
+            }
+
+            int days = itineraryService.estimateDays(text);
+            if (days > 0) {
+                demand.put("days", String.valueOf(days));
+            }
+
+            String budget = parseBudget(text);
+            if (budget != null) {
+                demand.put("budget", budget);
+            }
+
+            String people = parsePeople(text);
+            if (people != null) {
+                demand.put("people", people);
+            }
+
+            for (String keyword : PREFERENCE_KEYWORDS) {
+                if (text.contains(keyword)) {
+                    preferences.add(keyword);
+                }
+            }
+        }
+
+        // 日期与天数互相补全
+        if (demand.containsKey("startDate")) {
+            LocalDate start = LocalDate.parse(demand.get("startDate"));
+            if (demand.containsKey("endDate")) {
+                LocalDate end = LocalDate.parse(demand.get("endDate"));
+                demand.put("days", String.valueOf(ChronoUnit.DAYS.between(start, end) + 1));
+            } else if (demand.containsKey("days")) {
+                demand.put("endDate", start.plusDays(Long.parseLong(demand.get("days")) - 1).toString());
+            }
+        }
+        if (!preferences.isEmpty()) {
+            demand.put("preferences", String.join("、", preferences));
+        }
+        if (!rawMessages.isEmpty()) {
+            demand.put("rawMessage", String.join("；", rawMessages));
+        }
+        return demand;
+    }
+
+    @Override
+    public boolean isComplete(Map<String, String> demand) {
+        return hasText(demand.get("destination")) && (hasText(demand.get("startDate")) || hasText(demand.get("days")));
+    }
+
+    @Override
+    public String toPlanMessage(Map<String, String> demand) {
+        StringBuilder sb = new StringBuilder();
+        appendField(sb, "目的地", demand.get("destination"));
+        appendField(sb, "出发日期", demand.get("startDate"));
+        appendField(sb, "返回日期", demand.get("endDate"));
+        appendField(sb, "行程天数", hasText(demand.get("days")) ? demand.get("days") + "天" : null);
+        appendField(sb, "预算", demand.get("budget"));
+        appendField(sb, "人数", demand.get("people"));
+        appendField(sb, "偏好", demand.get("preferences"));
+        appendField(sb, "原始需求", demand.get("rawMessage"));
+        return sb.toString();
+    }
+
+    @Override
+    public void startSpeculation(String sessionId, String clientId, Map<String, String> demand) {
+        String planMessage = toPlanMessage(demand);
+        Speculation existing = speculations.get(sessionId);
+        if (existing != null && existing.planMessage.equals(planMessage) && !existing.isExpired(ttlSeconds)) {
+            return;
+        }
+
+        evictExpired();
+        if (existing == null && speculations.size() >= maxSessions) {
+            log.atInfo().addKeyValue("maxSessions", maxSessions).log("预生成会话数已达上限，跳过本次预生成");
+            return;
+        }
+        if (existing == null && countByClient(clientId) >= maxPerClient) {
+            log.atInfo().addKeyValue("clientId", clientId).addKeyValue("maxPerClient", maxPerClient)
+                    .log("客户端的预生成任务数已达上限，跳过本次预生成");
+            return;
+        }
+
+        int days = parseInt(demand.get("days"));
+        boolean parallel = "parallel".equalsIgnoreCase(defaultPlanMode);
+        String destination = demand.get("destination");
+        // 预生成任务使用独立的请求上下文，需求变化时取消可以中断进行中的上游调用；
+        // 按批量类别排队，并计入发起需求的客户端，不与用户正在等待的请求争抢大模型调用名额
+        RequestContext context = new RequestContext(clientId, SPECULATION_PRIORITY_CLASS);
+        context.setDeadline(timeoutMs, 0);
+        CompletableFuture<Coordinate> coordinate;
+        CompletableFuture<String> plan;
+        try (RequestContext.Scope ignored = context.attach()) {
+            Executor executor = RequestContext.propagating(speculationExecutor);
+            coordinate = CompletableFuture.supplyAsync(() -> mapService.geoCode(destination), executor);
+            plan = CompletableFuture.supplyAsync(() -> itineraryService.generateTextPlan(planMessage, days, parallel), executor);
+        }
+
+        Speculation previous = speculations.put(sessionId, new Speculation(planMessage, context, coordinate, plan));
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    @Override
+    public void cancelSpeculation(String sessionId) {
+        Speculation previous = speculations.remove(sessionId);
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    @Override
+    public Map<String, String> takeSpeculation(String sessionId, Map<String, String> demand) {
+        Speculation speculation = speculations.remove(sessionId);
+        if (speculation == null) {
+            return null;
+        }
+        if (!speculation.planMessage.equals(toPlanMessage(demand)) || speculation.isExpired(ttlSeconds)) {
+            speculation.cancel();
+            return null;
+        }
+
+        // 最多等到当前请求的截止时间，请求被取消时立即停止等待，两种情况都回退到正常生成
+        RequestContext context = RequestContext.current();
+        long waitMs = context == null ? timeoutMs : context.remainingMillis();
+        CompletableFuture<Object> cancelled = new CompletableFuture<>();
+        try (RequestContext.Scope ignored = RequestContext.onCancel("dashscope", "queued", () -> cancelled.complete(null))) {
+            CompletableFuture.anyOf(speculation.plan, cancelled).get(waitMs, TimeUnit.MILLISECONDS);
+            if (!speculation.plan.isDone()) {
+                speculation.cancel();
+                return null;
+            }
+            String travelPlan = speculation.plan.get();
+            Map<String, String> result = new LinkedHashMap<>();
+            result.put("travelPlan", travelPlan);
+            Coordinate coordinate = speculation.coordinate.isDone() ? speculation.coordinate.get() : null;
+            if (coordinate != null) {
+                result.put("destinationCoordinate", coordinate.toString());
+            }
+            return result;
+        } catch (TimeoutException e) {
+            log.atInfo().addKeyValue("waitMs", waitMs).log("等待预生成旅行计划超时，将重新生成");
+            speculation.cancel();
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            log.warn("预生成旅行计划失败，将重新生成：{}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 统计客户端当前保留的预生成任务数
+     */
+    private long countByClient(String clientId) {
+        return speculations.values().stream()
+                .filter(speculation -> clientId.equals(speculation.context.getClientId()))
+                .count();
+    }
+
+    /**
+     * 清理超过保留时间的预生成任务
+     */
+    private void evictExpired() {
+        speculations.entrySet().removeIf(entry -> {
+            if (entry.getValue().isExpired(ttlSeconds)) {
+                entry.getValue().cancel();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    private static String parseDestination(String text) {
+        Matcher matcher = DESTINATION.matcher(text);
+        while (matcher.find()) {
+            String candidate = matcher.group(1);
+            if (!DESTINATION_STOP_WORDS.contains(candidate)) {
+                return candidate;
+            }
+        }
+        matcher = DESTINATION_TOUR.matcher(text);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    /**
+     * 按出现顺序解析文本中的日期，未写年份的日期取今天之后最近的一天
+     */
+    private static List<LocalDate> parseDates(String text) {
+        List<LocalDate> dates = new ArrayList<>();
+        LocalDate today = LocalDate.now();
+        Matcher matcher = DATE.matcher(text);
+        while (matcher.find()) {
+            try {
+                if (matcher.group(1) != null) {
+                    dates.add(LocalDate.of(Integer.parseInt(matcher.group(1)),
+                            Integer.parseInt(matcher.group(2)), Integer.parseInt(matcher.group(3))));
+                } else {
+                    LocalDate date = LocalDate.of(today.getYear(),
+                            Integer.parseInt(matcher.group(4)), Integer.parseInt(matcher.group(5)));
+                    dates.add(date.isBefore(today) ? date.plusYears(1) : date);
+                }
+            } catch (DateTimeException e) {
+                // 无效日期（如2月30日）忽略
+            }
+        }
+        return dates;
+    }
+
+    private static String parseBudget(String text) {
+        Matcher matcher = BUDGET.matcher(text);
+        if (!matcher.find()) {
+            matcher = AMOUNT.matcher(text);
+            if (!matcher.find()) {
+                return null;
+            }
+        }
+        double amount = Double.parseDouble(matcher.group(1));
+        String unit = matcher.group(2);
+        if ("万".equals(unit) || "w".equalsIgnoreCase(unit)) {
+            amount *= 10000;
+        } else if ("千".equals(unit) || "k".equalsIgnoreCase(unit)) {
+            amount *= 1000;
+        }
+        return Math.round(amount) + "元";
+    }
+
+    private static String parsePeople(String text) {
+        Matcher matcher = PEOPLE.matcher(text);
+        while (matcher.find()) {
+            int count = ItineraryServiceImpl.parseNumber(matcher.group(1));
+            if (count > 0) {
+                return count + "人";
+            }
+        }
+        if (COUPLE.matcher(text).find()) {
+            return "2人";
+        }
+        if (SOLO.matcher(text).find()) {
+            return "1人";
+        }
+        return null;
+    }
+
+    private static void appendField(StringBuilder sb, String label, String value) {
+        if (hasText(value)) {
+            sb.append(label).append("：").append(value.trim()).append("。");
+        }
+    }
+
+    private static boolean hasText(String value) {
+        return value != null && !value.trim().isEmpty();
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return value == null ? 0 : Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * 一个会话的预生成任务
+     */
+    private static final class Speculation {
+        private final String planMessage;
+        private final RequestContext context;
+        private final CompletableFuture<Coordinate> coordinate;
+        private final CompletableFuture<String> plan;
+        private final long createdAt = System.nanoTime();
+
+        Speculation(String planMessage, RequestContext context, CompletableFuture<Coordinate> coordinate, CompletableFuture<String> plan) {
+            this.planMessage = planMessage;
+            this.context = context;
+            this.coordinate = coordinate;
+            this.plan = plan;
+        }
+
+        boolean isExpired(long ttlSeconds) {
+            return System.nanoTime() - createdAt > TimeUnit.SECONDS.toNanos(ttlSeconds);
+        }
+
+        void cancel() {
+            context.cancel("speculation-superseded");
+            coordinate.cancel(false);
+            plan.cancel(false);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.aitravelplanner.Service.Impl;
+
+import com.aitravelplanner.Service.AaLIBigModelService;
+import com.aitravelplanner.Util.FairQueueScheduler;
+import org.springframework.stereotype.Service;
+
+/**
+ * 排队调度的大模型服务
+ * 每次调用先向公平调度器申请名额，再交给阿里云大模型服务实现执行。
+ * 注入AaLIBigModelService的地方经CachedBigModelServiceImpl（缓存未命中时）到达这里，不能绕过并发上限。
+ */
+@Service
+public class FairQueuedBigModelServiceImpl implements AaLIBigModelService {
+
+    private final AaLIBigModelServiceImpl delegate;
+    private final FairQueueScheduler scheduler;
+
+    public FairQueuedBigModelServiceImpl(AaLIBigModelServiceImpl delegate, FairQueueScheduler scheduler) {
+        this.delegate = delegate;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public String generateResponse(String query) {
+        try (FairQueueScheduler.Permit ignored = scheduler.acquire()) {
+            return delegate.generateResponse(query);
+        }
+    }
+
+    @Override
+    public String generateJsonResponse(String query, int maxTokens) {
+        try (FairQueueScheduler.Permit ignored = scheduler.acquire()) {
+            return delegate.generateJsonResponse(query, maxTokens);
+        }
+    }
+}
@@ -0,0 +1,497 @@
+package com.aitravelplanner.Service.Impl;
+
+import com.aitravelplanner.Model.Coordinate;
+import com.aitravelplanner.Service.GazetteerService;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 本地地名库服务实现类
+ * 启动时从CSV或预编译的二进制文件加载常用地点，地点名称保存在排序后的字节字典中，
+ * 坐标以定点整数保存在基本类型数组中，并按网格单元排序用于反向查询。
+ *
+ * CSV格式：名称,经度,纬度[,别名1|别名2|...]，别名可包含拼音，以#开头的行为注释。
+ * 以.bin结尾的文件按二进制格式以内存映射方式加载，可通过本类的main方法从CSV生成。
+ */
+@Service
+public class GazetteerServiceImpl implements GazetteerService {
+
+    private static final Logger log = LoggerFactory.getLogger(GazetteerServiceImpl.class);
+
+    /** 二进制文件魔数 "GZT1" */
+    private static final int MAGIC = 0x475A5431;
+
+    /** 文件头：魔数、地点数、名称键数、显示名称字节数、名称键字节数、保留字段 */
+    private static final int HEADER_BYTES = 6 * 4;
+
+    /** 坐标定点缩放倍数（保留6位小数，与高德API返回精度一致） */
+    private static final int SCALE = 1_000_000;
+
+    /** 网格索引单元大小（度），约1公里 */
+    private static final double CELL_DEGREES = 0.01;
+
+    /** 每度纬度对应的米数 */
+    private static final double METERS_PER_DEGREE = 111_320.0;
+
+    /** 反向查询时单方向最多扫描的网格数 */
+    private static final int MAX_CELL_RADIUS = 50;
+
+    @Value("${gazetteer.path:}")
+    private String gazetteerPath;
+
+    private volatile Index index;
+
+    /**
+     * 启动时加载配置的地名库文件，未配置时不启用
+     */
+    @PostConstruct
+    public void init() {
+        if (gazetteerPath == null || gazetteerPath.trim().isEmpty()) {
+            log.info("未配置本地地名库（gazetteer.path），地理编码将直接调用高德API");
+            return;
+        }
+        try {
+            load(Paths.get(gazetteerPath.trim()));
+        } catch (Exception e) {
+            log.warn("本地地名库加载失败，将直接调用高德API：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 加载地名库文件，.bin文件以内存映射方式加载，其他文件按CSV解析
+     * @param path 地名库文件路径
+     * @throws IOException 文件读取失败或格式错误
+     */
+    public void load(Path path) throws IOException {
+        long start = System.nanoTime();
+        boolean binary = path.getFileName().toString().endsWith(".bin");
+        ByteBuffer buffer = binary ? mapBinary(path) : compileCsv(path);
+        Index loaded = new Index(buffer);
+        this.index = loaded;
+
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        log.atInfo()
+                .addKeyValue("places", loaded.count)
+                .addKeyValue("keys", loaded.keyCount)
+                .addKeyValue("indexBytes", buffer.capacity())
+                .addKeyValue("mode", binary ? "mmap" : "heap")
+                .addKeyValue("elapsedMs", elapsedMs)
+                .log("本地地名库加载完成");
+    }
+
+    @Override
+    public Coordinate lookup(String name) {
+        Index current = index;
+        if (current == null || name == null) {
+            return null;
+        }
+        String key = normalize(name);
+        if (key.isEmpty()) {
+            return null;
+        }
+        int entry = current.find(key.getBytes(StandardCharsets.UTF_8));
+        if (entry < 0) {
+            return null;
+        }
+        return Coordinate.ofE6(current.lng(entry), current.lat(entry));
+    }
+
+    @Override
+    public String reverseLookup(Coordinate coordinate, double maxDistanceMeters) {
+        Index current = index;
+        if (current == null || current.count == 0) {
+            return null;
+        }
+        int entry = current.nearest(coordinate.getLongitude(), coordinate.getLatitude(), maxDistanceMeters);
+        return entry < 0 ? null : current.name(entry);
+    }
+
+    @Override
+    public boolean isLoaded() {
+        return index != null;
+    }
+
+    @Override
+    public int size() {
+        Index current = index;
+        return current == null ? 0 : current.count;
+    }
+
+    /**
+     * 名称归一化：兼容分解、转小写、去除声调符号、空白和标点
+     * 使 "Tiān'ānmén"、"tiananmen"、"天安门 " 等写法得到稳定的键
+     * @param name 原始名称
+     * @return 归一化后的名称键
+     */
+    static String normalize(String name) {
+        String decomposed = Normalizer.normalize(name, Normalizer.Form.NFKD).toLowerCase(Locale.ROOT);
+        StringBuilder sb = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 以内存映射方式打开二进制地名库
+     */
+    private static ByteBuffer mapBinary(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+                throw new IOException("不是有效的地名库二进制文件：" + path);
+            }
+            return buffer;
+        }
+    }
+
+    /**
+     * 解析CSV地名库并编译为与二进制文件相同布局的堆内缓冲区
+     */
+    static ByteBuffer compileCsv(Path path) throws IOException {
+        List<String> names = new ArrayList<>();
+        int[] lngs = new int[1024];
+        int[] lats = new int[1024];
+        Map<String, Integer> keyToEntry = new HashMap<>();
+        int skipped = 0;
+        boolean firstLine = true;
+
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                boolean header = firstLine;
+                firstLine = false;
+                String[] parts = line.split(",", 4);
+                if (parts.length < 3) {
+                    skipped++;
+                    continue;
+                }
+                double lng;
+                double lat;
+                try {
+                    lng = Double.parseDouble(parts[1].trim());
+                    lat = Double.parseDouble(parts[2].trim());
+                } catch (NumberFormatException e) {
+                    // 第一行允许是表头
+                    if (!header) {
+                        skipped++;
+                    }
+                    continue;
+                }
+                if (lng < -180 || lng > 180 || lat < -90 || lat > 90) {
+                    skipped++;
+                    continue;
+                }
+
+                int entry = names.size();
+                if (entry == lngs.length) {
+                    lngs = Arrays.copyOf(lngs, entry * 2);
+                    lats = Arrays.copyOf(lats, entry * 2);
+                }
+                String name = parts[0].trim();
+                names.add(name);
+                lngs[entry] = (int) Math.round(lng * SCALE);
+                lats[entry] = (int) Math.round(lat * SCALE);
+
+                // 名称及别名都作为查询键，重复的键以先出现的地点为准
+                keyToEntry.putIfAbsent(normalize(name), entry);
+                if (parts.length == 4) {
+                    for (String alias : parts[3].split("\\|")) {
+                        String key = normalize(alias);
+                        if (!key.isEmpty()) {
+                            keyToEntry.putIfAbsent(key, entry);
+                        }
+                    }
+                }
+            }
+        }
+        keyToEntry.remove("");
+        if (skipped > 0) {
+            log.warn("本地地名库中有{}行格式不正确，已跳过", skipped);
+        }
+        return build(names, lngs, lats, keyToEntry);
+    }
+
+    /**
+     * 按二进制布局构建索引缓冲区
+     * 布局：文件头 | 经度[N] | 纬度[N] | 网格键[N] | 网格内地点[N] | 名称偏移[N+1]
+     *      | 名称键偏移[K+1] | 名称键对应地点[K] | 名称字节 | 名称键字节
+     */
+    private static ByteBuffer build(List<String> names, int[] lngs, int[] lats, Map<String, Integer> keyToEntry) {
+        int count = names.size();
+
+        // 按网格单元排序地点，网格键在高32位，地点序号在低32位
+        long[] cells = new long[count];
+        for (int i = 0; i < count; i++) {
+            cells[i] = ((long) cellKey(lngs[i] / (double) SCALE, lats[i] / (double) SCALE) << 32) | i;
+        }
+        Arrays.sort(cells);
+
+        byte[][] nameBytes = new byte[count][];
+        int nameBytesLen = 0;
+        for (int i = 0; i < count; i++) {
+            nameBytes[i] = names.get(i).getBytes(StandardCharsets.UTF_8);
+            nameBytesLen += nameBytes[i].length;
+        }
+
+        byte[][] keys = new byte[keyToEntry.size()][];
+        int[] keyEntries = new int[keys.length];
+        List<Map.Entry<String, Integer>> keyList = new ArrayList<>(keyToEntry.entrySet());
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = keyList.get(i).getKey().getBytes(StandardCharsets.UTF_8);
+        }
+        Integer[] order = new Integer[keys.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(keys[a], keys[b]));
+        byte[][] sortedKeys = new byte[keys.length][];
+        int keyBytesLen = 0;
+        for (int i = 0; i < order.length; i++) {
+            sortedKeys[i] = keys[order[i]];
+            keyEntries[i] = keyList.get(order[i]).getValue();
+            keyBytesLen += sortedKeys[i].length;
+        }
+        int keyCount = sortedKeys.length;
+
+        int size = HEADER_BYTES + 4 * (4 * count + (count + 1) + (keyCount + 1) + keyCount) + nameBytesLen + keyBytesLen;
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC).putInt(count).putInt(keyCount).putInt(nameBytesLen).putInt(keyBytesLen).putInt(0);
+        for (int i = 0; i < count; i++) {
+            buffer.putInt(lngs[i]);
+        }
+        for (int i = 0; i < count; i++) {
+            buffer.putInt(lats[i]);
+        }
+        for (long cell : cells) {
+            buffer.putInt((int) (cell >>> 32));
+        }
+        for (long cell : cells) {
+            buffer.putInt((int) cell);
+        }
+        int offset = 0;
+        for (byte[] bytes : nameBytes) {
+            buffer.putInt(offset);
+            offset += bytes.length;
+        }
+        buffer.putInt(offset);
+        offset = 0;
+        for (byte[] bytes : sortedKeys) {
+            buffer.putInt(offset);
+            offset += bytes.length;
+        }
+        buffer.putInt(offset);
+        for (int entry : keyEntries) {
+            buffer.putInt(entry);
+        }
+        for (byte[] bytes : nameBytes) {
+            buffer.put(bytes);
+        }
+        for (byte[] bytes : sortedKeys) {
+            buffer.put(bytes);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * 计算坐标所在网格单元的键（纬度序号在高16位，经度序号在低16位）
+     */
+    private static int cellKey(double lng, double lat) {
+        int lngIdx = (int) Math.floor((lng + 180) / CELL_DEGREES);
+        int latIdx = (int) Math.floor((lat + 90) / CELL_DEGREES);
+        return cellKey(lngIdx, latIdx);
+    }
+
+    private static int cellKey(int lngIdx, int latIdx) {
+        return (latIdx << 16) | lngIdx;
+    }
+
+    /**
+     * 只读索引视图，直接在（可能是内存映射的）缓冲区上按绝对位置读取
+     */
+    private static final class Index {
+        private final ByteBuffer buf;
+        private final int count;
+        private final int keyCount;
+        private final int lngOff;
+        private final int latOff;
+        private final int cellKeyOff;
+        private final int cellEntryOff;
+        private final int nameOffOff;
+        private final int keyOffOff;
+        private final int keyEntryOff;
+        private final int nameBytesOff;
+        private final int keyBytesOff;
+
+        Index(ByteBuffer buf) {
+            this.buf = buf;
+            this.count = buf.getInt(4);
+            this.keyCount = buf.getInt(8);
+            int nameBytesLen = buf.getInt(12);
+            this.lngOff = HEADER_BYTES;
+            this.latOff = lngOff + 4 * count;
+            this.cellKeyOff = latOff + 4 * count;
+            this.cellEntryOff = cellKeyOff + 4 * count;
+            this.nameOffOff = cellEntryOff + 4 * count;
+            this.keyOffOff = nameOffOff + 4 * (count + 1);
+            this.keyEntryOff = keyOffOff + 4 * (keyCount + 1);
+            this.nameBytesOff = keyEntryOff + 4 * keyCount;
+            this.keyBytesOff = nameBytesOff + nameBytesLen;
+        }
+
+        int lng(int entry) {
+            return buf.getInt(lngOff + 4 * entry);
+        }
+
+        int lat(int entry) {
+            return buf.getInt(latOff + 4 * entry);
+        }
+
+        String name(int entry) {
+            int start = buf.getInt(nameOffOff + 4 * entry);
+            int end = buf.getInt(nameOffOff + 4 * (entry + 1));
+            byte[] bytes = new byte[end - start];
+            buf.get(nameBytesOff + start, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * 在排序后的名称键中二分查找
+         * @return 地点序号，未找到返回-1
+         */
+        int find(byte[] key) {
+            int low = 0;
+            int high = keyCount - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = compareKey(mid, key);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return buf.getInt(keyEntryOff + 4 * mid);
+                }
+            }
+            return -1;
+        }
+
+        private int compareKey(int keyIndex, byte[] key) {
+            int start = keyBytesOff + buf.getInt(keyOffOff + 4 * keyIndex);
+            int len = buf.getInt(keyOffOff + 4 * (keyIndex + 1)) - buf.getInt(keyOffOff + 4 * keyIndex);
+            int n = Math.min(len, key.length);
+            for (int i = 0; i < n; i++) {
+                int cmp = Integer.compare(buf.get(start + i) & 0xFF, key[i] & 0xFF);
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return Integer.compare(len, key.length);
+        }
+
+        /**
+         * 扫描目标坐标周围的网格单元，返回距离最近的地点
+         * @return 地点序号，范围内没有地点返回-1
+         */
+        int nearest(double lng, double lat, double maxDistanceMeters) {
+            double cosLat = Math.max(Math.cos(Math.toRadians(lat)), 0.01);
+            int latRadius = Math.min(MAX_CELL_RADIUS,
+                    (int) Math.ceil(maxDistanceMeters / (CELL_DEGREES * METERS_PER_DEGREE)));
+            int lngRadius = Math.min(MAX_CELL_RADIUS,
+                    (int) Math.ceil(maxDistanceMeters / (CELL_DEGREES * METERS_PER_DEGREE * cosLat)));
+            int centerLng = (int) Math.floor((lng + 180) / CELL_DEGREES);
+            int centerLat = (int) Math.floor((lat + 90) / CELL_DEGREES);
+
+            double maxDistSq = maxDistanceMeters * maxDistanceMeters;
+            double bestDistSq = Double.MAX_VALUE;
+            int best = -1;
+            for (int dy = -latRadius; dy <= latRadius; dy++) {
+                int latIdx = centerLat + dy;
+                if (latIdx < 0) {
+                    continue;
+                }
+                for (int dx = -lngRadius; dx <= lngRadius; dx++) {
+                    int lngIdx = centerLng + dx;
+                    if (lngIdx < 0) {
+                        continue;
+                    }
+                    int key = cellKey(lngIdx, latIdx);
+                    for (int pos = lowerBound(key); pos < count && buf.getInt(cellKeyOff + 4 * pos) == key; pos++) {
+                        int entry = buf.getInt(cellEntryOff + 4 * pos);
+                        double dLng = (lng(entry) / (double) SCALE - lng) * METERS_PER_DEGREE * cosLat;
+                        double dLat = (lat(entry) / (double) SCALE - lat) * METERS_PER_DEGREE;
+                        double distSq = dLng * dLng + dLat * dLat;
+                        if (distSq <= maxDistSq && distSq < bestDistSq) {
+                            bestDistSq = distSq;
+                            best = entry;
+                        }
+                    }
+                }
+            }
+            return best;
+        }
+
+        private int lowerBound(int key) {
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (buf.getInt(cellKeyOff + 4 * mid) < key) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * 将CSV地名库编译为可内存映射加载的二进制文件
+     * 用法：GazetteerServiceImpl &lt;输入.csv&gt; &lt;输出.bin&gt;
+     * @param args 命令行参数
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("用法：GazetteerServiceImpl <输入.csv> <输出.bin>");
+            return;
+        }
+        long start = System.nanoTime();
+        ByteBuffer buffer = compileCsv(Paths.get(args[0]));
+        try (FileChannel channel = FileChannel.open(Paths.get(args[1]),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        System.out.println(String.format("已生成%s：%.1fKB，耗时%dms", args[1],
+                buffer.capacity() / 1024.0, (System.nanoTime() - start) / 1_000_000));
+    }
+}
@@ -0,0 +1,187 @@
+package com.aitravelplanner.Service.Impl;
+
+import com.aitravelplanner.Model.Itinerary;
+import com.aitravelplanner.Model.ItineraryDay;
+import com.aitravelplanner.Model.ItineraryStop;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 结构化行程JSON的流式解析器
+ * 按token逐个读取，不构建中间树；输出因token上限被截断时保留已完整解析的天和站点。
+ */
+final class ItineraryJsonParser {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /** 从"约200元"之类的字符串中提取数字 */
+    private static final Pattern NUMBER = Pattern.compile("-?\\d+(?:\\.\\d+)?");
+
+    private ItineraryJsonParser() {
+    }
+
+    /**
+     * 解析模型返回的JSON行程
+     * @param json 模型返回的文本，允许前后带有代码块标记等多余内容
+     * @return 解析出的行程，文本中没有JSON对象返回null
+     */
+    static Itinerary parse(String json) {
+        if (json == null) {
+            return null;
+        }
+        int start = json.indexOf('{');
+        if (start < 0) {
+            return null;
+        }
+
+        Itinerary itinerary = new Itinerary();
+        try (JsonParser parser = JSON_FACTORY.createParser(json.substring(start))) {
+            parser.nextToken();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "title":
+                        itinerary.setTitle(readText(parser));
+                        break;
+                    case "days":
+                        readDays(parser, itinerary.getDays());
+                        break;
+                    case "totalCost":
+                        itinerary.setTotalCost(readNumber(parser));
+                        break;
+                    case "tips":
+                        readTextArray(parser, itinerary.getTips());
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            // 输出被截断或格式不完整，保留已解析的部分
+            itinerary.setTruncated(true);
+        }
+        return itinerary;
+    }
+
+    private static void readDays(JsonParser parser, List<ItineraryDay> days) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            ItineraryDay day = new ItineraryDay();
+            day.setDay(days.size() + 1);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "day":
+                        Double number = readNumber(parser);
+                        if (number != null) {
+                            day.setDay(number.intValue());
+                        }
+                        break;
+                    case "city":
+                        day.setCity(readText(parser));
+                        break;
+                    case "theme":
+                        day.setTheme(readText(parser));
+                        break;
+                    case "stops":
+                        readStops(parser, day.getStops());
+                        break;
+                    case "dayCost":
+                        day.setDayCost(readNumber(parser));
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+            // 只有完整读到结束括号的天才加入，截断的天丢弃
+            if (parser.currentToken() == JsonToken.END_OBJECT) {
+                days.add(day);
+            }
+        }
+    }
+
+    private static void readStops(JsonParser parser, List<ItineraryStop> stops) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            ItineraryStop stop = new ItineraryStop();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "time":
+                        stop.setTime(readText(parser));
+                        break;
+                    case "place":
+                        stop.setPlace(readText(parser));
+                        break;
+                    case "activity":
+                        stop.setActivity(readText(parser));
+                        break;
+                    case "transport":
+                        stop.setTransport(readText(parser));
+                        break;
+                    case "cost":
+                        stop.setCost(readNumber(parser));
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+            // 只有完整读到结束括号的站点才加入，截断的站点丢弃
+            if (parser.currentToken() == JsonToken.END_OBJECT) {
+                stops.add(stop);
+            }
+        }
+    }
+
+    private static void readTextArray(JsonParser parser, List<String> values) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            String text = readText(parser);
+            if (text != null) {
+                values.add(text);
+            }
+            return;
+        }
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            String text = readText(parser);
+            if (text != null) {
+                values.add(text);
+            }
+        }
+    }
+
+    private static String readText(JsonParser parser) throws IOException {
+        if (parser.currentToken().isStructStart()) {
+            parser.skipChildren();
+            return null;
+        }
+        return parser.currentToken() == JsonToken.VALUE_NULL ? null : parser.getText();
+    }
+
+    private static Double readNumber(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token.isNumeric()) {
+            return parser.getDoubleValue();
+        }
+        if (token == JsonToken.VALUE_STRING) {
+            Matcher matcher = NUMBER.matcher(parser.getText());
+            return matcher.find() ? Double.valueOf(matcher.group()) : null;
+        }
+        parser.skipChildren();
+        return null;
+    }
+}
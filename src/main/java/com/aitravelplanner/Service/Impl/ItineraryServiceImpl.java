@@ -0,0 +1,356 @@
+package com.aitravelplanner.Service.Impl;
+
+import com.aitravelplanner.Model.Itinerary;
+import com.aitravelplanner.Service.AaLIBigModelService;
+import com.aitravelplanner.Service.ItineraryService;
+import com.aitravelplanner.Util.ClientBoundedExecutor;
+import com.aitravelplanner.Util.ModelUnavailableException;
+import com.aitravelplanner.Util.RequestContext;
+import com.aitravelplanner.Util.Tracer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 行程生成服务实现类
+ * 先用一次简短的调用得到每日主题和城市，再把每一天作为独立的大模型调用并发生成，
+ * 总耗时约为骨架调用加上最慢的一天，而不是所有天数之和。
+ */
+@Service
+public class ItineraryServiceImpl implements ItineraryService {
+
+    private static final Logger log = LoggerFactory.getLogger(ItineraryServiceImpl.class);
+
+    /** 与单次生成模式一致的地点/时间标记要求 */
+    static final String MARKER_INSTRUCTION = "地点信息请用【具体的地点】包裹，时间信息请用$具体的时间$包裹,其他地方不要使用'【','】'和'$'这三个字符";
+
+    /** 骨架行格式：第N天|城市|主题 */
+    private static final Pattern SKELETON_LINE = Pattern.compile("第\\s*(\\d+)\\s*天\\s*[|｜]\\s*([^|｜]*)[|｜]\\s*(.*)");
+
+    /** 用户需求中的天数，如"7天"、"三日游"、"5 days"，或晚数，如"住三晚"（N晚按N+1天计） */
+    private static final Pattern DAYS_PATTERN = Pattern.compile("([0-9]+|[一二两三四五六七八九十]+)\\s*(天|日|晚|days?)", Pattern.CASE_INSENSITIVE);
+
+    /** 结构化模式下要求模型输出的JSON结构 */
+    private static final String ITINERARY_SCHEMA = "{\"title\":\"行程标题\",\"days\":[{\"day\":1,\"city\":\"城市\",\"theme\":\"当天主题\","
+            + "\"stops\":[{\"time\":\"09:00\",\"place\":\"具体地点名称\",\"activity\":\"活动内容\",\"transport\":\"前往方式\",\"cost\":0}],"
+            + "\"dayCost\":0}],\"totalCost\":0,\"tips\":[\"住宿、交通或预算建议\"]}";
+
+    /** qwen-plus单次输出token上限 */
+    private static final int MODEL_MAX_OUTPUT_TOKENS = 8192;
+
+    private final AaLIBigModelService aiAssistant;
+    private final ClientBoundedExecutor planExecutor;
+
+    @Value("${travel.plan.max-days:15}")
+    private int maxDays;
+
+    /** 结构化模式的基础token预算（标题、总费用、建议） */
+    @Value("${travel.plan.json.base-tokens:300}")
+    private int baseTokens;
+
+    /** 结构化模式每天的token预算 */
+    @Value("${travel.plan.json.tokens-per-day:450}")
+    private int tokensPerDay;
+
+    @Autowired
+    public ItineraryServiceImpl(AaLIBigModelService aiAssistant, @Qualifier("planExecutor") ClientBoundedExecutor planExecutor) {
+        this.aiAssistant = aiAssistant;
+        this.planExecutor = planExecutor;
+    }
+
+    @Override
+    public String generateTextPlan(String userMessage, int days, boolean parallel) {
+        if (parallel && days > 1) {
+            return generateParallelPlan(userMessage, days);
+        }
+        String prompt;
+        try (Tracer.Span ignored = Tracer.start("prompt.build")) {
+            prompt = "请根据以下用户需求生成一个详细的旅行计划：" + userMessage + "请提供详细的行程安排、住宿建议、交通方案、餐饮推荐和预算分配。" + MARKER_INSTRUCTION;
+        }
+        return aiAssistant.generateResponse(prompt);
+    }
+
+    @Override
+    public String generateParallelPlan(String userMessage, int days) {
+        int dayCount = Math.max(1, Math.min(days, maxDays));
+
+        // 1. 生成简短的行程骨架（每日主题和城市）
+        List<DayOutline> outline;
+        try (Tracer.Span ignored = Tracer.start("plan.outline")) {
+            outline = generateOutline(userMessage, dayCount);
+        }
+        String outlineText = describeOutline(outline);
+
+        // 2. 每一天的详细行程和整体建议作为独立调用并发生成
+        List<CompletableFuture<String>> dayFutures = new ArrayList<>();
+        for (DayOutline day : outline) {
+            String prompt;
+            try (Tracer.Span ignored = Tracer.start("prompt.build")) {
+                prompt = "用户的旅行需求：" + userMessage + "。整体行程安排如下：" + outlineText
+                        + "请只生成第" + day.day + "天（城市：" + day.city + "，主题：" + day.theme + "）的详细行程，"
+                        + "包括按时间顺序的景点安排、景点之间的交通方式、餐饮推荐和当天的预算，不要生成其他天的内容，也不要重复标题。"
+                        + MARKER_INSTRUCTION;
+            }
+            dayFutures.add(CompletableFuture.supplyAsync(() -> {
+                try (Tracer.Span ignored = Tracer.start("plan.day").setAttribute("plan.day", day.day)) {
+                    return generatePart(prompt, "第" + day.day + "天行程");
+                }
+            }, RequestContext.propagating(planExecutor)));
+        }
+        String summaryPrompt;
+        try (Tracer.Span ignored = Tracer.start("prompt.build")) {
+            summaryPrompt = "用户的旅行需求：" + userMessage + "。整体行程安排如下：" + outlineText
+                    + "请不要展开每天的行程，只针对整个行程给出住宿建议、城市间交通方案和总体预算分配。"
+                    + MARKER_INSTRUCTION;
+        }
+        CompletableFuture<String> summaryFuture = CompletableFuture.supplyAsync(() -> {
+            try (Tracer.Span ignored = Tracer.start("plan.summary")) {
+                return generatePart(summaryPrompt, "行程总体建议");
+            }
+        }, RequestContext.propagating(planExecutor));
+
+        // 3. 按天合并，保证每段的【】和$ $标记成对出现
+        StringBuilder plan = new StringBuilder();
+        for (int i = 0; i < outline.size(); i++) {
+            DayOutline day = outline.get(i);
+            plan.append("第").append(day.day).append("天：").append(day.city);
+            if (!day.theme.isEmpty()) {
+                plan.append(" - ").append(day.theme);
+            }
+            plan.append("\n\n").append(sanitizeMarkers(joinPart(dayFutures.get(i)))).append("\n\n");
+        }
+        plan.append("行程总体建议\n\n").append(sanitizeMarkers(joinPart(summaryFuture)));
+        return plan.toString().trim();
+    }
+
+    /**
+     * 生成行程的一部分，大模型调用失败时重试一次，仍然失败则抛出异常
+     * @param prompt 提示词
+     * @param part 部分名称，用于日志和异常信息
+     * @return 模型回复
+     * @throws ModelUnavailableException 重试后仍然失败
+     */
+    private String generatePart(String prompt, String part) {
+        try {
+            return aiAssistant.generateResponse(prompt);
+        } catch (ModelUnavailableException e) {
+            log.atWarn().addKeyValue("part", part).log("{}生成失败，重试一次：{}", part, e.getMessage());
+        }
+        try {
+            return aiAssistant.generateResponse(prompt);
+        } catch (ModelUnavailableException e) {
+            throw new ModelUnavailableException(part + "生成失败，AI服务暂时不可用", e);
+        }
+    }
+
+    /**
+     * 等待一部分行程生成完成，失败时抛出原始异常而不是CompletionException
+     */
+    private static String joinPart(CompletableFuture<String> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public Itinerary generateStructuredPlan(String userMessage, int days) {
+        int dayCount = Math.max(1, Math.min(days, maxDays));
+        String prompt;
+        try (Tracer.Span ignored = Tracer.start("prompt.build")) {
+            prompt = "请根据以下用户需求生成一个" + (days > 0 ? dayCount + "天的" : "") + "旅行计划：" + userMessage
+                    + "。只输出一个JSON对象，结构如下：" + ITINERARY_SCHEMA
+                    + "。每天3到6个站点，place只写可以在地图上搜索到的地点名称，activity不超过30个字，"
+                    + "cost和dayCost、totalCost为人民币金额数字，tips不超过5条，不要输出JSON以外的任何内容。";
+        }
+
+        String json = aiAssistant.generateJsonResponse(prompt, estimateMaxTokens(days > 0 ? dayCount : 0));
+        Itinerary itinerary;
+        try (Tracer.Span ignored = Tracer.start("itinerary.parse")) {
+            itinerary = ItineraryJsonParser.parse(json);
+        }
+        if (itinerary == null || itinerary.getDays().isEmpty()) {
+            log.atWarn().addKeyValue("days", days).addKeyValue("responseLength", json == null ? 0 : json.length())
+                    .log("结构化行程解析失败");
+            return null;
+        }
+        return itinerary;
+    }
+
+    /**
+     * 按行程天数估算结构化输出所需的token数，天数未知时按3天估算
+     * @param days 行程天数
+     * @return 最大输出token数
+     */
+    int estimateMaxTokens(int days) {
+        int dayCount = days > 0 ? days : 3;
+        return Math.min(MODEL_MAX_OUTPUT_TOKENS, baseTokens + dayCount * tokensPerDay);
+    }
+
+    @Override
+    public int estimateDays(String userMessage) {
+        if (userMessage == null) {
+            return 0;
+        }
+        // 先去掉日期，避免"5月1日出发"中的"1日"被当作天数
+        String text = DemandServiceImpl.DATE.matcher(userMessage).replaceAll(" ");
+        Matcher matcher = DAYS_PATTERN.matcher(text);
+        while (matcher.find()) {
+            int days = parseNumber(matcher.group(1));
+            if (days > 0 && "晚".equals(matcher.group(2))) {
+                days++;
+            }
+            if (days > 0) {
+                return Math.min(days, maxDays);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 调用大模型生成行程骨架，解析失败的天数用通用主题补齐
+     */
+    private List<DayOutline> generateOutline(String userMessage, int dayCount) {
+        String prompt;
+        try (Tracer.Span ignored = Tracer.start("prompt.build")) {
+            prompt = "请根据以下用户需求，为" + dayCount + "天的行程规划每天所在的城市和当天主题：" + userMessage
+                    + "。严格按每行一天输出，共" + dayCount + "行，格式为：第N天|城市|主题，主题不超过15个字，"
+                    + "不要输出任何其他内容，不要使用'【','】'和'$'这三个字符。";
+        }
+        String response = generatePart(prompt, "行程骨架");
+
+        DayOutline[] days = new DayOutline[dayCount];
+        Matcher matcher = SKELETON_LINE.matcher(response == null ? "" : response);
+        while (matcher.find()) {
+            int day = Integer.parseInt(matcher.group(1));
+            if (day >= 1 && day <= dayCount && days[day - 1] == null) {
+                days[day - 1] = new DayOutline(day, stripMarkers(matcher.group(2)), stripMarkers(matcher.group(3)));
+            }
+        }
+
+        List<DayOutline> outline = new ArrayList<>(dayCount);
+        String lastCity = "目的地";
+        for (int i = 0; i < dayCount; i++) {
+            DayOutline day = days[i];
+            if (day == null || day.city.isEmpty()) {
+                day = new DayOutline(i + 1, lastCity, day == null ? "自由安排" : day.theme);
+            }
+            lastCity = day.city;
+            outline.add(day);
+        }
+        return outline;
+    }
+
+    private static String describeOutline(List<DayOutline> outline) {
+        StringBuilder sb = new StringBuilder();
+        for (DayOutline day : outline) {
+            sb.append("第").append(day.day).append("天在").append(day.city).append("，主题为").append(day.theme).append("；");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 去除骨架中的标记字符，骨架只用于标题和提示词
+     */
+    private static String stripMarkers(String text) {
+        return text.replace("【", "").replace("】", "").replace("$", "").trim();
+    }
+
+    /**
+     * 修正单日内容中不成对的标记：丢弃嵌套或多余的【】，$个数为奇数时去掉最后一个
+     * 各天独立生成，某一天标记不完整不会影响合并后其他天的解析
+     * @param text 单日内容
+     * @return 标记成对的内容
+     */
+    static String sanitizeMarkers(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(text.length());
+        int openIndex = -1;
+        int lastDollar = -1;
+        int dollarCount = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '【') {
+                if (openIndex >= 0) {
+                    continue;
+                }
+                openIndex = sb.length();
+            } else if (c == '】') {
+                if (openIndex < 0) {
+                    continue;
+                }
+                openIndex = -1;
+            } else if (c == '$') {
+                dollarCount++;
+                lastDollar = sb.length();
+            }
+            sb.append(c);
+        }
+        if (dollarCount % 2 == 1) {
+            sb.deleteCharAt(lastDollar);
+            if (openIndex > lastDollar) {
+                openIndex--;
+            }
+        }
+        if (openIndex >= 0) {
+            sb.deleteCharAt(openIndex);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 解析阿拉伯数字或一到九十九的中文数字
+     */
+    static int parseNumber(String text) {
+        if (Character.isDigit(text.charAt(0))) {
+            try {
+                return Integer.parseInt(text);
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        String digits = "零一二三四五六七八九";
+        int tenIndex = text.indexOf('十');
+        if (tenIndex < 0) {
+            return text.length() == 1 ? chineseDigit(digits, text.charAt(0)) : 0;
+        }
+        int tens = tenIndex == 0 ? 1 : chineseDigit(digits, text.charAt(0));
+        int ones = tenIndex == text.length() - 1 ? 0 : chineseDigit(digits, text.charAt(tenIndex + 1));
+        return tens * 10 + ones;
+    }
+
+    private static int chineseDigit(String digits, char c) {
+        return c == '两' ? 2 : Math.max(digits.indexOf(c), 0);
+    }
+
+    /**
+     * 行程骨架中的一天
+     */
+    private static final class DayOutline {
+        private final int day;
+        private final String city;
+        private final String theme;
+
+        DayOutline(int day, String city, String theme) {
+            this.day = day;
+            this.city = city;
+            this.theme = theme;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.aitravelplanner.Service.Impl;
 
 import com.aitravelplanner.Service.LocationExtraction;
+import com.aitravelplanner.Util.Tracer;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -26,15 +27,18 @@ public class LocationExtractionImpl implements LocationExtraction {
             return contents;
         }
         
-        // 使用正则表达式匹配【】中的内容
-        Pattern pattern = Pattern.compile("【([^】]+)】");
-        Matcher matcher = pattern.matcher(text);
-        
-        while (matcher.find()) {
-            String content = matcher.group(1).trim();
-            if (!content.isEmpty()) {
-                contents.add(content);
+        try (Tracer.Span span = Tracer.start("location.extract")) {
+            // 使用正则表达式匹配【】中的内容
+            Pattern pattern = Pattern.compile("【([^】]+)】");
+            Matcher matcher = pattern.matcher(text);
+            
+            while (matcher.find()) {
+                String content = matcher.group(1).trim();
+                if (!content.isEmpty()) {
+                    contents.add(content);
+                }
             }
+            span.setAttribute("location.count", contents.size());
         }
         
         return contents;
@@ -1,17 +1,120 @@
 package com.aitravelplanner.Service.Impl;
 
+import com.aitravelplanner.Model.Coordinate;
+import com.aitravelplanner.Service.GazetteerService;
 import com.aitravelplanner.Service.MapService;
+import com.aitravelplanner.Util.CircuitBreaker;
+import com.aitravelplanner.Util.LogPayload;
+import com.aitravelplanner.Util.MicroBatcher;
+import com.aitravelplanner.Util.PolylineSimplifier;
+import com.aitravelplanner.Util.RequestContext;
+import com.aitravelplanner.Util.TokenBucket;
+import com.aitravelplanner.Util.Tracer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
 import java.lang.System;
 import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
 import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
 
 /**
  * 高德地图服务实现类
  */
+@Service
 public class MapServiceImpl implements MapService {
+
+    private static final Logger log = LoggerFactory.getLogger(MapServiceImpl.class);
+
+    /** 高德响应内容日志（DEBUG级别，按采样输出） */
+    private static final Logger PAYLOAD_LOG = LoggerFactory.getLogger("com.aitravelplanner.payload.amap");
+
+    /** 反向地理编码时本地地名库的最大匹配距离（米） */
+    private static final double GAZETTEER_REVERSE_RADIUS_METERS = 200;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /** 单次高德请求的连接和读取超时（毫秒），请求剩余时间更短时以剩余时间为准 */
+    private static final long HTTP_TIMEOUT_MS = 5000;
+
+    /** v3接口的状态字段，调用失败时为"0"（HTTP响应码仍为200） */
+    private static final Pattern AMAP_STATUS = Pattern.compile("\"status\"\\s*:\\s*\"(\\d+)\"");
+
+    /** 错误码：v3接口为infocode（成功时为10000），v4接口为errcode（成功时为0） */
+    private static final Pattern AMAP_ERROR_CODE = Pattern.compile("\"(?:infocode|errcode)\"\\s*:\\s*\"?(\\d+)");
+
+    @Autowired(required = false)
+    private GazetteerService gazetteer;
+
+    @Autowired
+    @Qualifier("amapCircuitBreaker")
+    private CircuitBreaker circuitBreaker;
+
+    /** 每秒最多发出的高德请求数（同一个Key的所有接口共用配额） */
+    @Value("${amap.rate-limit.qps:10}")
+    private double rateLimitQps;
+
+    @Value("${amap.rate-limit.burst:10}")
+    private int rateLimitBurst;
+
+    /** 等待限流令牌的最长时间，超过后放弃本次请求 */
+    @Value("${amap.rate-limit.max-wait-ms:2000}")
+    private long rateLimitMaxWaitMs;
+
+    /** 每次批量地理编码的最大地址数（高德上限为10） */
+    @Value("${amap.geocode.batch.max-size:10}")
+    private int geocodeBatchSize;
+
+    /** 地理编码请求的聚合窗口（毫秒） */
+    @Value("${amap.geocode.batch.linger-ms:10}")
+    private long geocodeLingerMs;
+
+    /** 同时进行的批量地理编码请求数 */
+    @Value("${amap.geocode.batch.concurrency:4}")
+    private int geocodeBatchConcurrency;
+
+    /** 路线多级细节的各级容差（米），第0级为0表示原始顶点 */
+    @Value("${amap.route.lod-tolerances-m:0,5,20,80,300}")
+    private double[] routeLodTolerances;
+
+    private TokenBucket rateLimiter;
+    private MicroBatcher<String, Coordinate> geocodeBatcher;
+
+    /**
+     * 创建高德请求限流器和地理编码批处理器
+     */
+    @PostConstruct
+    public void init() {
+        rateLimiter = new TokenBucket("amap", rateLimitQps, rateLimitBurst);
+        geocodeBatcher = new MicroBatcher<>("amap-geocode", Math.min(10, geocodeBatchSize), geocodeLingerMs,
+                geocodeBatchConcurrency, this::geoCodeBatch);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        geocodeBatcher.close();
+    }
     
     /**
      * 获取环境变量中名为MAP_API_KEY的高德地图API Key
@@ -22,137 +125,354 @@ public class MapServiceImpl implements MapService {
     }
     
     /**
-     * 实现地理编码服务，调用高德地图API将地址转换为坐标
+     * 实现地理编码服务，优先查询本地地名库，未命中时调用高德地图API将地址转换为坐标
+     * 并发的地理编码请求在聚合窗口内合并为批量请求，结果再分发给各个调用方
      * @param address 地址字符串
-     * @return 坐标信息字符串（格式：经度,纬度），转换失败返回null
+     * @return 坐标，转换失败返回null
      */
     @Override
-    public String geoCode(String address) {
-        String apiKey = getMapApiKey();
-        if (apiKey == null || apiKey.isEmpty()) {
-            System.err.println("高德地图API Key未设置");
+    public Coordinate geoCode(String address) {
+        if (address == null || address.trim().isEmpty()) {
+            log.warn("地址不能为空");
             return null;
         }
         
-        if (address == null || address.trim().isEmpty()) {
-            System.err.println("地址不能为空");
+        if (gazetteer != null) {
+            Coordinate localCoordinate = gazetteer.lookup(address);
+            if (localCoordinate != null) {
+                return localCoordinate;
+            }
+        }
+        
+        String apiKey = getMapApiKey();
+        if (apiKey == null || apiKey.isEmpty()) {
+            log.warn("高德地图API Key未设置");
             return null;
         }
         
         try {
-            // 构建高德地理编码API请求URL
-            String encodedAddress = java.net.URLEncoder.encode(address, "UTF-8");
-            String urlString = "https://restapi.amap.com/v3/geocode/geo?key=" + apiKey + "&address=" + encodedAddress;
-            
-            URL url = new URL(urlString);
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("GET");
-            connection.setConnectTimeout(5000);
-            connection.setReadTimeout(5000);
+            // 地址中含有批量分隔符"|"时单独请求，其余地址合并为批量请求
+            if (address.indexOf('|') >= 0) {
+                String encodedAddress = URLEncoder.encode(address, StandardCharsets.UTF_8);
+                String response = httpGet("https://restapi.amap.com/v3/geocode/geo?key=" + apiKey + "&address=" + encodedAddress, "地理编码");
+                return response == null ? null : parseGeocodeResponse(response);
+            }
             
-            int responseCode = connection.getResponseCode();
-            if (responseCode == 200) {
-                BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), "UTF-8"));
-                StringBuilder response = new StringBuilder();
-                String line;
-                
-                while ((line = reader.readLine()) != null) {
-                    response.append(line);
-                }
-                reader.close();
-                
-                // 解析高德API返回的JSON数据
-                return parseGeocodeResponse(response.toString());
-            } else {
-                System.err.println("高德地图API请求失败，响应码：" + responseCode);
-                return null;
+            // 等待批量结果的时间不超过请求的剩余时间
+            long timeout = RequestContext.timeoutFor("amap", Long.MAX_VALUE);
+            CompletableFuture<Coordinate> future = geocodeBatcher.submit(address.trim());
+            // 批量请求在聚合线程中发出，这里记录的是等待批量结果的时间
+            try (Tracer.Span span = Tracer.start("amap.geocode.batched", Tracer.Kind.CLIENT);
+                 RequestContext.Scope ignored = RequestContext.onCancel("amap", "batched", () -> future.cancel(false))) {
+                return future.get(timeout, TimeUnit.MILLISECONDS);
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
         } catch (Exception e) {
-            System.err.println("地理编码服务异常：" + e.getMessage());
+            log.atWarn().addKeyValue("address", address).log("地理编码服务异常：{}", e.getMessage());
             return null;
         }
     }
     
+    /**
+     * 批量地理编码，一次请求最多10个地址（batch=true，地址以"|"分隔），结果按地址顺序返回
+     * @param addresses 地址列表
+     * @return 地址到坐标的映射，未找到的地址不在结果中
+     * @throws IOException 请求失败
+     */
+    private Map<String, Coordinate> geoCodeBatch(List<String> addresses) throws IOException {
+        String apiKey = getMapApiKey();
+        String urlString = "https://restapi.amap.com/v3/geocode/geo?key=" + apiKey + "&batch=true&address="
+                + URLEncoder.encode(String.join("|", addresses), StandardCharsets.UTF_8);
+        String response = httpGet(urlString, "批量地理编码");
+        if (response == null) {
+            throw new IOException("高德批量地理编码请求失败");
+        }
+        
+        // 高德API返回格式示例：{"status":"1","count":"2","geocodes":[{"location":"116.480881,39.989410"},{"location":[]}]}
+        // 批量模式下每个地址对应一项，未找到的地址location为空数组
+        JsonNode geocodes = MAPPER.readTree(response).path("geocodes");
+        if (!geocodes.isArray() || geocodes.size() != addresses.size()) {
+            log.atWarn().addKeyValue("expected", addresses.size()).addKeyValue("actual", geocodes.size())
+                    .log("批量地理编码结果数与地址数不一致：{}", LogPayload.of(response));
+            return Map.of();
+        }
+        Map<String, Coordinate> results = new HashMap<>();
+        for (int i = 0; i < addresses.size(); i++) {
+            JsonNode location = geocodes.get(i).path("location");
+            Coordinate coordinate = location.isTextual() ? Coordinate.parse(location.textValue()) : null;
+            if (coordinate != null) {
+                results.put(addresses.get(i), coordinate);
+            }
+        }
+        return results;
+    }
+    
     /**
      * 解析高德地理编码API返回的JSON数据
      * @param response 高德API返回的JSON字符串
-     * @return 坐标信息字符串（格式：经度,纬度）
+     * @return 坐标，没有结果时返回null
      */
-    private String parseGeocodeResponse(String response) {
+    private Coordinate parseGeocodeResponse(String response) {
         try {
-            // 简单的JSON解析，提取location字段
+            // 简单的JSON解析，直接在响应文本上解析location字段，不截取子串
             // 高德API返回格式示例：{"status":"1","info":"OK","geocodes":[{"location":"116.480881,39.989410"}]}
-            if (response.contains("\"location\":")) {
-                int startIndex = response.indexOf("\"location\":\"") + 12;
+            int startIndex = response.indexOf("\"location\":\"");
+            if (startIndex >= 0) {
+                startIndex += 12;
+                int endIndex = response.indexOf('"', startIndex);
+                if (endIndex > startIndex) {
+                    return Coordinate.fromPacked(Coordinate.parsePacked(response, startIndex, endIndex));
+                }
+            }
+            return null;
+        } catch (Exception e) {
+            log.warn("解析地理编码响应失败：{}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 实现逆地理编码服务，优先查询本地地名库中最近的地点，未命中时调用高德地图API
+     * @param coordinate 坐标
+     * @return 地点名称或格式化地址，转换失败返回null
+     */
+    @Override
+    public String reverseGeoCode(Coordinate coordinate) {
+        if (coordinate == null) {
+            log.warn("坐标不能为空");
+            return null;
+        }
+        
+        if (gazetteer != null && gazetteer.isLoaded()) {
+            String localName = gazetteer.reverseLookup(coordinate, GAZETTEER_REVERSE_RADIUS_METERS);
+            if (localName != null) {
+                return localName;
+            }
+        }
+        
+        String apiKey = getMapApiKey();
+        if (apiKey == null || apiKey.isEmpty()) {
+            log.warn("高德地图API Key未设置");
+            return null;
+        }
+        
+        try {
+            // 构建高德逆地理编码API请求URL
+            String urlString = coordinate.appendTo(new StringBuilder(96)
+                    .append("https://restapi.amap.com/v3/geocode/regeo?key=").append(apiKey).append("&location=")).toString();
+            
+            String response = httpGet(urlString, "逆地理编码");
+            if (response == null) {
+                return null;
+            }
+            
+            // 高德API返回格式示例：{"status":"1","regeocode":{"formatted_address":"北京市朝阳区..."}}
+            int startIndex = response.indexOf("\"formatted_address\":\"");
+            if (startIndex >= 0) {
+                startIndex += 21;
                 int endIndex = response.indexOf("\"", startIndex);
-                if (startIndex > 12 && endIndex > startIndex) {
+                if (endIndex > startIndex) {
                     return response.substring(startIndex, endIndex);
                 }
             }
             return null;
         } catch (Exception e) {
-            System.err.println("解析地理编码响应失败：" + e.getMessage());
+            log.atWarn().addKeyValue("coordinate", coordinate).log("逆地理编码服务异常：{}", e.getMessage());
             return null;
         }
     }
 
     /**
      * 实现步行路线规划服务，调用高德地图API进行步行路线规划
-     * @param origin 起点经纬度字符串（格式：经度,纬度，如："118.781664,32.057561"）
-     * @param destination 终点经纬度字符串（格式：经度,纬度，如："118.781664,32.057561"）
+     * @param origin 起点坐标
+     * @param destination 终点坐标
      * @return 结构化路线数据Map对象，规划失败返回null
      */
     @Override
-    public Map<String, Object> planWalkingRoute(String origin, String destination) {
+    public Map<String, Object> planWalkingRoute(Coordinate origin, Coordinate destination) {
         String apiKey = getMapApiKey();
         if (apiKey == null || apiKey.isEmpty()) {
-            System.err.println("高德地图API Key未设置");
+            log.warn("高德地图API Key未设置");
             return null;
         }
         
-        if (origin == null || origin.trim().isEmpty() || destination == null || destination.trim().isEmpty()) {
-            System.err.println("坐标参数不能为空");
-            return null;
-        }
-        
-        // 验证经纬度格式
-        if (!isValidCoordinate(origin) || !isValidCoordinate(destination)) {
-            System.err.println("坐标格式不正确，应为\"经度,纬度\"格式，如：\"118.781664,32.057561\"");
+        if (origin == null || destination == null) {
+            log.warn("坐标参数不能为空");
             return null;
         }
         
         try {
             // 构建高德步行路线规划API请求URL
-            String urlString = "https://restapi.amap.com/v3/direction/walking?key=" + apiKey + 
-                             "&origin=" + origin + "&destination=" + destination;
+            String urlString = routeUrl("https://restapi.amap.com/v3/direction/walking?key=", apiKey, origin, destination)
+                    .toString();
             
-            URL url = new URL(urlString);
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("GET");
-            connection.setConnectTimeout(5000);
-            connection.setReadTimeout(5000);
+            String response = httpGet(urlString, "步行路线规划");
+            if (response == null) {
+                return null;
+            }
             
-            int responseCode = connection.getResponseCode();
-            if (responseCode == 200) {
-                BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), "UTF-8"));
-                StringBuilder response = new StringBuilder();
-                String line;
-                
-                while ((line = reader.readLine()) != null) {
-                    response.append(line);
+            PAYLOAD_LOG.atDebug().addKeyValue("origin", origin).addKeyValue("destination", destination)
+                    .log("步行路线规划响应：{}", LogPayload.of(response));
+            // 解析高德API返回的JSON数据
+            return parseWalkingRouteResponse(response);
+        } catch (Exception e) {
+            log.atWarn().addKeyValue("origin", origin).addKeyValue("destination", destination)
+                    .log("步行路线规划服务异常：{}", e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * 按出行方式规划路线，只取高德返回的首选方案，整理为统一的路线概要
+     * 步行复用步行路线规划；公交未指定城市时用一次批量逆地理编码查询起终点的citycode
+     * @param mode 出行方式：walking、transit、riding、driving
+     * @param origin 起点坐标
+     * @param destination 终点坐标
+     * @param city 公交规划所在城市，为null时按坐标查询
+     * @return 路线概要，没有可行方案或规划失败返回null
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> planRoute(String mode, Coordinate origin, Coordinate destination, String city) {
+        String apiKey = getMapApiKey();
+        if (apiKey == null || apiKey.isEmpty()) {
+            log.warn("高德地图API Key未设置");
+            return null;
+        }
+        if (origin == null || destination == null) {
+            log.warn("坐标参数不能为空");
+            return null;
+        }
+        
+        try {
+            switch (mode) {
+                case "walking": {
+                    Map<String, Object> walking = planWalkingRoute(origin, destination);
+                    List<Object> paths = walking == null ? null : (List<Object>) walking.get("paths");
+                    if (paths == null || paths.isEmpty()) {
+                        return null;
+                    }
+                    Map<String, Object> path = (Map<String, Object>) paths.get(0);
+                    return routeSummary(mode, path.get("distance"), path.get("duration"), null, path);
                 }
-                reader.close();
-                
-                System.out.println("步行路线规划响应：" + response.toString());
-                System.out.println("分割线");
-                // 解析高德API返回的JSON数据
-                return parseWalkingRouteResponse(response.toString());
-            } else {
-                System.err.println("高德地图步行路线规划API请求失败，响应码：" + responseCode);
-                return null;
+                case "riding": {
+                    // 高德API返回格式示例：{"errcode":0,"data":{"paths":[{"distance":1234,"duration":300,"steps":[...]}]}}
+                    String response = httpGet(routeUrl("https://restapi.amap.com/v4/direction/bicycling?key=", apiKey, origin, destination)
+                            .toString(), "骑行路线规划");
+                    JsonNode path = response == null ? null : MAPPER.readTree(response).path("data").path("paths").path(0);
+                    if (path == null || !path.isObject()) {
+                        return null;
+                    }
+                    return routeSummary(mode, path.path("distance").asText(), path.path("duration").asText(), null,
+                            MAPPER.convertValue(path, Map.class));
+                }
+                case "driving": {
+                    // 高德API返回格式示例：{"status":"1","route":{"taxi_cost":"23","paths":[{"distance":"5000","duration":"900",...}]}}
+                    String response = httpGet(routeUrl("https://restapi.amap.com/v3/direction/driving?key=", apiKey, origin, destination)
+                            .toString(), "驾车路线规划");
+                    JsonNode route = response == null ? null : MAPPER.readTree(response).path("route");
+                    JsonNode path = route == null ? null : route.path("paths").path(0);
+                    if (path == null || !path.isObject()) {
+                        return null;
+                    }
+                    return routeSummary(mode, path.path("distance").asText(), path.path("duration").asText(),
+                            route.path("taxi_cost").asText(), MAPPER.convertValue(path, Map.class));
+                }
+                case "transit": {
+                    String[] cities = city == null || city.trim().isEmpty()
+                            ? cityCodesOf(apiKey, origin, destination)
+                            : new String[] {city.trim(), city.trim()};
+                    if (cities == null) {
+                        return null;
+                    }
+                    // 高德API返回格式示例：{"status":"1","route":{"transits":[{"cost":"2","duration":"1800","distance":"6000",...}]}}
+                    // 距离太近或没有公交线路时transits为空
+                    String response = httpGet(routeUrl("https://restapi.amap.com/v3/direction/transit/integrated?key=",
+                            apiKey, origin, destination)
+                            .append("&city=").append(URLEncoder.encode(cities[0], StandardCharsets.UTF_8))
+                            .append("&cityd=").append(URLEncoder.encode(cities[1], StandardCharsets.UTF_8)).toString(), "公交路线规划");
+                    JsonNode transit = response == null ? null : MAPPER.readTree(response).path("route").path("transits").path(0);
+                    if (transit == null || !transit.isObject()) {
+                        return null;
+                    }
+                    return routeSummary(mode, transit.path("distance").asText(), transit.path("duration").asText(),
+                            transit.path("cost").asText(), MAPPER.convertValue(transit, Map.class));
+                }
+                default:
+                    log.warn("不支持的出行方式：{}", mode);
+                    return null;
             }
         } catch (Exception e) {
-            System.err.println("步行路线规划服务异常：" + e.getMessage());
+            log.atWarn().addKeyValue("mode", mode).addKeyValue("origin", origin).addKeyValue("destination", destination)
+                    .log("路线规划服务异常：{}", e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * 用一次批量逆地理编码查询起终点所在城市的citycode
+     * @return 起点和终点的citycode，查询失败返回null
+     */
+    private String[] cityCodesOf(String apiKey, Coordinate origin, Coordinate destination) throws IOException {
+        StringBuilder url = new StringBuilder(128).append("https://restapi.amap.com/v3/geocode/regeo?key=").append(apiKey)
+                .append("&batch=true&location=");
+        destination.appendTo(origin.appendTo(url).append('|'));
+        String response = httpGet(url.toString(), "逆地理编码");
+        if (response == null) {
+            return null;
+        }
+        // 高德API返回格式示例：{"status":"1","regeocodes":[{"addressComponent":{"citycode":"010",...}},...]}
+        JsonNode regeocodes = MAPPER.readTree(response).path("regeocodes");
+        String originCity = regeocodes.path(0).path("addressComponent").path("citycode").asText("");
+        String destinationCity = regeocodes.path(1).path("addressComponent").path("citycode").asText("");
+        if (originCity.isEmpty() || destinationCity.isEmpty()) {
+            log.atWarn().addKeyValue("origin", origin).addKeyValue("destination", destination)
+                    .log("查询公交规划城市失败：{}", LogPayload.of(response));
+            return null;
+        }
+        return new String[] {originCity, destinationCity};
+    }
+    
+    /**
+     * 拼接路线规划请求URL：接口地址、Key、起点和终点，坐标直接按定点数字追加
+     */
+    private static StringBuilder routeUrl(String endpoint, String apiKey, Coordinate origin, Coordinate destination) {
+        StringBuilder url = new StringBuilder(endpoint.length() + apiKey.length() + 64).append(endpoint).append(apiKey);
+        destination.appendTo(origin.appendTo(url.append("&origin=")).append("&destination="));
+        return url;
+    }
+    
+    /**
+     * 整理路线概要，高德返回的距离、时间和费用为字符串，无法解析的费用不返回
+     */
+    private static Map<String, Object> routeSummary(String mode, Object distance, Object duration, String cost,
+                                                    Map<String, Object> route) {
+        Double parsedDistance = parseNumber(distance);
+        Double parsedDuration = parseNumber(duration);
+        if (parsedDuration == null) {
+            return null;
+        }
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("mode", mode);
+        summary.put("distance", parsedDistance == null ? null : Math.round(parsedDistance));
+        summary.put("duration", Math.round(parsedDuration));
+        Double parsedCost = parseNumber(cost);
+        if (parsedCost != null) {
+            summary.put("cost", parsedCost);
+        }
+        summary.put("route", route);
+        return summary;
+    }
+    
+    private static Double parseNumber(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        try {
+            return value == null || value.toString().isEmpty() ? null : Double.parseDouble(value.toString());
+        } catch (NumberFormatException e) {
             return null;
         }
     }
@@ -166,7 +486,7 @@ public class MapServiceImpl implements MapService {
         try {
             // 使用JSON库解析响应为结构化数据
             if (response == null || response.trim().isEmpty()) {
-                System.err.println("步行路线规划响应为空");
+                log.warn("步行路线规划响应为空");
                 return null;
             }
             
@@ -176,11 +496,11 @@ public class MapServiceImpl implements MapService {
                 // 这里使用简单的JSON解析，实际项目中建议使用JSON库
                 return parseJsonToMap(response);
             } else {
-                System.err.println("步行路线规划响应格式不正确：" + response);
+                log.warn("步行路线规划响应格式不正确：{}", LogPayload.of(response));
                 return null;
             }
         } catch (Exception e) {
-            System.err.println("解析步行路线规划响应失败：" + e.getMessage());
+            log.warn("解析步行路线规划响应失败：{}", e.getMessage());
             return null;
         }
     }
@@ -198,14 +518,14 @@ public class MapServiceImpl implements MapService {
             
             // 检查status是否为1（成功）
             if (!"1".equals(fullResponse.get("status"))) {
-                System.err.println("高德API返回失败状态：" + fullResponse.get("info"));
+                log.warn("高德API返回失败状态：{}", fullResponse.get("info"));
                 return null;
             }
             
             // 提取route数据
             Map<String, Object> routeData = (Map<String, Object>) fullResponse.get("route");
             if (routeData == null) {
-                System.err.println("路由数据为空");
+                log.warn("路由数据为空");
                 return null;
             }
             
@@ -214,46 +534,162 @@ public class MapServiceImpl implements MapService {
             result.put("status", fullResponse.get("status"));
             result.put("info", fullResponse.get("info"));
             result.put("paths", routeData.get("paths"));
+            result.put("lod", buildLevelsOfDetail(routeData.get("paths")));
             
             return result;
         } catch (Exception e) {
-            System.err.println("JSON解析失败：" + e.getMessage());
+            log.warn("JSON解析失败：{}", e.getMessage());
             return null;
         }
     }
     
     /**
-     * 验证经纬度坐标格式
-     * @param coordinate 经纬度字符串（格式：经度,纬度）
-     * @return 格式正确返回true，否则返回false
+     * 把第一条路径各步骤的折线连成整条路线，按配置的容差预先生成多级细节，
+     * 前端按当前缩放级别选择一级绘制，低缩放级别下不必传输和绘制每个顶点
+     * @param paths 高德返回的路径列表
+     * @return 各级细节（见PolylineSimplifier.buildLevels），没有折线数据时返回null
      */
-    private boolean isValidCoordinate(String coordinate) {
-        if (coordinate == null || coordinate.trim().isEmpty()) {
-            return false;
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> buildLevelsOfDetail(Object paths) {
+        if (!(paths instanceof List) || ((List<?>) paths).isEmpty() || !(((List<?>) paths).get(0) instanceof Map)) {
+            return null;
         }
-        
-        String[] parts = coordinate.split(",");
-        if (parts.length != 2) {
-            return false;
+        Object steps = ((Map<String, Object>) ((List<?>) paths).get(0)).get("steps");
+        if (!(steps instanceof List)) {
+            return null;
+        }
+        List<String> points = new ArrayList<>();
+        for (Object step : (List<?>) steps) {
+            Object polyline = step instanceof Map ? ((Map<String, Object>) step).get("polyline") : null;
+            if (!(polyline instanceof String) || ((String) polyline).isEmpty()) {
+                continue;
+            }
+            for (String point : ((String) polyline).split(";")) {
+                // 相邻步骤首尾的顶点相同，只保留一个
+                if (points.isEmpty() || !points.get(points.size() - 1).equals(point)) {
+                    points.add(point);
+                }
+            }
+        }
+        return points.isEmpty() ? null : PolylineSimplifier.buildLevels(points, routeLodTolerances);
+    }
+    
+    /**
+     * 发送GET请求到高德API并读取响应内容
+     * 当前请求已被取消或剩余时间不足时跳过调用，调用过程中被取消时断开连接；
+     * 请求前按Key的QPS配额获取令牌，等待超过amap.rate-limit.max-wait-ms或请求剩余时间时放弃；
+     * 调用结果和耗时计入高德熔断器，熔断打开时直接返回null；
+     * 每次调用（含等待限流令牌的时间）记录为一个名为"amap 接口路径"的span
+     * @param urlString 请求URL
+     * @param apiName 接口名称，用于错误信息
+     * @return 响应内容，响应码不是200、响应体中的状态为失败、超过限流配额或熔断打开时返回null
+     */
+    private String httpGet(String urlString, String apiName) throws IOException {
+        RequestContext.checkCancelled("amap");
+        URL url = new URL(urlString);
+        // 熔断打开时不再请求高德，由缓存层提供过期数据
+        if (!circuitBreaker.tryAcquire()) {
+            log.atDebug().addKeyValue("api", apiName).log("高德地图熔断中，跳过{}API请求", apiName);
+            return null;
         }
         
+        boolean reported = false;
+        int timeout = 0;
+        long start = 0;
+        Tracer.Span span = Tracer.start("amap " + url.getPath(), Tracer.Kind.CLIENT).setAttribute("amap.api", apiName);
         try {
-            double longitude = Double.parseDouble(parts[0].trim());
-            double latitude = Double.parseDouble(parts[1].trim());
-            
-            // 验证经度范围（-180到180）
-            if (longitude < -180 || longitude > 180) {
-                return false;
+            boolean permitted;
+            try (Tracer.Span ignored = Tracer.start("amap.rate_limit")) {
+                permitted = rateLimiter.tryAcquire(RequestContext.timeoutFor("amap", rateLimitMaxWaitMs));
             }
-            
-            // 验证纬度范围（-90到90）
-            if (latitude < -90 || latitude > 90) {
-                return false;
+            if (!permitted) {
+                span.setError("超过限流配额");
+                log.atWarn().addKeyValue("api", apiName).log("高德地图{}API请求超过限流配额，已放弃", apiName);
+                return null;
             }
             
-            return true;
-        } catch (NumberFormatException e) {
-            return false;
+            // 连接和读取超时不超过请求的剩余时间
+            timeout = (int) RequestContext.timeoutFor("amap", HTTP_TIMEOUT_MS);
+            start = System.nanoTime();
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setRequestMethod("GET");
+            connection.setConnectTimeout(timeout);
+            connection.setReadTimeout(timeout);
+            
+            try (RequestContext.Scope ignored = RequestContext.onCancel("amap", connection::disconnect)) {
+                int responseCode = connection.getResponseCode();
+                span.setAttribute("http.status_code", responseCode);
+                if (responseCode != 200) {
+                    span.setError("HTTP " + responseCode);
+                    if (responseCode >= 500 || responseCode == 429) {
+                        circuitBreaker.onFailure(System.nanoTime() - start);
+                    } else {
+                        circuitBreaker.onSuccess(System.nanoTime() - start);
+                    }
+                    reported = true;
+                    log.atWarn().addKeyValue("api", apiName).addKeyValue("status", responseCode)
+                            .log("高德地图{}API请求失败，响应码：{}", apiName, responseCode);
+                    return null;
+                }
+                
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), "UTF-8"))) {
+                    StringBuilder response = new StringBuilder();
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        response.append(line);
+                    }
+                    String errorCode = amapErrorCode(response);
+                    if (errorCode != null) {
+                        // 高德在响应体中返回的错误：请求参数错误与高德是否健康无关，配额用尽和服务端错误计入熔断统计
+                        span.setError("infocode " + errorCode);
+                        if (errorCode.startsWith("2") && !"20003".equals(errorCode)) {
+                            circuitBreaker.onSuccess(System.nanoTime() - start);
+                        } else {
+                            circuitBreaker.onFailure(System.nanoTime() - start);
+                        }
+                        reported = true;
+                        log.atWarn().addKeyValue("api", apiName).addKeyValue("infocode", errorCode)
+                                .log("高德地图{}API返回错误：{}", apiName, LogPayload.of(response));
+                        return null;
+                    }
+                    circuitBreaker.onSuccess(System.nanoTime() - start);
+                    reported = true;
+                    return response.toString();
+                }
+            }
+        } catch (IOException e) {
+            // 请求被取消断开的连接、因请求剩余时间缩短的超时与高德是否健康无关，不计入熔断统计
+            RequestContext context = RequestContext.current();
+            boolean cancelled = context != null && context.isCancelled();
+            boolean budgetTimeout = e instanceof SocketTimeoutException && timeout < HTTP_TIMEOUT_MS;
+            if (!cancelled && !budgetTimeout) {
+                circuitBreaker.onFailure(System.nanoTime() - start);
+                reported = true;
+            }
+            span.setError(e.getMessage());
+            throw e;
+        } finally {
+            if (!reported) {
+                circuitBreaker.onIgnored();
+            }
+            span.close();
+        }
+    }
+
+    /**
+     * 取出高德在响应体中返回的错误码，v3接口以status判断，v4接口以errcode判断
+     * 两个字段都位于响应的顶层，只取第一次出现的值
+     * @param response 响应内容
+     * @return 错误码，调用成功返回null；失败但没有错误码时返回空字符串
+     */
+    static String amapErrorCode(CharSequence response) {
+        Matcher code = AMAP_ERROR_CODE.matcher(response);
+        String errorCode = code.find() ? code.group(1) : null;
+        Matcher status = AMAP_STATUS.matcher(response);
+        boolean failed = status.find() ? "0".equals(status.group(1)) : errorCode != null && !"0".equals(errorCode);
+        if (!failed) {
+            return null;
         }
+        return errorCode == null ? "" : errorCode;
     }
 }
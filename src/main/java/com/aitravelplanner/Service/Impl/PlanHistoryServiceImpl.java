@@ -0,0 +1,219 @@
+package com.aitravelplanner.Service.Impl;
+
+import com.aitravelplanner.Model.PlanHistoryEntry;
+import com.aitravelplanner.Model.PlanHistoryPage;
+import com.aitravelplanner.Model.PlanHistorySummary;
+import com.aitravelplanner.Service.PlanHistoryService;
+import com.aitravelplanner.Util.WriteBehindQueue;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * 旅行计划历史记录服务实现类
+ * 保存时记录先进入有界写入缓冲区，后台按批次在一个事务中批量INSERT写入（整批失败时由写入队列逐条重试），
+ * 服务关闭时把缓冲区全部写完；
+ * 列表按 (user_id, created_at, id) 索引做键集分页，翻到第几页都只扫描一页的行，并且只读取摘要列，
+ * 不读取完整计划内容。查看第一页前先刷新缓冲区，保存后立即查看也能看到刚保存的记录。
+ */
+@Service
+public class PlanHistoryServiceImpl implements PlanHistoryService {
+
+    private static final Logger log = LoggerFactory.getLogger(PlanHistoryServiceImpl.class);
+
+    private static final int TITLE_MAX_CHARS = 60;
+    private static final int PREVIEW_MAX_CHARS = 120;
+
+    /** 计划正文中的HTML标签和地点/时间标记 */
+    private static final Pattern MARKUP = Pattern.compile("<[^>]*>|[【】$#*]");
+    private static final Pattern BLANKS = Pattern.compile("[ \\t\\x0B\\f\\r]+");
+
+    private static final String INSERT_SQL = "INSERT INTO plan_history "
+            + "(user_id, created_at, destination, days, title, preview, plan_data) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String SUMMARY_COLUMNS = "SELECT id, created_at, destination, days, title, preview FROM plan_history ";
+
+    private static final String FIRST_PAGE_SQL = SUMMARY_COLUMNS
+            + "WHERE user_id = ? ORDER BY created_at DESC, id DESC LIMIT ?";
+
+    private static final String NEXT_PAGE_SQL = SUMMARY_COLUMNS
+            + "WHERE user_id = ? AND (created_at, id) < (?, ?) ORDER BY created_at DESC, id DESC LIMIT ?";
+
+    private static final String DETAIL_SQL = "SELECT id, user_id, created_at, destination, days, title, preview, plan_data "
+            + "FROM plan_history WHERE id = ? AND user_id = ?";
+
+    private static final RowMapper<PlanHistorySummary> SUMMARY_MAPPER = (rs, rowNum) -> {
+        PlanHistorySummary summary = new PlanHistorySummary();
+        summary.setId(rs.getLong("id"));
+        summary.setCreatedAt(rs.getTimestamp("created_at").toInstant());
+        summary.setDestination(rs.getString("destination"));
+        summary.setDays((Integer) rs.getObject("days"));
+        summary.setTitle(rs.getString("title"));
+        summary.setPreview(rs.getString("preview"));
+        return summary;
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    /** 写入缓冲区容量，满了以后保存请求最多等待offer-wait-ms */
+    @Value("${travel.history.buffer-capacity:1000}")
+    private int bufferCapacity;
+
+    /** 每次批量写入的最大记录数 */
+    @Value("${travel.history.batch-size:100}")
+    private int batchSize;
+
+    /** 定时写入间隔（毫秒） */
+    @Value("${travel.history.flush-interval-ms:500}")
+    private long flushIntervalMs;
+
+    /** 缓冲区满时保存请求的最长等待时间（毫秒） */
+    @Value("${travel.history.offer-wait-ms:200}")
+    private long offerWaitMs;
+
+    @Value("${travel.history.page.max-size:100}")
+    private int maxPageSize;
+
+    private WriteBehindQueue<PlanHistoryEntry> writeQueue;
+
+    public PlanHistoryServiceImpl(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void init() {
+        writeQueue = new WriteBehindQueue<>("plan-history", bufferCapacity, batchSize, flushIntervalMs, this::insertBatch);
+    }
+
+    /**
+     * 关闭时把缓冲区中的记录全部写入
+     */
+    @PreDestroy
+    public void shutdown() {
+        writeQueue.close();
+    }
+
+    @Override
+    public boolean save(String userId, String planData, String destination, Integer days) {
+        String text = BLANKS.matcher(MARKUP.matcher(planData).replaceAll("")).replaceAll(" ").trim();
+        String firstLine = text.lines().map(String::trim).filter(line -> !line.isEmpty()).findFirst().orElse("");
+
+        PlanHistoryEntry entry = new PlanHistoryEntry();
+        entry.setUserId(userId);
+        // 与数据库TIMESTAMP的精度一致，游标中的时间可以精确比较
+        entry.setCreatedAt(Instant.now().truncatedTo(ChronoUnit.MILLIS));
+        entry.setDestination(destination);
+        entry.setDays(days);
+        entry.setTitle(truncate(firstLine, TITLE_MAX_CHARS));
+        entry.setPreview(truncate(text.replace('\n', ' '), PREVIEW_MAX_CHARS));
+        entry.setPlanData(planData);
+        return writeQueue.offer(entry, offerWaitMs);
+    }
+
+    /**
+     * 在一个事务中批量写入，失败时整批回滚，写入队列逐条重试时不会重复写入已成功的行
+     */
+    private void insertBatch(List<PlanHistoryEntry> batch) {
+        transactionTemplate.executeWithoutResult(status ->
+                jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (statement, entry) -> {
+                    statement.setString(1, entry.getUserId());
+                    statement.setTimestamp(2, Timestamp.from(entry.getCreatedAt()));
+                    statement.setString(3, entry.getDestination());
+                    statement.setObject(4, entry.getDays());
+                    statement.setString(5, entry.getTitle());
+                    statement.setString(6, entry.getPreview());
+                    statement.setString(7, entry.getPlanData());
+                }));
+    }
+
+    @Override
+    public PlanHistoryPage list(String userId, String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, maxPageSize));
+        List<PlanHistorySummary> rows;
+        if (cursor == null || cursor.isEmpty()) {
+            flushPending();
+            rows = jdbcTemplate.query(FIRST_PAGE_SQL, SUMMARY_MAPPER, userId, pageSize + 1);
+        } else {
+            Object[] position = decodeCursor(cursor);
+            rows = jdbcTemplate.query(NEXT_PAGE_SQL, SUMMARY_MAPPER, userId, position[0], position[1], pageSize + 1);
+        }
+
+        // 多查一行判断是否还有下一页
+        PlanHistoryPage page = new PlanHistoryPage();
+        if (rows.size() > pageSize) {
+            rows = new ArrayList<>(rows.subList(0, pageSize));
+            PlanHistorySummary last = rows.get(pageSize - 1);
+            page.setNextCursor(encodeCursor(last.getCreatedAt(), last.getId()));
+        }
+        page.setItems(rows);
+        return page;
+    }
+
+    @Override
+    public PlanHistoryEntry get(String userId, long id) {
+        List<PlanHistoryEntry> rows = jdbcTemplate.query(DETAIL_SQL, (rs, rowNum) -> {
+            PlanHistoryEntry entry = new PlanHistoryEntry();
+            entry.setId(rs.getLong("id"));
+            entry.setUserId(rs.getString("user_id"));
+            entry.setCreatedAt(rs.getTimestamp("created_at").toInstant());
+            entry.setDestination(rs.getString("destination"));
+            entry.setDays((Integer) rs.getObject("days"));
+            entry.setTitle(rs.getString("title"));
+            entry.setPreview(rs.getString("preview"));
+            entry.setPlanData(rs.getString("plan_data"));
+            return entry;
+        }, id, userId);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    private void flushPending() {
+        try {
+            writeQueue.flush();
+        } catch (Exception e) {
+            log.warn("写入历史记录缓冲区失败，列表可能缺少最近保存的计划：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 游标为上一页最后一条记录的 "生成时间毫秒数:ID"，Base64URL编码
+     */
+    private static String encodeCursor(Instant createdAt, long id) {
+        String raw = createdAt.toEpochMilli() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Object[] decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            return new Object[] {
+                    new Timestamp(Long.parseLong(raw.substring(0, separator))),
+                    Long.parseLong(raw.substring(separator + 1))
+            };
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("分页游标格式不正确");
+        }
+    }
+
+    private static String truncate(String text, int maxChars) {
+        return text.length() <= maxChars ? text : text.substring(0, maxChars) + "…";
+    }
+}
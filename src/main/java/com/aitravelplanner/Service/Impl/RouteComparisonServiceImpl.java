@@ -0,0 +1,183 @@
+package com.aitravelplanner.Service.Impl;
+
+import com.aitravelplanner.Model.Coordinate;
+import com.aitravelplanner.Service.MapService;
+import com.aitravelplanner.Service.RouteComparisonService;
+import com.aitravelplanner.Util.RequestContext;
+import com.aitravelplanner.Util.Tracer;
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 路线对比服务实现类
+ * 起终点只做一次地理编码（两端并发提交，会合并到同一个批量请求），之后各出行方式的路线规划并发执行，
+ * 共用一个从请求开始计算的截止时间（不晚于请求本身的截止时间）。截止时间到达时直接返回已完成的方式，未完成的方式取消其上游调用，
+ * 总耗时约为完成的方式中最慢的一个，而不是所有方式之和。
+ * 指标：route.compare.modes（按出行方式和结果ok/late/failed计数）。
+ */
+@Service
+public class RouteComparisonServiceImpl implements RouteComparisonService {
+
+    private static final Logger log = LoggerFactory.getLogger(RouteComparisonServiceImpl.class);
+
+    private final MapService mapService;
+    private final ExecutorService routeExecutor;
+
+    /** 从请求开始计算的截止时间（毫秒），包含地理编码 */
+    @Value("${travel.route.compare.deadline-ms:3000}")
+    private long deadlineMs;
+
+    /** 未指定时对比的出行方式 */
+    @Value("${travel.route.compare.modes:walking,transit,riding,driving}")
+    private List<String> defaultModes;
+
+    public RouteComparisonServiceImpl(MapService mapService, @Qualifier("routeExecutor") ExecutorService routeExecutor) {
+        this.mapService = mapService;
+        this.routeExecutor = routeExecutor;
+    }
+
+    @Override
+    public List<Coordinate> resolveEndpoints(String origin, String destination) {
+        return resolveEndpoints(origin, destination, requestDeadline(Long.MAX_VALUE));
+    }
+
+    @Override
+    public Map<String, Object> compareRoutes(String origin, String destination, String city, List<String> modes) {
+        long start = System.nanoTime();
+        long deadline = requestDeadline(deadlineMs);
+        List<String> selectedModes = modes == null || modes.isEmpty() ? defaultModes : modes;
+
+        // 1. 起终点并发地理编码，已经是坐标的直接使用
+        List<Coordinate> endpoints = resolveEndpoints(origin, destination, deadline);
+        Coordinate originCoord = endpoints.get(0);
+        Coordinate destCoord = endpoints.get(1);
+
+        // 2. 各出行方式并发规划，每个方式有自己的请求上下文（继承请求的截止时间），截止时可以单独取消；整个请求取消时一起取消
+        RequestContext parent = RequestContext.current();
+        Tracer.Span span = Tracer.current();
+        Map<String, RequestContext> contexts = new LinkedHashMap<>();
+        Map<String, CompletableFuture<Map<String, Object>>> futures = new LinkedHashMap<>();
+        for (String mode : selectedModes) {
+            RequestContext context = parent == null ? new RequestContext() : parent.child();
+            contexts.put(mode, context);
+            futures.put(mode, CompletableFuture.supplyAsync(() -> {
+                try (RequestContext.Scope ignored = context.attach(); Tracer.Scope traced = Tracer.attach(span)) {
+                    return mapService.planRoute(mode, originCoord, destCoord, city);
+                }
+            }, routeExecutor));
+        }
+        try (RequestContext.Scope ignored = RequestContext.onCancel("amap",
+                () -> contexts.values().forEach(context -> context.cancel(parent.getCancelReason())))) {
+            CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0]))
+                    .get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            // 超时的方式在下面取消，失败的方式按失败返回
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // 3. 收集截止时间前完成的方式，按用时排序
+        List<Map<String, Object>> routes = new ArrayList<>();
+        List<String> late = new ArrayList<>();
+        List<String> failed = new ArrayList<>();
+        for (Map.Entry<String, CompletableFuture<Map<String, Object>>> entry : futures.entrySet()) {
+            String mode = entry.getKey();
+            CompletableFuture<Map<String, Object>> future = entry.getValue();
+            if (!future.isDone()) {
+                contexts.get(mode).cancel("deadline");
+                late.add(mode);
+                Metrics.counter("route.compare.modes", "mode", mode, "result", "late").increment();
+                continue;
+            }
+            Map<String, Object> route = future.isCompletedExceptionally() ? null : future.join();
+            if (route == null) {
+                failed.add(mode);
+                Metrics.counter("route.compare.modes", "mode", mode, "result", "failed").increment();
+            } else {
+                routes.add(route);
+                Metrics.counter("route.compare.modes", "mode", mode, "result", "ok").increment();
+            }
+        }
+        routes.sort(Comparator.comparingLong(route -> ((Number) route.get("duration")).longValue()));
+
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (!late.isEmpty()) {
+            log.atInfo().addKeyValue("late", late).addKeyValue("elapsedMs", elapsedMs)
+                    .log("路线对比在截止时间前未完成的出行方式已取消");
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("routes", routes);
+        result.put("late", late);
+        result.put("failed", failed);
+        result.put("originCoordinate", originCoord.toString());
+        result.put("destinationCoordinate", destCoord.toString());
+        result.put("elapsedMs", elapsedMs);
+        return result;
+    }
+
+    /**
+     * 截止时间（System.nanoTime）：从现在起的limitMs与当前请求的剩余时间取较早者
+     */
+    private static long requestDeadline(long limitMs) {
+        RequestContext context = RequestContext.current();
+        long budgetMs = Math.min(limitMs, context == null ? Long.MAX_VALUE : context.remainingMillis());
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.min(budgetMs, TimeUnit.DAYS.toMillis(1)));
+    }
+
+    private List<Coordinate> resolveEndpoints(String origin, String destination, long deadline) {
+        CompletableFuture<Coordinate> originFuture = resolveCoordinate(origin);
+        CompletableFuture<Coordinate> destinationFuture = resolveCoordinate(destination);
+        Coordinate originCoord = await(originFuture, deadline);
+        if (originCoord == null) {
+            destinationFuture.cancel(false);
+            throw new IllegalArgumentException("起点地址编码失败: " + origin);
+        }
+        Coordinate destCoord = await(destinationFuture, deadline);
+        if (destCoord == null) {
+            throw new IllegalArgumentException("终点地址编码失败: " + destination);
+        }
+        return List.of(originCoord, destCoord);
+    }
+
+    /**
+     * 坐标直接返回，地点名称提交到线程池做地理编码
+     */
+    private CompletableFuture<Coordinate> resolveCoordinate(String location) {
+        Coordinate coordinate = Coordinate.parse(location);
+        if (coordinate != null) {
+            return CompletableFuture.completedFuture(coordinate);
+        }
+        return CompletableFuture.supplyAsync(() -> mapService.geoCode(location), RequestContext.propagating(routeExecutor));
+    }
+
+    /**
+     * 等待结果到截止时间，超时、失败或被中断时返回null
+     */
+    private static Coordinate await(CompletableFuture<Coordinate> future, long deadline) {
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (TimeoutException | ExecutionException e) {
+            future.cancel(false);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.aitravelplanner.Service.Impl;
+
+import com.aitravelplanner.Service.AuthService;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基于Supabase访问令牌（JWT）的登录校验
+ * 配置了travel.auth.supabase.jwt-secret（项目的JWT Secret）时在本地校验HS256签名；
+ * 否则调用travel.auth.supabase.url的 /auth/v1/user 接口校验（适用于使用非对称签名密钥的项目），
+ * 校验通过的令牌按摘要缓存到过期时间，同一令牌的后续请求不再访问Supabase。
+ * 两种方式都要求令牌未过期、role为authenticated（匿名密钥也是同一密钥签名的JWT，但没有用户），用户ID取自sub声明。
+ */
+@Service
+public class SupabaseAuthServiceImpl implements AuthService {
+
+    private static final Logger log = LoggerFactory.getLogger(SupabaseAuthServiceImpl.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final TypeReference<Map<String, Object>> JSON_OBJECT = new TypeReference<>() { };
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    /** 登录用户令牌的role声明 */
+    private static final String AUTHENTICATED_ROLE = "authenticated";
+
+    /** Supabase项目的JWT Secret，为空时调用Supabase Auth接口校验 */
+    @Value("${travel.auth.supabase.jwt-secret:}")
+    private String jwtSecret;
+
+    /** Supabase项目地址，如 https://xxxx.supabase.co */
+    @Value("${travel.auth.supabase.url:}")
+    private String supabaseUrl;
+
+    /** Supabase匿名密钥，调用Auth接口时作为apikey请求头 */
+    @Value("${travel.auth.supabase.anon-key:}")
+    private String anonKey;
+
+    /** 允许的服务器时钟偏差（秒） */
+    @Value("${travel.auth.clock-skew-seconds:30}")
+    private long clockSkewSeconds;
+
+    /** 调用Supabase Auth接口的超时时间（毫秒） */
+    @Value("${travel.auth.timeout-ms:3000}")
+    private int timeoutMs;
+
+    /** 最多缓存的已校验令牌数 */
+    @Value("${travel.auth.cache-max-entries:10000}")
+    private int cacheMaxEntries;
+
+    /** 经Supabase Auth接口校验通过的令牌，键为令牌的SHA-256摘要 */
+    private final Map<String, VerifiedToken> verified = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        if (jwtSecret.isEmpty() && supabaseUrl.isEmpty()) {
+            log.warn("未配置travel.auth.supabase.jwt-secret或travel.auth.supabase.url，需要登录的接口将拒绝所有请求");
+        }
+    }
+
+    @Override
+    public String authenticate(String authorization) {
+        if (authorization == null || !authorization.regionMatches(true, 0, BEARER_PREFIX, 0, BEARER_PREFIX.length())) {
+            return null;
+        }
+        String token = authorization.substring(BEARER_PREFIX.length()).trim();
+        String[] parts = token.split("\\.", -1);
+        if (parts.length != 3) {
+            return null;
+        }
+
+        Map<String, Object> header;
+        Map<String, Object> claims;
+        try {
+            header = decodeJson(parts[0]);
+            claims = decodeJson(parts[1]);
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+        long now = System.currentTimeMillis() / 1000;
+        Object exp = claims.get("exp");
+        Object nbf = claims.get("nbf");
+        if (!(exp instanceof Number) || ((Number) exp).longValue() + clockSkewSeconds < now
+                || (nbf instanceof Number && ((Number) nbf).longValue() - clockSkewSeconds > now)) {
+            return null;
+        }
+        Object subject = claims.get("sub");
+        if (!AUTHENTICATED_ROLE.equals(claims.get("role")) || !(subject instanceof String) || ((String) subject).isEmpty()) {
+            return null;
+        }
+
+        if (!jwtSecret.isEmpty()) {
+            return "HS256".equals(header.get("alg")) && verifySignature(parts) ? (String) subject : null;
+        }
+        if (!supabaseUrl.isEmpty()) {
+            return verifyRemotely(token, (String) subject, ((Number) exp).longValue());
+        }
+        return null;
+    }
+
+    /**
+     * 校验HS256签名，比较时使用常量时间
+     */
+    private boolean verifySignature(String[] parts) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(jwtSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            byte[] expected = mac.doFinal((parts[0] + "." + parts[1]).getBytes(StandardCharsets.US_ASCII));
+            return MessageDigest.isEqual(expected, Base64.getUrlDecoder().decode(parts[2]));
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 调用Supabase Auth接口校验令牌，接口返回的用户ID必须与令牌的sub一致
+     * @param expiresAt 令牌过期时间（秒），校验结果缓存到此时
+     */
+    private String verifyRemotely(String token, String subject, long expiresAt) {
+        String key = digest(token);
+        long now = System.currentTimeMillis() / 1000;
+        VerifiedToken cached = verified.get(key);
+        if (cached != null && cached.expiresAt > now) {
+            return cached.userId;
+        }
+
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(supabaseUrl.replaceAll("/+$", "") + "/auth/v1/user").openConnection();
+            connection.setRequestMethod("GET");
+            connection.setConnectTimeout(timeoutMs);
+            connection.setReadTimeout(timeoutMs);
+            connection.setRequestProperty("apikey", anonKey);
+            connection.setRequestProperty("Authorization", BEARER_PREFIX + token);
+            int status = connection.getResponseCode();
+            if (status != 200) {
+                connection.disconnect();
+                return null;
+            }
+            Map<String, Object> user;
+            try (InputStream in = connection.getInputStream()) {
+                user = MAPPER.readValue(in, JSON_OBJECT);
+            }
+            if (!subject.equals(user.get("id"))) {
+                return null;
+            }
+        } catch (IOException e) {
+            log.atWarn().addKeyValue("url", supabaseUrl).log("调用Supabase Auth接口校验令牌失败：{}", e.getMessage());
+            return null;
+        }
+
+        if (verified.size() >= cacheMaxEntries) {
+            verified.values().removeIf(entry -> entry.expiresAt <= now);
+            if (verified.size() >= cacheMaxEntries) {
+                verified.clear();
+            }
+        }
+        verified.put(key, new VerifiedToken(subject, expiresAt));
+        return subject;
+    }
+
+    private static Map<String, Object> decodeJson(String part) throws IOException {
+        return MAPPER.readValue(Base64.getUrlDecoder().decode(part), JSON_OBJECT);
+    }
+
+    private static String digest(String token) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("JDK缺少SHA-256算法", e);
+        }
+    }
+
+    private static final class VerifiedToken {
+        private final String userId;
+        private final long expiresAt;
+
+        VerifiedToken(String userId, long expiresAt) {
+            this.userId = userId;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package com.aitravelplanner.Service.Impl;
 
 import com.aitravelplanner.Service.VoiceService;
+import com.aitravelplanner.Util.RequestContext;
+import com.aitravelplanner.Util.Tracer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
@@ -19,9 +23,14 @@ import java.util.Locale;
  */
 @Service
 public class VoiceServiceImpl implements VoiceService {
+
+    private static final Logger log = LoggerFactory.getLogger(VoiceServiceImpl.class);
     
     private static final String IFLYTEK_API_URL = "http://api.xfyun.cn/v1/service/v1/iat";
     
+    private static final long CONNECT_TIMEOUT_MS = 10000;
+    private static final long READ_TIMEOUT_MS = 30000;
+    
 
     
     /**
@@ -35,30 +44,27 @@ public class VoiceServiceImpl implements VoiceService {
         String appId = getVoiceAppIdFromEnv();
         
         if (apiKey == null || apiKey.isEmpty()) {
-            System.err.println("科大讯飞语音识别API Key未设置");
+            log.warn("科大讯飞语音识别API Key未设置");
             return "语音识别服务未配置，请检查VOICE_API_KEY环境变量";
         }
         
         if (appId == null || appId.isEmpty()) {
-            System.err.println("科大讯飞语音识别AppID未设置");
+            log.warn("科大讯飞语音识别AppID未设置");
             return "语音识别服务未配置，请检查VOICE_APP_ID环境变量";
         }
         
         try {
             // 检查音频输入流是否有效
             if (audioStream == null) {
-                System.err.println("音频输入流为空");
+                log.warn("音频输入流为空");
                 return "音频输入无效";
             }
             
-            System.out.println("使用科大讯飞语音识别API Key: " + apiKey.substring(0, Math.min(apiKey.length(), 10)) + "...");
-            System.out.println("使用科大讯飞AppID: " + appId);
-            
             // 使用HTTP API调用科大讯飞语音识别服务
             return callIflytekApi(apiKey, appId, audioStream);
             
         } catch (Exception e) {
-            System.err.println("语音转写处理异常: " + e.getMessage());
+            log.warn("语音转写处理异常：{}", e.getMessage());
             return "语音转写失败: " + e.getMessage();
         }
     }
@@ -71,9 +77,14 @@ public class VoiceServiceImpl implements VoiceService {
      * @return 识别结果文本
      */
     private String callIflytekApi(String apiKey, String appId, InputStream audioStream) {
-        try {
+        // 请求已被取消或剩余时间不足时不再调用，连接和读取超时不超过请求的剩余时间
+        int connectTimeout = (int) RequestContext.timeoutFor("iflytek", CONNECT_TIMEOUT_MS);
+        int readTimeout = (int) RequestContext.timeoutFor("iflytek", READ_TIMEOUT_MS);
+        
+        try (Tracer.Span span = Tracer.start("iflytek.transcribe", Tracer.Kind.CLIENT)) {
             // 读取音频数据
             byte[] audioData = audioStream.readAllBytes();
+            span.setAttribute("audio.bytes", audioData.length);
             
             // 构建请求URL
             URL url = new URL(IFLYTEK_API_URL);
@@ -90,24 +101,29 @@ public class VoiceServiceImpl implements VoiceService {
             
             // 设置连接参数
             connection.setDoOutput(true);
-            connection.setConnectTimeout(10000);
-            connection.setReadTimeout(30000);
-            
-            // 发送音频数据
-            try (OutputStream os = connection.getOutputStream()) {
-                os.write(audioData);
-                os.flush();
-            }
-            
-            // 获取响应
-            int responseCode = connection.getResponseCode();
-            if (responseCode == 200) {
-                // 读取响应内容
-                String response = new String(connection.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
-                return parseResponse(response);
-            } else {
-                System.err.println("科大讯飞API调用失败，响应码: " + responseCode);
-                return "语音识别服务调用失败，请检查网络连接和API配置";
+            connection.setConnectTimeout(connectTimeout);
+            connection.setReadTimeout(readTimeout);
+            
+            // 请求被取消时断开连接，不再等待识别结果
+            try (RequestContext.Scope ignored = RequestContext.onCancel("iflytek", connection::disconnect)) {
+                // 发送音频数据
+                try (OutputStream os = connection.getOutputStream()) {
+                    os.write(audioData);
+                    os.flush();
+                }
+                
+                // 获取响应
+                int responseCode = connection.getResponseCode();
+                span.setAttribute("http.status_code", responseCode);
+                if (responseCode == 200) {
+                    // 读取响应内容
+                    String response = new String(connection.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+                    return parseResponse(response);
+                } else {
+                    span.setError("HTTP " + responseCode);
+                    log.atWarn().addKeyValue("status", responseCode).log("科大讯飞API调用失败，响应码：{}", responseCode);
+                    return "语音识别服务调用失败，请检查网络连接和API配置";
+                }
             }
             
         } catch (Exception e) {
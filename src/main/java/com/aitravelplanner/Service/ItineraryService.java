@@ -0,0 +1,43 @@
+package com.aitravelplanner.Service;
+
+import com.aitravelplanner.Model.Itinerary;
+
+/**
+ * 行程生成服务接口
+ * 定义按天拆分、并发生成多日旅行计划的方法
+ */
+public interface ItineraryService {
+
+    /**
+     * 生成文本形式的旅行计划（地点用【】、时间用$ $标记）
+     * @param userMessage 用户需求
+     * @param days 行程天数，未知时传0
+     * @param parallel 多日行程是否按天并发生成
+     * @return 旅行计划文本
+     * @throws com.aitravelplanner.Util.ModelUnavailableException 大模型调用失败
+     */
+    String generateTextPlan(String userMessage, int days, boolean parallel);
+
+    /**
+     * 先生成每日主题和城市的行程骨架，再并发生成每一天的详细行程并合并
+     * @param userMessage 用户需求
+     * @param days 行程天数
+     * @return 合并后的完整旅行计划
+     */
+    String generateParallelPlan(String userMessage, int days);
+
+    /**
+     * 以结构化JSON模式生成旅行计划，输出长度按行程天数限制
+     * @param userMessage 用户需求
+     * @param days 行程天数，未知时传0
+     * @return 结构化行程，生成或解析失败返回null
+     */
+    Itinerary generateStructuredPlan(String userMessage, int days);
+
+    /**
+     * 从用户需求中估算行程天数（如"7天"、"三日游"），"5月1日"等日期不计入
+     * @param userMessage 用户需求
+     * @return 行程天数，无法识别返回0
+     */
+    int estimateDays(String userMessage);
+}
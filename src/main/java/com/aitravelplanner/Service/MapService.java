@@ -1,5 +1,7 @@
 package com.aitravelplanner.Service;
 
+import com.aitravelplanner.Model.Coordinate;
+
 import java.util.Map;
 
 /**
@@ -10,19 +12,37 @@ public interface MapService {
     /**
      * 将地址转换为地理坐标
      * @param address 地址字符串
-     * @return 坐标信息字符串（格式：经度,纬度），转换失败返回null
+     * @return 坐标，转换失败返回null
+     */
+    public Coordinate geoCode(String address);
+
+    /**
+     * 将地理坐标转换为地点名称
+     * @param coordinate 坐标
+     * @return 地点名称或格式化地址，转换失败返回null
      */
-    public String geoCode(String address);
+    public String reverseGeoCode(Coordinate coordinate);
 
     /**
      * 步行路线规划服务接口
      * 定义步行路线规划的标准方法
      * 根据起点和终点经纬度进行步行路线规划
-     * @param origin 起点经纬度字符串（格式：经度,纬度，如："118.781664,32.057561"）
-     * @param destination 终点经纬度字符串（格式：经度,纬度，如："118.781664,32.057561"）
+     * @param origin 起点坐标
+     * @param destination 终点坐标
      * @return 结构化路线数据Map对象，规划失败返回null
      */
-    public Map<String, Object> planWalkingRoute(String origin, String destination);
+    public Map<String, Object> planWalkingRoute(Coordinate origin, Coordinate destination);
+
+    /**
+     * 按出行方式规划路线，返回统一格式的路线概要，用于比较不同出行方式
+     * @param mode 出行方式：walking（步行）、transit（公交）、riding（骑行）、driving（驾车）
+     * @param origin 起点坐标
+     * @param destination 终点坐标
+     * @param city 公交规划所在城市（名称或citycode），为null时按起终点坐标查询；其他出行方式忽略
+     * @return 路线概要：mode、distance（米）、duration（秒）、cost（元，没有时不返回）、route（高德返回的首选方案），
+     *         没有可行方案或规划失败返回null
+     */
+    public Map<String, Object> planRoute(String mode, Coordinate origin, Coordinate destination, String city);
     
     /**
      * 获取高德地图API Key
@@ -0,0 +1,39 @@
+package com.aitravelplanner.Service;
+
+import com.aitravelplanner.Model.PlanHistoryEntry;
+import com.aitravelplanner.Model.PlanHistoryPage;
+
+/**
+ * 旅行计划历史记录服务接口
+ * 定义保存、分页列出和查看用户历史旅行计划的方法
+ */
+public interface PlanHistoryService {
+
+    /**
+     * 保存一条旅行计划，记录先进入写入缓冲区，稍后批量写入数据库
+     * @param userId 用户ID
+     * @param planData 完整计划内容
+     * @param destination 目的地，可以为null
+     * @param days 行程天数，可以为null
+     * @return 已放入写入缓冲区返回true，缓冲区已满返回false
+     */
+    boolean save(String userId, String planData, String destination, Integer days);
+
+    /**
+     * 按生成时间从新到旧分页列出用户的历史记录（只返回摘要）
+     * @param userId 用户ID
+     * @param cursor 上一页返回的游标，第一页传null
+     * @param limit 每页条数
+     * @return 一页历史记录
+     * @throws IllegalArgumentException 游标格式不正确
+     */
+    PlanHistoryPage list(String userId, String cursor, int limit);
+
+    /**
+     * 查看一条历史记录的完整内容
+     * @param userId 用户ID，只能查看自己的记录
+     * @param id 记录ID
+     * @return 历史记录，不存在或不属于该用户时返回null
+     */
+    PlanHistoryEntry get(String userId, long id);
+}
@@ -0,0 +1,35 @@
+package com.aitravelplanner.Service;
+
+import com.aitravelplanner.Model.Coordinate;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 路线对比服务接口
+ * 定义在同一对起终点之间并发比较多种出行方式的方法
+ */
+public interface RouteComparisonService {
+
+    /**
+     * 并发解析起点和终点的坐标，已经是坐标的直接使用，地点名称做地理编码
+     * 等待时间不超过当前请求的剩余时间
+     * @param origin 起点坐标（经度,纬度）或地点名称
+     * @param destination 终点坐标（经度,纬度）或地点名称
+     * @return 起点和终点坐标，依次排列
+     * @throws IllegalArgumentException 起点或终点地址编码失败
+     */
+    List<Coordinate> resolveEndpoints(String origin, String destination);
+
+    /**
+     * 对比起终点之间各出行方式的路线，在共同的截止时间内返回已完成的方式
+     * @param origin 起点坐标（经度,纬度）或地点名称
+     * @param destination 终点坐标（经度,纬度）或地点名称
+     * @param city 公交规划所在城市，为null时按起终点坐标查询
+     * @param modes 要对比的出行方式，为空时使用配置的默认方式
+     * @return 对比结果：routes（按用时从短到长排列的路线概要）、late（截止时间前未完成的方式）、
+     *         failed（没有可行方案或规划失败的方式）、originCoordinate、destinationCoordinate、elapsedMs
+     * @throws IllegalArgumentException 起点或终点地址编码失败
+     */
+    Map<String, Object> compareRoutes(String origin, String destination, String city, List<String> modes);
+}
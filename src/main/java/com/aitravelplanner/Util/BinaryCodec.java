@@ -0,0 +1,244 @@
+package com.aitravelplanner.Util;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 缓存值的紧凑二进制编码
+ * 支持JSON树形结构的值：null、布尔、整数、浮点数、字符串、列表和以字符串为键的Map。
+ * 整数和长度使用变长编码；重复出现的字符串（如高德路线每个步骤都有的字段名和取值）只写一次，之后写引用序号，
+ * 高德步行路线编码后约为JSON文本的一半。格式以版本号开头，格式变化时旧数据解码失败按未命中处理。
+ */
+public final class BinaryCodec {
+
+    private static final int VERSION = 1;
+
+    private static final int NULL = 0;
+    private static final int TRUE = 1;
+    private static final int FALSE = 2;
+    private static final int LONG = 3;
+    private static final int DOUBLE = 4;
+    private static final int STRING = 5;
+    private static final int STRING_REF = 6;
+    private static final int LIST = 7;
+    private static final int MAP = 8;
+
+    /** 超过该长度的字符串不加入引用表，长文本（如旅行计划）几乎不会重复 */
+    private static final int MAX_INTERNED_LENGTH = 64;
+
+    private BinaryCodec() {
+    }
+
+    /**
+     * 编码一个值
+     * @param value 值
+     * @return 编码结果
+     * @throws IllegalArgumentException 值中含有不支持的类型
+     */
+    public static byte[] encode(Object value) {
+        Writer writer = new Writer();
+        writer.out.write(VERSION);
+        writer.write(value);
+        return writer.out.toByteArray();
+    }
+
+    /**
+     * 解码一个值，Map解码为LinkedHashMap，列表解码为ArrayList，整数解码为Integer或Long
+     * @param data 编码结果
+     * @return 值
+     * @throws IllegalArgumentException 数据格式不正确或版本不一致
+     */
+    public static Object decode(byte[] data) {
+        if (data.length == 0 || data[0] != VERSION) {
+            throw new IllegalArgumentException("不支持的缓存编码版本");
+        }
+        Reader reader = new Reader(data);
+        Object value = reader.read();
+        if (reader.pos != data.length) {
+            throw new IllegalArgumentException("缓存数据末尾有多余内容");
+        }
+        return value;
+    }
+
+    private static final class Writer {
+
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        private final Map<String, Integer> strings = new HashMap<>();
+
+        void write(Object value) {
+            if (value == null) {
+                out.write(NULL);
+            } else if (value instanceof Boolean) {
+                out.write((Boolean) value ? TRUE : FALSE);
+            } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+                out.write(LONG);
+                writeVarLong(zigZag(((Number) value).longValue()));
+            } else if (value instanceof Number) {
+                out.write(DOUBLE);
+                long bits = Double.doubleToLongBits(((Number) value).doubleValue());
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    out.write((int) (bits >>> shift));
+                }
+            } else if (value instanceof CharSequence) {
+                writeString(value.toString());
+            } else if (value instanceof List) {
+                List<?> list = (List<?>) value;
+                out.write(LIST);
+                writeVarLong(list.size());
+                for (Object item : list) {
+                    write(item);
+                }
+            } else if (value instanceof Map) {
+                Map<?, ?> map = (Map<?, ?>) value;
+                out.write(MAP);
+                writeVarLong(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    writeString(String.valueOf(entry.getKey()));
+                    write(entry.getValue());
+                }
+            } else {
+                throw new IllegalArgumentException("不支持缓存的类型：" + value.getClass().getName());
+            }
+        }
+
+        void writeString(String value) {
+            Integer ref = strings.get(value);
+            if (ref != null) {
+                out.write(STRING_REF);
+                writeVarLong(ref);
+                return;
+            }
+            if (value.length() <= MAX_INTERNED_LENGTH) {
+                strings.put(value, strings.size());
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.write(STRING);
+            writeVarLong(bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+
+        void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+
+        static long zigZag(long value) {
+            return (value << 1) ^ (value >> 63);
+        }
+    }
+
+    private static final class Reader {
+
+        private final byte[] data;
+        private final List<String> strings = new ArrayList<>();
+        private int pos = 1;
+
+        Reader(byte[] data) {
+            this.data = data;
+        }
+
+        Object read() {
+            int tag = readByte();
+            switch (tag) {
+                case NULL:
+                    return null;
+                case TRUE:
+                    return Boolean.TRUE;
+                case FALSE:
+                    return Boolean.FALSE;
+                case LONG: {
+                    long raw = readVarLong();
+                    long value = (raw >>> 1) ^ -(raw & 1);
+                    return value == (int) value ? (Object) (int) value : (Object) value;
+                }
+                case DOUBLE: {
+                    long bits = 0;
+                    for (int i = 0; i < 8; i++) {
+                        bits = (bits << 8) | readByte();
+                    }
+                    return Double.longBitsToDouble(bits);
+                }
+                case STRING:
+                case STRING_REF:
+                    return readString(tag);
+                case LIST: {
+                    int size = readLength();
+                    List<Object> list = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        list.add(read());
+                    }
+                    return list;
+                }
+                case MAP: {
+                    int size = readLength();
+                    Map<String, Object> map = new LinkedHashMap<>(size * 4 / 3 + 1);
+                    for (int i = 0; i < size; i++) {
+                        String key = readString(readByte());
+                        map.put(key, read());
+                    }
+                    return map;
+                }
+                default:
+                    throw new IllegalArgumentException("未知的缓存数据类型：" + tag);
+            }
+        }
+
+        String readString(int tag) {
+            if (tag == STRING_REF) {
+                int ref = readLength();
+                if (ref >= strings.size()) {
+                    throw new IllegalArgumentException("无效的字符串引用：" + ref);
+                }
+                return strings.get(ref);
+            }
+            if (tag != STRING) {
+                throw new IllegalArgumentException("此处应为字符串，实际类型：" + tag);
+            }
+            int length = readLength();
+            if (length > data.length - pos) {
+                throw new IllegalArgumentException("缓存数据被截断");
+            }
+            String value = new String(data, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            if (value.length() <= MAX_INTERNED_LENGTH) {
+                strings.add(value);
+            }
+            return value;
+        }
+
+        int readLength() {
+            long length = readVarLong();
+            if (length < 0 || length > data.length) {
+                throw new IllegalArgumentException("无效的长度：" + length);
+            }
+            return (int) length;
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("变长整数过长");
+        }
+
+        int readByte() {
+            if (pos >= data.length) {
+                throw new IllegalArgumentException("缓存数据被截断");
+            }
+            return data[pos++] & 0xFF;
+        }
+    }
+}
@@ -0,0 +1,384 @@
+package com.aitravelplanner.Util;
+
+import io.micrometer.core.instrument.Metrics;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 可取消的请求执行器
+ * 将耗时的接口处理放到线程池中异步执行，客户端断开连接或请求超时时取消对应的请求上下文，
+ * 使仍在进行的大模型、高德和讯飞调用尽早停止，不再为已放弃的请求占用线程和配额。
+ *
+ * Tomcat不会监听异步请求空闲连接的关闭，不写入响应体就无法发现客户端已断开（103 Early Hints在Tomcat中
+ * 会缓存到最终响应才发送），而写入就会提交状态码。因此默认不探测连接，结果确定后才写出状态码和响应头，
+ * 已断开的客户端的请求在截止时间到达时取消。
+ * 只有travel.request.heartbeat-endpoints中列出的接口（客户端按流式约定读取结果的接口）才会探测：处理时间超过
+ * 心跳间隔后定期写入一个空格（JSON允许前导空白），写入失败即视为客户端已断开。首次心跳提交响应（状态码200）后：
+ * 响应头Trailer声明尾部字段；真实的状态码放在响应体的status字段和X-Response-Status尾部字段中，
+ * Retry-After放在响应体的retryAfter字段中（不允许作为尾部字段），之后才确定的X-Queue-Wait-Ms、
+ * X-Served-Stale和Server-Timing通过尾部字段返回。这类接口的客户端必须按响应体的status字段判断结果。
+ *
+ * 请求上下文同时记录客户端标识和优先级类别（X-Request-Priority请求头），大模型调用按此公平排队，
+ * 排队等待的累计时间通过X-Queue-Wait-Ms响应头返回。
+ *
+ * 每个请求有一个截止时间：客户端可以通过X-Request-Timeout-Ms请求头缩短，不超过travel.request.timeout-ms。
+ * 截止时间随请求上下文传给所有上游调用，每次调用只使用剩余的时间；剩余时间不足时提前放弃并返回504。
+ * 结果中用到超过软过期时间的缓存数据时（上游熔断期间或后台刷新完成前），响应带X-Served-Stale: true。
+ *
+ * 被采样的请求以接口名称为根span记录链路（沿用traceparent请求头中的链路ID），链路ID通过X-Trace-Id响应头返回，
+ * 自身耗时最多的几个阶段通过Server-Timing响应头返回，见TraceExporter。
+ */
+@Component
+public class CancellableRequestExecutor {
+
+    /** 请求的优先级类别，如 interactive、bulk */
+    public static final String PRIORITY_HEADER = "X-Request-Priority";
+
+    /** 客户端指定的请求时间预算（毫秒） */
+    public static final String TIMEOUT_HEADER = "X-Request-Timeout-Ms";
+
+    /** 响应中含有过期缓存数据时设置为true */
+    public static final String STALE_HEADER = "X-Served-Stale";
+
+    /** 请求在大模型调用队列中的累计等待时间（毫秒） */
+    public static final String QUEUE_WAIT_HEADER = "X-Queue-Wait-Ms";
+
+    /** 上游传入的W3C链路上下文 */
+    public static final String TRACEPARENT_HEADER = "traceparent";
+
+    /** 本次请求的链路ID，可以在链路导出文件中查找 */
+    public static final String TRACE_ID_HEADER = "X-Trace-Id";
+
+    /** 流式返回时的真实状态码（尾部字段） */
+    public static final String RESPONSE_STATUS_TRAILER = "X-Response-Status";
+
+    /** 流式返回时可能通过尾部字段返回的响应头 */
+    private static final List<String> TRAILER_NAMES = List.of(RESPONSE_STATUS_TRAILER, QUEUE_WAIT_HEADER, STALE_HEADER, "Server-Timing");
+
+    private final ExecutorService requestExecutor;
+    private final ScheduledExecutorService heartbeatScheduler;
+    private final TraceExporter traceExporter;
+
+    /** 接口处理超时时间（毫秒） */
+    @Value("${travel.request.timeout-ms:60000}")
+    private long timeoutMs;
+
+    /** 一次上游调用所需的最短时间（毫秒），请求剩余时间少于它时不再发起调用 */
+    @Value("${travel.request.min-hop-ms:200}")
+    private long minHopMs;
+
+    /** 连接探测间隔（毫秒），0表示不探测 */
+    @Value("${travel.request.heartbeat-ms:3000}")
+    private long heartbeatMs;
+
+    /** 探测连接的接口名称，探测会提交200状态码，只适用于按流式约定读取结果的客户端 */
+    @Value("${travel.request.heartbeat-endpoints:}")
+    private List<String> heartbeatEndpoints = List.of();
+
+    /** 标识客户端的请求头（如反向代理设置的X-Forwarded-For），留空则使用连接的远端地址 */
+    @Value("${travel.request.client-id-header:}")
+    private String clientIdHeader;
+
+    @Autowired
+    public CancellableRequestExecutor(@Qualifier("requestExecutor") ExecutorService requestExecutor,
+                                      @Qualifier("heartbeatScheduler") ScheduledExecutorService heartbeatScheduler,
+                                      TraceExporter traceExporter) {
+        this.requestExecutor = requestExecutor;
+        this.heartbeatScheduler = heartbeatScheduler;
+        this.traceExporter = traceExporter;
+    }
+
+    /**
+     * 异步执行接口处理，需在请求线程中调用
+     * @param endpoint 接口名称，用于统计
+     * @param work 接口处理逻辑
+     * @return 异步结果，超时或剩余时间不足以完成处理时返回504
+     */
+    public <T> DeferredResult<ResponseEntity<T>> execute(String endpoint, Supplier<ResponseEntity<T>> work) {
+        ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
+        HttpServletRequest request = attributes == null ? null : attributes.getRequest();
+        RequestContext context = request == null ? new RequestContext()
+                : new RequestContext(clientId(request, clientIdHeader), request.getHeader(PRIORITY_HEADER));
+        long budgetMs = budget(request);
+        context.setDeadline(budgetMs, minHopMs);
+        DeferredResult<ResponseEntity<T>> result = new DeferredResult<>(budgetMs);
+        Heartbeat heartbeat = startHeartbeat(attributes == null ? null : attributes.getResponse(), endpoint, context, result);
+        context.setQueueWaitListener(waitMillis -> heartbeat.setHeader(QUEUE_WAIT_HEADER, String.valueOf(waitMillis)));
+        Tracer.Span root = traceExporter.startRequest(endpoint, request == null ? null : request.getHeader(TRACEPARENT_HEADER));
+        if (root != Tracer.NOOP) {
+            root.setAttribute("request.priority", context.getPriorityClass());
+            root.setAttribute("request.budget_ms", budgetMs);
+            heartbeat.setHeader(TRACE_ID_HEADER, root.getTraceId());
+        }
+
+        result.onTimeout(() -> {
+            heartbeat.stop();
+            abandon(context, endpoint, "timeout");
+            result.setErrorResult(heartbeat.complete(ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT)
+                    .body(Map.of("error", "请求处理超时，请稍后重试"))));
+        });
+        result.onError(error -> {
+            heartbeat.stop();
+            abandon(context, endpoint, "client-disconnect");
+        });
+        result.onCompletion(heartbeat::stop);
+
+        try {
+            requestExecutor.execute(() -> {
+                ResponseEntity<T> success = null;
+                ResponseEntity<?> failure = null;
+                try (RequestContext.Scope ignored = context.attach(); Tracer.Scope traced = Tracer.attach(root)) {
+                    ResponseEntity<T> response = work.get();
+                    root.setAttribute("http.status_code", response.getStatusCode().value());
+                    if (!response.getStatusCode().is2xxSuccessful() && context.isDeadlineExceeded()) {
+                        // 上游调用因剩余时间不足被放弃，失败原因是时间预算而不是请求本身
+                        Metrics.counter("requests.abandoned", "endpoint", endpoint, "reason", "deadline").increment();
+                        failure = ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT)
+                                .body(Map.of("error", "请求无法在时限内完成，请稍后重试"));
+                    } else {
+                        success = response;
+                    }
+                } catch (Exception e) {
+                    root.setError(e.getMessage());
+                    if (!context.isCancelled() && context.isDeadlineExceeded()) {
+                        Metrics.counter("requests.abandoned", "endpoint", endpoint, "reason", "deadline").increment();
+                        failure = ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT)
+                                .body(Map.of("error", "请求无法在时限内完成，请稍后重试"));
+                    } else if (!context.isCancelled()) {
+                        failure = ResponseEntity.internalServerError()
+                                .body(Map.of("error", "请求处理失败：" + e.getMessage()));
+                    }
+                } finally {
+                    // 根span只在这里结束一次，Server-Timing需要在写出响应之前确定
+                    if (context.isServedStale()) {
+                        heartbeat.setHeader(STALE_HEADER, "true");
+                    }
+                    root.setAttribute("served_stale", context.isServedStale());
+                    if (context.isCancelled()) {
+                        root.setAttribute("request.cancelled", context.getCancelReason());
+                    }
+                    String serverTiming = traceExporter.finish(root);
+                    if (serverTiming != null) {
+                        heartbeat.setHeader("Server-Timing", serverTiming);
+                    }
+                    if (context.isCancelled()) {
+                        heartbeat.stop();
+                    } else if (success != null) {
+                        result.setResult(heartbeat.complete(success));
+                    } else if (failure != null) {
+                        result.setErrorResult(heartbeat.complete(failure));
+                    }
+                    // 响应已确定，仍在排队或进行中的子任务（如失败后剩余的按天生成）不再需要
+                    context.cancel("completed");
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 处理线程和等待队列都已满
+            Metrics.counter("requests.abandoned", "endpoint", endpoint, "reason", "overloaded").increment();
+            context.cancel("overloaded");
+            root.setAttribute("http.status_code", HttpStatus.SERVICE_UNAVAILABLE.value());
+            traceExporter.finish(root);
+            result.setErrorResult(heartbeat.complete(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(Map.of("error", "服务繁忙，请稍后重试"))));
+        }
+        return result;
+    }
+
+    /**
+     * 请求的时间预算：客户端通过请求头指定的预算，不超过配置的接口处理超时时间；请求头无效时忽略
+     */
+    private long budget(HttpServletRequest request) {
+        String value = request == null ? null : request.getHeader(TIMEOUT_HEADER);
+        if (value != null) {
+            try {
+                long requested = Long.parseLong(value.trim());
+                if (requested > 0) {
+                    return Math.min(requested, timeoutMs);
+                }
+            } catch (NumberFormatException e) {
+                // 使用配置的超时时间
+            }
+        }
+        return timeoutMs;
+    }
+
+    /**
+     * 确定请求所属的客户端，用于大模型调用的公平排队和按客户端限流
+     * @param request 请求
+     * @param clientIdHeader 标识客户端的请求头（travel.request.client-id-header），为空时使用连接的远端地址
+     * @return 客户端标识
+     */
+    public static String clientId(HttpServletRequest request, String clientIdHeader) {
+        if (clientIdHeader != null && !clientIdHeader.isEmpty()) {
+            String value = request.getHeader(clientIdHeader);
+            if (value != null && !value.trim().isEmpty()) {
+                // X-Forwarded-For中前面的地址由客户端自己填写，可以伪造；只有最后一个是前面的反向代理追加的真实连接地址
+                String last = value.substring(value.lastIndexOf(',') + 1).trim();
+                if (!last.isEmpty()) {
+                    return last;
+                }
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    private Heartbeat startHeartbeat(HttpServletResponse response, String endpoint, RequestContext context, DeferredResult<?> result) {
+        Heartbeat heartbeat = new Heartbeat(response, endpoint, context, result);
+        if (response != null && heartbeatMs > 0 && heartbeatEndpoints.contains(endpoint)) {
+            heartbeat.schedule(heartbeatScheduler.scheduleWithFixedDelay(heartbeat::beat, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS));
+        }
+        return heartbeat;
+    }
+
+    private static void abandon(RequestContext context, String endpoint, String reason) {
+        if (!context.isCancelled()) {
+            Metrics.counter("requests.abandoned", "endpoint", endpoint, "reason", reason).increment();
+            context.cancel(reason);
+        }
+    }
+
+    /**
+     * 连接探测，与结果写入互斥：停止后不再写入任何内容
+     * 首次写入后响应已提交，之后的状态码和响应头按流式约定通过响应体和尾部字段返回
+     */
+    private static final class Heartbeat {
+        private final HttpServletResponse response;
+        private final String endpoint;
+        private final RequestContext context;
+        private final DeferredResult<?> result;
+        private final Map<String, String> trailers = new LinkedHashMap<>();
+        private ScheduledFuture<?> future;
+        private boolean stopped;
+        private boolean streaming;
+
+        Heartbeat(HttpServletResponse response, String endpoint, RequestContext context, DeferredResult<?> result) {
+            this.response = response;
+            this.endpoint = endpoint;
+            this.context = context;
+            this.result = result;
+        }
+
+        synchronized void schedule(ScheduledFuture<?> future) {
+            this.future = future;
+            if (stopped) {
+                future.cancel(false);
+            }
+        }
+
+        synchronized void beat() {
+            if (stopped) {
+                return;
+            }
+            try {
+                if (!response.isCommitted()) {
+                    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                    response.setCharacterEncoding("UTF-8");
+                    declareTrailers();
+                }
+                response.getOutputStream().write(' ');
+                response.flushBuffer();
+                streaming = true;
+            } catch (IOException | IllegalStateException e) {
+                stop();
+                abandon(context, endpoint, "client-disconnect");
+                result.setErrorResult(ResponseEntity.status(HttpStatus.GONE).build());
+            }
+        }
+
+        /**
+         * 提交响应前声明尾部字段；HTTP/1.0等不支持尾部字段的连接只通过响应体返回状态码
+         */
+        private void declareTrailers() {
+            try {
+                response.setTrailerFields(this::trailerFields);
+            } catch (IllegalStateException e) {
+                return;
+            }
+            response.setHeader(HttpHeaders.TRAILER, String.join(", ", TRAILER_NAMES));
+        }
+
+        private synchronized Map<String, String> trailerFields() {
+            return new LinkedHashMap<>(trailers);
+        }
+
+        /**
+         * 设置响应头：响应提交前直接设置，流式返回时作为尾部字段在响应结束时发送，没有响应对象时忽略
+         */
+        synchronized void setHeader(String name, String value) {
+            if (response == null) {
+                return;
+            }
+            if (streaming) {
+                if (TRAILER_NAMES.contains(name)) {
+                    trailers.put(name, value);
+                }
+            } else if (!stopped && !response.isCommitted()) {
+                response.setHeader(name, value);
+            }
+        }
+
+        /**
+         * 停止探测并确定最终响应：未开始流式返回时原样返回；
+         * 已开始时状态码写入响应体的status字段和X-Response-Status尾部字段，Retry-After写入响应体的retryAfter字段
+         * @param entity 接口处理结果
+         * @return 实际写出的响应
+         */
+        @SuppressWarnings("unchecked")
+        synchronized <T> ResponseEntity<T> complete(ResponseEntity<T> entity) {
+            stop();
+            if (!streaming) {
+                return entity;
+            }
+            int status = entity.getStatusCode().value();
+            trailers.put(RESPONSE_STATUS_TRAILER, String.valueOf(status));
+            entity.getHeaders().forEach((name, values) -> {
+                if (TRAILER_NAMES.contains(name)) {
+                    trailers.put(name, String.join(", ", values));
+                }
+            });
+            if (entity.getBody() != null && !(entity.getBody() instanceof Map)) {
+                return entity;
+            }
+            Map<String, Object> body = new LinkedHashMap<>();
+            if (entity.getBody() != null) {
+                ((Map<?, ?>) entity.getBody()).forEach((key, value) -> body.put(String.valueOf(key), value));
+            }
+            body.put("status", status);
+            String retryAfter = entity.getHeaders().getFirst(HttpHeaders.RETRY_AFTER);
+            if (retryAfter != null) {
+                body.put("retryAfter", retryAfter);
+            }
+            return ResponseEntity.status(status).headers(entity.getHeaders()).body((T) body);
+        }
+
+        synchronized void stop() {
+            stopped = true;
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.aitravelplanner.Util;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 熔断器
+ * 按最近windowSize次调用统计失败率和慢调用率，调用数达到minCalls且任一比例超过阈值时打开熔断。
+ * 打开期间直接拒绝调用，经过openMillis后进入半开状态，只放行一个探测调用：探测成功且不慢则关闭熔断并清空统计，
+ * 否则重新打开。调用被取消等与上游健康无关的结束通过onIgnored报告，不计入统计。
+ * 指标：circuit.state（0关闭、1半开、2打开）、circuit.transitions（按目标状态计数）、circuit.rejected，标签upstream。
+ */
+public class CircuitBreaker {
+
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum State { CLOSED, HALF_OPEN, OPEN }
+
+    private final String name;
+    private final int minCalls;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+
+    /** 最近调用的结果，环形缓冲；位0为失败，位1为慢调用 */
+    private final byte[] outcomes;
+    private int next;
+    private int size;
+    private int failures;
+    private int slowCalls;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean probeInFlight;
+
+    /**
+     * @param name 上游名称，用于日志和指标标签
+     * @param windowSize 统计的最近调用数
+     * @param minCalls 开始判断前至少需要的调用数
+     * @param failureRateThreshold 失败率阈值（0~1）
+     * @param slowCallMillis 慢调用的耗时阈值（毫秒）
+     * @param slowCallRateThreshold 慢调用率阈值（0~1）
+     * @param openMillis 熔断打开后到允许探测的时间（毫秒）
+     */
+    public CircuitBreaker(String name, int windowSize, int minCalls, double failureRateThreshold,
+                          long slowCallMillis, double slowCallRateThreshold, long openMillis) {
+        this.name = name;
+        this.outcomes = new byte[Math.max(1, windowSize)];
+        this.minCalls = Math.max(1, Math.min(minCalls, outcomes.length));
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, slowCallMillis));
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, openMillis));
+        Gauge.builder("circuit.state", this, breaker -> breaker.getState().ordinal())
+                .tag("upstream", name)
+                .register(Metrics.globalRegistry);
+    }
+
+    /**
+     * 申请发起一次调用，获准后必须以onSuccess、onFailure或onIgnored之一报告结果
+     * @return 熔断关闭或本次作为半开探测时返回true，熔断打开时返回false
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+            transition(State.HALF_OPEN);
+        }
+        if (state == State.CLOSED) {
+            return true;
+        }
+        if (state == State.HALF_OPEN && !probeInFlight) {
+            probeInFlight = true;
+            return true;
+        }
+        Metrics.counter("circuit.rejected", "upstream", name).increment();
+        return false;
+    }
+
+    /**
+     * 熔断是否处于打开状态（不申请调用，可用于决定是否提供过期数据、是否安排后台刷新）
+     */
+    public synchronized boolean isOpen() {
+        return state == State.OPEN && System.nanoTime() - openedAt < openNanos;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * 报告调用成功
+     * @param elapsedNanos 调用耗时（纳秒）
+     */
+    public void onSuccess(long elapsedNanos) {
+        record(false, elapsedNanos >= slowCallNanos);
+    }
+
+    /**
+     * 报告调用失败（异常、超时或上游返回错误）
+     * @param elapsedNanos 调用耗时（纳秒）
+     */
+    public void onFailure(long elapsedNanos) {
+        record(true, elapsedNanos >= slowCallNanos);
+    }
+
+    /**
+     * 报告调用以与上游健康无关的方式结束（如请求被取消），不计入统计
+     */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN) {
+            probeInFlight = false;
+        }
+    }
+
+    private synchronized void record(boolean failed, boolean slow) {
+        if (state == State.HALF_OPEN) {
+            probeInFlight = false;
+            transition(failed || slow ? State.OPEN : State.CLOSED);
+            return;
+        }
+        if (state == State.OPEN) {
+            // 熔断打开前已经发出的调用
+            return;
+        }
+        if (size == outcomes.length) {
+            byte evicted = outcomes[next];
+            failures -= evicted & 1;
+            slowCalls -= evicted >> 1;
+        } else {
+            size++;
+        }
+        outcomes[next] = (byte) ((failed ? 1 : 0) | (slow ? 2 : 0));
+        next = (next + 1) % outcomes.length;
+        failures += failed ? 1 : 0;
+        slowCalls += slow ? 1 : 0;
+
+        if (size >= minCalls && ((double) failures / size >= failureRateThreshold
+                || (double) slowCalls / size >= slowCallRateThreshold)) {
+            log.atWarn().addKeyValue("upstream", name).addKeyValue("calls", size)
+                    .addKeyValue("failures", failures).addKeyValue("slowCalls", slowCalls)
+                    .log("{}调用失败或过慢的比例超过阈值，熔断打开", name);
+            transition(State.OPEN);
+        }
+    }
+
+    private void transition(State target) {
+        if (state == target) {
+            return;
+        }
+        if (state == State.HALF_OPEN && target == State.CLOSED) {
+            log.atInfo().addKeyValue("upstream", name).log("{}探测调用成功，熔断关闭", name);
+        }
+        state = target;
+        if (target == State.OPEN) {
+            openedAt = System.nanoTime();
+        } else if (target == State.CLOSED) {
+            next = 0;
+            size = 0;
+            failures = 0;
+            slowCalls = 0;
+        }
+        Metrics.counter("circuit.transitions", "upstream", name, "state", target.name().toLowerCase()).increment();
+    }
+}
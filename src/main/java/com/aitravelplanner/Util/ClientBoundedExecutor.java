@@ -0,0 +1,114 @@
+package com.aitravelplanner.Util;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 按客户端限制同时占用线程数的线程池包装
+ * 同一客户端（取自提交时的请求上下文）超过上限的任务在该客户端自己的队列中等待，前面的任务结束后再交给线程池，
+ * 因此一个客户端的多日行程不会占满共享线程池的所有线程和队列，其他客户端的任务仍能及时进入FairQueueScheduler公平排队。
+ */
+public class ClientBoundedExecutor implements Executor {
+
+    /** 没有请求上下文时使用的客户端标识 */
+    private static final String ANONYMOUS = "anonymous";
+
+    private final ExecutorService delegate;
+
+    /** 单个客户端同时交给线程池的最大任务数 */
+    private final int maxPerClient;
+
+    private final Map<String, ClientTasks> clients = new HashMap<>();
+
+    public ClientBoundedExecutor(ExecutorService delegate, int maxPerClient) {
+        this.delegate = delegate;
+        this.maxPerClient = Math.max(1, maxPerClient);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        RequestContext context = RequestContext.current();
+        String clientId = context == null || context.getClientId() == null ? ANONYMOUS : context.getClientId();
+        synchronized (this) {
+            ClientTasks tasks = clients.computeIfAbsent(clientId, key -> new ClientTasks());
+            if (tasks.running >= maxPerClient) {
+                tasks.pending.add(task);
+                return;
+            }
+            tasks.running++;
+        }
+        submit(clientId, task);
+    }
+
+    private void submit(String clientId, Runnable task) {
+        try {
+            delegate.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    next(clientId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 只在线程池关闭时发生，归还名额后交给调用方处理
+            synchronized (this) {
+                ClientTasks tasks = clients.get(clientId);
+                if (tasks != null && --tasks.running == 0 && tasks.pending.isEmpty()) {
+                    clients.remove(clientId);
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 客户端的一个任务结束，把它排在最前面的等待任务交给线程池
+     */
+    private void next(String clientId) {
+        Runnable task;
+        synchronized (this) {
+            ClientTasks tasks = clients.get(clientId);
+            if (tasks == null) {
+                return;
+            }
+            task = tasks.pending.poll();
+            if (task == null) {
+                if (--tasks.running == 0) {
+                    clients.remove(clientId);
+                }
+                return;
+            }
+        }
+        submit(clientId, task);
+    }
+
+    /**
+     * 当前在客户端队列中等待的任务数
+     */
+    public synchronized int pendingCount() {
+        int count = 0;
+        for (ClientTasks tasks : clients.values()) {
+            count += tasks.pending.size();
+        }
+        return count;
+    }
+
+    /**
+     * 立即关闭底层线程池
+     */
+    public void shutdownNow() {
+        delegate.shutdownNow();
+    }
+
+    /**
+     * 一个客户端正在执行和等待的任务
+     */
+    private static final class ClientTasks {
+        private final ArrayDeque<Runnable> pending = new ArrayDeque<>();
+        private int running;
+    }
+}
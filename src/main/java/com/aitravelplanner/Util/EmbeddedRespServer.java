@@ -0,0 +1,399 @@
+package com.aitravelplanner.Util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 内嵌的Redis协议服务端
+ * 在本机回环地址上监听，实现共享缓存用到的命令（GET、SET EX/PX、DEL、PUBLISH、SUBSCRIBE等），
+ * 测试和单机开发时代替真正的Redis，使共享缓存和失效通知的完整链路可以在一个进程内运行。
+ * 数据只保存在内存中，过期的键在读取时删除，并在写入时定期清理。
+ */
+public class EmbeddedRespServer implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddedRespServer.class);
+
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    /** 每写入多少次清理一次过期键 */
+    private static final int SWEEP_INTERVAL = 1024;
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService workers;
+    private final Map<String, Entry> store = new ConcurrentHashMap<>();
+    private final Map<String, Set<Client>> channels = new ConcurrentHashMap<>();
+    private final Set<Client> clients = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger writes = new AtomicInteger();
+    private volatile boolean closed;
+
+    /**
+     * 启动服务端
+     * @param port 监听端口，0表示随机选择空闲端口
+     * @throws IOException 端口无法监听
+     */
+    public EmbeddedRespServer(int port) throws IOException {
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "embedded-resp-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        workers.execute(this::acceptLoop);
+        log.atInfo().addKeyValue("port", getPort()).log("内嵌Redis协议服务已启动");
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * 连接地址，供RespClient使用
+     * @return redis://127.0.0.1:端口
+     */
+    public String getUrl() {
+        return "redis://" + serverSocket.getInetAddress().getHostAddress() + ":" + getPort();
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Client client = new Client(socket);
+                clients.add(client);
+                workers.execute(client::serve);
+            } catch (IOException e) {
+                if (!closed) {
+                    log.warn("内嵌Redis协议服务接受连接失败：{}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {
+            // 已关闭
+        }
+        for (Client client : clients) {
+            client.close();
+        }
+        workers.shutdownNow();
+    }
+
+    private static final class Entry {
+        private final byte[] value;
+        /** 过期时间（System.currentTimeMillis），0表示不过期 */
+        private final long expiresAt;
+
+        Entry(byte[] value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return expiresAt != 0 && now >= expiresAt;
+        }
+    }
+
+    private void sweep() {
+        long now = System.currentTimeMillis();
+        for (Iterator<Entry> it = store.values().iterator(); it.hasNext(); ) {
+            if (it.next().isExpired(now)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * 一个客户端连接，在独立线程中按顺序处理命令
+     */
+    private final class Client implements Closeable {
+
+        private final Socket socket;
+        private final InputStream in;
+        private final OutputStream out;
+        private final Set<String> subscriptions = ConcurrentHashMap.newKeySet();
+
+        Client(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new BufferedInputStream(socket.getInputStream());
+            this.out = new BufferedOutputStream(socket.getOutputStream());
+        }
+
+        void serve() {
+            try {
+                while (!closed) {
+                    byte[][] command = readCommand();
+                    if (command == null) {
+                        return;
+                    }
+                    if (!handle(command)) {
+                        return;
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                // 客户端断开或发送了无法解析的内容，关闭连接即可
+            } finally {
+                close();
+            }
+        }
+
+        /**
+         * 执行一条命令并写回复
+         * @return false表示客户端请求断开
+         */
+        private boolean handle(byte[][] command) throws IOException {
+            String name = text(command[0]).toUpperCase(Locale.ROOT);
+            synchronized (this) {
+                try {
+                    execute(name, command);
+                } catch (IllegalArgumentException e) {
+                    writeError("ERR " + e.getMessage());
+                }
+                out.flush();
+            }
+            return !"QUIT".equals(name);
+        }
+
+        private void execute(String name, byte[][] command) throws IOException {
+            switch (name) {
+                case "PING":
+                    writeSimple(command.length > 1 ? text(command[1]) : "PONG");
+                    break;
+                case "AUTH":
+                case "SELECT":
+                    writeSimple("OK");
+                    break;
+                case "GET":
+                    requireArgs(command, 2);
+                    writeBulk(get(text(command[1])));
+                    break;
+                case "SET":
+                    requireArgs(command, 3);
+                    set(command);
+                    break;
+                case "DEL": {
+                    long removed = 0;
+                    for (int i = 1; i < command.length; i++) {
+                        if (store.remove(text(command[i])) != null) {
+                            removed++;
+                        }
+                    }
+                    writeInteger(removed);
+                    break;
+                }
+                case "PUBLISH":
+                    requireArgs(command, 3);
+                    writeInteger(publish(text(command[1]), command[2]));
+                    break;
+                case "SUBSCRIBE":
+                    for (int i = 1; i < command.length; i++) {
+                        String channel = text(command[i]);
+                        channels.computeIfAbsent(channel, key -> ConcurrentHashMap.newKeySet()).add(this);
+                        subscriptions.add(channel);
+                        writeArrayHeader(3);
+                        writeBulk("subscribe".getBytes(StandardCharsets.UTF_8));
+                        writeBulk(command[i]);
+                        writeInteger(subscriptions.size());
+                    }
+                    break;
+                case "QUIT":
+                    writeSimple("OK");
+                    break;
+                default:
+                    writeError("ERR unknown command '" + name + "'");
+            }
+        }
+
+        private void set(byte[][] command) throws IOException {
+            long expiresAt = 0;
+            for (int i = 3; i < command.length; i += 2) {
+                String option = text(command[i]).toUpperCase(Locale.ROOT);
+                if (i + 1 >= command.length || !("EX".equals(option) || "PX".equals(option))) {
+                    writeError("ERR syntax error");
+                    return;
+                }
+                long amount = Long.parseLong(text(command[i + 1]));
+                expiresAt = System.currentTimeMillis() + ("EX".equals(option) ? amount * 1000 : amount);
+            }
+            store.put(text(command[1]), new Entry(command[2], expiresAt));
+            if (writes.incrementAndGet() % SWEEP_INTERVAL == 0) {
+                sweep();
+            }
+            writeSimple("OK");
+        }
+
+        private byte[] get(String key) {
+            Entry entry = store.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.isExpired(System.currentTimeMillis())) {
+                store.remove(key, entry);
+                return null;
+            }
+            return entry.value;
+        }
+
+        private long publish(String channel, byte[] message) {
+            Set<Client> subscribers = channels.get(channel);
+            if (subscribers == null) {
+                return 0;
+            }
+            long delivered = 0;
+            for (Client subscriber : subscribers) {
+                if (subscriber.deliver(channel, message)) {
+                    delivered++;
+                }
+            }
+            return delivered;
+        }
+
+        /**
+         * 向订阅了频道的本连接推送消息，与本连接上的命令回复互斥写入
+         */
+        boolean deliver(String channel, byte[] message) {
+            synchronized (this) {
+                try {
+                    writeArrayHeader(3);
+                    writeBulk("message".getBytes(StandardCharsets.UTF_8));
+                    writeBulk(channel.getBytes(StandardCharsets.ISO_8859_1));
+                    writeBulk(message);
+                    out.flush();
+                    return true;
+                } catch (IOException e) {
+                    close();
+                    return false;
+                }
+            }
+        }
+
+        private byte[][] readCommand() throws IOException {
+            int type = in.read();
+            if (type < 0) {
+                return null;
+            }
+            if (type != '*') {
+                throw new IOException("只支持RESP数组格式的命令");
+            }
+            int count = Integer.parseInt(readLine());
+            if (count <= 0) {
+                throw new IOException("空命令");
+            }
+            byte[][] args = new byte[count][];
+            for (int i = 0; i < count; i++) {
+                if (in.read() != '$') {
+                    throw new IOException("命令参数应为批量字符串");
+                }
+                int length = Integer.parseInt(readLine());
+                args[i] = in.readNBytes(length);
+                if (args[i].length < length || in.read() != '\r' || in.read() != '\n') {
+                    throw new EOFException("命令不完整");
+                }
+            }
+            return args;
+        }
+
+        private String readLine() throws IOException {
+            StringBuilder line = new StringBuilder();
+            int b;
+            while ((b = in.read()) != '\r') {
+                if (b < 0) {
+                    throw new EOFException("连接已关闭");
+                }
+                line.append((char) b);
+            }
+            in.read();
+            return line.toString();
+        }
+
+        private void requireArgs(byte[][] command, int count) {
+            if (command.length < count) {
+                throw new IllegalArgumentException("wrong number of arguments");
+            }
+        }
+
+        private void writeSimple(String value) throws IOException {
+            out.write('+');
+            out.write(value.getBytes(StandardCharsets.UTF_8));
+            out.write(CRLF);
+        }
+
+        private void writeError(String message) throws IOException {
+            out.write('-');
+            out.write(message.getBytes(StandardCharsets.UTF_8));
+            out.write(CRLF);
+        }
+
+        private void writeInteger(long value) throws IOException {
+            out.write(':');
+            out.write(Long.toString(value).getBytes(StandardCharsets.US_ASCII));
+            out.write(CRLF);
+        }
+
+        private void writeArrayHeader(int count) throws IOException {
+            out.write('*');
+            out.write(Integer.toString(count).getBytes(StandardCharsets.US_ASCII));
+            out.write(CRLF);
+        }
+
+        private void writeBulk(byte[] value) throws IOException {
+            if (value == null) {
+                out.write("$-1".getBytes(StandardCharsets.US_ASCII));
+                out.write(CRLF);
+                return;
+            }
+            out.write('$');
+            out.write(Integer.toString(value.length).getBytes(StandardCharsets.US_ASCII));
+            out.write(CRLF);
+            out.write(value);
+            out.write(CRLF);
+        }
+
+        @Override
+        public void close() {
+            clients.remove(this);
+            for (String channel : subscriptions) {
+                Set<Client> subscribers = channels.get(channel);
+                if (subscribers != null) {
+                    subscribers.remove(this);
+                }
+            }
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // 已关闭
+            }
+        }
+    }
+
+    /** 键和字符串参数按ISO-8859-1转换，保留原始字节 */
+    private static String text(byte[] value) {
+        return new String(value, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,278 @@
+package com.aitravelplanner.Util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 大模型调用的加权公平排队调度器
+ * 同时进行的DashScope调用数有上限，超出的调用按"客户端+优先级类别"分别排队，
+ * 每个队列按类别权重分配调用机会（自计时公平排队：入队时计算虚拟完成时间，总是放行最小的那个），
+ * 因此循环调用接口的客户端只会占用自己的份额，交互请求也不会被批量任务（如预生成）挤占。
+ * 单个客户端或整体队列过长时直接拒绝，而不是让请求排到超时。
+ */
+@Component
+public class FairQueueScheduler {
+
+    /** 调度器记录的客户端标识，没有请求上下文时使用 */
+    private static final String ANONYMOUS = "anonymous";
+
+    /** 同时进行的大模型调用数上限 */
+    private final int maxConcurrency;
+
+    /** 单个客户端单个类别的最大排队数 */
+    private final int maxQueuePerClient;
+
+    /** 所有客户端的最大排队总数 */
+    private final int maxQueue;
+
+    /** 最长排队时间，超过后拒绝 */
+    private final long maxWaitNanos;
+
+    /** 类别权重，权重越大分到的调用机会越多 */
+    private final Map<String, Integer> weights;
+
+    /** 请求未指定或指定了未知类别时使用的类别 */
+    private final String defaultClass;
+
+    private final Map<String, Flow> flows = new HashMap<>();
+    private int running;
+    private int queued;
+    private double virtualTime;
+    /** 调用耗时的指数移动平均（纳秒），用于估算Retry-After */
+    private double averageCallNanos = TimeUnit.SECONDS.toNanos(10);
+
+    public FairQueueScheduler(@Value("${travel.llm.scheduler.max-concurrency:4}") int maxConcurrency,
+                              @Value("${travel.llm.scheduler.max-queue-per-client:17}") int maxQueuePerClient,
+                              @Value("${travel.llm.scheduler.max-queue:128}") int maxQueue,
+                              @Value("${travel.llm.scheduler.max-wait-ms:30000}") long maxWaitMs,
+                              @Value("${travel.llm.scheduler.weights:interactive:8,bulk:1}") String weights,
+                              @Value("${travel.llm.scheduler.default-class:interactive}") String defaultClass) {
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.maxQueuePerClient = Math.max(1, maxQueuePerClient);
+        this.maxQueue = Math.max(1, maxQueue);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, maxWaitMs));
+        this.weights = parseWeights(weights);
+        this.defaultClass = this.weights.containsKey(defaultClass) ? defaultClass : this.weights.keySet().iterator().next();
+
+        Gauge.builder("llm.queue.depth", this, FairQueueScheduler::queuedCount).register(Metrics.globalRegistry);
+        Gauge.builder("llm.calls.active", this, FairQueueScheduler::runningCount).register(Metrics.globalRegistry);
+    }
+
+    /**
+     * 为当前请求申请一次大模型调用，必要时排队等待，调用结束后关闭返回的许可
+     * 客户端和优先级类别取自当前线程的请求上下文，等待时间累加到请求上下文中
+     * @return 调用许可
+     * @throws QueueRejectedException 队列已满或等待超时
+     * @throws CancellationException 排队期间请求被取消或到达请求的截止时间
+     */
+    public Permit acquire() {
+        RequestContext context = RequestContext.current();
+        String clientId = context == null || context.getClientId() == null ? ANONYMOUS : context.getClientId();
+        String priorityClass = resolveClass(context == null ? null : context.getPriorityClass());
+        long start = System.nanoTime();
+
+        Waiter waiter;
+        synchronized (this) {
+            if (running < maxConcurrency && queued == 0) {
+                running++;
+                return granted(context, priorityClass, start);
+            }
+            Flow flow = flows.computeIfAbsent(clientId + "|" + priorityClass, key -> new Flow());
+            if (flow.waiters.size() >= maxQueuePerClient) {
+                throw reject(priorityClass, "client-queue-full");
+            }
+            if (queued >= maxQueue) {
+                throw reject(priorityClass, "queue-full");
+            }
+            double finish = Math.max(virtualTime, flow.lastFinish) + 1.0 / weights.get(priorityClass);
+            flow.lastFinish = finish;
+            waiter = new Waiter(flow, finish);
+            flow.waiters.add(waiter);
+            queued++;
+        }
+
+        try (RequestContext.Scope ignored = RequestContext.onCancel("dashscope", "queued", this::wakeAll)) {
+            synchronized (this) {
+                // 排队时间不超过请求的剩余时间，请求截止时直接退出队列
+                long budgetNanos = context == null ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(context.remainingMillis());
+                boolean requestDeadline = budgetNanos < maxWaitNanos;
+                long deadline = start + Math.min(maxWaitNanos, budgetNanos);
+                while (!waiter.granted) {
+                    if (context != null && context.isCancelled()) {
+                        remove(waiter);
+                        throw new CancellationException("请求已取消（" + context.getCancelReason() + "），退出大模型调用队列");
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        remove(waiter);
+                        if (context != null) {
+                            // 等待超时被拒绝时也返回累计等待时间
+                            context.recordQueueWait(System.nanoTime() - start);
+                        }
+                        if (requestDeadline) {
+                            Metrics.counter("upstream.calls.avoided", "upstream", "dashscope", "stage", "deadline").increment();
+                            throw new CancellationException("请求剩余时间已用完，退出大模型调用队列");
+                        }
+                        throw reject(priorityClass, "wait-timeout");
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+            }
+        } catch (InterruptedException e) {
+            synchronized (this) {
+                if (waiter.granted) {
+                    release(0);
+                } else {
+                    remove(waiter);
+                }
+            }
+            Thread.currentThread().interrupt();
+            throw new CancellationException("排队等待被中断");
+        }
+        return granted(context, priorityClass, start);
+    }
+
+    private Permit granted(RequestContext context, String priorityClass, long start) {
+        long now = System.nanoTime();
+        long wait = now - start;
+        Timer.builder("llm.queue.wait")
+                .tag("class", priorityClass)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(Metrics.globalRegistry)
+                .record(wait, TimeUnit.NANOSECONDS);
+        if (context != null) {
+            context.recordQueueWait(wait);
+        }
+        return new Permit(now);
+    }
+
+    private QueueRejectedException reject(String priorityClass, String reason) {
+        Counter.builder("llm.queue.rejected")
+                .tag("class", priorityClass)
+                .tag("reason", reason)
+                .register(Metrics.globalRegistry)
+                .increment();
+        long retryAfterNanos = (long) (averageCallNanos * (queued + 1) / maxConcurrency);
+        return new QueueRejectedException(reason, Math.max(1, TimeUnit.NANOSECONDS.toSeconds(retryAfterNanos)));
+    }
+
+    /**
+     * 结束一次调用，把空出的名额交给虚拟完成时间最小的排队调用
+     */
+    private synchronized void release(long callNanos) {
+        running--;
+        if (callNanos > 0) {
+            averageCallNanos = averageCallNanos * 0.8 + callNanos * 0.2;
+        }
+        while (running < maxConcurrency && queued > 0) {
+            Flow next = null;
+            Iterator<Flow> iterator = flows.values().iterator();
+            while (iterator.hasNext()) {
+                Flow flow = iterator.next();
+                if (flow.waiters.isEmpty()) {
+                    // 已空闲且虚拟时间已追上的队列不再影响后续排序，可以回收
+                    if (flow.lastFinish <= virtualTime) {
+                        iterator.remove();
+                    }
+                } else if (next == null || flow.waiters.peek().finish < next.waiters.peek().finish) {
+                    next = flow;
+                }
+            }
+            Waiter waiter = next.waiters.poll();
+            queued--;
+            running++;
+            virtualTime = waiter.finish;
+            waiter.granted = true;
+        }
+        notifyAll();
+    }
+
+    private void remove(Waiter waiter) {
+        if (waiter.flow.waiters.remove(waiter)) {
+            queued--;
+        }
+    }
+
+    private synchronized void wakeAll() {
+        notifyAll();
+    }
+
+    private synchronized int queuedCount() {
+        return queued;
+    }
+
+    private synchronized int runningCount() {
+        return running;
+    }
+
+    private String resolveClass(String priorityClass) {
+        return priorityClass != null && weights.containsKey(priorityClass) ? priorityClass : defaultClass;
+    }
+
+    /**
+     * 解析类别权重配置，格式为"类别:权重,类别:权重"
+     */
+    static Map<String, Integer> parseWeights(String config) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String entry : config.split(",")) {
+            String[] parts = entry.split(":");
+            if (parts.length != 2 || parts[0].trim().isEmpty()) {
+                throw new IllegalArgumentException("无效的优先级类别权重配置：" + entry);
+            }
+            weights.put(parts[0].trim(), Math.max(1, Integer.parseInt(parts[1].trim())));
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("至少需要配置一个优先级类别");
+        }
+        return weights;
+    }
+
+    /**
+     * 大模型调用许可，关闭时释放名额，重复关闭无效
+     */
+    public final class Permit implements AutoCloseable {
+        private final long startNanos;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(long startNanos) {
+            this.startNanos = startNanos;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                release(System.nanoTime() - startNanos);
+            }
+        }
+    }
+
+    /** 一个客户端在一个类别下的排队队列 */
+    private static final class Flow {
+        private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+        private double lastFinish;
+    }
+
+    private static final class Waiter {
+        private final Flow flow;
+        private final double finish;
+        private boolean granted;
+
+        Waiter(Flow flow, double finish) {
+            this.flow = flow;
+            this.finish = finish;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.aitravelplanner.Util;
+
+import java.util.function.Supplier;
+
+/**
+ * 日志中的大段内容（大模型回复、高德路线响应等）
+ * 作为日志参数传入，只有在日志真正输出时才生成内容并截断到指定长度；
+ * 日志级别关闭或被采样丢弃时不会调用生成函数，也不会序列化任何对象。
+ */
+public final class LogPayload {
+
+    /** 默认最多保留的字符数 */
+    public static final int DEFAULT_MAX_CHARS = 500;
+
+    private final Supplier<?> payload;
+    private final int maxChars;
+
+    private LogPayload(Supplier<?> payload, int maxChars) {
+        this.payload = payload;
+        this.maxChars = maxChars;
+    }
+
+    /**
+     * 延迟生成并截断的日志内容
+     * @param payload 生成内容的函数
+     * @return 日志参数
+     */
+    public static LogPayload lazy(Supplier<?> payload) {
+        return new LogPayload(payload, DEFAULT_MAX_CHARS);
+    }
+
+    /**
+     * 截断已有内容
+     * @param payload 内容
+     * @return 日志参数
+     */
+    public static LogPayload of(Object payload) {
+        return new LogPayload(() -> payload, DEFAULT_MAX_CHARS);
+    }
+
+    /**
+     * 截断已有内容
+     * @param payload 内容
+     * @param maxChars 最多保留的字符数
+     * @return 日志参数
+     */
+    public static LogPayload of(Object payload, int maxChars) {
+        return new LogPayload(() -> payload, maxChars);
+    }
+
+    /**
+     * 截断字符串，超出部分以省略说明代替
+     * @param text 原文
+     * @param maxChars 最多保留的字符数
+     * @return 截断后的文本
+     */
+    public static String truncate(String text, int maxChars) {
+        if (text == null || text.length() <= maxChars) {
+            return text;
+        }
+        return text.substring(0, maxChars) + "…（共" + text.length() + "字符）";
+    }
+
+    @Override
+    public String toString() {
+        Object value;
+        try {
+            value = payload.get();
+        } catch (RuntimeException e) {
+            return "<生成日志内容失败：" + e.getMessage() + ">";
+        }
+        return truncate(String.valueOf(value), maxChars);
+    }
+}
@@ -0,0 +1,186 @@
+package com.aitravelplanner.Util;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 微批处理器
+ * 并发提交的请求先缓冲起来，第一个请求到达后等待一个短暂的聚合窗口（linger），
+ * 窗口结束或凑满一批时把缓冲的键交给批量加载函数一次处理，再把结果分发给各自的调用方。
+ * 同一批中相同的键只加载一次；某个键的调用方都已取消时，发送前把它从批次中去掉。
+ * 指标：batch.size（每批键数）、batch.fill.ratio（每批键数/批量上限）、batch.flush（按触发原因计数）、
+ * batch.coalesced（与同批已有键合并的请求数），标签batcher为批处理器名称。
+ * @param <K> 键类型
+ * @param <V> 结果类型
+ */
+public class MicroBatcher<K, V> implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(MicroBatcher.class);
+
+    /**
+     * 批量加载函数
+     */
+    @FunctionalInterface
+    public interface BatchLoader<K, V> {
+        /**
+         * @param keys 本批的键（不重复，最多为批量上限个）
+         * @return 键到结果的映射，缺少的键结果为null
+         * @throws Exception 整批失败，本批所有调用方都会收到该异常
+         */
+        Map<K, V> load(List<K> keys) throws Exception;
+    }
+
+    private final String name;
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    private final BatchLoader<K, V> loader;
+    private final ScheduledExecutorService timer;
+    private final ExecutorService flushExecutor;
+    private final DistributionSummary batchSize;
+    private final DistributionSummary fillRatio;
+
+    /** 当前正在聚合的批次，键到等待该键结果的调用方 */
+    private Map<K, List<CompletableFuture<V>>> pending = new LinkedHashMap<>();
+    private ScheduledFuture<?> lingerTask;
+
+    /**
+     * @param name 名称，用于线程名和指标标签
+     * @param maxBatchSize 每批最多的键数
+     * @param lingerMillis 聚合窗口（毫秒），0表示不等待
+     * @param concurrency 同时执行的批量加载数
+     * @param loader 批量加载函数
+     */
+    public MicroBatcher(String name, int maxBatchSize, long lingerMillis, int concurrency, BatchLoader<K, V> loader) {
+        this.name = name;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, lingerMillis));
+        this.loader = loader;
+        this.timer = Executors.newSingleThreadScheduledExecutor(daemon(name + "-linger-"));
+        this.flushExecutor = Executors.newFixedThreadPool(Math.max(1, concurrency), daemon(name + "-flush-"));
+        this.batchSize = DistributionSummary.builder("batch.size").tag("batcher", name)
+                .publishPercentiles(0.5, 0.9)
+                .register(Metrics.globalRegistry);
+        this.fillRatio = DistributionSummary.builder("batch.fill.ratio").tag("batcher", name)
+                .publishPercentiles(0.5, 0.9)
+                .register(Metrics.globalRegistry);
+    }
+
+    /**
+     * 提交一个键，结果在所在批次加载完成后给出
+     * 调用方取消返回的Future不会影响同批的其他调用方
+     * @param key 键
+     * @return 结果
+     */
+    public CompletableFuture<V> submit(K key) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        Map<K, List<CompletableFuture<V>>> full = null;
+        synchronized (this) {
+            List<CompletableFuture<V>> waiters = pending.get(key);
+            if (waiters != null) {
+                Metrics.counter("batch.coalesced", "batcher", name).increment();
+                waiters.add(future);
+                return future;
+            }
+            waiters = new ArrayList<>(1);
+            waiters.add(future);
+            pending.put(key, waiters);
+            if (pending.size() >= maxBatchSize || lingerNanos == 0) {
+                full = takePending();
+            } else if (pending.size() == 1) {
+                lingerTask = timer.schedule(this::flushOnLinger, lingerNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        if (full != null) {
+            dispatch(full, lingerNanos == 0 ? "immediate" : "full");
+        }
+        return future;
+    }
+
+    private void flushOnLinger() {
+        Map<K, List<CompletableFuture<V>>> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = takePending();
+        }
+        dispatch(batch, "linger");
+    }
+
+    /** 取出当前批次并开始新的批次，调用方需持有锁 */
+    private Map<K, List<CompletableFuture<V>>> takePending() {
+        Map<K, List<CompletableFuture<V>>> batch = pending;
+        pending = new LinkedHashMap<>();
+        if (lingerTask != null) {
+            lingerTask.cancel(false);
+            lingerTask = null;
+        }
+        return batch;
+    }
+
+    private void dispatch(Map<K, List<CompletableFuture<V>>> batch, String trigger) {
+        Metrics.counter("batch.flush", "batcher", name, "trigger", trigger).increment();
+        flushExecutor.execute(() -> load(batch));
+    }
+
+    private void load(Map<K, List<CompletableFuture<V>>> batch) {
+        List<K> keys = new ArrayList<>(batch.size());
+        for (Map.Entry<K, List<CompletableFuture<V>>> entry : batch.entrySet()) {
+            if (entry.getValue().stream().anyMatch(waiter -> !waiter.isDone())) {
+                keys.add(entry.getKey());
+            }
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+        batchSize.record(keys.size());
+        fillRatio.record((double) keys.size() / maxBatchSize);
+
+        Map<K, V> results;
+        try {
+            results = loader.load(keys);
+        } catch (Throwable e) {
+            log.atWarn().addKeyValue("batcher", name).addKeyValue("size", keys.size())
+                    .log("批量加载失败：{}", e.getMessage());
+            for (K key : keys) {
+                batch.get(key).forEach(waiter -> waiter.completeExceptionally(e));
+            }
+            return;
+        }
+        for (K key : keys) {
+            V value = results == null ? null : results.get(key);
+            batch.get(key).forEach(waiter -> waiter.complete(value));
+        }
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+        flushExecutor.shutdownNow();
+    }
+
+    private static ThreadFactory daemon(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,18 @@
+package com.aitravelplanner.Util;
+
+/**
+ * 大模型调用失败（熔断中、DashScope返回错误或没有返回有效内容）
+ * 接口应返回503，提示用户稍后重试；失败结果不会写入缓存
+ */
+public class ModelUnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ModelUnavailableException(String message) {
+        super(message);
+    }
+
+    public ModelUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
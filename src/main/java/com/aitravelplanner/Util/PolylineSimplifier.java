@@ -0,0 +1,148 @@
+package com.aitravelplanner.Util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 折线多分辨率简化（Douglas–Peucker）
+ * 一次递归划分就能得到每个顶点的"重要度"：顶点被选为分割点时到所在线段的距离，再与各级父分割点取最小值。
+ * 容差为t的Douglas–Peucker结果恰好是重要度大于t的顶点（加上两个端点），
+ * 因此计算一次重要度后，每一级细节只需按容差过滤，不必对每个容差重新运行算法。
+ * 距离在以首个顶点为原点的局部平面坐标中计算（米），步行路线范围内误差可以忽略。
+ */
+public final class PolylineSimplifier {
+
+    private static final double METERS_PER_DEGREE_LAT = 110_540;
+    private static final double METERS_PER_DEGREE_LNG_AT_EQUATOR = 111_320;
+
+    private PolylineSimplifier() {
+    }
+
+    /**
+     * 计算每个顶点的重要度（米），端点为正无穷
+     * @param lngs 经度
+     * @param lats 纬度
+     * @return 重要度
+     */
+    public static double[] significance(double[] lngs, double[] lats) {
+        int n = lngs.length;
+        double[] significance = new double[n];
+        if (n == 0) {
+            return significance;
+        }
+        significance[0] = Double.POSITIVE_INFINITY;
+        significance[n - 1] = Double.POSITIVE_INFINITY;
+        if (n < 3) {
+            return significance;
+        }
+
+        double scaleX = METERS_PER_DEGREE_LNG_AT_EQUATOR * Math.cos(Math.toRadians(lats[0]));
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = (lngs[i] - lngs[0]) * scaleX;
+            ys[i] = (lats[i] - lats[0]) * METERS_PER_DEGREE_LAT;
+        }
+
+        // 显式栈代替递归，长路线不会栈溢出；每项为 [起点, 终点] 和父分割点的重要度
+        int[] starts = new int[64];
+        int[] ends = new int[64];
+        double[] caps = new double[64];
+        starts[0] = 0;
+        ends[0] = n - 1;
+        caps[0] = Double.POSITIVE_INFINITY;
+        int top = 1;
+        while (top > 0) {
+            top--;
+            int start = starts[top];
+            int end = ends[top];
+            double cap = caps[top];
+            if (end - start < 2) {
+                continue;
+            }
+            int farthest = -1;
+            double maxDistance = -1;
+            for (int i = start + 1; i < end; i++) {
+                double distance = segmentDistance(xs[i], ys[i], xs[start], ys[start], xs[end], ys[end]);
+                if (distance > maxDistance) {
+                    maxDistance = distance;
+                    farthest = i;
+                }
+            }
+            double value = Math.min(maxDistance, cap);
+            significance[farthest] = value;
+            if (top + 2 > starts.length) {
+                starts = Arrays.copyOf(starts, starts.length * 2);
+                ends = Arrays.copyOf(ends, ends.length * 2);
+                caps = Arrays.copyOf(caps, caps.length * 2);
+            }
+            starts[top] = start;
+            ends[top] = farthest;
+            caps[top] = value;
+            top++;
+            starts[top] = farthest;
+            ends[top] = end;
+            caps[top] = value;
+            top++;
+        }
+        return significance;
+    }
+
+    /**
+     * 点到线段的距离
+     */
+    private static double segmentDistance(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : ((px - ax) * dx + (py - ay) * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        double cx = ax + t * dx - px;
+        double cy = ay + t * dy - py;
+        return Math.sqrt(cx * cx + cy * cy);
+    }
+
+    /**
+     * 由高德格式的折线（"经度,纬度;经度,纬度;..."）生成多级细节
+     * @param points 顶点文本（"经度,纬度"），按路线顺序
+     * @param tolerances 各级容差（米），0表示保留全部顶点
+     * @return 每级一项：toleranceMeters（容差）、points（顶点数）、polyline（高德格式折线，顶点文本保持原样）
+     */
+    public static List<Map<String, Object>> buildLevels(List<String> points, double[] tolerances) {
+        int n = points.size();
+        double[] lngs = new double[n];
+        double[] lats = new double[n];
+        for (int i = 0; i < n; i++) {
+            String point = points.get(i);
+            int comma = point.indexOf(',');
+            lngs[i] = Double.parseDouble(point.substring(0, comma));
+            lats[i] = Double.parseDouble(point.substring(comma + 1));
+        }
+        double[] significance = significance(lngs, lats);
+
+        List<Map<String, Object>> levels = new ArrayList<>(tolerances.length);
+        StringBuilder polyline = new StringBuilder(n * 22);
+        for (double tolerance : tolerances) {
+            polyline.setLength(0);
+            int kept = 0;
+            for (int i = 0; i < n; i++) {
+                if (tolerance <= 0 || significance[i] > tolerance) {
+                    if (kept > 0) {
+                        polyline.append(';');
+                    }
+                    polyline.append(points.get(i));
+                    kept++;
+                }
+            }
+            Map<String, Object> level = new LinkedHashMap<>();
+            level.put("toleranceMeters", tolerance);
+            level.put("points", kept);
+            level.put("polyline", polyline.toString());
+            levels.add(level);
+        }
+        return levels;
+    }
+}
@@ -0,0 +1,41 @@
+package com.aitravelplanner.Util;
+
+/**
+ * 大模型调用排队被拒绝（队列已满或等待超时）
+ * 接口应返回429，并通过Retry-After告知客户端多久后重试
+ */
+public class QueueRejectedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String reason;
+    private final long retryAfterSeconds;
+
+    public QueueRejectedException(String reason, long retryAfterSeconds) {
+        super("大模型调用排队被拒绝：" + reason);
+        this.reason = reason;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    /**
+     * 在异常链中查找排队拒绝异常（并发生成时会被CompletionException包装）
+     * @param error 捕获的异常
+     * @return 排队拒绝异常，不存在返回null
+     */
+    public static QueueRejectedException find(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof QueueRejectedException) {
+                return (QueueRejectedException) cause;
+            }
+        }
+        return null;
+    }
+}
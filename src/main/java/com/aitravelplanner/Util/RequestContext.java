@@ -0,0 +1,310 @@
+package com.aitravelplanner.Util;
+
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongConsumer;
+
+/**
+ * 请求上下文
+ * 在处理请求的线程和它提交到线程池的任务之间传递取消信号。客户端断开、请求超时或预生成被替换时取消，
+ * 正在进行的上游调用通过注册的回调立即中断（断开HTTP连接、取消流式订阅），尚未开始的调用直接跳过。
+ * 同时携带发起请求的客户端标识和优先级类别，供大模型调用排队时做公平调度。
+ * 设置了截止时间的请求，每次上游调用只能使用剩余的时间预算，剩余时间不足一次调用所需的最短时间时直接放弃，
+ * 不再发起注定超时的调用。
+ */
+public final class RequestContext {
+
+    private static final Logger log = LoggerFactory.getLogger(RequestContext.class);
+
+    private static final ThreadLocal<RequestContext> CURRENT = new ThreadLocal<>();
+
+    /** 空操作的作用域，没有请求上下文时返回 */
+    private static final Scope NO_OP = () -> { };
+
+    private final String clientId;
+    private final String priorityClass;
+    private final AtomicReference<String> cancelReason = new AtomicReference<>();
+    private final Set<Runnable> callbacks = ConcurrentHashMap.newKeySet();
+    private final AtomicLong queueWaitNanos = new AtomicLong();
+    private volatile LongConsumer queueWaitListener;
+    /** 截止时间（System.nanoTime），没有截止时间时为0 */
+    private volatile long deadlineNanos;
+    private volatile long minHopMillis;
+    private volatile boolean deadlineExceeded;
+    private volatile boolean servedStale;
+
+    public RequestContext() {
+        this(null, null);
+    }
+
+    /**
+     * @param clientId 客户端标识，为null时按匿名客户端调度
+     * @param priorityClass 优先级类别（如 interactive、bulk），为null时使用默认类别
+     */
+    public RequestContext(String clientId, String priorityClass) {
+        this.clientId = clientId;
+        this.priorityClass = priorityClass;
+    }
+
+    /**
+     * 当前线程绑定的请求上下文
+     * @return 请求上下文，没有时返回null
+     */
+    public static RequestContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 将上下文绑定到当前线程，关闭返回的作用域时恢复之前的上下文
+     * @return 作用域
+     */
+    public Scope attach() {
+        RequestContext previous = CURRENT.get();
+        CURRENT.set(this);
+        return () -> {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        };
+    }
+
+    /**
+     * 取消请求，依次执行已注册的取消回调，重复取消无效
+     * @param reason 取消原因（如 timeout、client-disconnect）
+     */
+    public void cancel(String reason) {
+        if (!cancelReason.compareAndSet(null, reason)) {
+            return;
+        }
+        for (Runnable callback : callbacks) {
+            try {
+                callback.run();
+            } catch (RuntimeException e) {
+                log.warn("执行取消回调失败：{}", e.getMessage());
+            }
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelReason.get() != null;
+    }
+
+    public String getCancelReason() {
+        return cancelReason.get();
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public String getPriorityClass() {
+        return priorityClass;
+    }
+
+    /**
+     * 设置请求的截止时间
+     * @param budgetMillis 从现在开始的时间预算（毫秒）
+     * @param minHopMillis 一次上游调用所需的最短时间（毫秒），剩余时间少于它时不再发起调用
+     */
+    public void setDeadline(long budgetMillis, long minHopMillis) {
+        this.minHopMillis = Math.max(0, minHopMillis);
+        this.deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, budgetMillis));
+    }
+
+    /**
+     * 距截止时间的剩余毫秒数
+     * @return 剩余时间，已过截止时间返回0，没有截止时间返回Long.MAX_VALUE
+     */
+    public long remainingMillis() {
+        long deadline = deadlineNanos;
+        if (deadline == 0) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+    }
+
+    /**
+     * 请求是否因剩余时间不足放弃过上游调用，或已过截止时间
+     */
+    public boolean isDeadlineExceeded() {
+        return deadlineExceeded || remainingMillis() == 0;
+    }
+
+    /**
+     * 标记当前请求的结果中含有超过软过期时间的缓存数据（上游故障或后台刷新完成前提供的旧数据）
+     */
+    public static void markServedStale() {
+        RequestContext context = CURRENT.get();
+        if (context != null) {
+            context.servedStale = true;
+        }
+    }
+
+    public boolean isServedStale() {
+        return servedStale;
+    }
+
+    /**
+     * 创建子上下文，继承客户端标识、优先级类别和截止时间，可以单独取消
+     * @return 子上下文
+     */
+    public RequestContext child() {
+        RequestContext child = new RequestContext(clientId, priorityClass);
+        child.deadlineNanos = deadlineNanos;
+        child.minHopMillis = minHopMillis;
+        return child;
+    }
+
+    /**
+     * 累加本请求在大模型调用队列中的等待时间，并通知监听器当前的累计值
+     * @param nanos 本次等待时间（纳秒）
+     */
+    public void recordQueueWait(long nanos) {
+        long total = queueWaitNanos.addAndGet(nanos);
+        LongConsumer listener = queueWaitListener;
+        if (listener != null) {
+            listener.accept(TimeUnit.NANOSECONDS.toMillis(total));
+        }
+    }
+
+    public long getQueueWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(queueWaitNanos.get());
+    }
+
+    /**
+     * 设置排队等待时间的监听器，参数为累计等待毫秒数
+     */
+    public void setQueueWaitListener(LongConsumer listener) {
+        this.queueWaitListener = listener;
+    }
+
+    /**
+     * 在上游调用开始前检查当前请求是否已取消或剩余时间不足，是则记录被跳过的调用并抛出异常
+     * @param upstream 上游服务名称（dashscope、amap、iflytek）
+     * @throws CancellationException 请求已取消或剩余时间不足一次调用
+     */
+    public static void checkCancelled(String upstream) {
+        RequestContext context = CURRENT.get();
+        if (context == null) {
+            return;
+        }
+        if (context.isCancelled()) {
+            Metrics.counter("upstream.calls.avoided", "upstream", upstream, "stage", "before-call").increment();
+            throw new CancellationException("请求已取消（" + context.getCancelReason() + "），跳过" + upstream + "调用");
+        }
+        long remaining = context.remainingMillis();
+        if (remaining < context.minHopMillis || remaining == 0) {
+            context.deadlineExceeded = true;
+            Metrics.counter("upstream.calls.avoided", "upstream", upstream, "stage", "deadline").increment();
+            throw new CancellationException("请求剩余时间不足（" + remaining + "ms），跳过" + upstream + "调用");
+        }
+    }
+
+    /**
+     * 上游调用开始前计算本次调用可用的超时时间：配置的超时与请求剩余时间取较小值
+     * 与checkCancelled相同，请求已取消或剩余时间不足时抛出异常
+     * @param upstream 上游服务名称
+     * @param configuredMillis 该调用配置的超时时间（毫秒）
+     * @return 本次调用的超时时间（毫秒），至少为1
+     * @throws CancellationException 请求已取消或剩余时间不足一次调用
+     */
+    public static long timeoutFor(String upstream, long configuredMillis) {
+        checkCancelled(upstream);
+        RequestContext context = CURRENT.get();
+        long remaining = context == null ? Long.MAX_VALUE : context.remainingMillis();
+        return Math.max(1, Math.min(configuredMillis, remaining));
+    }
+
+    /**
+     * 为当前请求注册进行中上游调用的取消回调，调用结束后应关闭返回的作用域
+     * 回调可能与调用正常结束并发执行，需要能安全地重复执行
+     * @param upstream 上游服务名称
+     * @param callback 中断上游调用的回调
+     * @return 作用域，没有请求上下文时为空操作
+     */
+    public static Scope onCancel(String upstream, Runnable callback) {
+        return onCancel(upstream, "in-flight", callback);
+    }
+
+    /**
+     * 为当前请求注册取消回调，回调执行时按阶段记录被避免的上游调用
+     * @param upstream 上游服务名称
+     * @param stage 调用所处阶段（queued、in-flight）
+     * @param callback 取消回调
+     * @return 作用域，没有请求上下文时为空操作
+     */
+    public static Scope onCancel(String upstream, String stage, Runnable callback) {
+        RequestContext context = CURRENT.get();
+        if (context == null) {
+            return NO_OP;
+        }
+        Runnable counted = () -> {
+            Metrics.counter("upstream.calls.avoided", "upstream", upstream, "stage", stage).increment();
+            callback.run();
+        };
+        context.callbacks.add(counted);
+        if (context.isCancelled() && context.callbacks.remove(counted)) {
+            counted.run();
+        }
+        return () -> context.callbacks.remove(counted);
+    }
+
+    /**
+     * 包装任务，使其在线程池中执行时继承提交时的请求上下文和当前追踪span
+     */
+    public static Runnable propagate(Runnable task) {
+        RequestContext context = CURRENT.get();
+        if (context == null) {
+            return task;
+        }
+        Tracer.Span span = Tracer.current();
+        return () -> {
+            try (Scope ignored = context.attach(); Tracer.Scope traced = Tracer.attach(span)) {
+                task.run();
+            }
+        };
+    }
+
+    /**
+     * 包装任务，使其在线程池中执行时继承提交时的请求上下文和当前追踪span
+     */
+    public static <T> Callable<T> propagate(Callable<T> task) {
+        RequestContext context = CURRENT.get();
+        if (context == null) {
+            return task;
+        }
+        Tracer.Span span = Tracer.current();
+        return () -> {
+            try (Scope ignored = context.attach(); Tracer.Scope traced = Tracer.attach(span)) {
+                return task.call();
+            }
+        };
+    }
+
+    /**
+     * 包装线程池，提交的任务在执行时继承提交线程的请求上下文（用于CompletableFuture等）
+     */
+    public static Executor propagating(Executor executor) {
+        return task -> executor.execute(propagate(task));
+    }
+
+    /**
+     * 上下文作用域，关闭时不抛出受检异常
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,396 @@
+package com.aitravelplanner.Util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Redis协议（RESP2）客户端
+ * 只实现共享缓存用到的命令：GET、SET（带过期时间）、DEL、PUBLISH和SUBSCRIBE。
+ * 普通命令使用连接池，每条连接同一时间只执行一个命令；订阅使用独立连接和后台线程，断开后自动重连。
+ */
+public class RespClient implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(RespClient.class);
+
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private final String host;
+    private final int port;
+    private final String password;
+    private final int database;
+    private final int timeoutMs;
+
+    private final BlockingQueue<Connection> idle;
+    private final Semaphore permits;
+    private volatile boolean closed;
+    private volatile Subscription subscription;
+
+    /**
+     * @param url 服务地址，格式为 redis://[:密码@]主机:端口[/库序号]
+     * @param poolSize 连接池大小
+     * @param timeoutMs 连接、读写和等待空闲连接的超时时间
+     */
+    public RespClient(String url, int poolSize, int timeoutMs) {
+        URI uri = URI.create(url.trim());
+        if (!"redis".equals(uri.getScheme()) || uri.getHost() == null) {
+            throw new IllegalArgumentException("无效的Redis地址：" + url);
+        }
+        this.host = uri.getHost();
+        this.port = uri.getPort() > 0 ? uri.getPort() : 6379;
+        String userInfo = uri.getUserInfo();
+        this.password = userInfo == null || userInfo.isEmpty() ? null
+                : userInfo.substring(userInfo.indexOf(':') + 1);
+        String path = uri.getPath();
+        this.database = path == null || path.length() <= 1 ? 0 : Integer.parseInt(path.substring(1));
+        this.timeoutMs = Math.max(1, timeoutMs);
+        this.idle = new ArrayBlockingQueue<>(Math.max(1, poolSize));
+        this.permits = new Semaphore(Math.max(1, poolSize));
+    }
+
+    /**
+     * 读取键的值
+     * @param key 键
+     * @return 值，不存在时返回null
+     * @throws IOException 连接失败、超时或服务端返回错误
+     */
+    public byte[] get(String key) throws IOException {
+        return (byte[]) execute(bytes("GET"), bytes(key));
+    }
+
+    /**
+     * 写入键的值并设置过期时间
+     * @param key 键
+     * @param value 值
+     * @param ttlMillis 过期时间（毫秒）
+     * @throws IOException 连接失败、超时或服务端返回错误
+     */
+    public void set(String key, byte[] value, long ttlMillis) throws IOException {
+        execute(bytes("SET"), bytes(key), value, bytes("PX"), bytes(Long.toString(Math.max(1, ttlMillis))));
+    }
+
+    /**
+     * 删除键
+     * @param key 键
+     * @throws IOException 连接失败、超时或服务端返回错误
+     */
+    public void del(String key) throws IOException {
+        execute(bytes("DEL"), bytes(key));
+    }
+
+    /**
+     * 向频道发布消息
+     * @param channel 频道
+     * @param message 消息
+     * @return 收到消息的订阅者数
+     * @throws IOException 连接失败、超时或服务端返回错误
+     */
+    public long publish(String channel, String message) throws IOException {
+        return (Long) execute(bytes("PUBLISH"), bytes(channel), bytes(message));
+    }
+
+    /**
+     * 订阅频道，在后台线程中接收消息，连接断开后按退避间隔重连
+     * 只支持一个订阅，重复调用会替换之前的订阅
+     * @param channel 频道
+     * @param listener 消息处理函数
+     * @param onConnected 每次（重新）订阅成功后调用，断开期间的消息已丢失，调用方可借此清理依赖消息的状态
+     */
+    public void subscribe(String channel, Consumer<String> listener, Runnable onConnected) {
+        Subscription previous = subscription;
+        if (previous != null) {
+            previous.stop();
+        }
+        Subscription next = new Subscription(channel, listener, onConnected);
+        subscription = next;
+        next.thread.start();
+    }
+
+    /**
+     * 执行一条命令
+     * 出现IO错误的连接直接关闭，不放回连接池；服务端返回的错误不影响连接继续使用
+     */
+    private Object execute(byte[]... args) throws IOException {
+        if (closed) {
+            throw new IOException("Redis客户端已关闭");
+        }
+        try {
+            if (!permits.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new SocketTimeoutException("等待Redis连接超时");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("等待Redis连接时被中断", e);
+        }
+        Connection connection = idle.poll();
+        try {
+            if (connection == null) {
+                connection = connect();
+            }
+            connection.send(args);
+            Object reply = connection.read();
+            idle.offer(connection);
+            connection = null;
+            if (reply instanceof ServerError) {
+                throw new IOException("Redis返回错误：" + ((ServerError) reply).message);
+            }
+            return reply;
+        } finally {
+            if (connection != null) {
+                connection.close();
+            }
+            permits.release();
+        }
+    }
+
+    private Connection connect() throws IOException {
+        Connection connection = new Connection(timeoutMs);
+        try {
+            if (password != null) {
+                connection.expectOk(bytes("AUTH"), bytes(password));
+            }
+            if (database != 0) {
+                connection.expectOk(bytes("SELECT"), bytes(Integer.toString(database)));
+            }
+            return connection;
+        } catch (IOException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        Subscription current = subscription;
+        if (current != null) {
+            current.stop();
+        }
+        Connection connection;
+        while ((connection = idle.poll()) != null) {
+            connection.close();
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** 服务端返回的错误回复 */
+    private static final class ServerError {
+        private final String message;
+
+        ServerError(String message) {
+            this.message = message;
+        }
+    }
+
+    /**
+     * 一条到服务端的连接，负责按RESP2格式写命令和读回复
+     */
+    private final class Connection implements Closeable {
+
+        private final Socket socket;
+        private final OutputStream out;
+        private final InputStream in;
+
+        Connection(int readTimeoutMs) throws IOException {
+            socket = new Socket();
+            try {
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout(readTimeoutMs);
+                socket.connect(new InetSocketAddress(host, port), timeoutMs);
+                out = new BufferedOutputStream(socket.getOutputStream());
+                in = new BufferedInputStream(socket.getInputStream());
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+        }
+
+        void send(byte[]... args) throws IOException {
+            out.write('*');
+            out.write(bytes(Integer.toString(args.length)));
+            out.write(CRLF);
+            for (byte[] arg : args) {
+                out.write('$');
+                out.write(bytes(Integer.toString(arg.length)));
+                out.write(CRLF);
+                out.write(arg);
+                out.write(CRLF);
+            }
+            out.flush();
+        }
+
+        void expectOk(byte[]... args) throws IOException {
+            send(args);
+            Object reply = read();
+            if (reply instanceof ServerError) {
+                throw new IOException("Redis返回错误：" + ((ServerError) reply).message);
+            }
+        }
+
+        /**
+         * 读取一个回复：简单字符串返回String，错误返回ServerError，整数返回Long，
+         * 批量字符串返回byte[]（空值为null），数组返回Object[]
+         */
+        Object read() throws IOException {
+            int type = in.read();
+            if (type < 0) {
+                throw new EOFException("Redis连接已关闭");
+            }
+            String line = readLine();
+            switch (type) {
+                case '+':
+                    return line;
+                case '-':
+                    return new ServerError(line);
+                case ':':
+                    return Long.parseLong(line);
+                case '$': {
+                    int length = Integer.parseInt(line);
+                    if (length < 0) {
+                        return null;
+                    }
+                    byte[] data = in.readNBytes(length);
+                    if (data.length < length || in.read() != '\r' || in.read() != '\n') {
+                        throw new EOFException("Redis回复不完整");
+                    }
+                    return data;
+                }
+                case '*': {
+                    int count = Integer.parseInt(line);
+                    if (count < 0) {
+                        return null;
+                    }
+                    Object[] items = new Object[count];
+                    for (int i = 0; i < count; i++) {
+                        items[i] = read();
+                    }
+                    return items;
+                }
+                default:
+                    throw new IOException("无法识别的Redis回复类型：" + (char) type);
+            }
+        }
+
+        private String readLine() throws IOException {
+            StringBuilder line = new StringBuilder();
+            int b;
+            while ((b = in.read()) != '\r') {
+                if (b < 0) {
+                    throw new EOFException("Redis连接已关闭");
+                }
+                line.append((char) b);
+            }
+            if (in.read() != '\n') {
+                throw new IOException("Redis回复格式不正确");
+            }
+            return line.toString();
+        }
+
+        @Override
+        public void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // 关闭失败不影响后续使用其他连接
+            }
+        }
+    }
+
+    /**
+     * 频道订阅，后台线程阻塞读取消息，断开后重连
+     */
+    private final class Subscription {
+
+        private static final long MIN_BACKOFF_MS = 500;
+        private static final long MAX_BACKOFF_MS = 30_000;
+
+        private final String channel;
+        private final Consumer<String> listener;
+        private final Runnable onConnected;
+        private final Thread thread;
+        private volatile boolean stopped;
+        private volatile Connection connection;
+
+        Subscription(String channel, Consumer<String> listener, Runnable onConnected) {
+            this.channel = channel;
+            this.listener = listener;
+            this.onConnected = onConnected;
+            this.thread = new Thread(this::run, "resp-subscriber-" + channel);
+            this.thread.setDaemon(true);
+        }
+
+        private void run() {
+            long backoff = MIN_BACKOFF_MS;
+            while (!stopped && !closed) {
+                try {
+                    // 订阅连接长时间没有消息是正常的，不设读取超时
+                    Connection current = new Connection(0);
+                    connection = current;
+                    if (password != null) {
+                        current.expectOk(bytes("AUTH"), bytes(password));
+                    }
+                    current.send(bytes("SUBSCRIBE"), bytes(channel));
+                    current.read();
+                    backoff = MIN_BACKOFF_MS;
+                    onConnected.run();
+                    while (!stopped) {
+                        Object reply = current.read();
+                        if (reply instanceof Object[]) {
+                            Object[] message = (Object[]) reply;
+                            if (message.length == 3 && message[2] instanceof byte[]
+                                    && "message".equals(new String((byte[]) message[0], StandardCharsets.UTF_8))) {
+                                listener.accept(new String((byte[]) message[2], StandardCharsets.UTF_8));
+                            }
+                        }
+                    }
+                } catch (IOException | RuntimeException e) {
+                    if (stopped || closed) {
+                        return;
+                    }
+                    log.atWarn().addKeyValue("channel", channel).addKeyValue("retryMs", backoff)
+                            .log("Redis订阅连接断开，稍后重连：{}", e.getMessage());
+                } finally {
+                    Connection current = connection;
+                    if (current != null) {
+                        current.close();
+                    }
+                }
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                backoff = Math.min(MAX_BACKOFF_MS, backoff * 2);
+            }
+        }
+
+        void stop() {
+            stopped = true;
+            Connection current = connection;
+            if (current != null) {
+                current.close();
+            }
+            thread.interrupt();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.aitravelplanner.Util;
+
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * 过期后重新验证的缓存（stale-while-revalidate）
+ * 在TieredCache之上为每个值区分软过期时间和硬过期时间：未超过软过期时间的值直接返回；
+ * 超过软过期时间但还在硬过期时间（软过期时间 + travel.cache.stale.max-seconds）内的值照常返回，
+ * 同时标记请求使用了过期数据，并在上游熔断器未打开时安排一次后台刷新（同一个键同时只有一个刷新任务）。
+ * 上游故障、熔断打开期间仍能用过期数据快速应答，也不会为了刷新继续请求正在出问题的上游。
+ * 指标：cache.stale（按命名空间和原因revalidate/circuit-open计数）、cache.refresh（按命名空间和结果计数）。
+ */
+@Component
+public class RevalidatingCache {
+
+    private static final Logger log = LoggerFactory.getLogger(RevalidatingCache.class);
+
+    /** 后台刷新使用的请求上下文的客户端标识和优先级类别，大模型调用排在用户请求之后 */
+    private static final String REFRESH_CLIENT = "cache-refresh";
+    private static final String REFRESH_PRIORITY_CLASS = "bulk";
+
+    private final TieredCache cache;
+    private final ExecutorService refreshExecutor;
+    private final long staleSeconds;
+
+    /** 正在后台刷新的键 */
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    public RevalidatingCache(TieredCache cache, @Qualifier("cacheRefreshExecutor") ExecutorService refreshExecutor,
+                             @Value("${travel.cache.stale.max-seconds:86400}") long staleSeconds) {
+        this.cache = cache;
+        this.refreshExecutor = refreshExecutor;
+        this.staleSeconds = Math.max(0, staleSeconds);
+    }
+
+    /**
+     * 查询缓存，未命中时调用loader并在结果可缓存时写入；命中过期值时按上面的规则返回并安排刷新
+     * Map类型的过期值中加入 stale=true
+     * @param namespace 命名空间
+     * @param key 键
+     * @param type 值的类型
+     * @param softTtlSeconds 软过期时间（秒），超过后的值视为过期
+     * @param breaker 上游熔断器，打开时不安排刷新
+     * @param loader 查询上游，失败返回null
+     * @param cacheable 判断loader的结果是否可以缓存，null不会缓存
+     * @return 值，未命中且上游查询失败时返回null
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String namespace, String key, Class<T> type, long softTtlSeconds, CircuitBreaker breaker,
+                     Supplier<T> loader, Predicate<T> cacheable) {
+        TieredCache.Entry<T> entry;
+        try (Tracer.Span span = Tracer.start("cache.lookup").setAttribute("cache.namespace", namespace)) {
+            entry = cache.lookup(namespace, key, type);
+            span.setAttribute("cache.hit", entry != null);
+        }
+        if (entry == null) {
+            return load(namespace, key, softTtlSeconds, loader, cacheable);
+        }
+        if (entry.getAgeMillis() <= TimeUnit.SECONDS.toMillis(softTtlSeconds)) {
+            return entry.getValue();
+        }
+
+        boolean circuitOpen = breaker.isOpen();
+        Metrics.counter("cache.stale", "namespace", namespace, "reason", circuitOpen ? "circuit-open" : "revalidate").increment();
+        RequestContext.markServedStale();
+        if (!circuitOpen) {
+            scheduleRefresh(namespace, key, softTtlSeconds, loader, cacheable);
+        }
+        T value = entry.getValue();
+        if (value instanceof Map) {
+            ((Map<String, Object>) value).put("stale", true);
+        }
+        return value;
+    }
+
+    private <T> T load(String namespace, String key, long softTtlSeconds, Supplier<T> loader, Predicate<T> cacheable) {
+        T value = loader.get();
+        if (value != null && cacheable.test(value)) {
+            cache.put(namespace, key, value, softTtlSeconds + staleSeconds);
+        }
+        return value;
+    }
+
+    /**
+     * 在后台刷新线程中重新查询上游，不受发起请求的取消和截止时间影响
+     */
+    private <T> void scheduleRefresh(String namespace, String key, long softTtlSeconds, Supplier<T> loader, Predicate<T> cacheable) {
+        String refreshKey = namespace + "\n" + key;
+        if (!refreshing.add(refreshKey)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                RequestContext context = new RequestContext(REFRESH_CLIENT, REFRESH_PRIORITY_CLASS);
+                try (RequestContext.Scope ignored = context.attach()) {
+                    T value = load(namespace, key, softTtlSeconds, loader, cacheable);
+                    Metrics.counter("cache.refresh", "namespace", namespace, "result", value == null ? "failed" : "ok").increment();
+                } catch (RuntimeException e) {
+                    Metrics.counter("cache.refresh", "namespace", namespace, "result", "failed").increment();
+                    log.atWarn().addKeyValue("namespace", namespace).log("后台刷新缓存失败：{}", e.getMessage());
+                } finally {
+                    refreshing.remove(refreshKey);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 刷新队列已满，下次命中过期值时再安排
+            refreshing.remove(refreshKey);
+            Metrics.counter("cache.refresh", "namespace", namespace, "result", "rejected").increment();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.aitravelplanner.Util;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.filter.Filter;
+import ch.qos.logback.core.spi.FilterReply;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按日志类别采样的Logback过滤器
+ * 在logback-spring.xml中为日志名前缀配置采样间隔，如 &lt;sample&gt;com.aitravelplanner.payload.amap=20&lt;/sample&gt;
+ * 表示该类别的日志每20条保留1条，匹配最长的前缀。WARN及以上级别不采样。
+ * 过滤器挂在异步Appender上，只会看到已通过级别判断的日志，被丢弃的日志不会格式化参数。
+ */
+public class SamplingLogFilter extends Filter<ILoggingEvent> {
+
+    /** 日志名前缀 -> 采样间隔 */
+    private final Map<String, Long> intervals = new ConcurrentHashMap<>();
+
+    /** 日志名 -> 计数器（同一前缀下的日志共用） */
+    private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+    /** 日志名 -> 匹配到的前缀，未匹配时为空字符串 */
+    private final Map<String, String> resolved = new ConcurrentHashMap<>();
+
+    /**
+     * 添加采样规则（Logback按配置中的每个sample元素调用）
+     * @param rule 格式为"日志名前缀=间隔"，间隔为1表示不采样
+     */
+    public void addSample(String rule) {
+        int separator = rule.lastIndexOf('=');
+        if (separator <= 0) {
+            addError("无效的采样规则：" + rule);
+            return;
+        }
+        try {
+            long interval = Long.parseLong(rule.substring(separator + 1).trim());
+            intervals.put(rule.substring(0, separator).trim(), Math.max(1, interval));
+        } catch (NumberFormatException e) {
+            addError("无效的采样间隔：" + rule);
+        }
+    }
+
+    @Override
+    public FilterReply decide(ILoggingEvent event) {
+        if (event.getLevel().isGreaterOrEqual(Level.WARN)) {
+            return FilterReply.NEUTRAL;
+        }
+        String prefix = resolved.computeIfAbsent(event.getLoggerName(), this::longestPrefix);
+        if (prefix.isEmpty()) {
+            return FilterReply.NEUTRAL;
+        }
+        long interval = intervals.get(prefix);
+        long count = counters.computeIfAbsent(prefix, key -> new AtomicLong()).getAndIncrement();
+        return count % interval == 0 ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+    private String longestPrefix(String loggerName) {
+        String best = "";
+        for (Map.Entry<String, Long> entry : intervals.entrySet()) {
+            String prefix = entry.getKey();
+            boolean matches = loggerName.equals(prefix) || loggerName.startsWith(prefix + ".");
+            if (matches && prefix.length() > best.length() && entry.getValue() > 1) {
+                best = prefix;
+            }
+        }
+        return best;
+    }
+}
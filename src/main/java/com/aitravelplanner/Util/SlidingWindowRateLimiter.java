@@ -0,0 +1,278 @@
+package com.aitravelplanner.Util;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tag;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按客户端的滑动窗口限流器
+ * 每个客户端在一个窗口内最多消耗limit个单位，不同请求按开销消耗不同的单位数。用量按滑动窗口近似计算：
+ * 上一个窗口的用量按其仍在滑动窗口内的比例计入，加上当前窗口的用量。
+ *
+ * 为了在高并发下不产生锁竞争：
+ * 1. 客户端按键的哈希分布到多个分片（stripe），每个分片是独立的ConcurrentHashMap，各自控制容量和清理；
+ * 2. 每个窗口的计数是LongAdder，同一客户端的并发请求累加到不同的计数单元，不争用同一个缓存行；
+ * 3. 检查和累加之间不加锁，并发请求可能使用量略超过limit（最多为同时到达的请求的开销之和）。
+ * 切换窗口时只替换一次窗口对象，之前的计数仍然可以读到，不会丢失迟到的累加。
+ *
+ * 最近两个窗口内都没有请求的客户端用量为0，清理它们不改变限流结果：后台每个窗口清理一次，
+ * 分片超过容量时在插入新客户端时立即清理。清理后仍然超过容量（大量不同客户端同时活跃）时，
+ * 一次移除分片中当前用量最低的1/8客户端（用量相同时先移除最久没有请求的），新客户端总是有自己的计数，
+ * 大量伪造的客户端只会互相替换，不会占用正常客户端的限额；被移除的客户端下次请求时从0开始计数。
+ * 每次移除需要对分片排序，分摊到之后插入的客户端上每个为O(log n)。
+ * 内存占用上限约为maxClients个客户端（并发插入时可能短暂超过）。
+ * 指标：ratelimit.rejected（被拒绝的请求）、ratelimit.clients（跟踪的客户端数）、
+ * ratelimit.evicted（被清理的空闲客户端）、ratelimit.displaced（容量已满时被替换的客户端），标签limiter为限流器名称。
+ */
+public class SlidingWindowRateLimiter implements Closeable {
+
+    /** 分片已满时一次移除的客户端比例的倒数 */
+    private static final int DISPLACE_DIVISOR = 8;
+
+    private final String name;
+    private final long windowNanos;
+    private final long limit;
+    private final Stripe[] stripes;
+    private final int stripeMask;
+    private final int maxClientsPerStripe;
+    private final ScheduledExecutorService sweeper;
+
+    /** 计算窗口序号的起点，使序号为正数 */
+    private final long origin = System.nanoTime();
+
+    /**
+     * @param name 名称，用于线程名和指标标签
+     * @param windowMillis 窗口长度（毫秒）
+     * @param limit 每个客户端在一个窗口内可以消耗的单位数
+     * @param maxClients 最多跟踪的客户端数
+     * @param stripes 分片数，取不小于它的2的幂
+     */
+    public SlidingWindowRateLimiter(String name, long windowMillis, long limit, int maxClients, int stripes) {
+        if (windowMillis <= 0 || limit <= 0) {
+            throw new IllegalArgumentException("窗口长度和限额必须大于0");
+        }
+        this.name = name;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.limit = limit;
+        int stripeCount = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            this.stripes[i] = new Stripe();
+        }
+        this.stripeMask = stripeCount - 1;
+        this.maxClientsPerStripe = Math.max(1, maxClients / stripeCount);
+        Metrics.gauge("ratelimit.clients", List.of(Tag.of("limiter", name)), this, SlidingWindowRateLimiter::size);
+
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name + "-sweep");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::evictIdle, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 为客户端消耗cost个单位
+     * @param clientId 客户端标识
+     * @param cost 本次请求的开销，大于limit时按limit计算
+     * @return 0表示允许；大于0表示被拒绝，值为建议的重试等待时间（毫秒）
+     */
+    public long tryAcquire(String clientId, long cost) {
+        long now = System.nanoTime();
+        long index = windowIndex(now);
+        Windows windows = windowsFor(clientId, now, index);
+
+        long units = Math.min(Math.max(0, cost), limit);
+        long elapsed = now - origin - windows.index * windowNanos;
+        double previousWeight = windows.previous == null ? 0 : Math.max(0, 1 - (double) elapsed / windowNanos);
+        long previous = windows.previous == null ? 0 : windows.previous.sum();
+        long current = windows.current.sum();
+        if (previous * previousWeight + current + units <= limit) {
+            windows.current.add(units);
+            return 0;
+        }
+        Metrics.counter("ratelimit.rejected", "limiter", name).increment();
+        return retryAfterNanos(previous, current, units, elapsed) / 1_000_000 + 1;
+    }
+
+    /**
+     * 按当前用量计算再次请求时可以通过的最早时间
+     */
+    private long retryAfterNanos(long previous, long current, long units, long elapsed) {
+        if (current + units <= limit) {
+            // 本窗口内上一个窗口的权重降到足够低即可
+            double weight = (double) (limit - current - units) / previous;
+            return Math.max(0, (long) ((1 - weight) * windowNanos) - elapsed);
+        }
+        // 需要等到下一个窗口，本窗口的用量成为上一个窗口的用量后按比例降低
+        double fraction = Math.max(0, 1 - (double) (limit - units) / current);
+        return windowNanos - elapsed + (long) (fraction * windowNanos);
+    }
+
+    private long windowIndex(long now) {
+        return (now - origin) / windowNanos;
+    }
+
+    /**
+     * 客户端在滑动窗口内的用量，与tryAcquire的计算方式相同
+     */
+    private double usage(Windows windows, long now, long index) {
+        double previousWeight = Math.max(0, 1 - (double) (now - origin - index * windowNanos) / windowNanos);
+        if (windows.index == index) {
+            return (windows.previous == null ? 0 : windows.previous.sum() * previousWeight) + windows.current.sum();
+        }
+        return windows.index == index - 1 ? windows.current.sum() * previousWeight : 0;
+    }
+
+    /**
+     * 客户端在index所在窗口的计数，需要时新建客户端或切换窗口
+     */
+    private Windows windowsFor(String clientId, long now, long index) {
+        Stripe stripe = stripes[spread(clientId.hashCode()) & stripeMask];
+        Map<String, Windows> clients = stripe.clients;
+        Windows windows = clients.get(clientId);
+        if (windows == null && clients.size() >= maxClientsPerStripe) {
+            stripe.evictIdle(index);
+            if (clients.size() >= maxClientsPerStripe) {
+                stripe.displaceLeastUsed(now, index);
+            }
+        }
+        // 切换窗口时替换整个对象，替换失败说明其他线程已经切换（或客户端刚被清理），重新读取
+        while (windows == null || windows.index < index) {
+            if (windows == null) {
+                windows = clients.computeIfAbsent(clientId, ignored -> new Windows(index, new LongAdder(), null));
+                continue;
+            }
+            Windows next = new Windows(index, new LongAdder(), windows.index == index - 1 ? windows.current : null);
+            if (clients.replace(clientId, windows, next)) {
+                return next;
+            }
+            windows = clients.get(clientId);
+        }
+        return windows;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * 清理最近两个窗口内都没有请求的客户端
+     */
+    public void evictIdle() {
+        long index = windowIndex(System.nanoTime());
+        for (Stripe stripe : stripes) {
+            stripe.evictIdle(index);
+        }
+    }
+
+    /**
+     * 当前跟踪的客户端数
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.clients.size();
+        }
+        return size;
+    }
+
+    @Override
+    public void close() {
+        sweeper.shutdownNow();
+    }
+
+    /**
+     * 一个分片，同一时间只有一个线程清理；客户端只在窗口切换后才会变为空闲，同一个窗口内只清理一次
+     */
+    private final class Stripe {
+        private final ConcurrentHashMap<String, Windows> clients = new ConcurrentHashMap<>();
+        private final AtomicBoolean sweeping = new AtomicBoolean();
+        private volatile long sweptIndex = -1;
+
+        void evictIdle(long index) {
+            if (sweptIndex == index || !sweeping.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                sweptIndex = index;
+                int before = clients.size();
+                clients.values().removeIf(windows -> windows.index < index - 1);
+                int evicted = before - clients.size();
+                if (evicted > 0) {
+                    Metrics.counter("ratelimit.evicted", "limiter", name).increment(evicted);
+                }
+            } finally {
+                sweeping.set(false);
+            }
+        }
+
+        /**
+         * 分片已满时一次移除用量最低的1/DISPLACE_DIVISOR个客户端（用量相同时先移除最久没有请求的），
+         * 排序的开销分摊到之后插入的客户端上；其他线程正在清理时直接返回，分片可能短暂超过容量
+         */
+        void displaceLeastUsed(long now, long index) {
+            if (!sweeping.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                List<Candidate> candidates = new ArrayList<>(clients.size());
+                for (Map.Entry<String, Windows> entry : clients.entrySet()) {
+                    candidates.add(new Candidate(entry.getKey(), entry.getValue(), usage(entry.getValue(), now, index)));
+                }
+                candidates.sort(Comparator.comparingDouble((Candidate candidate) -> candidate.usage)
+                        .thenComparingLong(candidate -> candidate.windows.index));
+                int displaced = 0;
+                for (int i = 0; i < Math.max(1, candidates.size() / DISPLACE_DIVISOR); i++) {
+                    // 期间切换了窗口的客户端刚有过请求，保留
+                    if (clients.remove(candidates.get(i).key, candidates.get(i).windows)) {
+                        displaced++;
+                    }
+                }
+                if (displaced > 0) {
+                    Metrics.counter("ratelimit.displaced", "limiter", name).increment(displaced);
+                }
+            } finally {
+                sweeping.set(false);
+            }
+        }
+    }
+
+    private static final class Candidate {
+        final String key;
+        final Windows windows;
+        final double usage;
+
+        Candidate(String key, Windows windows, double usage) {
+            this.key = key;
+            this.windows = windows;
+            this.usage = usage;
+        }
+    }
+
+    /**
+     * 一个客户端的当前窗口和上一个窗口，切换窗口时整体替换
+     */
+    private static final class Windows {
+        final long index;
+        final LongAdder current;
+        final LongAdder previous;
+
+        Windows(long index, LongAdder current, LongAdder previous) {
+            this.index = index;
+            this.current = current;
+            this.previous = previous;
+        }
+    }
+}
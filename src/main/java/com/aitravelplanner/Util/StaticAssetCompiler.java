@@ -0,0 +1,172 @@
+package com.aitravelplanner.Util;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+import org.springframework.util.DigestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 静态资源构建工具
+ * 在Maven的process-classes阶段对输出目录中的静态资源执行：
+ * 1. 把HTML中引用的本地JS/CSS改写为带内容哈希的文件名（如demand-fixed-&lt;md5&gt;.js），
+ *    哈希与Spring资源链的内容版本策略一致，运行时由VersionResourceResolver解析回原文件；
+ * 2. 为HTML/JS/CSS生成预压缩的.gz和.br文件，由EncodedResourceResolver按Accept-Encoding直接返回。
+ * 文件名带哈希的资源内容不会变化，可以长期缓存；HTML每次都重新验证，从而拿到新的哈希地址。
+ */
+public final class StaticAssetCompiler {
+
+    /** 需要预压缩的资源类型 */
+    private static final Pattern COMPRESSIBLE = Pattern.compile(".*\\.(html|js|css|svg|json)$", Pattern.CASE_INSENSITIVE);
+
+    /** HTML中对本地JS/CSS的引用 */
+    private static final Pattern ASSET_REFERENCE = Pattern.compile("((?:src|href)\\s*=\\s*[\"'])([^\"':?#]+\\.(?:js|css))([\"'])", Pattern.CASE_INSENSITIVE);
+
+    /** 已改写过的文件名（再次构建时先还原为原文件名，以便内容变化后更新哈希） */
+    private static final Pattern VERSIONED_NAME = Pattern.compile("(.*)-[0-9a-f]{32}(\\.(?:js|css))$");
+
+    /** 小于该大小的文件压缩收益不明显，不生成压缩版本 */
+    private static final int MIN_COMPRESS_BYTES = 512;
+
+    private StaticAssetCompiler() {
+    }
+
+    /**
+     * 处理静态资源目录：先改写HTML引用，再生成压缩文件
+     * @param staticDir 静态资源输出目录（target/classes/static）
+     * @throws IOException 读写失败
+     */
+    public static void compile(Path staticDir) throws IOException {
+        boolean brotli = isBrotliAvailable();
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(staticDir)) {
+            files = stream.filter(Files::isRegularFile)
+                    .filter(file -> !file.toString().endsWith(".gz") && !file.toString().endsWith(".br"))
+                    .collect(Collectors.toList());
+        }
+
+        int rewritten = 0;
+        for (Path file : files) {
+            if (file.toString().toLowerCase(Locale.ROOT).endsWith(".html") && rewriteReferences(file)) {
+                rewritten++;
+            }
+        }
+
+        int compressed = 0;
+        long originalBytes = 0;
+        long brotliBytes = 0;
+        for (Path file : files) {
+            if (!COMPRESSIBLE.matcher(file.getFileName().toString()).matches()) {
+                continue;
+            }
+            byte[] content = Files.readAllBytes(file);
+            Path gz = file.resolveSibling(file.getFileName() + ".gz");
+            Path br = file.resolveSibling(file.getFileName() + ".br");
+            Files.deleteIfExists(gz);
+            Files.deleteIfExists(br);
+            if (content.length < MIN_COMPRESS_BYTES) {
+                continue;
+            }
+            Files.write(gz, gzip(content));
+            if (brotli) {
+                byte[] encoded = Encoder.compress(content, new Encoder.Parameters().setQuality(11));
+                Files.write(br, encoded);
+                brotliBytes += encoded.length;
+            }
+            originalBytes += content.length;
+            compressed++;
+        }
+        System.out.println(String.format("静态资源处理完成：改写%d个HTML，压缩%d个文件（%.1fKB%s）",
+                rewritten, compressed, originalBytes / 1024.0,
+                brotli ? String.format(" -> br %.1fKB", brotliBytes / 1024.0) : "，brotli不可用，仅生成gzip"));
+    }
+
+    /**
+     * 把HTML中引用的本地JS/CSS改写为带内容哈希的地址，引用的文件不存在时保持不变
+     * @return 是否有改写
+     */
+    private static boolean rewriteReferences(Path html) throws IOException {
+        String content = new String(Files.readAllBytes(html), StandardCharsets.UTF_8);
+        Matcher matcher = ASSET_REFERENCE.matcher(content);
+        StringBuilder result = new StringBuilder();
+        boolean changed = false;
+        while (matcher.find()) {
+            String reference = matcher.group(2);
+            Matcher versioned = VERSIONED_NAME.matcher(reference);
+            String original = versioned.matches() ? versioned.group(1) + versioned.group(2) : reference;
+            Path target = original.startsWith("/")
+                    ? null
+                    : html.resolveSibling(original).normalize();
+            String replacement = reference;
+            if (target != null && Files.isRegularFile(target)) {
+                String hash = DigestUtils.md5DigestAsHex(Files.readAllBytes(target));
+                int dot = original.lastIndexOf('.');
+                replacement = original.substring(0, dot) + "-" + hash + original.substring(dot);
+            }
+            changed |= !replacement.equals(reference);
+            matcher.appendReplacement(result, Matcher.quoteReplacement(matcher.group(1) + replacement + matcher.group(3)));
+        }
+        matcher.appendTail(result);
+        if (changed) {
+            Files.write(html, result.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return changed;
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 3 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(content);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * brotli依赖本地库，不支持的平台上只生成gzip
+     */
+    private static boolean isBrotliAvailable() {
+        try {
+            Brotli4jLoader.ensureAvailability();
+            return true;
+        } catch (Throwable e) {
+            System.err.println("brotli本地库不可用：" + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 构建时调用（见pom.xml中exec-maven-plugin的配置）
+     * @param args 静态资源目录
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.out.println("用法：StaticAssetCompiler <静态资源目录>");
+            return;
+        }
+        Path staticDir = Paths.get(args[0]);
+        if (!Files.isDirectory(staticDir)) {
+            System.out.println("静态资源目录不存在，跳过：" + staticDir);
+            return;
+        }
+        long start = System.nanoTime();
+        compile(staticDir);
+        System.out.println(String.format("耗时%dms", (System.nanoTime() - start) / 1_000_000));
+    }
+}
@@ -0,0 +1,324 @@
+package com.aitravelplanner.Util;
+
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 两级缓存：进程内近端缓存 + 多实例共享的Redis协议缓存
+ * 查询时先查近端缓存，未命中再查共享缓存，共享缓存命中的值同时放入近端缓存。
+ * 写入时同时写两级，并在失效频道上广播键名，其他实例收到后删除各自近端缓存中的旧值；
+ * 订阅连接断开期间可能漏掉广播，因此每次（重新）订阅成功后清空近端缓存。
+ * 未配置共享缓存（travel.cache.redis.url为空且未启用内嵌服务）时只使用近端缓存。
+ * 共享缓存访问失败时按未命中处理，并在一段时间内不再访问，避免每个请求都等待超时。
+ * 值使用BinaryCodec编码，近端缓存保存编码后的字节，每次命中解码出新对象，调用方修改返回值不会影响缓存。
+ * 编码前附加写入时间，lookup返回值的同时返回写入时间，供调用方按软过期时间判断是否需要刷新。
+ */
+@Component
+public class TieredCache implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(TieredCache.class);
+
+    /** 失效广播频道，消息格式为"实例标识\n键" */
+    static final String INVALIDATION_CHANNEL = "travel:cache:invalidate";
+
+    /** 键前缀，缓存值的含义或编码变化时修改版本号（v2起值前附加8字节写入时间） */
+    private static final String KEY_PREFIX = "travel:v2:";
+
+    /** 值前附加的写入时间（System.currentTimeMillis）的字节数 */
+    private static final int TIMESTAMP_BYTES = Long.BYTES;
+
+    /** 超过该长度的键使用SHA-256摘要，旅行计划的键是完整提示词 */
+    private static final int MAX_PLAIN_KEY_LENGTH = 96;
+
+    private final boolean enabled;
+    private final int nearMaxEntries;
+    private final long nearTtlMillis;
+    private final long sharedRetryMillis;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final RespClient shared;
+
+    /** 近端缓存，按访问顺序淘汰 */
+    private final LinkedHashMap<String, NearEntry> near;
+
+    /** 共享缓存访问失败后，在此时间（System.currentTimeMillis）之前不再访问 */
+    private volatile long sharedUnavailableUntil;
+
+    public TieredCache(@Value("${travel.cache.enabled:true}") boolean enabled,
+                       @Value("${travel.cache.near.max-entries:2000}") int nearMaxEntries,
+                       @Value("${travel.cache.near.ttl-seconds:300}") long nearTtlSeconds,
+                       @Value("${travel.cache.redis.url:}") String redisUrl,
+                       @Value("${travel.cache.redis.pool-size:8}") int poolSize,
+                       @Value("${travel.cache.redis.timeout-ms:200}") int timeoutMs,
+                       @Value("${travel.cache.redis.retry-after-failure-ms:5000}") long sharedRetryMillis,
+                       ObjectProvider<EmbeddedRespServer> embeddedServer) {
+        this.enabled = enabled;
+        this.nearMaxEntries = Math.max(1, nearMaxEntries);
+        this.nearTtlMillis = TimeUnit.SECONDS.toMillis(Math.max(1, nearTtlSeconds));
+        this.sharedRetryMillis = Math.max(0, sharedRetryMillis);
+        this.near = new LinkedHashMap<>(64, 0.75f, true);
+
+        EmbeddedRespServer embedded = embeddedServer.getIfAvailable();
+        String url = embedded != null ? embedded.getUrl() : redisUrl == null ? "" : redisUrl.trim();
+        if (enabled && !url.isEmpty()) {
+            this.shared = new RespClient(url, poolSize, timeoutMs);
+            shared.subscribe(INVALIDATION_CHANNEL, this::onInvalidation, this::clearNear);
+            log.atInfo().addKeyValue("node", nodeId).addKeyValue("embedded", embedded != null)
+                    .log("已启用共享缓存");
+        } else {
+            this.shared = null;
+        }
+    }
+
+    /**
+     * 查询缓存
+     * @param namespace 命名空间（geocode、route、plan等），用于区分键和统计命中率
+     * @param key 键
+     * @param type 值的类型，缓存中的值类型不符时按未命中处理
+     * @return 缓存的值，未命中返回null
+     */
+    public <T> T get(String namespace, String key, Class<T> type) {
+        Entry<T> entry = lookup(namespace, key, type);
+        return entry == null ? null : entry.getValue();
+    }
+
+    /**
+     * 查询缓存，同时返回值的写入时间
+     * @param namespace 命名空间
+     * @param key 键
+     * @param type 值的类型，缓存中的值类型不符时按未命中处理
+     * @return 缓存条目，未命中返回null
+     */
+    public <T> Entry<T> lookup(String namespace, String key, Class<T> type) {
+        if (!enabled) {
+            return null;
+        }
+        String fullKey = fullKey(namespace, key);
+        byte[] data = getNear(fullKey);
+        String tier = "near";
+        if (data == null && isSharedAvailable()) {
+            try {
+                data = shared.get(fullKey);
+                tier = "shared";
+            } catch (IOException e) {
+                sharedFailed("get", e);
+            }
+            if (data != null) {
+                putNear(fullKey, data, nearTtlMillis);
+            }
+        }
+        Entry<T> entry = data == null ? null : decode(fullKey, data, type);
+        Metrics.counter("cache.requests", "namespace", namespace, "result", entry == null ? "miss" : tier).increment();
+        return entry;
+    }
+
+    /**
+     * 写入缓存，并通知其他实例删除近端缓存中的旧值
+     * @param namespace 命名空间
+     * @param key 键
+     * @param value 值，为null时不写入
+     * @param ttlSeconds 共享缓存中的过期时间（秒），近端缓存不超过travel.cache.near.ttl-seconds
+     */
+    public void put(String namespace, String key, Object value, long ttlSeconds) {
+        if (!enabled || value == null) {
+            return;
+        }
+        String fullKey = fullKey(namespace, key);
+        byte[] encoded = BinaryCodec.encode(value);
+        byte[] data = new byte[TIMESTAMP_BYTES + encoded.length];
+        ByteBuffer.wrap(data).putLong(System.currentTimeMillis()).put(encoded);
+        long ttlMillis = TimeUnit.SECONDS.toMillis(Math.max(1, ttlSeconds));
+        // 近端缓存的过期时间用于限制与其他实例的不一致，没有共享缓存时近端缓存就是唯一的一级，按完整过期时间保存
+        putNear(fullKey, data, shared == null ? ttlMillis : Math.min(ttlMillis, nearTtlMillis));
+        if (isSharedAvailable()) {
+            try {
+                shared.set(fullKey, data, ttlMillis);
+                shared.publish(INVALIDATION_CHANNEL, nodeId + "\n" + fullKey);
+            } catch (IOException e) {
+                sharedFailed("put", e);
+            }
+        }
+    }
+
+    /**
+     * 删除缓存中的值，所有实例的近端缓存同时失效
+     * @param namespace 命名空间
+     * @param key 键
+     */
+    public void invalidate(String namespace, String key) {
+        if (!enabled) {
+            return;
+        }
+        String fullKey = fullKey(namespace, key);
+        removeNear(fullKey);
+        if (isSharedAvailable()) {
+            try {
+                shared.del(fullKey);
+                shared.publish(INVALIDATION_CHANNEL, nodeId + "\n" + fullKey);
+            } catch (IOException e) {
+                sharedFailed("invalidate", e);
+            }
+        }
+    }
+
+    /**
+     * 是否连接了共享缓存
+     * @return 配置了Redis地址或启用了内嵌服务时返回true
+     */
+    public boolean isShared() {
+        return shared != null;
+    }
+
+    private void onInvalidation(String message) {
+        int separator = message.indexOf('\n');
+        if (separator <= 0 || nodeId.equals(message.substring(0, separator))) {
+            return;
+        }
+        removeNear(message.substring(separator + 1));
+    }
+
+    private <T> Entry<T> decode(String fullKey, byte[] data, Class<T> type) {
+        try {
+            if (data.length <= TIMESTAMP_BYTES) {
+                throw new IllegalArgumentException("缺少写入时间");
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            long writtenAt = buffer.getLong();
+            Object value = BinaryCodec.decode(Arrays.copyOfRange(data, TIMESTAMP_BYTES, data.length));
+            if (type.isInstance(value)) {
+                return new Entry<>(type.cast(value), writtenAt);
+            }
+        } catch (IllegalArgumentException e) {
+            log.atWarn().addKeyValue("key", fullKey).log("缓存数据无法解码，按未命中处理：{}", e.getMessage());
+        }
+        removeNear(fullKey);
+        return null;
+    }
+
+    private boolean isSharedAvailable() {
+        return shared != null && System.currentTimeMillis() >= sharedUnavailableUntil;
+    }
+
+    private void sharedFailed(String operation, IOException e) {
+        boolean wasAvailable = System.currentTimeMillis() >= sharedUnavailableUntil;
+        sharedUnavailableUntil = System.currentTimeMillis() + sharedRetryMillis;
+        Metrics.counter("cache.shared.errors", "operation", operation).increment();
+        if (wasAvailable) {
+            log.atWarn().addKeyValue("operation", operation).addKeyValue("retryMs", sharedRetryMillis)
+                    .log("共享缓存访问失败，暂时只使用近端缓存：{}", e.getMessage());
+        }
+    }
+
+    private static String fullKey(String namespace, String key) {
+        if (key.length() <= MAX_PLAIN_KEY_LENGTH) {
+            return KEY_PREFIX + namespace + ":" + key;
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return KEY_PREFIX + namespace + ":#" + HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("JDK缺少SHA-256算法", e);
+        }
+    }
+
+    private byte[] getNear(String fullKey) {
+        synchronized (near) {
+            NearEntry entry = near.get(fullKey);
+            if (entry == null) {
+                return null;
+            }
+            if (System.currentTimeMillis() >= entry.expiresAt) {
+                near.remove(fullKey);
+                return null;
+            }
+            return entry.data;
+        }
+    }
+
+    private void putNear(String fullKey, byte[] data, long ttlMillis) {
+        synchronized (near) {
+            near.put(fullKey, new NearEntry(data, System.currentTimeMillis() + ttlMillis));
+            if (near.size() > nearMaxEntries) {
+                Map.Entry<String, NearEntry> eldest = near.entrySet().iterator().next();
+                near.remove(eldest.getKey());
+            }
+        }
+    }
+
+    private void removeNear(String fullKey) {
+        synchronized (near) {
+            near.remove(fullKey);
+        }
+    }
+
+    private void clearNear() {
+        synchronized (near) {
+            near.clear();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (shared != null) {
+            shared.close();
+        }
+    }
+
+    /**
+     * 缓存条目：值和写入时间
+     * @param <T> 值类型
+     */
+    public static final class Entry<T> {
+        private final T value;
+        private final long writtenAt;
+
+        Entry(T value, long writtenAt) {
+            this.value = value;
+            this.writtenAt = writtenAt;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        /**
+         * 写入时间（System.currentTimeMillis）
+         */
+        public long getWrittenAt() {
+            return writtenAt;
+        }
+
+        /**
+         * 写入后经过的毫秒数
+         */
+        public long getAgeMillis() {
+            return Math.max(0, System.currentTimeMillis() - writtenAt);
+        }
+    }
+
+    private static final class NearEntry {
+        private final byte[] data;
+        private final long expiresAt;
+
+        NearEntry(byte[] data, long expiresAt) {
+            this.data = data;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
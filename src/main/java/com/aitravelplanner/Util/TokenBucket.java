@@ -0,0 +1,95 @@
+package com.aitravelplanner.Util;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 令牌桶限流器
+ * 令牌按固定速率补充，桶满后不再累积，允许不超过桶容量的突发请求。
+ * 令牌不足时预约下一个令牌并等待到可用时刻，预计等待超过上限时直接拒绝，不占用令牌。
+ * 等待上限不超过当前请求的剩余时间，等待期间请求被取消时立即醒来并归还预约的令牌。
+ */
+public class TokenBucket {
+
+    private final String name;
+    private final double permitsPerNano;
+    private final double capacity;
+    private final Timer waitTimer;
+
+    /** 当前令牌数，可以为负数，表示已被预约的令牌 */
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * @param name 限流器名称，用于指标标签
+     * @param permitsPerSecond 每秒补充的令牌数
+     * @param burst 桶容量（允许的突发请求数）
+     */
+    public TokenBucket(String name, double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("每秒令牌数必须大于0");
+        }
+        this.name = name;
+        this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.capacity = Math.max(1, burst);
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+        this.waitTimer = Timer.builder("ratelimit.wait").tag("limiter", name)
+                .publishPercentiles(0.5, 0.9, 0.99)
+                .register(Metrics.globalRegistry);
+    }
+
+    /**
+     * 获取一个令牌，必要时等待
+     * @param maxWaitMillis 最长等待时间，当前请求的剩余时间更短时以剩余时间为准
+     * @return 获取成功返回true，预计等待超过上限时返回false
+     * @throws CancellationException 等待期间线程被中断、请求被取消或剩余时间不足
+     */
+    public boolean tryAcquire(long maxWaitMillis) {
+        RequestContext context = RequestContext.current();
+        if (context != null) {
+            maxWaitMillis = Math.min(maxWaitMillis, context.remainingMillis());
+        }
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * permitsPerNano);
+            lastRefill = now;
+            waitNanos = tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / permitsPerNano);
+            if (waitNanos > TimeUnit.MILLISECONDS.toNanos(maxWaitMillis)) {
+                Metrics.counter("ratelimit.rejected", "limiter", name).increment();
+                return false;
+            }
+            tokens -= 1;
+        }
+        waitTimer.record(waitNanos, TimeUnit.NANOSECONDS);
+        if (waitNanos > 0) {
+            CountDownLatch cancelled = new CountDownLatch(1);
+            try (RequestContext.Scope ignored = RequestContext.onCancel(name, "queued", cancelled::countDown)) {
+                cancelled.await(waitNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                release();
+                Thread.currentThread().interrupt();
+                throw new CancellationException("等待" + name + "限流令牌时被中断");
+            }
+            try {
+                RequestContext.checkCancelled(name);
+            } catch (CancellationException e) {
+                release();
+                throw e;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 归还预约后没有使用的令牌
+     */
+    private synchronized void release() {
+        tokens = Math.min(capacity, tokens + 1);
+    }
+}
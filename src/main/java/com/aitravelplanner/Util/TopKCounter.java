@@ -0,0 +1,197 @@
+package com.aitravelplanner.Util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 高频键计数器（Space-Saving算法）
+ * 只跟踪固定数量的键，已满时新键替换当前计数最小的键并继承其计数，内存占用与流量中不同键的数量无关。
+ * 真正的高频键（出现次数超过总数 / 容量）一定会保留，计数可能偏高，偏高的上限为被替换键的计数。
+ * 计数按Stream-Summary结构组织：相同计数的键放在同一个桶里，桶按计数从小到大组成双向链表，
+ * 计数加一只需把键移到相邻的桶，替换时直接取最小的桶，都是O(1)，不随跟踪的键数量增长。
+ * @param <K> 键类型
+ */
+public class TopKCounter<K> {
+
+    private final int capacity;
+
+    private final Map<K, Node<K>> nodes;
+
+    /** 计数最小和最大的桶 */
+    private Bucket<K> min;
+    private Bucket<K> max;
+
+    /**
+     * @param capacity 跟踪的键数量，应为需要的前N个的数倍，以减少误差
+     */
+    public TopKCounter(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.nodes = new HashMap<>(this.capacity * 2);
+    }
+
+    /**
+     * 记录键出现一次
+     * @param key 键
+     */
+    public void add(K key) {
+        add(key, 1);
+    }
+
+    /**
+     * 记录键出现若干次（用于从保存的计数恢复）
+     * 次数为1时是O(1)；次数更大时需要向后查找目标桶，耗时与跨过的桶数成正比
+     * @param key 键
+     * @param count 次数，不大于0时忽略
+     */
+    public synchronized void add(K key, long count) {
+        if (count <= 0) {
+            return;
+        }
+        Node<K> node = nodes.get(key);
+        if (node != null) {
+            Bucket<K> from = node.bucket;
+            from.remove(node);
+            place(node, from, from.count + count);
+            if (from.isEmpty()) {
+                unlink(from);
+            }
+            return;
+        }
+        if (nodes.size() < capacity) {
+            node = new Node<>(key);
+            nodes.put(key, node);
+            place(node, null, count);
+            return;
+        }
+        // 替换计数最小的桶中最早进入的键
+        Bucket<K> smallest = min;
+        node = smallest.head;
+        smallest.remove(node);
+        nodes.remove(node.key);
+        node.key = key;
+        nodes.put(key, node);
+        place(node, smallest, smallest.count + count);
+        if (smallest.isEmpty()) {
+            unlink(smallest);
+        }
+    }
+
+    /**
+     * 计数最高的前n个键及其计数，按计数从高到低排列
+     * @param n 数量
+     * @return 键和计数
+     */
+    public synchronized List<Map.Entry<K, Long>> top(int n) {
+        List<Map.Entry<K, Long>> entries = new ArrayList<>(Math.max(0, Math.min(n, nodes.size())));
+        for (Bucket<K> bucket = max; bucket != null && entries.size() < n; bucket = bucket.prev) {
+            for (Node<K> node = bucket.head; node != null && entries.size() < n; node = node.next) {
+                entries.add(Map.entry(node.key, bucket.count));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * 把键放入计数为count的桶，没有则在合适位置新建
+     * @param from 查找起点，count不小于它的计数；为null时从最小的桶开始
+     */
+    private void place(Node<K> node, Bucket<K> from, long count) {
+        Bucket<K> before = from;
+        Bucket<K> next = from == null ? min : from.next;
+        while (next != null && next.count <= count) {
+            before = next;
+            next = next.next;
+        }
+        Bucket<K> target;
+        if (before != null && before.count == count) {
+            target = before;
+        } else {
+            target = new Bucket<>(count);
+            target.prev = before;
+            target.next = next;
+            if (before == null) {
+                min = target;
+            } else {
+                before.next = target;
+            }
+            if (next == null) {
+                max = target;
+            } else {
+                next.prev = target;
+            }
+        }
+        target.append(node);
+    }
+
+    private void unlink(Bucket<K> bucket) {
+        if (bucket.prev == null) {
+            min = bucket.next;
+        } else {
+            bucket.prev.next = bucket.next;
+        }
+        if (bucket.next == null) {
+            max = bucket.prev;
+        } else {
+            bucket.next.prev = bucket.prev;
+        }
+    }
+
+    /**
+     * 计数相同的键，按进入桶的先后组成双向链表
+     */
+    private static final class Bucket<K> {
+        private final long count;
+        private Bucket<K> prev;
+        private Bucket<K> next;
+        private Node<K> head;
+        private Node<K> tail;
+
+        Bucket(long count) {
+            this.count = count;
+        }
+
+        void append(Node<K> node) {
+            node.bucket = this;
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+        }
+
+        void remove(Node<K> node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+        }
+
+        boolean isEmpty() {
+            return head == null;
+        }
+    }
+
+    private static final class Node<K> {
+        private K key;
+        private Bucket<K> bucket;
+        private Node<K> prev;
+        private Node<K> next;
+
+        Node(K key) {
+            this.key = key;
+        }
+    }
+}
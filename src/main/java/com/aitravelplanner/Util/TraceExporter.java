@@ -0,0 +1,350 @@
+package com.aitravelplanner.Util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Metrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 链路采样与导出
+ * 按采样率为请求创建根span（上游traceparent标记为已采样的请求总是采样），请求结束后：
+ * 1. 计算每个阶段的自身耗时（span耗时减去直接子span的耗时），按调用栈路径汇总成火焰图的折叠栈格式
+ *    （"根;阶段;子阶段 微秒数"，可以直接交给flamegraph.pl等工具），自身耗时最多的阶段即热点阶段，
+ *    写入根span的breakdown.*属性；请求耗时超过slow-ms时把完整的分解写入日志；
+ * 2. 转换为OTLP/JSON格式（ExportTraceServiceRequest），经延迟批量写入队列每条链路一行追加到本地文件，
+ *    文件超过max-file-bytes时轮转（traces.jsonl → traces.1.jsonl → …），最多保留max-files个历史文件；
+ *    配置了collector地址时同时POST到 /v1/traces，collector不可用时只记录日志，不影响文件导出。
+ */
+@Component
+public class TraceExporter {
+
+    private static final Logger log = LoggerFactory.getLogger(TraceExporter.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /** Server-Timing响应头中列出的阶段数 */
+    private static final int SERVER_TIMING_STAGES = 5;
+
+    /** 是否启用链路追踪 */
+    @Value("${travel.tracing.enabled:true}")
+    private boolean enabled;
+
+    /** 采样率（0~1），每条链路都要记录各阶段的span并写入文件，默认只采样一小部分请求 */
+    @Value("${travel.tracing.sample-rate:0.01}")
+    private double sampleRate;
+
+    /** OTLP/JSON导出文件，每条链路一行 */
+    @Value("${travel.tracing.file:./data/traces.jsonl}")
+    private String file;
+
+    /** 导出文件的最大字节数，超过后轮转，不大于0表示不限制 */
+    @Value("${travel.tracing.max-file-bytes:20971520}")
+    private long maxFileBytes;
+
+    /** 轮转后保留的历史文件数 */
+    @Value("${travel.tracing.max-files:5}")
+    private int maxFiles;
+
+    /** OTLP/HTTP collector地址（如 http://localhost:4318/v1/traces），留空则只写文件 */
+    @Value("${travel.tracing.otlp.endpoint:}")
+    private String endpoint;
+
+    /** 耗时超过该值（毫秒）的请求把耗时分解写入日志 */
+    @Value("${travel.tracing.slow-ms:5000}")
+    private long slowMs;
+
+    /** 导出缓冲区容量，满时丢弃新的链路 */
+    @Value("${travel.tracing.buffer-capacity:1000}")
+    private int bufferCapacity;
+
+    @Value("${travel.tracing.flush-interval-ms:1000}")
+    private long flushIntervalMs;
+
+    @Value("${spring.application.name:ai-travel-planner}")
+    private String serviceName;
+
+    private WriteBehindQueue<List<Map<String, Object>>> exportQueue;
+
+    @PostConstruct
+    public void init() {
+        exportQueue = new WriteBehindQueue<>("traces", bufferCapacity, 100, flushIntervalMs, this::writeBatch);
+    }
+
+    /**
+     * 关闭时把缓冲区中的链路全部导出
+     */
+    @PreDestroy
+    public void shutdown() {
+        exportQueue.close();
+    }
+
+    /**
+     * 为请求创建根span，不采样时返回空操作的span
+     * @param name 根span名称（接口名称）
+     * @param traceparent 上游传入的traceparent请求头，可以为null
+     * @return 根span，需由处理线程attach并在结束时调用finish
+     */
+    public Tracer.Span startRequest(String name, String traceparent) {
+        if (!enabled) {
+            return Tracer.NOOP;
+        }
+        if (!Tracer.isSampledUpstream(traceparent) && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return Tracer.NOOP;
+        }
+        return Tracer.startTrace(name, traceparent);
+    }
+
+    /**
+     * 结束根span，计算耗时分解并放入导出队列（根span已结束时不做任何事）
+     * @param root 根span
+     * @return Server-Timing响应头的值（自身耗时最多的几个阶段及总耗时），未采样时返回null
+     */
+    public String finish(Tracer.Span root) {
+        if (root == Tracer.NOOP || root.getTrace() == null || root.isEnded()) {
+            return null;
+        }
+        root.end();
+        List<Tracer.Span> spans = root.getTrace().getSpans();
+        List<Map.Entry<String, Long>> folded = foldedStacks(spans);
+        double totalMs = root.getDurationNanos() / 1_000_000.0;
+        if (!folded.isEmpty()) {
+            Map.Entry<String, Long> hot = folded.get(0);
+            root.setAttribute("breakdown.hot_stage", hot.getKey());
+            root.setAttribute("breakdown.hot_stage_ms", hot.getValue() / 1000.0);
+            root.setAttribute("breakdown.folded", render(folded, 0));
+        }
+        if (totalMs >= slowMs) {
+            log.atWarn().addKeyValue("traceId", root.getTraceId()).addKeyValue("durationMs", Math.round(totalMs))
+                    .addKeyValue("hotStage", folded.isEmpty() ? null : folded.get(0).getKey())
+                    .log("慢请求耗时分解（自身耗时 占请求耗时的比例 调用栈，并发阶段的比例之和可能超过100%）：\n{}", render(folded, totalMs * 1000));
+        }
+
+        List<Map<String, Object>> otlpSpans = new ArrayList<>(spans.size());
+        for (Tracer.Span span : spans) {
+            otlpSpans.add(toOtlp(span));
+        }
+        if (!exportQueue.offer(otlpSpans, 0)) {
+            Metrics.counter("traces.dropped").increment();
+        }
+        return serverTiming(folded, totalMs);
+    }
+
+    /**
+     * 按调用栈路径汇总各阶段的自身耗时（微秒），从高到低排列
+     * 并发的子span耗时之和可能超过父span，此时父span的自身耗时记为0
+     */
+    static List<Map.Entry<String, Long>> foldedStacks(List<Tracer.Span> spans) {
+        Map<Tracer.Span, Long> childNanos = new HashMap<>();
+        for (Tracer.Span span : spans) {
+            if (span.getParent() != null) {
+                childNanos.merge(span.getParent(), span.getDurationNanos(), Long::sum);
+            }
+        }
+        Map<String, Long> selfMicros = new LinkedHashMap<>();
+        for (Tracer.Span span : spans) {
+            long self = Math.max(0, span.getDurationNanos() - childNanos.getOrDefault(span, 0L));
+            selfMicros.merge(stackOf(span), self / 1000, Long::sum);
+        }
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(selfMicros.entrySet());
+        entries.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        return entries;
+    }
+
+    private static String stackOf(Tracer.Span span) {
+        List<String> names = new ArrayList<>();
+        for (Tracer.Span current = span; current != null; current = current.getParent()) {
+            // 折叠栈格式以分号分隔栈帧、以最后一个空格分隔计数
+            names.add(current.getName().replace(';', ':').replace(' ', '_'));
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = names.size() - 1; i >= 0; i--) {
+            sb.append(names.get(i));
+            if (i > 0) {
+                sb.append(';');
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 渲染折叠栈，totalMicros大于0时在每行前加上自身耗时和占比
+     */
+    private static String render(List<Map.Entry<String, Long>> folded, double totalMicros) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Long> entry : folded) {
+            if (totalMicros > 0) {
+                sb.append(String.format("%8.1fms %5.1f%%  ", entry.getValue() / 1000.0, entry.getValue() * 100.0 / totalMicros));
+                sb.append(entry.getKey()).append('\n');
+            } else {
+                sb.append(entry.getKey()).append(' ').append(entry.getValue()).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 按阶段名称汇总自身耗时，生成Server-Timing响应头
+     */
+    private static String serverTiming(List<Map.Entry<String, Long>> folded, double totalMs) {
+        Map<String, Long> byStage = new HashMap<>();
+        for (Map.Entry<String, Long> entry : folded) {
+            String stack = entry.getKey();
+            byStage.merge(stack.substring(stack.lastIndexOf(';') + 1), entry.getValue(), Long::sum);
+        }
+        List<Map.Entry<String, Long>> stages = new ArrayList<>(byStage.entrySet());
+        stages.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < Math.min(SERVER_TIMING_STAGES, stages.size()); i++) {
+            Map.Entry<String, Long> stage = stages.get(i);
+            sb.append("s").append(i).append(";dur=").append(String.format("%.1f", stage.getValue() / 1000.0))
+                    .append(";desc=\"").append(stage.getKey().replace("\"", "")).append("\", ");
+        }
+        return sb.append("total;dur=").append(String.format("%.1f", totalMs)).toString();
+    }
+
+    /**
+     * 转换为OTLP/JSON的Span：ID为十六进制字符串，时间为Unix纳秒的十进制字符串
+     */
+    private static Map<String, Object> toOtlp(Tracer.Span span) {
+        Map<String, Object> otlp = new LinkedHashMap<>();
+        otlp.put("traceId", span.getTraceId());
+        otlp.put("spanId", span.getSpanId());
+        if (span.getParentSpanId() != null) {
+            otlp.put("parentSpanId", span.getParentSpanId());
+        }
+        otlp.put("name", span.getName());
+        otlp.put("kind", span.getKind().getCode());
+        otlp.put("startTimeUnixNano", String.valueOf(span.getStartEpochNanos()));
+        otlp.put("endTimeUnixNano", String.valueOf(span.getEndEpochNanos()));
+        List<Map<String, Object>> attributes = new ArrayList<>();
+        for (Map.Entry<String, Object> attribute : span.getAttributes().entrySet()) {
+            attributes.add(keyValue(attribute.getKey(), attribute.getValue()));
+        }
+        otlp.put("attributes", attributes);
+        otlp.put("status", span.getError() == null ? Map.of("code", 0) : Map.of("code", 2, "message", span.getError()));
+        return otlp;
+    }
+
+    private static Map<String, Object> keyValue(String key, Object value) {
+        Map<String, Object> anyValue;
+        if (value instanceof Boolean) {
+            anyValue = Map.of("boolValue", value);
+        } else if (value instanceof Integer || value instanceof Long) {
+            // OTLP/JSON中64位整数用字符串表示
+            anyValue = Map.of("intValue", String.valueOf(value));
+        } else if (value instanceof Number) {
+            anyValue = Map.of("doubleValue", ((Number) value).doubleValue());
+        } else {
+            anyValue = Map.of("stringValue", String.valueOf(value));
+        }
+        return Map.of("key", key, "value", anyValue);
+    }
+
+    /**
+     * 包装为ExportTraceServiceRequest
+     */
+    private Map<String, Object> exportRequest(List<Map<String, Object>> spans) {
+        Map<String, Object> resource = Map.of("attributes", List.of(keyValue("service.name", serviceName)));
+        Map<String, Object> scopeSpans = Map.of("scope", Map.of("name", "com.aitravelplanner"), "spans", spans);
+        return Map.of("resourceSpans", List.of(Map.of("resource", resource, "scopeSpans", List.of(scopeSpans))));
+    }
+
+    private void writeBatch(List<List<Map<String, Object>>> traces) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        List<Map<String, Object>> allSpans = new ArrayList<>();
+        for (List<Map<String, Object>> spans : traces) {
+            lines.append(MAPPER.writeValueAsString(exportRequest(spans))).append('\n');
+            allSpans.addAll(spans);
+        }
+        append(Paths.get(file), lines.toString().getBytes(StandardCharsets.UTF_8));
+
+        if (!endpoint.isEmpty()) {
+            try {
+                post(MAPPER.writeValueAsBytes(exportRequest(allSpans)));
+            } catch (IOException e) {
+                Metrics.counter("traces.export.failed").increment(traces.size());
+                log.atWarn().addKeyValue("endpoint", endpoint).log("链路导出到collector失败：{}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 追加写入导出文件，写入后会超过max-file-bytes时先轮转
+     */
+    void append(Path path, byte[] bytes) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        if (maxFileBytes > 0 && Files.exists(path)) {
+            long size = Files.size(path);
+            if (size > 0 && size + bytes.length > maxFileBytes) {
+                rotate(path);
+            }
+        }
+        Files.write(path, bytes, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * traces.jsonl → traces.1.jsonl，已有的历史文件序号依次加一，超过max-files的删除
+     */
+    private void rotate(Path path) throws IOException {
+        int keep = Math.max(0, maxFiles);
+        Files.deleteIfExists(rotated(path, keep + 1));
+        for (int index = keep; index >= 1; index--) {
+            Path source = index == 1 ? path : rotated(path, index - 1);
+            Path target = rotated(path, index);
+            if (Files.exists(source)) {
+                Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.deleteIfExists(path);
+    }
+
+    static Path rotated(Path path, int index) {
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String rotatedName = dot > 0 ? name.substring(0, dot) + "." + index + name.substring(dot) : name + "." + index;
+        return path.resolveSibling(rotatedName);
+    }
+
+    private void post(byte[] body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(endpoint).openConnection();
+        try {
+            connection.setRequestMethod("POST");
+            connection.setConnectTimeout(2000);
+            connection.setReadTimeout(5000);
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+            int status = connection.getResponseCode();
+            if (status / 100 != 2) {
+                throw new IOException("HTTP " + status);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package com.aitravelplanner.Util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 请求链路追踪
+ * 每个被采样的请求是一条链路（trace），由根span和按阶段嵌套的子span组成，span的ID格式与W3C Trace Context一致。
+ * 当前span保存在线程本地变量中，Tracer.start创建当前span的子span并设为当前span，关闭时恢复；
+ * 没有当前span（未采样的请求、后台任务）时返回空操作的span，插桩代码不需要判断是否在追踪。
+ * 提交到线程池的任务通过RequestContext.propagate继承提交时的当前span。
+ */
+public final class Tracer {
+
+    private static final ThreadLocal<Span> CURRENT = new ThreadLocal<>();
+
+    /** W3C traceparent请求头：版本-链路ID-父spanID-标志 */
+    private static final Pattern TRACEPARENT = Pattern.compile("00-([0-9a-f]{32})-([0-9a-f]{16})-([0-9a-f]{2})");
+
+    private static final String INVALID_TRACE_ID = "00000000000000000000000000000000";
+    private static final String INVALID_SPAN_ID = "0000000000000000";
+
+    /** 空操作的span */
+    public static final Span NOOP = new Span(null, null, null, "noop", Kind.INTERNAL, 0, 0);
+
+    /** 空操作的作用域 */
+    private static final Scope NO_OP_SCOPE = () -> { };
+
+    /**
+     * span类型，与OTLP的SpanKind取值一致
+     */
+    public enum Kind {
+        INTERNAL(1), SERVER(2), CLIENT(3);
+
+        private final int code;
+
+        Kind(int code) {
+            this.code = code;
+        }
+
+        public int getCode() {
+            return code;
+        }
+    }
+
+    private Tracer() {
+    }
+
+    /**
+     * 为一个请求创建根span，不绑定到当前线程（由处理请求的线程通过attach绑定）
+     * @param name span名称
+     * @param traceparent 上游传入的traceparent请求头，有效时沿用其链路ID并以其span为父span，可以为null
+     * @return 根span
+     */
+    public static Span startTrace(String name, String traceparent) {
+        String traceId = null;
+        String parentSpanId = null;
+        if (traceparent != null) {
+            Matcher matcher = TRACEPARENT.matcher(traceparent.trim());
+            if (matcher.matches() && !INVALID_TRACE_ID.equals(matcher.group(1)) && !INVALID_SPAN_ID.equals(matcher.group(2))) {
+                traceId = matcher.group(1);
+                parentSpanId = matcher.group(2);
+            }
+        }
+        Trace trace = new Trace(traceId == null ? randomHex(16) : traceId);
+        return new Span(trace, null, parentSpanId, name, Kind.SERVER,
+                System.currentTimeMillis() * 1_000_000L, System.nanoTime());
+    }
+
+    /**
+     * 判断上游是否要求采样（traceparent标志位sampled）
+     */
+    public static boolean isSampledUpstream(String traceparent) {
+        if (traceparent == null) {
+            return false;
+        }
+        Matcher matcher = TRACEPARENT.matcher(traceparent.trim());
+        return matcher.matches() && (Integer.parseInt(matcher.group(3), 16) & 1) != 0;
+    }
+
+    /**
+     * 创建当前span的子span并设为当前span，关闭时结束并恢复原来的当前span
+     * @param name span名称（阶段名称，如 dashscope.generate、amap /v3/geocode/geo）
+     * @return 子span，没有当前span时返回空操作的span
+     */
+    public static Span start(String name) {
+        return start(name, Kind.INTERNAL);
+    }
+
+    /**
+     * 创建当前span的子span并设为当前span
+     * @param name span名称
+     * @param kind span类型，调用外部服务时为CLIENT
+     * @return 子span，没有当前span时返回空操作的span
+     */
+    public static Span start(String name, Kind kind) {
+        Span parent = CURRENT.get();
+        if (parent == null || parent.trace == null || parent.trace.completed) {
+            return NOOP;
+        }
+        long offset = System.nanoTime() - parent.startNanoTime;
+        Span span = new Span(parent.trace, parent, parent.spanId, name, kind,
+                parent.startEpochNanos + offset, parent.startNanoTime + offset);
+        span.previous = parent;
+        span.attached = true;
+        CURRENT.set(span);
+        return span;
+    }
+
+    /**
+     * 当前线程的当前span
+     * @return 当前span，没有时返回null
+     */
+    public static Span current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 将span设为当前线程的当前span，关闭返回的作用域时恢复（用于根span和跨线程传递）
+     * @param span span，为null或空操作时不做任何事
+     * @return 作用域
+     */
+    public static Scope attach(Span span) {
+        if (span == null || span == NOOP) {
+            return NO_OP_SCOPE;
+        }
+        Span previous = CURRENT.get();
+        CURRENT.set(span);
+        return () -> {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        };
+    }
+
+    private static String randomHex(int bytes) {
+        StringBuilder sb = new StringBuilder(bytes * 2);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < bytes; i++) {
+            int value = random.nextInt(256);
+            sb.append(Character.forDigit(value >> 4, 16)).append(Character.forDigit(value & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 一条链路中已结束的span，根span结束后不再接收新的span
+     */
+    public static final class Trace {
+        private final String traceId;
+        private final Queue<Span> finished = new ConcurrentLinkedQueue<>();
+        private volatile boolean completed;
+
+        Trace(String traceId) {
+            this.traceId = traceId;
+        }
+
+        public String getTraceId() {
+            return traceId;
+        }
+
+        /**
+         * 已结束的span，按结束顺序排列
+         */
+        public List<Span> getSpans() {
+            return Collections.unmodifiableList(new ArrayList<>(finished));
+        }
+    }
+
+    /**
+     * 一个阶段的span，关闭时记录结束时间
+     */
+    public static final class Span implements AutoCloseable {
+        private final Trace trace;
+        private final Span parent;
+        private final String spanId;
+        private final String parentSpanId;
+        private final String name;
+        private final Kind kind;
+        private final long startEpochNanos;
+        private final long startNanoTime;
+        private final Map<String, Object> attributes = new LinkedHashMap<>();
+        private volatile long endNanoTime;
+        private volatile String error;
+        private Span previous;
+        private boolean attached;
+
+        Span(Trace trace, Span parent, String parentSpanId, String name, Kind kind, long startEpochNanos, long startNanoTime) {
+            this.trace = trace;
+            this.parent = parent;
+            this.spanId = trace == null ? INVALID_SPAN_ID : randomHex(8);
+            this.parentSpanId = parentSpanId;
+            this.name = name;
+            this.kind = kind;
+            this.startEpochNanos = startEpochNanos;
+            this.startNanoTime = startNanoTime;
+        }
+
+        /**
+         * 设置属性，值为字符串、整数、浮点数或布尔值
+         * @return 当前span
+         */
+        public Span setAttribute(String key, Object value) {
+            if (trace != null && value != null) {
+                synchronized (attributes) {
+                    attributes.put(key, value);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * 标记阶段失败
+         * @param message 失败原因
+         */
+        public void setError(String message) {
+            if (trace != null) {
+                this.error = message == null ? "error" : message;
+            }
+        }
+
+        /**
+         * 结束span（重复调用无效）；由Tracer.start创建的span同时恢复原来的当前span
+         */
+        public void end() {
+            if (trace == null || endNanoTime != 0) {
+                return;
+            }
+            endNanoTime = System.nanoTime();
+            if (!trace.completed) {
+                trace.finished.add(this);
+            }
+            if (parent == null) {
+                trace.completed = true;
+            }
+        }
+
+        @Override
+        public void close() {
+            end();
+            if (attached && CURRENT.get() == this) {
+                if (previous == null) {
+                    CURRENT.remove();
+                } else {
+                    CURRENT.set(previous);
+                }
+            }
+        }
+
+        public Trace getTrace() {
+            return trace;
+        }
+
+        public String getTraceId() {
+            return trace == null ? INVALID_TRACE_ID : trace.traceId;
+        }
+
+        public String getSpanId() {
+            return spanId;
+        }
+
+        public String getParentSpanId() {
+            return parentSpanId;
+        }
+
+        /**
+         * 父span，根span返回null
+         */
+        public Span getParent() {
+            return parent;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public long getStartEpochNanos() {
+            return startEpochNanos;
+        }
+
+        public long getEndEpochNanos() {
+            return startEpochNanos + getDurationNanos();
+        }
+
+        /**
+         * 持续时间（纳秒），未结束时为到现在为止的时间
+         */
+        public long getDurationNanos() {
+            long end = endNanoTime == 0 ? System.nanoTime() : endNanoTime;
+            return Math.max(0, end - startNanoTime);
+        }
+
+        public boolean isEnded() {
+            return endNanoTime != 0;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public Map<String, Object> getAttributes() {
+            synchronized (attributes) {
+                return new LinkedHashMap<>(attributes);
+            }
+        }
+
+        /**
+         * W3C traceparent格式的标识，可以传给下游服务
+         */
+        public String toTraceparent() {
+            return "00-" + getTraceId() + "-" + spanId + "-01";
+        }
+    }
+
+    /**
+     * 作用域，关闭时不抛出受检异常
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,220 @@
+package com.aitravelplanner.Util;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 延迟批量写入队列（write-behind）
+ * 写入先进入有界缓冲区并立即返回，后台按固定间隔或缓冲数达到一批时把缓冲的记录交给批量写入函数一次写入。
+ * 缓冲区满时写入方最多等待指定时间，仍然没有空位则拒绝，由调用方决定如何处理。
+ * 整批写入失败时改为逐条写入，一条无法写入的记录（如字段超长）不会连累同批的其他记录；
+ * 逐条写入仍失败的记录在下次刷新时重试，同一条记录连续失败达到上限后丢弃并记录日志；关闭时把剩余记录全部写入。
+ * 指标：writebehind.batch.size（每批记录数）、writebehind.queue.size（缓冲区中的记录数）、
+ * writebehind.rejected（缓冲区满被拒绝的写入）、writebehind.dropped（重试后仍失败被丢弃的记录），标签queue为队列名称。
+ * @param <T> 记录类型
+ */
+public class WriteBehindQueue<T> implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindQueue.class);
+
+    /** 一条记录连续写入失败的最大次数 */
+    private static final int MAX_ATTEMPTS = 3;
+
+    /**
+     * 批量写入函数
+     */
+    @FunctionalInterface
+    public interface BatchWriter<T> {
+        /**
+         * @param batch 本批记录，按写入顺序排列
+         * @throws Exception 整批写入失败（不能部分写入），稍后逐条重试
+         */
+        void write(List<T> batch) throws Exception;
+    }
+
+    private final String name;
+    private final int maxBatchSize;
+    private final BlockingQueue<T> buffer;
+    private final BatchWriter<T> writer;
+    private final ScheduledExecutorService flusher;
+    private final DistributionSummary batchSize;
+
+    /** 写入失败、等待重试的记录，只在持有刷新锁时访问 */
+    private List<Pending<T>> failed = new ArrayList<>();
+
+    /**
+     * @param name 名称，用于线程名和指标标签
+     * @param capacity 缓冲区容量
+     * @param maxBatchSize 每批最多的记录数
+     * @param flushIntervalMillis 定时刷新间隔（毫秒）
+     * @param writer 批量写入函数
+     */
+    public WriteBehindQueue(String name, int capacity, int maxBatchSize, long flushIntervalMillis, BatchWriter<T> writer) {
+        this.name = name;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.buffer = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.writer = writer;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name + "-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.batchSize = DistributionSummary.builder("writebehind.batch.size").tag("queue", name)
+                .publishPercentiles(0.5, 0.9)
+                .register(Metrics.globalRegistry);
+        Metrics.gauge("writebehind.queue.size", List.of(Tag.of("queue", name)),
+                buffer, BlockingQueue::size);
+        long interval = Math.max(1, flushIntervalMillis);
+        flusher.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 把记录放入缓冲区，缓冲区满时最多等待maxWaitMillis
+     * @param item 记录
+     * @param maxWaitMillis 最长等待时间
+     * @return 放入成功返回true，缓冲区一直是满的返回false
+     */
+    public boolean offer(T item, long maxWaitMillis) {
+        boolean accepted;
+        try {
+            accepted = buffer.offer(item, Math.max(0, maxWaitMillis), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            accepted = false;
+        }
+        if (!accepted) {
+            Metrics.counter("writebehind.rejected", "queue", name).increment();
+            return false;
+        }
+        if (buffer.size() >= maxBatchSize) {
+            try {
+                flusher.execute(this::flushQuietly);
+            } catch (RejectedExecutionException e) {
+                // 正在关闭，剩余记录由close()写入
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 立即把缓冲区中的记录全部写入，在调用线程中执行；后台正在写入时等它完成
+     * 返回后，调用前放入的记录都已写入（或写入失败抛出异常）
+     * @throws Exception 写入失败，失败的记录保留到下次刷新时重试
+     */
+    public synchronized void flush() throws Exception {
+        if (!failed.isEmpty()) {
+            List<Pending<T>> retry = failed;
+            failed = new ArrayList<>();
+            writeBatch(retry);
+        }
+        List<T> items = new ArrayList<>(maxBatchSize);
+        while (buffer.drainTo(items, maxBatchSize) > 0) {
+            List<Pending<T>> batch = new ArrayList<>(items.size());
+            for (T item : items) {
+                batch.add(new Pending<>(item));
+            }
+            writeBatch(batch);
+            items.clear();
+        }
+    }
+
+    /**
+     * 写入一批记录，整批失败时逐条写入；仍失败的记录放入重试列表，达到失败上限的丢弃
+     * @throws Exception 有记录写入失败
+     */
+    private void writeBatch(List<Pending<T>> batch) throws Exception {
+        Exception failure;
+        try {
+            writer.write(items(batch));
+            batchSize.record(batch.size());
+            return;
+        } catch (Exception e) {
+            failure = e;
+        }
+        if (batch.size() == 1) {
+            failed(batch.get(0), failure);
+            throw failure;
+        }
+        failure = null;
+        for (Pending<T> pending : batch) {
+            try {
+                writer.write(List.of(pending.item));
+                batchSize.record(1);
+            } catch (Exception e) {
+                failed(pending, e);
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void failed(Pending<T> pending, Exception e) {
+        pending.attempts++;
+        if (pending.attempts >= MAX_ATTEMPTS) {
+            Metrics.counter("writebehind.dropped", "queue", name).increment();
+            log.atError().addKeyValue("queue", name)
+                    .log("记录连续写入失败{}次，已丢弃：{}", pending.attempts, e.getMessage());
+        } else {
+            failed.add(pending);
+        }
+    }
+
+    private static <T> List<T> items(List<Pending<T>> batch) {
+        List<T> items = new ArrayList<>(batch.size());
+        for (Pending<T> pending : batch) {
+            items.add(pending.item);
+        }
+        return items;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.atWarn().addKeyValue("queue", name).log("批量写入失败，稍后重试：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 停止定时刷新，并把剩余记录全部写入
+     */
+    @Override
+    public void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (int attempt = 0; attempt < MAX_ATTEMPTS && (!failed.isEmpty() || !buffer.isEmpty()); attempt++) {
+            flushQuietly();
+        }
+    }
+
+    /**
+     * 等待写入的记录和已失败的次数
+     */
+    private static final class Pending<T> {
+        private final T item;
+        private int attempts;
+
+        Pending(T item) {
+            this.item = item;
+        }
+    }
+}
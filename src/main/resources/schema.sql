@@ -0,0 +1,15 @@
+-- 旅行计划历史记录表（嵌入式H2和PostgreSQL通用）
+CREATE TABLE IF NOT EXISTS plan_history (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id VARCHAR(64) NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    destination VARCHAR(200),
+    days INTEGER,
+    -- 列表只读取标题和摘要，完整内容只在查看详情时读取
+    title VARCHAR(80),
+    preview VARCHAR(160),
+    plan_data TEXT NOT NULL
+);
+
+-- 键集分页：WHERE user_id = ? AND (created_at, id) < (?, ?) ORDER BY created_at DESC, id DESC
+CREATE INDEX IF NOT EXISTS idx_plan_history_user_created ON plan_history (user_id, created_at DESC, id DESC);
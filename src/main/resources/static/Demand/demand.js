@@ -439,19 +439,15 @@ async function confirmDemand() {
             body: JSON.stringify(demandData)
         });
         
-        if (!response.ok) {
-            throw new Error(`HTTP错误: ${response.status}`);
-        }
-        
-        const data = await response.json();
+        const data = await readApiResponse(response);
         
         if (data.success) {
             // 显示结果
             showTravelPlanResult(data.travelPlan);
             
             // 保存到历史记录
-            if (supabase && currentUser) {
-                await saveTravelPlanToHistory(data.travelPlan);
+            if (currentUser) {
+                await saveTravelPlanToHistory(data.travelPlan, demandData);
             }
             
         } else {
@@ -460,12 +456,31 @@ async function confirmDemand() {
         
     } catch (error) {
         console.error('生成旅行计划失败:', error);
-        showModal('error', '错误', '生成旅行计划失败，请稍后重试');
+        if ((error.status === 429 || error.status === 503) && error.retryAfter) {
+            showModal('warning', '提示', `当前生成旅行计划的请求较多，请${error.retryAfter}秒后重试`);
+        } else {
+            showModal('error', '错误', '生成旅行计划失败，请稍后重试');
+        }
     } finally {
         document.getElementById('loading').style.display = 'none';
     }
 }
 
+// 读取接口响应
+// 开启了连接探测的接口会先返回200并定期写入空白，此时真实的状态码在响应体的status字段中，
+// 429/503时需要等待的秒数在retryAfter字段中（直接返回时在Retry-After响应头中）
+async function readApiResponse(response) {
+    const data = await response.json().catch(() => ({}));
+    const status = typeof data.status === 'number' ? data.status : response.status;
+    if (status < 200 || status >= 300) {
+        const error = new Error(data.error || `HTTP错误: ${status}`);
+        error.status = status;
+        error.retryAfter = data.retryAfter || response.headers.get('Retry-After');
+        throw error;
+    }
+    return data;
+}
+
 // 修改需求
 function editDemand() {
     document.getElementById('demand-confirm').style.display = 'none';
@@ -501,19 +516,34 @@ function newPlan() {
     document.getElementById('result').style.display = 'none';
 }
 
-// 保存旅行计划到历史记录
-async function saveTravelPlanToHistory(travelPlan) {
+// 保存旅行计划到历史记录（由后端批量写入数据库，用户由后端根据访问令牌确定）
+async function saveTravelPlanToHistory(travelPlan, demand) {
     try {
-        const { error } = await supabase
-            .from('travel_plans')
-            .insert({
-                user_id: currentUser.id,
-                plan_data: travelPlan,
-                created_at: new Date().toISOString()
-            });
+        if (!supabase) return;
+        const { data: { session } } = await supabase.auth.getSession();
+        if (!session) return;
+        
+        let days = null;
+        if (demand && demand.startDate && demand.endDate) {
+            const diff = (new Date(demand.endDate) - new Date(demand.startDate)) / 86400000;
+            if (!isNaN(diff) && diff >= 0) days = Math.round(diff) + 1;
+        }
         
-        if (error) {
-            console.error('保存计划到历史记录失败:', error);
+        const response = await fetch('/api/history', {
+            method: 'POST',
+            headers: {
+                'Content-Type': 'application/json',
+                'Authorization': `Bearer ${session.access_token}`,
+            },
+            body: JSON.stringify({
+                planData: travelPlan,
+                destination: demand ? demand.destination : null,
+                days: days
+            })
+        });
+        
+        if (!response.ok) {
+            console.error('保存计划到历史记录失败:', response.status);
         }
     } catch (error) {
         console.error('保存计划到历史记录失败:', error);
@@ -820,11 +850,7 @@ async function sendAudioToBackend(audioBlob) {
             body: formData
         });
         
-        if (!response.ok) {
-            throw new Error(`HTTP错误: ${response.status}`);
-        }
-        
-        const data = await response.json();
+        const data = await readApiResponse(response);
         
         if (data.success && data.text) {
             return data.text;
@@ -10,7 +10,7 @@ import java.util.List;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = {"travel.cache.redis.embedded=true", "spring.datasource.url=jdbc:h2:mem:plan-history"})
 class AiTravelPlannerApplicationTests {
 
     @Test
@@ -0,0 +1,114 @@
+package com.aitravelplanner.Model;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * 步行路线接口坐标处理的分配量基准（手动运行，不属于单元测试）
+ */
+public final class CoordinateBenchmark {
+
+    private CoordinateBenchmark() {
+    }
+
+    /**
+     * 对比改动前的处理方式（接口和服务各校验一次：split + trim + Double.parseDouble，字符串拼接URL和缓存键）
+     * 与定点坐标（解析一次，StringBuilder直接追加定点数字），输出每次请求的分配字节数和耗时，并校验解析和格式化的往返结果。
+     * 用法：CoordinateBenchmark [请求次数，默认2000000]
+     */
+    public static void main(String[] args) {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        Random random = new Random(42);
+        String[] origins = new String[1024];
+        String[] destinations = new String[1024];
+        for (int i = 0; i < origins.length; i++) {
+            origins[i] = String.format("%.6f,%.6f", 73 + random.nextDouble() * 62, 18 + random.nextDouble() * 35);
+            destinations[i] = String.format("%.6f,%.6f", 73 + random.nextDouble() * 62, 18 + random.nextDouble() * 35);
+            long parsed = Coordinate.parsePacked(origins[i], 0, origins[i].length());
+            if (!Coordinate.appendTo(new StringBuilder(), parsed).toString().equals(origins[i])) {
+                throw new IllegalStateException("往返结果不一致：" + origins[i]);
+            }
+        }
+        String apiKey = "0123456789abcdef0123456789abcdef";
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long sink = 0;
+        for (int round = 0; round < 2; round++) {
+            // 第一轮预热
+            long allocated = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < requests; i++) {
+                String origin = origins[i & 1023];
+                String destination = destinations[i & 1023];
+                if (legacyIsValid(origin) && legacyIsValid(destination)
+                        && legacyIsValid(origin) && legacyIsValid(destination)) {
+                    String cacheKey = origin.trim() + "|" + destination.trim();
+                    String url = "https://restapi.amap.com/v3/direction/walking?key=" + apiKey
+                            + "&origin=" + origin + "&destination=" + destination;
+                    sink += cacheKey.length() + url.length();
+                }
+            }
+            long legacyNanos = System.nanoTime() - start;
+            long legacyBytes = threads.getCurrentThreadAllocatedBytes() - allocated;
+
+            allocated = threads.getCurrentThreadAllocatedBytes();
+            start = System.nanoTime();
+            for (int i = 0; i < requests; i++) {
+                Coordinate origin = Coordinate.parse(origins[i & 1023]);
+                Coordinate destination = Coordinate.parse(destinations[i & 1023]);
+                if (origin != null && destination != null) {
+                    String cacheKey = destination.appendTo(origin.appendTo(new StringBuilder(48)).append('|')).toString();
+                    StringBuilder url = new StringBuilder(160).append("https://restapi.amap.com/v3/direction/walking?key=")
+                            .append(apiKey);
+                    destination.appendTo(origin.appendTo(url.append("&origin=")).append("&destination="));
+                    sink += cacheKey.length() + url.toString().length() + origin.toString().length()
+                            + destination.toString().length();
+                }
+            }
+            long packedNanos = System.nanoTime() - start;
+            long packedBytes = threads.getCurrentThreadAllocatedBytes() - allocated;
+
+            if (round == 1) {
+                System.out.println(String.format("字符串坐标：%6.0fB/请求，%6.0fns/请求", (double) legacyBytes / requests,
+                        (double) legacyNanos / requests));
+                System.out.println(String.format("定点坐标：  %6.0fB/请求，%6.0fns/请求（含响应中的两次格式化）",
+                        (double) packedBytes / requests, (double) packedNanos / requests));
+            }
+        }
+
+        // 只做校验和格式化的热点路径（不创建坐标对象）
+        StringBuilder reused = new StringBuilder(64);
+        long allocated = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < requests; i++) {
+            String text = origins[i & 1023];
+            long value = Coordinate.parsePacked(text, 0, text.length());
+            reused.setLength(0);
+            sink += Coordinate.appendTo(reused, value).length();
+        }
+        System.out.println(String.format("parsePacked + appendTo：%.2fB/次",
+                (double) (threads.getCurrentThreadAllocatedBytes() - allocated) / requests));
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+
+    /**
+     * 改动前接口和服务中的坐标校验
+     */
+    private static boolean legacyIsValid(String coordinate) {
+        if (coordinate == null || coordinate.trim().isEmpty()) {
+            return false;
+        }
+        String[] parts = coordinate.split(",");
+        if (parts.length != 2) {
+            return false;
+        }
+        try {
+            double longitude = Double.parseDouble(parts[0].trim());
+            double latitude = Double.parseDouble(parts[1].trim());
+            return longitude >= -180 && longitude <= 180 && latitude >= -90 && latitude <= 90;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.aitravelplanner.Service.Impl;
+
+import com.aitravelplanner.Model.Itinerary;
+import com.aitravelplanner.Model.ItineraryDay;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ItineraryJsonParserTest {
+
+    private static final String JSON = "```json\n{\"title\":\"杭州两日游\",\"days\":["
+            + "{\"day\":1,\"city\":\"杭州\",\"theme\":\"西湖\",\"stops\":["
+            + "{\"time\":\"09:00\",\"place\":\"断桥\",\"activity\":\"散步\",\"transport\":\"步行\",\"cost\":0},"
+            + "{\"time\":\"14:00\",\"place\":\"雷峰塔\",\"activity\":\"登塔\",\"transport\":\"公交\",\"cost\":\"约40元\"}],"
+            + "\"dayCost\":120},"
+            + "{\"day\":2,\"city\":\"杭州\",\"theme\":\"灵隐\",\"stops\":["
+            + "{\"time\":\"08:30\",\"place\":\"灵隐寺\",\"activity\":\"参观\",\"transport\":\"地铁\",\"cost\":75},"
+            + "{\"time\":\"13:00\",\"place\":\"龙井村\",\"activity\":\"品茶\",\"transport\":\"打车\",\"cost\":100}],"
+            + "\"dayCost\":210}],"
+            + "\"totalCost\":330,\"tips\":[\"避开周末\",\"提前预约\"]}\n```";
+
+    @Test
+    void parsesCompleteItinerary() {
+        Itinerary itinerary = ItineraryJsonParser.parse(JSON);
+
+        assertNotNull(itinerary);
+        assertFalse(itinerary.isTruncated());
+        assertEquals("杭州两日游", itinerary.getTitle());
+        assertEquals(2, itinerary.getDays().size());
+        assertEquals(2, itinerary.getDays().get(1).getStops().size());
+        assertEquals(40.0, itinerary.getDays().get(0).getStops().get(1).getCost());
+        assertEquals(330.0, itinerary.getTotalCost());
+        assertEquals(2, itinerary.getTips().size());
+    }
+
+    @Test
+    void truncatedInputKeepsOnlyCompleteDaysAndStops() {
+        Itinerary full = ItineraryJsonParser.parse(JSON);
+        int objectEnd = JSON.lastIndexOf('}') + 1;
+
+        for (int length = 0; length < objectEnd; length++) {
+            String prefix = JSON.substring(0, length);
+            Itinerary partial = ItineraryJsonParser.parse(prefix);
+            if (prefix.indexOf('{') < 0) {
+                assertNull(partial, "offset " + length);
+                continue;
+            }
+            assertNotNull(partial, "offset " + length);
+            assertTrue(partial.isTruncated(), "offset " + length);
+            assertTrue(partial.getDays().size() <= full.getDays().size(), "offset " + length);
+            for (int i = 0; i < partial.getDays().size(); i++) {
+                // 保留下来的天必须与完整解析的结果完全相同，不能是只解析了一半的天
+                assertEquals(full.getDays().get(i), partial.getDays().get(i), "offset " + length + " day " + (i + 1));
+            }
+        }
+    }
+
+    @Test
+    void truncatedInsideSecondDayDropsThatDay() {
+        int cut = JSON.indexOf("龙井村");
+        Itinerary partial = ItineraryJsonParser.parse(JSON.substring(0, cut));
+
+        assertNotNull(partial);
+        assertTrue(partial.isTruncated());
+        assertEquals(1, partial.getDays().size());
+        ItineraryDay first = partial.getDays().get(0);
+        assertEquals(2, first.getStops().size());
+        assertEquals(120.0, first.getDayCost());
+    }
+
+    @Test
+    void truncatedInsideStopDropsThatStop() {
+        int cut = JSON.indexOf("雷峰塔");
+        Itinerary partial = ItineraryJsonParser.parse(JSON.substring(0, cut));
+
+        assertNotNull(partial);
+        assertTrue(partial.getDays().isEmpty());
+    }
+}
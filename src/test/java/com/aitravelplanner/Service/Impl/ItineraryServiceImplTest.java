@@ -0,0 +1,67 @@
+package com.aitravelplanner.Service.Impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ItineraryServiceImplTest {
+
+    private ItineraryServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        service = new ItineraryServiceImpl(null, null);
+        ReflectionTestUtils.setField(service, "maxDays", 15);
+        ReflectionTestUtils.setField(service, "baseTokens", 300);
+        ReflectionTestUtils.setField(service, "tokensPerDay", 450);
+    }
+
+    @Test
+    void estimatesDaysFromCountsAndNights() {
+        assertEquals(7, service.estimateDays("想去云南玩7天"));
+        assertEquals(3, service.estimateDays("南京三日游"));
+        assertEquals(4, service.estimateDays("在三亚住三晚"));
+        assertEquals(5, service.estimateDays("a 5 days trip"));
+        assertEquals(15, service.estimateDays("环游中国30天"));
+        assertEquals(0, service.estimateDays("周末去哪里玩"));
+        assertEquals(0, service.estimateDays(null));
+    }
+
+    @Test
+    void estimateDaysIgnoresDates() {
+        assertEquals(3, service.estimateDays("5月1日出发玩三天"));
+        assertEquals(3, service.estimateDays("10月1号去杭州，玩3天"));
+        assertEquals(2, service.estimateDays("2025-05-01出发，两日游"));
+        assertEquals(0, service.estimateDays("2025年5月1日到5月3日去成都"));
+    }
+
+    @Test
+    void parsesArabicAndChineseNumbers() {
+        assertEquals(7, ItineraryServiceImpl.parseNumber("7"));
+        assertEquals(2, ItineraryServiceImpl.parseNumber("两"));
+        assertEquals(10, ItineraryServiceImpl.parseNumber("十"));
+        assertEquals(12, ItineraryServiceImpl.parseNumber("十二"));
+        assertEquals(30, ItineraryServiceImpl.parseNumber("三十"));
+        assertEquals(45, ItineraryServiceImpl.parseNumber("四十五"));
+        assertEquals(0, ItineraryServiceImpl.parseNumber("99999999999"));
+    }
+
+    @Test
+    void sanitizeMarkersDropsUnpairedMarkers() {
+        assertEquals("【西湖】$09:00$", ItineraryServiceImpl.sanitizeMarkers("【西湖】$09:00$"));
+        // 嵌套和多余的【】被丢弃
+        assertEquals("【西湖断桥】", ItineraryServiceImpl.sanitizeMarkers("【西湖【断桥】】"));
+        // 未闭合的【和奇数个$被去掉
+        assertEquals("前往西湖 $09:00$ 出发10:00", ItineraryServiceImpl.sanitizeMarkers("前往【西湖 $09:00$ 出发$10:00"));
+        assertEquals("", ItineraryServiceImpl.sanitizeMarkers(null));
+    }
+
+    @Test
+    void estimatesMaxTokensByDaysWithinModelLimit() {
+        assertEquals(300 + 3 * 450, service.estimateMaxTokens(0));
+        assertEquals(300 + 5 * 450, service.estimateMaxTokens(5));
+        assertEquals(8192, service.estimateMaxTokens(30));
+    }
+}
@@ -0,0 +1,26 @@
+package com.aitravelplanner.Service.Impl;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class MapServiceImplTest {
+
+    @Test
+    void successfulResponsesHaveNoErrorCode() {
+        assertNull(MapServiceImpl.amapErrorCode("{\"status\":\"1\",\"info\":\"OK\",\"infocode\":\"10000\",\"geocodes\":[]}"));
+        assertNull(MapServiceImpl.amapErrorCode("{\"data\":{\"paths\":[]},\"errcode\":0,\"errmsg\":\"OK\"}"));
+    }
+
+    @Test
+    void failedResponsesReturnInfocode() {
+        // 配额用尽时HTTP响应码仍为200
+        assertEquals("10003", MapServiceImpl.amapErrorCode(
+                "{\"status\":\"0\",\"info\":\"DAILY_QUERY_OVER_LIMIT\",\"infocode\":\"10003\"}"));
+        assertEquals("20000", MapServiceImpl.amapErrorCode(
+                "{\"info\":\"INVALID_PARAMS\",\"infocode\":\"20000\",\"status\":\"0\"}"));
+        assertEquals("10016", MapServiceImpl.amapErrorCode("{\"errcode\":10016,\"errmsg\":\"SERVER_IS_BUSY\"}"));
+        assertEquals("", MapServiceImpl.amapErrorCode("{\"status\":\"0\",\"info\":\"UNKNOWN\"}"));
+    }
+}
@@ -0,0 +1,168 @@
+package com.aitravelplanner.Service.Impl;
+
+import com.aitravelplanner.Model.PlanHistoryPage;
+import com.aitravelplanner.Model.PlanHistorySummary;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlanHistoryServiceImplTest {
+
+    private static final String USER = "8f14e45f-ceea-467f-a8b5-2c1f3d6e7a90";
+
+    private JdbcTemplate jdbcTemplate;
+    private PlanHistoryServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1", "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        service = new PlanHistoryServiceImpl(jdbcTemplate, new DataSourceTransactionManager(dataSource));
+        // 定时刷新间隔足够长，测试中只有显式刷新和关闭时才写入
+        configure(1000, 100, 3_600_000, 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    private void configure(int bufferCapacity, int batchSize, long flushIntervalMs, long offerWaitMs) {
+        ReflectionTestUtils.setField(service, "bufferCapacity", bufferCapacity);
+        ReflectionTestUtils.setField(service, "batchSize", batchSize);
+        ReflectionTestUtils.setField(service, "flushIntervalMs", flushIntervalMs);
+        ReflectionTestUtils.setField(service, "offerWaitMs", offerWaitMs);
+        ReflectionTestUtils.setField(service, "maxPageSize", 100);
+        service.init();
+    }
+
+    private void insert(String userId, Instant createdAt, String destination) {
+        jdbcTemplate.update("INSERT INTO plan_history (user_id, created_at, destination, title, preview, plan_data) "
+                        + "VALUES (?, ?, ?, ?, ?, ?)",
+                userId, Timestamp.from(createdAt), destination, destination, destination, "第1天：" + destination);
+    }
+
+    private int count(String userId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM plan_history WHERE user_id = ?", Integer.class, userId);
+    }
+
+    @Test
+    void keysetPagingWalksTiesOnCreatedAtWithoutGapsOrDuplicates() {
+        Instant base = Instant.parse("2026-05-01T08:00:00Z");
+        insert(USER, base.plusSeconds(60), "杭州");
+        // 5条生成时间相同的记录，跨越分页边界
+        for (int i = 0; i < 5; i++) {
+            insert(USER, base, "苏州" + i);
+        }
+        insert(USER, base.minusSeconds(60), "南京");
+        insert("other-user", base, "上海");
+
+        List<Long> expected = jdbcTemplate.queryForList(
+                "SELECT id FROM plan_history WHERE user_id = ? ORDER BY created_at DESC, id DESC", Long.class, USER);
+
+        List<Long> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            PlanHistoryPage page = service.list(USER, cursor, 2);
+            for (PlanHistorySummary summary : page.getItems()) {
+                seen.add(summary.getId());
+            }
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(7, expected.size());
+        assertEquals(expected, seen);
+        assertEquals(4, pages);
+    }
+
+    @Test
+    void lastFullPageHasNoNextCursor() {
+        Instant base = Instant.parse("2026-05-01T08:00:00Z");
+        for (int i = 0; i < 4; i++) {
+            insert(USER, base, "苏州" + i);
+        }
+
+        PlanHistoryPage first = service.list(USER, null, 2);
+        PlanHistoryPage second = service.list(USER, first.getNextCursor(), 2);
+
+        assertEquals(2, second.getItems().size());
+        assertNull(second.getNextCursor());
+    }
+
+    @Test
+    void malformedCursorIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> service.list(USER, "不是游标", 2));
+    }
+
+    @Test
+    void firstPageIncludesPlansStillInBuffer() {
+        assertTrue(service.save(USER, "<h2>西湖一日游</h2>\n上午：【断桥】", "杭州", 1));
+        assertEquals(0, count(USER));
+
+        PlanHistoryPage page = service.list(USER, null, 10);
+
+        assertEquals(1, page.getItems().size());
+        assertEquals("西湖一日游", page.getItems().get(0).getTitle());
+        assertEquals("杭州", page.getItems().get(0).getDestination());
+    }
+
+    @Test
+    void shutdownFlushesBufferedPlans() {
+        for (int i = 0; i < 3; i++) {
+            assertTrue(service.save(USER, "第" + (i + 1) + "天：西湖", "杭州", 1));
+        }
+        assertEquals(0, count(USER));
+
+        service.shutdown();
+
+        assertEquals(3, count(USER));
+    }
+
+    @Test
+    void saveIsRejectedWhenBufferIsFull() {
+        service.shutdown();
+        configure(1, 100, 3_600_000, 0);
+
+        assertTrue(service.save(USER, "第1天：西湖", "杭州", 1));
+        assertFalse(service.save(USER, "第1天：灵隐寺", "杭州", 1));
+
+        service.shutdown();
+        assertEquals(1, count(USER));
+    }
+
+    @Test
+    void rowThatCannotBeWrittenDoesNotDropItsBatch() {
+        String tooLong = "u".repeat(65);
+        assertTrue(service.save(USER, "第1天：西湖", "杭州", 1));
+        assertTrue(service.save(tooLong, "第1天：外滩", "上海", 1));
+        assertTrue(service.save(USER, "第1天：灵隐寺", "杭州", 1));
+
+        service.shutdown();
+
+        assertEquals(2, count(USER));
+        assertEquals(0, count(tooLong));
+    }
+}
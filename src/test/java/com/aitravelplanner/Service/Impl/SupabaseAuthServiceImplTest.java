@@ -0,0 +1,97 @@
+package com.aitravelplanner.Service.Impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SupabaseAuthServiceImplTest {
+
+    private static final String SECRET = "super-secret-jwt-token-with-at-least-32-characters";
+    private static final String USER_ID = "8f14e45f-ceea-467f-a8b5-2c1f3d6e7a90";
+
+    private SupabaseAuthServiceImpl authService;
+
+    @BeforeEach
+    void setUp() {
+        authService = new SupabaseAuthServiceImpl();
+        ReflectionTestUtils.setField(authService, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(authService, "supabaseUrl", "");
+        ReflectionTestUtils.setField(authService, "anonKey", "");
+        ReflectionTestUtils.setField(authService, "clockSkewSeconds", 30L);
+    }
+
+    private static long now() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    private static String token(String header, String payload, String secret) throws Exception {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        String signingInput = encoder.encodeToString(header.getBytes(StandardCharsets.UTF_8)) + "."
+                + encoder.encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return signingInput + "." + encoder.encodeToString(mac.doFinal(signingInput.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    private static String userToken(long exp, String secret) throws Exception {
+        return token("{\"alg\":\"HS256\",\"typ\":\"JWT\"}",
+                "{\"sub\":\"" + USER_ID + "\",\"role\":\"authenticated\",\"exp\":" + exp + "}", secret);
+    }
+
+    @Test
+    void validTokenYieldsSubject() throws Exception {
+        assertEquals(USER_ID, authService.authenticate("Bearer " + userToken(now() + 3600, SECRET)));
+        assertEquals(USER_ID, authService.authenticate("bearer " + userToken(now() + 3600, SECRET)));
+    }
+
+    @Test
+    void missingOrMalformedHeaderIsRejected() {
+        assertNull(authService.authenticate(null));
+        assertNull(authService.authenticate(""));
+        assertNull(authService.authenticate("Basic dXNlcjpwYXNz"));
+        assertNull(authService.authenticate("Bearer not-a-jwt"));
+        assertNull(authService.authenticate("Bearer a.b.c"));
+    }
+
+    @Test
+    void wrongSignatureIsRejected() throws Exception {
+        assertNull(authService.authenticate("Bearer " + userToken(now() + 3600, SECRET + "x")));
+
+        String token = userToken(now() + 3600, SECRET);
+        String unsigned = token.substring(0, token.lastIndexOf('.') + 1);
+        assertNull(authService.authenticate("Bearer " + unsigned));
+    }
+
+    @Test
+    void expiredTokenIsRejected() throws Exception {
+        assertNull(authService.authenticate("Bearer " + userToken(now() - 120, SECRET)));
+        // 时钟偏差范围内仍然有效
+        assertEquals(USER_ID, authService.authenticate("Bearer " + userToken(now() - 10, SECRET)));
+    }
+
+    @Test
+    void anonKeyAndOtherAlgorithmsAreRejected() throws Exception {
+        String anonKey = token("{\"alg\":\"HS256\",\"typ\":\"JWT\"}",
+                "{\"iss\":\"supabase\",\"role\":\"anon\",\"exp\":" + (now() + 3600) + "}", SECRET);
+        assertNull(authService.authenticate("Bearer " + anonKey));
+
+        String noneAlg = token("{\"alg\":\"none\",\"typ\":\"JWT\"}",
+                "{\"sub\":\"" + USER_ID + "\",\"role\":\"authenticated\",\"exp\":" + (now() + 3600) + "}", SECRET);
+        assertNull(authService.authenticate("Bearer " + noneAlg));
+    }
+
+    @Test
+    void unconfiguredServiceRejectsEverything() throws Exception {
+        ReflectionTestUtils.setField(authService, "jwtSecret", "");
+
+        assertNull(authService.authenticate("Bearer " + userToken(now() + 3600, SECRET)));
+    }
+}
@@ -0,0 +1,98 @@
+package com.aitravelplanner.Util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryCodecTest {
+
+    private static Map<String, Object> sampleRoute() {
+        List<Object> steps = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Map<String, Object> step = new LinkedHashMap<>();
+            step.put("instruction", "向东步行" + (i * 10) + "米");
+            step.put("orientation", "东");
+            step.put("distance", i * 10);
+            step.put("polyline", List.of(116.397428, 39.90923 + i * 0.001));
+            steps.add(step);
+        }
+        Map<String, Object> route = new LinkedHashMap<>();
+        route.put("success", true);
+        route.put("cached", false);
+        route.put("note", null);
+        route.put("distance", 1_234);
+        route.put("negative", -987_654);
+        route.put("big", Long.MAX_VALUE);
+        route.put("small", Long.MIN_VALUE);
+        route.put("ratio", -0.125);
+        route.put("plan", "第1天：".repeat(40) + "🚶");
+        route.put("steps", steps);
+        route.put("empty", new LinkedHashMap<>());
+        route.put("nested", List.of(List.of(), List.of("东", "东")));
+        return route;
+    }
+
+    @Test
+    void roundTripPreservesValuesAndOrder() {
+        Map<String, Object> route = sampleRoute();
+
+        Object decoded = BinaryCodec.decode(BinaryCodec.encode(route));
+
+        assertEquals(route, decoded);
+        assertEquals(new ArrayList<>(route.keySet()), new ArrayList<>(((Map<?, ?>) decoded).keySet()));
+    }
+
+    @Test
+    void smallIntegersDecodeAsInteger() {
+        assertEquals(5, BinaryCodec.decode(BinaryCodec.encode(5L)));
+        assertEquals(5_000_000_000L, BinaryCodec.decode(BinaryCodec.encode(5_000_000_000L)));
+        assertEquals(3.0f, ((Double) BinaryCodec.decode(BinaryCodec.encode(3.0f))).floatValue());
+    }
+
+    @Test
+    void repeatedStringsAreWrittenOnce() {
+        List<String> repeated = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            repeated.add("walking");
+        }
+
+        byte[] encoded = BinaryCodec.encode(repeated);
+
+        assertTrue(encoded.length < 100 * 2 + "walking".length() + 8, "encoded length " + encoded.length);
+        assertEquals(repeated, BinaryCodec.decode(encoded));
+    }
+
+    @Test
+    void truncatedInputIsRejected() {
+        byte[] encoded = BinaryCodec.encode(sampleRoute());
+
+        for (int length = 0; length < encoded.length; length++) {
+            byte[] truncated = Arrays.copyOf(encoded, length);
+            assertThrows(IllegalArgumentException.class, () -> BinaryCodec.decode(truncated), "length " + length);
+        }
+    }
+
+    @Test
+    void trailingBytesAndUnknownVersionAreRejected() {
+        byte[] encoded = BinaryCodec.encode(List.of("a"));
+        byte[] trailing = Arrays.copyOf(encoded, encoded.length + 1);
+        assertThrows(IllegalArgumentException.class, () -> BinaryCodec.decode(trailing));
+
+        byte[] otherVersion = encoded.clone();
+        otherVersion[0] = 2;
+        assertThrows(IllegalArgumentException.class, () -> BinaryCodec.decode(otherVersion));
+    }
+
+    @Test
+    void unsupportedTypeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> BinaryCodec.encode(Map.of("value", new Object())));
+    }
+}
@@ -0,0 +1,186 @@
+package com.aitravelplanner.Util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CancellableRequestExecutorTest {
+
+    private ExecutorService requestExecutor;
+    private ScheduledExecutorService heartbeatScheduler;
+    private CancellableRequestExecutor executor;
+    private MockHttpServletResponse response;
+
+    @BeforeEach
+    void setUp() {
+        requestExecutor = Executors.newSingleThreadExecutor();
+        heartbeatScheduler = Executors.newSingleThreadScheduledExecutor();
+        executor = new CancellableRequestExecutor(requestExecutor, heartbeatScheduler, new TraceExporter());
+        ReflectionTestUtils.setField(executor, "timeoutMs", 10_000L);
+        ReflectionTestUtils.setField(executor, "heartbeatMs", 50L);
+        response = new TrailerResponse();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest(), response));
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+        requestExecutor.shutdownNow();
+        heartbeatScheduler.shutdownNow();
+    }
+
+    @Test
+    void fastResponseKeepsStatusAndHeaders() throws Exception {
+        ResponseEntity<Map<String, Object>> rejected = ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "7")
+                .body(Map.of("error", "busy"));
+
+        DeferredResult<ResponseEntity<Map<String, Object>>> result = executor.execute("test", () -> rejected);
+
+        assertSame(rejected, await(result));
+        assertFalse(response.isCommitted());
+    }
+
+    @Test
+    void rejectsWithRetryAfterWhenQueueIsFull() throws Exception {
+        ThreadPoolExecutor bounded = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1));
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            CancellableRequestExecutor overloaded = new CancellableRequestExecutor(bounded, heartbeatScheduler, new TraceExporter());
+            ReflectionTestUtils.setField(overloaded, "timeoutMs", 10_000L);
+            Supplier<ResponseEntity<String>> blocked = () -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return ResponseEntity.ok("done");
+            };
+            overloaded.execute("test", blocked);
+            overloaded.execute("test", blocked);
+
+            ResponseEntity<?> rejected = await(overloaded.execute("test", blocked));
+
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, rejected.getStatusCode());
+            assertEquals("1", rejected.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        } finally {
+            release.countDown();
+            bounded.shutdownNow();
+        }
+    }
+
+    @Test
+    void clientIdUsesAddressAppendedByProxy() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr("10.0.0.2");
+
+        assertEquals("10.0.0.2", CancellableRequestExecutor.clientId(request, "X-Forwarded-For"));
+        assertEquals("10.0.0.2", CancellableRequestExecutor.clientId(request, ""));
+
+        // 客户端伪造的前几个地址不影响结果
+        request.addHeader("X-Forwarded-For", "1.2.3.4, 5.6.7.8,  203.0.113.9 ");
+        assertEquals("203.0.113.9", CancellableRequestExecutor.clientId(request, "X-Forwarded-For"));
+        assertEquals("10.0.0.2", CancellableRequestExecutor.clientId(request, null));
+    }
+
+    @Test
+    void slowResponseKeepsStatusWhenEndpointIsNotProbed() throws Exception {
+        ResponseEntity<Map<String, Object>> failed = ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(Map.of("error", "busy"));
+
+        DeferredResult<ResponseEntity<Map<String, Object>>> result = executor.execute("test", () -> {
+            sleep(300);
+            return failed;
+        });
+
+        assertSame(failed, await(result));
+        assertFalse(response.isCommitted());
+        assertNull(response.getHeader(HttpHeaders.TRAILER));
+    }
+
+    @Test
+    void slowResponseReportsStatusInBodyAndTrailers() throws Exception {
+        ReflectionTestUtils.setField(executor, "heartbeatEndpoints", List.of("test"));
+        DeferredResult<ResponseEntity<Map<String, Object>>> result = executor.execute("test", () -> {
+            sleep(300);
+            RequestContext.current().recordQueueWait(TimeUnit.MILLISECONDS.toNanos(1234));
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "7")
+                    .body(Map.of("error", "busy"));
+        });
+
+        ResponseEntity<?> entity = await(result);
+
+        // 心跳已提交响应，状态码和Retry-After按流式约定放在响应体中
+        assertTrue(response.isCommitted());
+        assertEquals(HttpStatus.OK.value(), response.getStatus());
+        assertTrue(response.getHeader(HttpHeaders.TRAILER).contains(CancellableRequestExecutor.RESPONSE_STATUS_TRAILER));
+        Map<?, ?> body = (Map<?, ?>) entity.getBody();
+        assertEquals(429, body.get("status"));
+        assertEquals("7", body.get("retryAfter"));
+        assertEquals("busy", body.get("error"));
+        Map<String, String> trailers = response.getTrailerFields().get();
+        assertEquals("429", trailers.get(CancellableRequestExecutor.RESPONSE_STATUS_TRAILER));
+        assertEquals("1234", trailers.get(CancellableRequestExecutor.QUEUE_WAIT_HEADER));
+    }
+
+    /**
+     * MockHttpServletResponse不保存尾部字段
+     */
+    private static final class TrailerResponse extends MockHttpServletResponse {
+        private Supplier<Map<String, String>> trailerFields;
+
+        @Override
+        public void setTrailerFields(Supplier<Map<String, String>> supplier) {
+            this.trailerFields = supplier;
+        }
+
+        @Override
+        public Supplier<Map<String, String>> getTrailerFields() {
+            return trailerFields;
+        }
+    }
+
+    private static ResponseEntity<?> await(DeferredResult<?> result) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!result.hasResult() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(result.hasResult());
+        return (ResponseEntity<?>) result.getResult();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
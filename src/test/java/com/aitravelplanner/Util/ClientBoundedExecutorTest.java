@@ -0,0 +1,59 @@
+package com.aitravelplanner.Util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClientBoundedExecutorTest {
+
+    private final ClientBoundedExecutor executor = new ClientBoundedExecutor(Executors.newFixedThreadPool(4), 2);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private void submit(String clientId, Runnable task) {
+        try (RequestContext.Scope ignored = new RequestContext(clientId, null).attach()) {
+            executor.execute(task);
+        }
+    }
+
+    @Test
+    void longPlanDoesNotBlockOtherClients() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch heavyDone = new CountDownLatch(16);
+        for (int i = 0; i < 16; i++) {
+            submit("heavy", () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                heavyDone.countDown();
+            });
+        }
+
+        // 其他客户端的任务不需要等待heavy的任务结束
+        CountDownLatch other = new CountDownLatch(1);
+        submit("other", other::countDown);
+        assertTrue(other.await(5, TimeUnit.SECONDS));
+        assertEquals(14, executor.pendingCount());
+
+        release.countDown();
+        assertTrue(heavyDone.await(5, TimeUnit.SECONDS));
+        assertEquals(2, maxRunning.get());
+        assertEquals(0, executor.pendingCount());
+    }
+}
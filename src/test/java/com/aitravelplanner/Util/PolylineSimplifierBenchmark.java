@@ -0,0 +1,62 @@
+package com.aitravelplanner.Util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * PolylineSimplifier的简化耗时基准（手动运行，不属于单元测试）
+ */
+public final class PolylineSimplifierBenchmark {
+
+    private static final double METERS_PER_DEGREE_LAT = 110_540;
+
+    private PolylineSimplifierBenchmark() {
+    }
+
+    /**
+     * 对不同长度的模拟步行路线（随机游走，步长约5米）计算重要度并生成各级细节，
+     * 输出每种长度的总耗时、每顶点耗时和各级保留的顶点数
+     * 用法：PolylineSimplifierBenchmark [各级容差，默认0,5,20,80,300]
+     */
+    public static void main(String[] args) {
+        double[] tolerances = Arrays.stream((args.length > 0 ? args[0] : "0,5,20,80,300").split(","))
+                .mapToDouble(Double::parseDouble).toArray();
+        int[] lengths = {100, 1_000, 10_000, 100_000, 1_000_000};
+        Random random = new Random(42);
+
+        for (int n : lengths) {
+            List<String> points = new ArrayList<>(n);
+            double lng = 116.397428;
+            double lat = 39.90923;
+            double heading = 0;
+            for (int i = 0; i < n; i++) {
+                points.add(String.format("%.6f,%.6f", lng, lat));
+                heading += random.nextGaussian() * 0.3;
+                lng += Math.cos(heading) * 5 / 85_000;
+                lat += Math.sin(heading) * 5 / METERS_PER_DEGREE_LAT;
+            }
+
+            int rounds = Math.max(3, 2_000_000 / n);
+            List<Map<String, Object>> levels = null;
+            for (int i = 0; i < Math.max(1, rounds / 2); i++) {
+                levels = PolylineSimplifier.buildLevels(points, tolerances);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                levels = PolylineSimplifier.buildLevels(points, tolerances);
+            }
+            double elapsedNanos = (double) (System.nanoTime() - start) / rounds;
+
+            StringBuilder kept = new StringBuilder();
+            for (Map<String, Object> level : levels) {
+                kept.append(String.format("  %s米:%d点/%dB", level.get("toleranceMeters"), level.get("points"),
+                        ((String) level.get("polyline")).length()));
+            }
+            System.out.println(String.format("%,9d个顶点：%10.3fms，%6.1fns/顶点%s",
+                    n, elapsedNanos / 1_000_000, elapsedNanos / n, kept));
+        }
+    }
+}
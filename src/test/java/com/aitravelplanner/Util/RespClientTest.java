@@ -0,0 +1,105 @@
+package com.aitravelplanner.Util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RespClientTest {
+
+    private EmbeddedRespServer server;
+    private RespClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new EmbeddedRespServer(0);
+        client = new RespClient(server.getUrl(), 2, 1000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    void setGetAndDelete() throws IOException {
+        byte[] value = "杭州西湖".getBytes(StandardCharsets.UTF_8);
+
+        client.set("geocode:西湖", value, 60_000);
+        assertArrayEquals(value, client.get("geocode:西湖"));
+
+        client.del("geocode:西湖");
+        assertNull(client.get("geocode:西湖"));
+        assertNull(client.get("missing"));
+    }
+
+    @Test
+    void binaryValuesSurviveUnchanged() throws IOException {
+        byte[] value = new byte[256];
+        for (int i = 0; i < value.length; i++) {
+            value[i] = (byte) i;
+        }
+
+        client.set("binary", value, 60_000);
+
+        assertArrayEquals(value, client.get("binary"));
+    }
+
+    @Test
+    void valuesExpireAfterTtl() throws Exception {
+        client.set("short", new byte[]{1}, 50);
+
+        Thread.sleep(150);
+
+        assertNull(client.get("short"));
+    }
+
+    @Test
+    void connectionsAreReusedAcrossManyCommands() throws IOException {
+        for (int i = 0; i < 200; i++) {
+            client.set("key" + i, new byte[]{(byte) i}, 60_000);
+        }
+        for (int i = 0; i < 200; i++) {
+            assertArrayEquals(new byte[]{(byte) i}, client.get("key" + i));
+        }
+    }
+
+    @Test
+    void publishReachesSubscriber() throws Exception {
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        CountDownLatch connected = new CountDownLatch(1);
+        try (RespClient subscriber = new RespClient(server.getUrl(), 1, 1000)) {
+            subscriber.subscribe("channel", received::add, connected::countDown);
+            assertTrue(connected.await(5, TimeUnit.SECONDS));
+
+            assertEquals(1, client.publish("channel", "node\nkey"));
+            assertEquals("node\nkey", received.poll(5, TimeUnit.SECONDS));
+            assertEquals(0, client.publish("other", "ignored"));
+        }
+    }
+
+    @Test
+    void failsWhenServerIsGone() {
+        server.close();
+
+        assertThrows(IOException.class, () -> client.get("key"));
+    }
+
+    @Test
+    void rejectsInvalidUrl() {
+        assertThrows(IllegalArgumentException.class, () -> new RespClient("http://localhost:6379", 1, 100));
+    }
+}
@@ -0,0 +1,139 @@
+package com.aitravelplanner.Util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SlidingWindowRateLimiter的争用基准（手动运行，不属于单元测试）
+ */
+public final class SlidingWindowRateLimiterBenchmark {
+
+    private SlidingWindowRateLimiterBenchmark() {
+    }
+
+    /**
+     * 加锁实现的对照组：全部客户端在一个同步的HashMap中，每次请求都持有同一把锁
+     */
+    private static final class SynchronizedRateLimiter {
+        private final long windowNanos;
+        private final long limit;
+        private final Map<String, long[]> clients = new HashMap<>();
+
+        SynchronizedRateLimiter(long windowMillis, long limit) {
+            this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+            this.limit = limit;
+        }
+
+        synchronized boolean tryAcquire(String clientId, long cost) {
+            long now = System.nanoTime();
+            long index = now / windowNanos;
+            long[] state = clients.computeIfAbsent(clientId, key -> new long[] {index, 0, 0});
+            if (state[0] != index) {
+                state[2] = state[0] == index - 1 ? state[1] : 0;
+                state[1] = 0;
+                state[0] = index;
+            }
+            double weight = 1 - (double) (now % windowNanos) / windowNanos;
+            if (state[2] * weight + state[1] + cost <= limit) {
+                state[1] += cost;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 争用基准：不同线程数下，分别在大量不同客户端和单个热点客户端（所有线程同一个键）的情况下，
+     * 比较SlidingWindowRateLimiter和加锁实现的吞吐量；最后插入大量不同的客户端，验证跟踪的客户端数不超过上限
+     * 用法：SlidingWindowRateLimiterBenchmark [每轮测试时长（毫秒，默认1000）] [最大线程数（默认256）]
+     */
+    public static void main(String[] args) throws Exception {
+        long durationMs = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+        String[] ips = new String[1 << 16];
+        Random random = new Random(42);
+        for (int i = 0; i < ips.length; i++) {
+            ips[i] = random.nextInt(256) + "." + random.nextInt(256) + "." + random.nextInt(256) + "." + random.nextInt(256);
+        }
+
+        System.out.println(String.format("%-8s %-10s %16s %16s %8s", "线程数", "客户端", "分片+LongAdder", "同步HashMap", "倍数"));
+        for (int threads = 1; threads <= maxThreads; threads *= 4) {
+            for (boolean hot : new boolean[] {false, true}) {
+                // 限额足够大，测的是计数本身的开销而不是拒绝路径
+                SlidingWindowRateLimiter striped = new SlidingWindowRateLimiter("bench-" + threads + (hot ? "-hot" : ""), 60_000, Long.MAX_VALUE / 4, 1 << 20, 64);
+                SynchronizedRateLimiter locked = new SynchronizedRateLimiter(60_000, Long.MAX_VALUE / 4);
+                // 第一次运行用于预热
+                run(threads, durationMs, hot, ips, (key, cost) -> striped.tryAcquire(key, cost) == 0);
+                double stripedOps = run(threads, durationMs, hot, ips, (key, cost) -> striped.tryAcquire(key, cost) == 0);
+                run(threads, durationMs, hot, ips, locked::tryAcquire);
+                double lockedOps = run(threads, durationMs, hot, ips, locked::tryAcquire);
+                striped.close();
+                System.out.println(String.format("%-11d %-10s %13.2fM/s %13.2fM/s %7.1fx", threads, hot ? "单个热点" : "65536个",
+                        stripedOps / 1e6, lockedOps / 1e6, stripedOps / lockedOps));
+            }
+        }
+
+        // 内存上限：200万个不同客户端，最多跟踪10万个
+        SlidingWindowRateLimiter bounded = new SlidingWindowRateLimiter("bench-bounded", 60_000, 100, 100_000, 64);
+        for (int i = 0; i < 2_000_000; i++) {
+            bounded.tryAcquire("10." + (i >>> 16) + "." + ((i >>> 8) & 255) + "." + (i & 255), 1);
+        }
+        System.out.println(String.format("插入200万个不同客户端后跟踪%,d个（上限100,000），其余替换用量最低的客户端", bounded.size()));
+        bounded.close();
+    }
+
+    @FunctionalInterface
+    private interface Acquirer {
+        boolean tryAcquire(String clientId, long cost);
+    }
+
+    private static double run(int threads, long durationMs, boolean hot, String[] ips, Acquirer acquirer) throws InterruptedException {
+        LongAdder operations = new LongAdder();
+        AtomicBoolean stop = new AtomicBoolean();
+        CountDownLatch started = new CountDownLatch(threads);
+        CountDownLatch go = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(threads);
+        long[] sink = new long[1];
+        for (int t = 0; t < threads; t++) {
+            Thread thread = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long count = 0;
+                long allowed = 0;
+                started.countDown();
+                try {
+                    // 全部线程创建完成后同时开始，计时区间外不计数
+                    go.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while (!stop.get()) {
+                    String key = hot ? ips[0] : ips[random.nextInt(ips.length)];
+                    if (acquirer.tryAcquire(key, 1 + (count & 3))) {
+                        allowed++;
+                    }
+                    count++;
+                }
+                operations.add(count);
+                synchronized (sink) {
+                    sink[0] += allowed;
+                }
+                finished.countDown();
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+        started.await();
+        long start = System.nanoTime();
+        go.countDown();
+        Thread.sleep(durationMs);
+        stop.set(true);
+        finished.await();
+        return operations.sum() / ((System.nanoTime() - start) / 1e9);
+    }
+}
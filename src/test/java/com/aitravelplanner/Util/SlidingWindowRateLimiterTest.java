@@ -0,0 +1,65 @@
+package com.aitravelplanner.Util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SlidingWindowRateLimiterTest {
+
+    private final List<SlidingWindowRateLimiter> limiters = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        limiters.forEach(SlidingWindowRateLimiter::close);
+    }
+
+    private SlidingWindowRateLimiter limiter(long limit, int maxClients, int stripes) {
+        SlidingWindowRateLimiter limiter = new SlidingWindowRateLimiter("test", 60_000, limit, maxClients, stripes);
+        limiters.add(limiter);
+        return limiter;
+    }
+
+    @Test
+    void rejectsOnceClientUsesItsLimit() {
+        SlidingWindowRateLimiter limiter = limiter(10, 100, 4);
+
+        assertEquals(0, limiter.tryAcquire("1.1.1.1", 6));
+        assertEquals(0, limiter.tryAcquire("1.1.1.1", 4));
+        long retryAfter = limiter.tryAcquire("1.1.1.1", 1);
+
+        assertTrue(retryAfter > 0 && retryAfter <= 120_000, "retryAfter " + retryAfter);
+        // 其他客户端不受影响
+        assertEquals(0, limiter.tryAcquire("2.2.2.2", 10));
+    }
+
+    @Test
+    void floodOfNewClientsDoesNotLockOutNewLegitimateClient() {
+        SlidingWindowRateLimiter limiter = limiter(10, 50, 1);
+        for (int i = 0; i < 10_000; i++) {
+            limiter.tryAcquire("10.0." + (i >>> 8) + "." + (i & 255), 10);
+        }
+
+        assertTrue(limiter.size() <= 50, "size " + limiter.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, limiter.tryAcquire("203.0.113.9", 1), "request " + i);
+        }
+    }
+
+    @Test
+    void heavyClientKeepsItsCountWhenStripeIsFull() {
+        SlidingWindowRateLimiter limiter = limiter(10, 50, 1);
+        assertEquals(0, limiter.tryAcquire("1.1.1.1", 10));
+
+        for (int i = 0; i < 1_000; i++) {
+            limiter.tryAcquire("10.0." + (i >>> 8) + "." + (i & 255), 1);
+        }
+
+        // 用量最高的客户端不会被替换，仍然受限
+        assertTrue(limiter.tryAcquire("1.1.1.1", 1) > 0);
+    }
+}
@@ -0,0 +1,180 @@
+package com.aitravelplanner.Util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TieredCacheTest {
+
+    private final List<AutoCloseable> resources = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (int i = resources.size() - 1; i >= 0; i--) {
+            resources.get(i).close();
+        }
+    }
+
+    private TieredCache cache(String url, long retryAfterFailureMs) {
+        ObjectProvider<EmbeddedRespServer> noEmbeddedServer = new DefaultListableBeanFactory().getBeanProvider(EmbeddedRespServer.class);
+        TieredCache cache = new TieredCache(true, 100, 300, url, 2, 200, retryAfterFailureMs, noEmbeddedServer);
+        resources.add(cache::destroy);
+        return cache;
+    }
+
+    @Test
+    void sharedTierServesOtherInstance() throws IOException {
+        EmbeddedRespServer server = new EmbeddedRespServer(0);
+        resources.add(server);
+        TieredCache first = cache(server.getUrl(), 5000);
+        TieredCache second = cache(server.getUrl(), 5000);
+
+        first.put("geocode", "西湖", Map.of("lng", 120.14, "lat", 30.25), 3600);
+
+        assertEquals(Map.of("lng", 120.14, "lat", 30.25), second.get("geocode", "西湖", Map.class));
+        assertTrue(second.lookup("geocode", "西湖", Map.class).getAgeMillis() >= 0);
+    }
+
+    @Test
+    void writeOnOneInstanceInvalidatesOtherNearCache() throws Exception {
+        EmbeddedRespServer server = new EmbeddedRespServer(0);
+        resources.add(server);
+        TieredCache first = cache(server.getUrl(), 5000);
+        TieredCache second = cache(server.getUrl(), 5000);
+        awaitSubscribed(server.getUrl(), 2);
+
+        first.put("route", "a-b", "旧路线", 3600);
+        // second从共享缓存读取后保存在近端缓存中
+        assertEquals("旧路线", second.get("route", "a-b", String.class));
+
+        first.put("route", "a-b", "新路线", 3600);
+        awaitValue(() -> second.get("route", "a-b", String.class), "新路线");
+
+        first.invalidate("route", "a-b");
+        awaitValue(() -> second.get("route", "a-b", String.class), null);
+    }
+
+    @Test
+    void sharedFailureBacksOffToNearCacheOnly() throws Exception {
+        RecordingServer unresponsive = new RecordingServer();
+        resources.add(unresponsive);
+        TieredCache cache = cache("redis://127.0.0.1:" + unresponsive.getPort(), 500);
+
+        // 第一次访问等待超时，之后的访问在退避时间内不再连接共享缓存
+        assertNull(cache.get("geocode", "西湖", String.class));
+        cache.put("geocode", "西湖", "30.25,120.14", 3600);
+        for (int i = 0; i < 5; i++) {
+            assertNull(cache.get("geocode", "断桥" + i, String.class));
+        }
+        assertEquals("30.25,120.14", cache.get("geocode", "西湖", String.class));
+        assertEquals(List.of("GET"), unresponsive.commands());
+
+        Thread.sleep(600);
+        assertNull(cache.get("geocode", "雷峰塔", String.class));
+        assertEquals(List.of("GET", "GET"), unresponsive.commands());
+    }
+
+    /**
+     * 等待所有实例的失效订阅连接建立：向失效频道发布一条无关的消息，直到订阅者数达到实例数
+     */
+    private static void awaitSubscribed(String url, int instances) throws Exception {
+        try (RespClient client = new RespClient(url, 1, 1000)) {
+            awaitValue(() -> {
+                try {
+                    return client.publish(TieredCache.INVALIDATION_CHANNEL, "probe\nprobe") >= instances;
+                } catch (IOException e) {
+                    return false;
+                }
+            }, true);
+        }
+    }
+
+    private static void awaitValue(Supplier<Object> actual, Object expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        Object value = actual.get();
+        while (!Objects.equals(expected, value) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            value = actual.get();
+        }
+        assertEquals(expected, value);
+    }
+
+    /**
+     * 接受连接但从不回复的服务端，记录每个连接的第一条命令
+     */
+    private static final class RecordingServer implements AutoCloseable {
+        private final ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        private final List<String> commands = new CopyOnWriteArrayList<>();
+        private final List<Socket> sockets = new CopyOnWriteArrayList<>();
+
+        RecordingServer() throws IOException {
+            Thread thread = new Thread(this::acceptLoop, "recording-server");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        List<String> commands() {
+            return new ArrayList<>(commands);
+        }
+
+        private void acceptLoop() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    sockets.add(socket);
+                    Thread reader = new Thread(() -> readFirstCommand(socket));
+                    reader.setDaemon(true);
+                    reader.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void readFirstCommand(Socket socket) {
+            try {
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                // *N \r\n $len \r\n 命令名
+                in.readLine();
+                in.readLine();
+                String command = in.readLine();
+                if (!"SUBSCRIBE".equals(command)) {
+                    commands.add(command);
+                }
+            } catch (IOException ignored) {
+                // 客户端超时后关闭连接
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+}
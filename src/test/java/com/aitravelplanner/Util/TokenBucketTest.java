@@ -0,0 +1,46 @@
+package com.aitravelplanner.Util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketTest {
+
+    @Test
+    void waitIsBoundedByRequestDeadline() {
+        TokenBucket bucket = new TokenBucket("test", 1, 1);
+        assertTrue(bucket.tryAcquire(0));
+
+        RequestContext context = new RequestContext();
+        context.setDeadline(100, 0);
+        try (RequestContext.Scope ignored = context.attach()) {
+            // 下一个令牌约1秒后可用，超过请求剩余时间，直接拒绝
+            assertFalse(bucket.tryAcquire(5_000));
+        }
+    }
+
+    @Test
+    void cancelledRequestStopsWaiting() {
+        TokenBucket bucket = new TokenBucket("test", 0.2, 1);
+        assertTrue(bucket.tryAcquire(0));
+
+        RequestContext context = new RequestContext();
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try (RequestContext.Scope ignored = context.attach()) {
+            scheduler.schedule(() -> context.cancel("client-disconnected"), 50, TimeUnit.MILLISECONDS);
+            long start = System.nanoTime();
+
+            assertThrows(CancellationException.class, () -> bucket.tryAcquire(10_000));
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+}
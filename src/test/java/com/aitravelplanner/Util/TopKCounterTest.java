@@ -0,0 +1,71 @@
+package com.aitravelplanner.Util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TopKCounterTest {
+
+    @Test
+    void countsExactlyWhileUnderCapacity() {
+        TopKCounter<String> counter = new TopKCounter<>(10);
+        for (int i = 0; i < 5; i++) {
+            counter.add("西湖");
+        }
+        counter.add("灵隐寺", 3);
+        counter.add("断桥");
+        counter.add("灵隐寺");
+
+        assertEquals(List.of(Map.entry("西湖", 5L), Map.entry("灵隐寺", 4L), Map.entry("断桥", 1L)), counter.top(10));
+        assertEquals(List.of(Map.entry("西湖", 5L)), counter.top(1));
+        assertEquals(List.of(), counter.top(0));
+    }
+
+    @Test
+    void newKeyReplacesOldestLowestCountAndInheritsItsCount() {
+        TopKCounter<String> counter = new TopKCounter<>(3);
+        counter.add("a", 5);
+        counter.add("b", 2);
+        counter.add("c", 2);
+
+        counter.add("d");
+
+        assertEquals(List.of(Map.entry("a", 5L), Map.entry("d", 3L), Map.entry("c", 2L)), counter.top(3));
+    }
+
+    @Test
+    void heavyHittersSurviveLongTailOfDistinctKeys() {
+        TopKCounter<String> counter = new TopKCounter<>(50);
+        Random random = new Random(42);
+        Map<String, Long> actual = new HashMap<>();
+        long total = 0;
+        for (int i = 0; i < 20_000; i++) {
+            // 前5个键占约一半的流量，其余为大量只出现几次的键
+            String key = random.nextBoolean() ? "hot" + random.nextInt(5) : "cold" + random.nextInt(5_000);
+            counter.add(key);
+            actual.merge(key, 1L, Long::sum);
+            total++;
+        }
+
+        List<Map.Entry<String, Long>> top = counter.top(50);
+        long sum = 0;
+        for (int i = 0; i < top.size(); i++) {
+            sum += top.get(i).getValue();
+            if (i > 0) {
+                assertTrue(top.get(i - 1).getValue() >= top.get(i).getValue());
+            }
+            // 计数只会偏高
+            assertTrue(top.get(i).getValue() >= actual.get(top.get(i).getKey()));
+        }
+        assertEquals(total, sum);
+        for (Map.Entry<String, Long> entry : counter.top(5)) {
+            assertTrue(entry.getKey().startsWith("hot"), entry.getKey());
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.aitravelplanner.Util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class TraceExporterTest {
+
+    @TempDir
+    Path dir;
+
+    private static byte[] line(String text) {
+        return (text + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String read(Path path) throws IOException {
+        return Files.readString(path, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void rotatesWhenFileWouldExceedMaxSizeAndKeepsMaxFiles() throws IOException {
+        TraceExporter exporter = new TraceExporter();
+        ReflectionTestUtils.setField(exporter, "maxFileBytes", 10L);
+        ReflectionTestUtils.setField(exporter, "maxFiles", 2);
+        Path file = dir.resolve("traces.jsonl");
+
+        exporter.append(file, line("a"));
+        exporter.append(file, line("b"));
+        // 当前文件4字节，再写入8字节会超过10字节，先轮转
+        exporter.append(file, line("ccccccc"));
+        exporter.append(file, line("dddddddddddddddd"));
+        exporter.append(file, line("e"));
+
+        assertEquals("e\n", read(file));
+        assertEquals("dddddddddddddddd\n", read(dir.resolve("traces.1.jsonl")));
+        assertEquals("ccccccc\n", read(dir.resolve("traces.2.jsonl")));
+        assertFalse(Files.exists(dir.resolve("traces.3.jsonl")));
+    }
+
+    @Test
+    void zeroMaxSizeNeverRotates() throws IOException {
+        TraceExporter exporter = new TraceExporter();
+        ReflectionTestUtils.setField(exporter, "maxFileBytes", 0L);
+        ReflectionTestUtils.setField(exporter, "maxFiles", 2);
+        Path file = dir.resolve("nested").resolve("traces.jsonl");
+
+        for (int i = 0; i < 3; i++) {
+            exporter.append(file, line("trace" + i));
+        }
+
+        assertEquals("trace0\ntrace1\ntrace2\n", read(file));
+        assertFalse(Files.exists(TraceExporter.rotated(file, 1)));
+    }
+}